@@ -0,0 +1,68 @@
+package com.interfac.usermanager.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.interfac.usermanager.user.model.User;
+import com.interfac.usermanager.user.model.UserSummary;
+
+/**
+ * This class creates valid synthetic users for the benchmarks.
+ * 
+ * @author Ali Abdalla
+ *
+ */
+final class BenchmarkUsers {
+
+	private BenchmarkUsers() {
+	}
+	
+	/**
+	 * @param n a number unique to the user
+	 * @return a user that passes bean validation, with a plain text password.
+	 */
+	static User user(long n) {
+		User user = new User();
+		user.setUserId(n);
+		user.setUserName("bench" + n);
+		user.setFirstName("First" + n);
+		user.setLastName("Last" + n);
+		user.setEmail("bench" + n + "@example.com");
+		user.setPhone("555-010-" + String.format("%04d", n % 10000));
+		user.setPassword("password" + n);
+		user.setMatchingPassword("password" + n);
+		user.setIsAdmin(n % 10 == 0);
+		user.setEnabled(true);
+		user.setDateCreated(new Date(1475000000000L + n * 1000));
+		user.setDateModified(new Date(1475000000000L + n * 2000));
+		user.setLatestModifier("root");
+		return user;
+	}
+	
+	/**
+	 * @param count
+	 * @return the summaries of the users numbered from 1 to <code>count</code>, as the users view gets them.
+	 */
+	static List<UserSummary> summaries(int count) {
+		List<UserSummary> summaries = new ArrayList<UserSummary>(count);
+		for (int i = 1; i <= count; i++) {
+			User user = user(i);
+			summaries.add(new UserSummary(user.getUserId(), user.getUserName(), user.getEmail(), user.getDateCreated(),
+					user.getDateModified(), user.getLatestModifier(), user.getIsAdmin(), user.getVersion()));
+		}
+		return summaries;
+	}
+	
+	/**
+	 * @param count
+	 * @return users numbered from 1 to <code>count</code>
+	 */
+	static List<User> users(int count) {
+		List<User> users = new ArrayList<User>(count);
+		for (int i = 1; i <= count; i++) {
+			users.add(user(i));
+		}
+		return users;
+	}
+}
@@ -0,0 +1,82 @@
+package com.interfac.usermanager.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import com.interfac.usermanager.user.services.HashingPasswordEncoder;
+
+/**
+ * This class measures the cost of a password check for each BCrypt strength.
+ * 
+ * <p>A login does one check, and the benchmark runs on a single thread, so the <code>matches</code> score is
+ * the number of logins per second one core can serve at that strength. Multiply it by the number of
+ * hashing threads to get the capacity of the {@link HashingPasswordEncoder} pool.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+public class PasswordEncoderBenchmark {
+
+	/**
+	 * the BCrypt cost, each step doubles the work.
+	 */
+	@Param({"8", "10", "12"})
+	public int strength;
+	
+	/**
+	 * the encoder under test.
+	 */
+	private BCryptPasswordEncoder encoder;
+	
+	/**
+	 * a stored hash of {@link #PASSWORD}.
+	 */
+	private String hash;
+	
+	private static final String PASSWORD = "correct horse battery staple";
+	
+	/**
+	 * hashes the password once at the benchmarked strength.
+	 */
+	@Setup
+	public void setup() {
+		encoder = new BCryptPasswordEncoder(strength);
+		hash = encoder.encode(PASSWORD);
+	}
+	
+	/**
+	 * @return the result of a login's password check.
+	 */
+	@Benchmark
+	public boolean matches() {
+		return encoder.matches(PASSWORD, hash);
+	}
+	
+	/**
+	 * @return a new hash, the cost of a registration, password change or rehash on login.
+	 */
+	@Benchmark
+	public String encode() {
+		return encoder.encode(PASSWORD);
+	}
+}
@@ -0,0 +1,164 @@
+package com.interfac.usermanager.benchmarks;
+
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.spring4.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import com.interfac.usermanager.user.controllers.UserRowCache;
+import com.interfac.usermanager.user.model.User;
+import com.interfac.usermanager.user.model.UserProfile;
+import com.interfac.usermanager.user.model.UserSummary;
+import com.interfac.usermanager.user.services.UserPage;
+
+/**
+ * This class measures the rendering of the <i>users</i> and <i>user_profile</i> views with 10, 1k, 10k and 100k
+ * users in the list, with the template cache on as in production. With <code>rowCache</code> the rows of the 
+ * <i>users</i> view come from a warm {@link UserRowCache}, as with the {@value UserRowCache#CACHE_NAME} cache
+ * configured once the rows were seen.
+ * 
+ * <p>The templates are rendered by a standalone engine outside of a request, so the <code>sec:</code> attributes
+ * of the security dialect are not processed. The output is counted and discarded, the score is the rendering 
+ * time only.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+public class TemplateRenderingBenchmark {
+
+	/**
+	 * the number of users in the <i>users</i> view.
+	 */
+	@Param({"10", "1000", "10000", "100000"})
+	public int users;
+	
+	/**
+	 * whether the rows of the <i>users</i> view come from the row cache.
+	 */
+	@Param({"false", "true"})
+	public boolean rowCache;
+	
+	private SpringTemplateEngine templateEngine;
+	
+	private MockServletContext servletContext;
+	
+	private Map<String, Object> listVariables;
+	
+	private Map<String, Object> profileVariables;
+	
+	private UserRowCache userRowCache;
+	
+	/**
+	 * creates the engine configured like the application's, and the model of both views.
+	 */
+	@Setup
+	public void setup() {
+		ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+		resolver.setPrefix("templates/");
+		resolver.setSuffix(".html");
+		resolver.setTemplateMode("LEGACYHTML5");
+		resolver.setCharacterEncoding("UTF-8");
+		resolver.setCacheable(true);
+		templateEngine = new SpringTemplateEngine();
+		templateEngine.setTemplateResolver(resolver);
+		servletContext = new MockServletContext();
+		
+		List<UserSummary> usersList = BenchmarkUsers.summaries(users);
+		listVariables = new HashMap<String, Object>();
+		listVariables.put("usersList", usersList);
+		listVariables.put("page", new UserPage<UserSummary>(usersList, 1L, (long) users, users, Direction.ASC));
+		listVariables.put("sort", "asc");
+		if (rowCache) {
+			userRowCache = new UserRowCache(templateEngine, new ConcurrentMapCacheManager(UserRowCache.CACHE_NAME));
+			MockHttpServletRequest request = new MockHttpServletRequest(servletContext, "GET", "/users");
+			userRowCache.render(usersList, new WebContext(request, new MockHttpServletResponse(), servletContext));
+			// the view reads the rows from the cache on every invocation
+			listVariables.put("rowCache", userRowCache);
+		}
+		
+		User user = BenchmarkUsers.user(1);
+		profileVariables = new HashMap<String, Object>();
+		profileVariables.put("user", new UserProfile(user.getUserId(), user.getUserName(), user.getFirstName(),
+				user.getLastName(), user.getEmail(), user.getDateCreated(), user.getDateModified(),
+				user.getLatestModifier()));
+	}
+	
+	/**
+	 * @return the number of characters written
+	 */
+	@Benchmark
+	public long renderUsers() {
+		return render("users", listVariables);
+	}
+	
+	/**
+	 * @return the number of characters written
+	 */
+	@Benchmark
+	public long renderUserProfile() {
+		return render("user_profile", profileVariables);
+	}
+	
+	private long render(String template, Map<String, Object> variables) {
+		MockHttpServletRequest request = new MockHttpServletRequest(servletContext, "GET", "/" + template);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		WebContext context = new WebContext(request, response, servletContext, Locale.ENGLISH, variables);
+		CountingWriter writer = new CountingWriter();
+		templateEngine.process(template, context, writer);
+		return writer.count;
+	}
+	
+	/**
+	 * a {@link Writer} that only counts what is written to it.
+	 */
+	private static class CountingWriter extends Writer {
+		
+		private long count;
+		
+		@Override
+		public void write(char[] buffer, int offset, int length) {
+			count += length;
+		}
+		
+		@Override
+		public void write(String str, int offset, int length) {
+			count += length;
+		}
+		
+		@Override
+		public void flush() {
+		}
+		
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package com.interfac.usermanager.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.interfac.usermanager.user.model.User;
+
+/**
+ * This class measures {@link User#hashCode()} and {@link User#equals(Object)}, which run for every user 
+ * put in a hash based collection, e.g. the roles of a user or the persistence context.
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+public class UserEqualityBenchmark {
+
+	private User user;
+	
+	/**
+	 * equal to {@link #user}, but another instance, so every field is compared.
+	 */
+	private User copy;
+	
+	/**
+	 * differs from {@link #user} in its username only.
+	 */
+	private User other;
+	
+	/**
+	 * creates the users.
+	 */
+	@Setup
+	public void setup() {
+		user = BenchmarkUsers.user(42);
+		copy = BenchmarkUsers.user(42);
+		other = BenchmarkUsers.user(42);
+		other.setUserName("bench43");
+	}
+	
+	/**
+	 * @return the hash code
+	 */
+	@Benchmark
+	public int hashCodeOfUser() {
+		return user.hashCode();
+	}
+	
+	/**
+	 * @return true
+	 */
+	@Benchmark
+	public boolean equalsEqualUser() {
+		return user.equals(copy);
+	}
+	
+	/**
+	 * @return false
+	 */
+	@Benchmark
+	public boolean equalsOtherUser() {
+		return user.equals(other);
+	}
+}
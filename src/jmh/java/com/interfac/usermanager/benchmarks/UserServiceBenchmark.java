@@ -0,0 +1,143 @@
+package com.interfac.usermanager.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Sort.Direction;
+
+import com.interfac.usermanager.Application;
+import com.interfac.usermanager.user.model.User;
+import com.interfac.usermanager.user.model.UserSummary;
+import com.interfac.usermanager.user.services.HashingPasswordEncoder;
+import com.interfac.usermanager.user.services.ImportReport;
+import com.interfac.usermanager.user.services.UserImportService;
+import com.interfac.usermanager.user.services.UserPage;
+import com.interfac.usermanager.user.services.UserService;
+import com.interfac.usermanager.user.services.UserRecordReader.Format;
+import com.interfac.usermanager.user.validation.UsernameExistsException;
+
+/**
+ * This class measures {@link UserService} against an embedded H2 database in MySQL mode.
+ * 
+ * <p>The whole application context is started without the web server, with <code>users</code> users imported
+ * beforehand. The BCrypt strength is set to the minimum, so <code>registerUser</code> measures the persistence
+ * path rather than the hashing, see {@link PasswordEncoderBenchmark} for that.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+public class UserServiceBenchmark {
+
+	/**
+	 * the number of users in the database before the benchmark starts.
+	 */
+	@Param({"10000"})
+	public int users;
+	
+	private ConfigurableApplicationContext context;
+	
+	private UserService userService;
+	
+	/**
+	 * numbers the registered users after the imported ones.
+	 */
+	private final AtomicLong registered = new AtomicLong();
+	
+	/**
+	 * starts the application on an in-memory database and imports the users.
+	 * @throws IOException 
+	 */
+	@Setup
+	public void setup() throws IOException {
+		System.setProperty("spring.devtools.restart.enabled", "false");
+		context = new SpringApplicationBuilder(Application.class).web(false).run(
+				"--spring.datasource.url=jdbc:h2:mem:bench;MODE=MySQL;DB_CLOSE_DELAY=-1",
+				"--spring.datasource.driver-class-name=org.h2.Driver",
+				"--spring.datasource.username=sa",
+				"--spring.datasource.password=",
+				"--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+				"--spring.jpa.show-sql=false",
+				"--spring.jpa.properties.hibernate.hbm2ddl.auto=create-drop",
+				"--usermanager.password.bcrypt-strength=4",
+				"--logging.level.root=WARN");
+		userService = context.getBean(UserService.class);
+		
+		// one hash shared by all the imported users, the import keeps encoded passwords as they are
+		String password = context.getBean(HashingPasswordEncoder.class).encode("password");
+		StringBuilder csv = new StringBuilder("username,firstname,lastname,email,phone,password,isadmin\n");
+		for (int i = 1; i <= users; i++) {
+			User user = BenchmarkUsers.user(i);
+			csv.append(user.getUserName()).append(',').append(user.getFirstName()).append(',')
+				.append(user.getLastName()).append(',').append(user.getEmail()).append(',')
+				.append(user.getPhone()).append(',').append(password).append(',')
+				.append(user.getIsAdmin()).append('\n');
+		}
+		ImportReport report = context.getBean(UserImportService.class).importUsers(
+				new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)), Format.CSV);
+		if (report.getRejected() > 0) {
+			throw new IllegalStateException("could not import the benchmark users: " + report.getErrors());
+		}
+	}
+	
+	/**
+	 * stops the application.
+	 */
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+	
+	/**
+	 * registers a new user each time.
+	 * @return the user
+	 * @throws UsernameExistsException never, the usernames are unique
+	 */
+	@Benchmark
+	public User registerUser() throws UsernameExistsException {
+		User user = BenchmarkUsers.user(users + registered.incrementAndGet());
+		user.setUserId(0);
+		userService.registerUser(user);
+		return user;
+	}
+	
+	/**
+	 * @return a page of the default size after a random user.
+	 */
+	@Benchmark
+	public UserPage<UserSummary> listUsers() {
+		long after = ThreadLocalRandom.current().nextLong(users);
+		return userService.listUsers(after, null, 0, Direction.ASC);
+	}
+	
+	/**
+	 * @return a random imported user.
+	 */
+	@Benchmark
+	public User getUserByUserName() {
+		return userService.getUserByUserName("bench" + (1 + ThreadLocalRandom.current().nextInt(users)));
+	}
+}
@@ -0,0 +1,84 @@
+package com.interfac.usermanager.benchmarks;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.interfac.usermanager.user.model.User;
+import com.interfac.usermanager.user.validation.PasswordsMatchValidator;
+
+/**
+ * This class measures the validation of a registration form: the @PasswordsMatch check alone, 
+ * and the full bean validation of a valid and an invalid {@link User}.
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+public class ValidationBenchmark {
+
+	private PasswordsMatchValidator passwordsMatchValidator;
+	
+	private Validator validator;
+	
+	private User valid;
+	
+	private User invalid;
+	
+	/**
+	 * creates the validators and the users.
+	 */
+	@Setup
+	public void setup() {
+		passwordsMatchValidator = new PasswordsMatchValidator();
+		validator = Validation.buildDefaultValidatorFactory().getValidator();
+		valid = BenchmarkUsers.user(42);
+		invalid = BenchmarkUsers.user(43);
+		invalid.setEmail("not an email");
+		invalid.setPhone("123");
+		invalid.setMatchingPassword("something else");
+	}
+	
+	/**
+	 * @return the result of the @PasswordsMatch check of a valid user.
+	 */
+	@Benchmark
+	public boolean passwordsMatch() {
+		return passwordsMatchValidator.isValid(valid, null);
+	}
+	
+	/**
+	 * @return the violations of a valid user, none.
+	 */
+	@Benchmark
+	public Set<ConstraintViolation<User>> validateValidUser() {
+		return validator.validate(valid);
+	}
+	
+	/**
+	 * @return the violations of an invalid user, building the messages is part of the cost.
+	 */
+	@Benchmark
+	public Set<ConstraintViolation<User>> validateInvalidUser() {
+		return validator.validate(invalid);
+	}
+}
@@ -1,13 +1,17 @@
 package com.interfac.usermanager;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.data.domain.AuditorAware;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.crypto.password.StandardPasswordEncoder;
@@ -29,6 +33,8 @@ import com.interfac.usermanager.user.repositories.UserRepository;
  */
 @SpringBootApplication
 @EnableJpaAuditing
+@EnableCaching
+@EnableScheduling
 public class Application {
 	
 	/**
@@ -39,4 +45,18 @@ public class Application {
 		SpringApplication.run(Application.class, args);
 	}
 	
+	/**
+	 * the scheduler of the @Scheduled methods, with a thread for each so a long outbox delivery does not delay
+	 * the token revocation poll or the replica health check.
+	 * @param poolSize <code>usermanager.scheduler.pool-size</code>
+	 * @return the scheduler
+	 */
+	@Bean
+	public ThreadPoolTaskScheduler taskScheduler(@Value("${usermanager.scheduler.pool-size:4}") int poolSize) {
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.setPoolSize(poolSize);
+		scheduler.setThreadNamePrefix("scheduler-");
+		return scheduler;
+	}
+	
 }
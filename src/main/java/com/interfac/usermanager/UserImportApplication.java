@@ -0,0 +1,53 @@
+package com.interfac.usermanager;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.interfac.usermanager.user.services.ImportReport;
+import com.interfac.usermanager.user.services.UserImportService;
+import com.interfac.usermanager.user.services.UserRecordReader.Format;
+
+/**
+ * This class is a command line entry point that imports users from a CSV or JSON file
+ * without starting the web server.
+ *
+ * <p>Usage: <code>UserImportApplication &lt;file&gt; [spring boot arguments]</code>. The format is taken
+ * from the file extension, <i>.json</i> files are read as JSON and anything else as CSV.
+ * The exit status is 0 if every row was imported, 1 otherwise.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+public class UserImportApplication {
+
+	/**
+	 * The main method.
+	 * @param args the file to import, followed by optional spring boot arguments.
+	 * @throws IOException if the file can not be read
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("usage: UserImportApplication <file.csv|file.json> [--spring.property=value ...]");
+			System.exit(2);
+		}
+		String file = args[0];
+		String[] springArgs = Arrays.copyOfRange(args, 1, args.length);
+
+		ImportReport report;
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+				.web(false).run(springArgs)) {
+			UserImportService importService = context.getBean(UserImportService.class);
+			report = importService.importUsers(new FileInputStream(file), Format.fromFileName(file));
+		}
+
+		for (ImportReport.RowError error : report.getErrors()) {
+			System.err.println(error);
+		}
+		System.out.println(report);
+		System.exit(report.getRejected() == 0 ? 0 : 1);
+	}
+}
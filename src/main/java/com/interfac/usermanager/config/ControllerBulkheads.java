@@ -0,0 +1,262 @@
+package com.interfac.usermanager.config;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+/**
+ * This class runs the database bound controller handlers on bounded thread pools, one per kind of page, so a slow
+ * query holds a pool thread instead of a Tomcat worker and a slow <i>/users</i> page can not starve the login page
+ * or the other kinds of pages.
+ *
+ * <p>Each {@link Bulkhead} has <code>usermanager.async.&lt;name&gt;.threads</code> threads and admits up to
+ * <code>usermanager.async.&lt;name&gt;.queue</code> more waiting tasks. A handler that can not be admitted is
+ * rejected at once, on the request thread, and one that does not finish within
+ * <code>usermanager.async.&lt;name&gt;.timeout-ms</code> (0 for none) is answered with a 503. A timed out task that
+ * did not start is dropped and a running one is interrupted, it keeps its place until it returns. The handlers
+ * return the {@link WebAsyncTask} of {@link #submit(Bulkhead, Callable)}, spring security carries the security
+ * context over to the pool thread.</p>
+ *
+ * <p>The request and the response belong to the container again once a request timed out, so the tasks must not
+ * use them: whatever they need from the request is read before, and they only fill the model and return a view
+ * name or a response entity. Writes should have no timeout, the client would be told to retry a change that is
+ * still made.</p>
+ *
+ * <p>The state of the pools is added to <i>/metrics</i> as <code>async.&lt;name&gt;.*</code>: the active and
+ * queued tasks and the completed, rejected and timed out totals. The controller timers of
+ * {@link LatencyMetricsAspect} measure these handlers until their asynchronous request completes, the wait for a
+ * pool thread included.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+@Component
+public class ControllerBulkheads implements PublicMetrics {
+
+	/**
+	 * The kinds of handlers sharing a pool.
+	 */
+	public enum Bulkhead {
+		/**
+		 * the users list and the search results.
+		 */
+		LISTING,
+		/**
+		 * the user profiles.
+		 */
+		PROFILE,
+		/**
+		 * registering and editing users.
+		 */
+		REGISTRATION;
+
+		/**
+		 * @return the name used in the properties and the metrics.
+		 */
+		public String getName() {
+			return name().toLowerCase();
+		}
+	}
+
+	/**
+	 * reads the <code>usermanager.async.&lt;name&gt;.*</code> properties.
+	 */
+	@Autowired
+	private Environment environment;
+
+	/**
+	 * the pools, by bulkhead.
+	 */
+	private final Map<Bulkhead, Pool> pools = new EnumMap<Bulkhead, Pool>(Bulkhead.class);
+
+	/**
+	 * creates the pools.
+	 */
+	@PostConstruct
+	public void init() {
+		for (Bulkhead bulkhead : Bulkhead.values()) {
+			String prefix = "usermanager.async." + bulkhead.getName() + ".";
+			int threads = environment.getProperty(prefix + "threads", Integer.class, 8);
+			int queue = environment.getProperty(prefix + "queue", Integer.class, 100);
+			// a zero timeout is passed on to the servlet container, for which it means none
+			long timeout = environment.getProperty(prefix + "timeout-ms", Long.class, 10000L);
+			pools.put(bulkhead, new Pool(bulkhead.getName(), threads, queue, timeout));
+		}
+	}
+
+	/**
+	 * stops the pools.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		for (Pool pool : pools.values()) {
+			pool.executor.shutdown();
+		}
+	}
+
+	/**
+	 * @param bulkhead the pool to run the task on
+	 * @param task the work of the handler
+	 * @return the task to return from the handler.
+	 * @throws BulkheadFullException if the pool and its queue are full.
+	 */
+	public <T> WebAsyncTask<T> submit(Bulkhead bulkhead, Callable<T> task) {
+		Pool pool = pools.get(bulkhead);
+		// admitted here, on the request thread, so a full pool is answered before the request goes async
+		if (!pool.permits.tryAcquire()) {
+			pool.rejected.incrementAndGet();
+			throw new BulkheadFullException("Too many " + bulkhead.getName() + " requests, try again later");
+		}
+		Execution execution = new Execution();
+		WebAsyncTask<T> asyncTask = new WebAsyncTask<T>(pool.timeoutMillis, pool.executor, () -> {
+			try {
+				if (!execution.start()) {
+					return null;
+				}
+				try {
+					return task.call();
+				} finally {
+					execution.finish();
+				}
+			} finally {
+				pool.permits.release();
+			}
+		});
+		asyncTask.onTimeout(() -> {
+			pool.timeouts.incrementAndGet();
+			execution.cancel();
+			throw new BulkheadFullException("The " + bulkhead.getName() + " request timed out, try again later");
+		});
+		return asyncTask;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.boot.actuate.endpoint.PublicMetrics#metrics()
+	 */
+	@Override
+	public Collection<Metric<?>> metrics() {
+		List<Metric<?>> metrics = new ArrayList<Metric<?>>();
+		for (Pool pool : pools.values()) {
+			ThreadPoolExecutor executor = pool.executor.getThreadPoolExecutor();
+			String prefix = "async." + pool.name + ".";
+			metrics.add(new Metric<Integer>(prefix + "threads", executor.getMaximumPoolSize()));
+			metrics.add(new Metric<Integer>(prefix + "active", executor.getActiveCount()));
+			metrics.add(new Metric<Integer>(prefix + "queued", executor.getQueue().size()));
+			metrics.add(new Metric<Long>(prefix + "completed", executor.getCompletedTaskCount()));
+			metrics.add(new Metric<Long>(prefix + "rejected", pool.rejected.get()));
+			metrics.add(new Metric<Long>(prefix + "timeouts", pool.timeouts.get()));
+		}
+		return metrics;
+	}
+
+	/**
+	 * The thread running a task, so a timeout can cancel it.
+	 */
+	private static class Execution {
+
+		private Thread thread;
+
+		private boolean cancelled;
+
+		/**
+		 * @return false if the task was cancelled before it started.
+		 */
+		synchronized boolean start() {
+			thread = Thread.currentThread();
+			return !cancelled;
+		}
+
+		/**
+		 * forgets the thread, and clears an interrupt that came too late to matter.
+		 */
+		synchronized void finish() {
+			thread = null;
+			Thread.interrupted();
+		}
+
+		/**
+		 * keeps the task from starting, or interrupts it.
+		 */
+		synchronized void cancel() {
+			cancelled = true;
+			if (thread != null) {
+				thread.interrupt();
+			}
+		}
+	}
+
+	/**
+	 * The executor of a bulkhead and its counters.
+	 */
+	private static class Pool {
+
+		private final String name;
+
+		/**
+		 * one per thread and queue place, so the executor itself never has to reject.
+		 */
+		private final Semaphore permits;
+
+		private final long timeoutMillis;
+
+		private final ThreadPoolTaskExecutor executor;
+
+		private final AtomicLong rejected = new AtomicLong();
+
+		private final AtomicLong timeouts = new AtomicLong();
+
+		/**
+		 * Parameterized constructor
+		 * @param name
+		 * @param threads
+		 * @param queue
+		 * @param timeoutMillis
+		 */
+		Pool(String name, int threads, int queue, long timeoutMillis) {
+			this.name = name;
+			this.permits = new Semaphore(threads + queue);
+			this.timeoutMillis = timeoutMillis;
+			executor = new ThreadPoolTaskExecutor();
+			executor.setCorePoolSize(threads);
+			executor.setMaxPoolSize(threads);
+			executor.setQueueCapacity(queue);
+			executor.setThreadNamePrefix("async-" + name + "-");
+			executor.initialize();
+		}
+	}
+
+	/**
+	 * Thrown when a handler can not be admitted to its pool or did not finish in time.
+	 */
+	@SuppressWarnings("serial")
+	@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+	public static class BulkheadFullException extends RuntimeException {
+
+		/**
+		 * Constructor with <code>message</code> parameter.
+		 * @param message
+		 */
+		public BulkheadFullException(String message) {
+			super(message);
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package com.interfac.usermanager.config;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.mpierce.metrics.reservoir.hdrhistogram.HdrHistogramReservoir;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+/**
+ * This class times every call to the controllers, the services, the repositories and the authentication provider.
+ *
+ * <p>Each method gets a dropwizard {@link Timer} named <code>timer.&lt;Class&gt;.&lt;method&gt;</code>, e.g.
+ * <code>timer.UserRepository.findByUserName</code>, backed by an HdrHistogram reservoir so the percentiles are
+ * exact rather than sampled. Spring boot publishes them at <i>/metrics</i>, with the 99th percentile as
+ * <code>timer.UserController.listUsers.snapshot.99thPercentile</code> (in milliseconds).</p>
+ *
+ * <p>A controller method returning a {@link WebAsyncTask}, see {@link ControllerBulkheads}, is timed until the
+ * asynchronous request completes, so its timer holds the time spent in the pool and its queue as well, not only
+ * the hand over.</p>
+ *
+ * <p>The timers are created on the first call of each method and looked up in a map afterwards, recording a
+ * duration is lock free, so the cost per call is a map lookup and two <code>System.nanoTime()</code> calls.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+@Aspect
+@Component
+public class LatencyMetricsAspect {
+
+	/**
+	 * the registry spring boot publishes at /metrics.
+	 */
+	@Autowired
+	private MetricRegistry metricRegistry;
+
+	/**
+	 * the timers, by the class of the called bean and by method.
+	 */
+	private final ConcurrentMap<Class<?>, ConcurrentMap<Method, Timer>> timers =
+			new ConcurrentHashMap<Class<?>, ConcurrentMap<Method, Timer>>();
+
+	/**
+	 * times the call and records its duration, whether it returns or throws. The duration of a call returning a
+	 * {@link WebAsyncTask} is recorded when the asynchronous request completes, timed out or failed.
+	 * @param joinPoint
+	 * @return the result of the call
+	 * @throws Throwable anything thrown by the call
+	 */
+	@Around("within(com.interfac.usermanager.user.controllers..*)"
+			+ " || within(com.interfac.usermanager.user.services.UserService+)"
+			+ " || this(org.springframework.data.repository.Repository)"
+			+ " || within(com.interfac.usermanager.user.repositories.UserBatchWriter)"
+			+ " || execution(* com.interfac.usermanager.config.RehashingAuthenticationProvider.authenticate(..))")
+	public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+		Timer timer = timer(joinPoint);
+		long start = System.nanoTime();
+		boolean async = false;
+		try {
+			Object result = joinPoint.proceed();
+			if (result instanceof WebAsyncTask) {
+				((WebAsyncTask<?>) result).onCompletion(
+						() -> timer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+				async = true;
+			}
+			return result;
+		} finally {
+			if (!async) {
+				timer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			}
+		}
+	}
+
+	/**
+	 * @param joinPoint
+	 * @return the timer of the called method, created on the first call.
+	 */
+	private Timer timer(ProceedingJoinPoint joinPoint) {
+		Class<?> beanClass = joinPoint.getThis().getClass();
+		ConcurrentMap<Method, Timer> classTimers = timers.get(beanClass);
+		if (classTimers == null) {
+			timers.putIfAbsent(beanClass, new ConcurrentHashMap<Method, Timer>());
+			classTimers = timers.get(beanClass);
+		}
+		Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+		Timer timer = classTimers.get(method);
+		if (timer == null) {
+			String name = "timer." + metricClassName(joinPoint) + "." + method.getName();
+			try {
+				timer = metricRegistry.register(name, new Timer(new HdrHistogramReservoir()));
+			} catch (IllegalArgumentException e) {
+				// registered by another thread, or an overloaded method
+				timer = metricRegistry.timer(name);
+			}
+			classTimers.putIfAbsent(method, timer);
+		}
+		return timer;
+	}
+
+	/**
+	 * @param joinPoint
+	 * @return the name of the repository interface for spring data repositories, 
+	 * 		the simple name of the bean class otherwise.
+	 */
+	private static String metricClassName(ProceedingJoinPoint joinPoint) {
+		for (Class<?> type : joinPoint.getThis().getClass().getInterfaces()) {
+			if (Repository.class.isAssignableFrom(type) && type.getName().startsWith("com.interfac.")) {
+				return type.getSimpleName();
+			}
+		}
+		return AopUtils.getTargetClass(joinPoint.getTarget()).getSimpleName();
+	}
+}
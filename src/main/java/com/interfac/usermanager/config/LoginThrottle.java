@@ -0,0 +1,327 @@
+package com.interfac.usermanager.config;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.authentication.event.AuthenticationFailureBadCredentialsEvent;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.stereotype.Component;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * This class counts the failed logins per username and per client IP, and tells how long a new attempt has to wait.
+ *
+ * <p>The first <code>usermanager.login-throttle.free-attempts</code> failures within
+ * <code>usermanager.login-throttle.window-seconds</code> are free, then each further failure doubles the wait
+ * before the next attempt, starting at <code>base-delay-ms</code> and up to <code>max-delay-ms</code>. Throttled 
+ * attempts are rejected by the {@link LoginThrottleFilter} before the authentication provider, so they cost no 
+ * cache lookup, no password hash and no query.</p>
+ *
+ * <p>The counters are a count-min sketch: each key maps to one slot in each of two rows of 
+ * <code>usermanager.login-throttle.slots</code> slots, and its count is the smaller of the two. Memory is fixed 
+ * whatever the number of usernames or IPs an attacker tries, and two keys sharing a slot can only be counted 
+ * too high. Each slot packs a sliding window, approximated as the failures of the current fixed window plus 
+ * the failures of the previous one weighted by how much of it still overlaps, in one long updated with 
+ * compare-and-set: 24 bits of window number and two 20 bit counts. A second array keeps the time of the last 
+ * failure per slot. The hash is seeded at random when the application starts, so which keys share a slot can not
+ * be worked out from outside, and a successful login only takes the failures of its own username out of its
+ * slots, those of the other usernames sharing them stay.</p>
+ *
+ * <p>The rejected attempts are counted by the <code>meter.login.throttled.username</code> and 
+ * <code>meter.login.throttled.ip</code> meters, the failures by <code>meter.login.failures</code>.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+@Component
+public class LoginThrottle {
+
+	private static final int COUNT_BITS = 20;
+
+	private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+	private static final long WINDOW_MASK = (1L << 24) - 1;
+
+	/**
+	 * the seed of the hash, so the keys sharing a slot can not be chosen by an attacker.
+	 */
+	private final long seed = new SecureRandom().nextLong();
+
+	/**
+	 * the registry spring boot publishes at /metrics.
+	 */
+	@Autowired
+	private MetricRegistry metricRegistry;
+
+	/**
+	 * false disables the throttling.
+	 */
+	@Value("${usermanager.login-throttle.enabled:true}")
+	private boolean enabled;
+
+	/**
+	 * slots per row of the sketch, rounded up to a power of two.
+	 */
+	@Value("${usermanager.login-throttle.slots:65536}")
+	private int slots;
+
+	/**
+	 * the length of the sliding window.
+	 */
+	@Value("${usermanager.login-throttle.window-seconds:900}")
+	private long windowSeconds;
+
+	/**
+	 * failures per window before attempts are delayed.
+	 */
+	@Value("${usermanager.login-throttle.free-attempts:5}")
+	private int freeAttempts;
+
+	/**
+	 * the wait after the first failure past the free ones.
+	 */
+	@Value("${usermanager.login-throttle.base-delay-ms:1000}")
+	private long baseDelayMillis;
+
+	/**
+	 * the longest wait.
+	 */
+	@Value("${usermanager.login-throttle.max-delay-ms:300000}")
+	private long maxDelayMillis;
+
+	/**
+	 * a client IP makes attempts for many usernames, and can hide many users behind a NAT.
+	 */
+	@Value("${usermanager.login-throttle.ip-free-attempts:50}")
+	private int ipFreeAttempts;
+
+	private Counters usernames;
+
+	private Counters addresses;
+
+	private Meter throttledUsernames;
+
+	private Meter throttledAddresses;
+
+	private Meter failures;
+
+	/**
+	 * allocates the counters and registers the meters.
+	 */
+	@PostConstruct
+	public void init() {
+		int size = Integer.highestOneBit(Math.max(slots - 1, 1)) << 1;
+		usernames = new Counters(size);
+		addresses = new Counters(size);
+		throttledUsernames = metricRegistry.meter("meter.login.throttled.username");
+		throttledAddresses = metricRegistry.meter("meter.login.throttled.ip");
+		failures = metricRegistry.meter("meter.login.failures");
+	}
+
+	/**
+	 * @param username the attempted username, may be null
+	 * @param address the client IP
+	 * @return the milliseconds the attempt has to wait, 0 if it can go ahead.
+	 */
+	public long delay(String username, String address) {
+		if (!enabled) {
+			return 0;
+		}
+		long now = System.currentTimeMillis();
+		if (username != null) {
+			long delay = usernames.delay(username.toLowerCase(), freeAttempts, now);
+			if (delay > 0) {
+				throttledUsernames.mark();
+				return delay;
+			}
+		}
+		long delay = addresses.delay(address, ipFreeAttempts, now);
+		if (delay > 0) {
+			throttledAddresses.mark();
+		}
+		return delay;
+	}
+
+	/**
+	 * counts a login that failed on the password or an unknown username.
+	 * @param event
+	 */
+	@EventListener
+	public void onFailure(AuthenticationFailureBadCredentialsEvent event) {
+		failures.mark();
+		if (!enabled) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		Authentication authentication = event.getAuthentication();
+		if (authentication.getName() != null) {
+			usernames.add(authentication.getName().toLowerCase(), now);
+		}
+		if (authentication.getDetails() instanceof WebAuthenticationDetails) {
+			addresses.add(((WebAuthenticationDetails) authentication.getDetails()).getRemoteAddress(), now);
+		}
+	}
+
+	/**
+	 * clears the failures of the username after a successful login, the ones of the IP stay.
+	 * @param event
+	 */
+	@EventListener
+	public void onSuccess(AuthenticationSuccessEvent event) {
+		if (enabled) {
+			usernames.clear(event.getAuthentication().getName().toLowerCase(), System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * The two rows of packed sliding window counters of one kind of key.
+	 */
+	private class Counters {
+
+		private final AtomicLongArray windows;
+
+		private final AtomicLongArray lastFailures;
+
+		private final int mask;
+
+		Counters(int size) {
+			windows = new AtomicLongArray(2 * size);
+			lastFailures = new AtomicLongArray(2 * size);
+			mask = size - 1;
+		}
+
+		/**
+		 * @return the wait in milliseconds, 0 if the failures are within the free attempts or the wait is over.
+		 */
+		long delay(String key, int free, long now) {
+			long hash = hash(key);
+			int first = slot(hash, 0);
+			int second = slot(hash, 1);
+			long count = Math.min(count(first, now), count(second, now));
+			if (count < free) {
+				return 0;
+			}
+			int doublings = (int) Math.min(count - free, 30);
+			long delay = Math.min(baseDelayMillis << doublings, maxDelayMillis);
+			long lastFailure = Math.min(lastFailures.get(first), lastFailures.get(second));
+			return Math.max(0, lastFailure + delay - now);
+		}
+
+		void add(String key, long now) {
+			long hash = hash(key);
+			long window = (now / (windowSeconds * 1000)) & WINDOW_MASK;
+			for (int row = 0; row < 2; row++) {
+				int slot = slot(hash, row);
+				while (true) {
+					long packed = windows.get(slot);
+					long shifted = shift(packed, window);
+					long previous = (shifted >>> COUNT_BITS) & COUNT_MASK;
+					long current = Math.min((shifted & COUNT_MASK) + 1, COUNT_MASK);
+					if (windows.compareAndSet(slot, packed, pack(window, previous, current))) {
+						break;
+					}
+				}
+				lastFailures.accumulateAndGet(slot, now, Math::max);
+			}
+		}
+
+		/**
+		 * takes the failures of the key out of its slots. They are estimated as in {@link #count(int, long)}, the
+		 * smaller count of the two slots, so the failures of the other keys sharing a slot are kept.
+		 */
+		void clear(String key, long now) {
+			long hash = hash(key);
+			long window = (now / (windowSeconds * 1000)) & WINDOW_MASK;
+			int first = slot(hash, 0);
+			int second = slot(hash, 1);
+			long firstCounts = shift(windows.get(first), window);
+			long secondCounts = shift(windows.get(second), window);
+			long previous = Math.min((firstCounts >>> COUNT_BITS) & COUNT_MASK,
+					(secondCounts >>> COUNT_BITS) & COUNT_MASK);
+			long current = Math.min(firstCounts & COUNT_MASK, secondCounts & COUNT_MASK);
+			subtract(first, window, previous, current);
+			subtract(second, window, previous, current);
+		}
+
+		private void subtract(int slot, long window, long previous, long current) {
+			while (true) {
+				long packed = windows.get(slot);
+				long shifted = shift(packed, window);
+				long updated = pack(window, Math.max(((shifted >>> COUNT_BITS) & COUNT_MASK) - previous, 0),
+						Math.max((shifted & COUNT_MASK) - current, 0));
+				if (packed == updated || windows.compareAndSet(slot, packed, updated)) {
+					return;
+				}
+			}
+		}
+
+		/**
+		 * @return the failures within the sliding window ending now.
+		 */
+		private long count(int slot, long now) {
+			long windowMillis = windowSeconds * 1000;
+			long window = (now / windowMillis) & WINDOW_MASK;
+			double overlap = 1 - (double) (now % windowMillis) / windowMillis;
+			long packed = windows.get(slot);
+			long slotWindow = packed >>> (2 * COUNT_BITS);
+			long previous = (packed >>> COUNT_BITS) & COUNT_MASK;
+			long current = packed & COUNT_MASK;
+			if (slotWindow == window) {
+				return current + (long) (previous * overlap);
+			}
+			if (slotWindow == ((window - 1) & WINDOW_MASK)) {
+				return (long) (current * overlap);
+			}
+			return 0;
+		}
+
+		/**
+		 * @return the slot moved to the given window: the current count becomes the previous one after one window,
+		 * both are dropped after two.
+		 */
+		private long shift(long packed, long window) {
+			long slotWindow = packed >>> (2 * COUNT_BITS);
+			if (slotWindow == window) {
+				return packed;
+			}
+			long previous = slotWindow == ((window - 1) & WINDOW_MASK) ? packed & COUNT_MASK : 0;
+			return pack(window, previous, 0);
+		}
+
+		private long pack(long window, long previous, long current) {
+			return (window << (2 * COUNT_BITS)) | (previous << COUNT_BITS) | current;
+		}
+
+		private int slot(long hash, int row) {
+			int half = row == 0 ? (int) hash : (int) (hash >>> 32);
+			return row * (mask + 1) + (half & mask);
+		}
+	}
+
+	/**
+	 * 64 bit FNV-1a of the key, started from the seed and finished with the murmur3 mixer, both halves are used as
+	 * hashes.
+	 */
+	private long hash(String key) {
+		long hash = 0xcbf29ce484222325L ^ seed;
+		for (int i = 0; i < key.length(); i++) {
+			hash ^= key.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
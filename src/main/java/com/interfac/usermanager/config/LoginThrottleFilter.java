@@ -0,0 +1,92 @@
+package com.interfac.usermanager.config;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * This class rejects the login attempts that the {@link LoginThrottle} delays, before they reach the authentication 
+ * filters.
+ * 
+ * <p>Form logins are redirected to <i>/login?throttled=&lt;seconds&gt;</i>, HTTP Basic requests get a 
+ * <i>429 Too Many Requests</i> with a <code>Retry-After</code> header. Requests authenticated otherwise pass 
+ * untouched.</p>
+ * 
+ * <p>Not a bean on purpose, Spring Boot would also register it for every request outside the security chain.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+public class LoginThrottleFilter extends OncePerRequestFilter {
+
+	private static final String BASIC = "Basic ";
+
+	/**
+	 * the form login processing URL.
+	 */
+	private static final RequestMatcher FORM_LOGIN = new AntPathRequestMatcher("/login", "POST");
+
+	/**
+	 * counts the failures.
+	 */
+	private final LoginThrottle loginThrottle;
+
+	/**
+	 * Parameterized constructor
+	 * @param loginThrottle
+	 */
+	public LoginThrottleFilter(LoginThrottle loginThrottle) {
+		this.loginThrottle = loginThrottle;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.web.filter.OncePerRequestFilter#doFilterInternal(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse, javax.servlet.FilterChain)
+	 */
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		boolean form = FORM_LOGIN.matches(request);
+		String header = request.getHeader("Authorization");
+		boolean basic = !form && header != null && header.startsWith(BASIC);
+		if (form || basic) {
+			String username = form ? request.getParameter("username") : basicUsername(header);
+			long delay = loginThrottle.delay(username, request.getRemoteAddr());
+			if (delay > 0) {
+				long seconds = (delay + 999) / 1000;
+				if (form) {
+					response.sendRedirect(request.getContextPath() + "/login?throttled=" + seconds);
+				} else {
+					response.setHeader("Retry-After", String.valueOf(seconds));
+					response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Too many failed logins");
+				}
+				return;
+			}
+		}
+		filterChain.doFilter(request, response);
+	}
+
+	/**
+	 * @param header an <code>Authorization: Basic</code> header
+	 * @return the username, or null if the header is malformed.
+	 */
+	private static String basicUsername(String header) {
+		try {
+			String credentials = new String(Base64.getDecoder().decode(header.substring(BASIC.length()).trim()),
+					StandardCharsets.UTF_8);
+			int colon = credentials.indexOf(':');
+			return colon < 0 ? null : credentials.substring(0, colon);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package com.interfac.usermanager.config;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+import javax.sql.DataSource;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.stereotype.Component;
+
+/**
+ * This class implements the {@link PublicMetrics} interface. It adds the hibernate {@link Statistics} and 
+ * the state of the connection pool to <i>/metrics</i>.
+ *
+ * <p>The hibernate statistics are only collected with <code>hibernate.generate_statistics=true</code>. 
+ * The <code>hibernate.*</code> values are counters since startup, the <code>datasource.pool.*</code> values are 
+ * read from the tomcat JDBC pools when <i>/metrics</i> is requested.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+@Component
+public class PersistencePublicMetrics implements PublicMetrics {
+
+	/**
+	 * the JPA entity manager factory, unwrapped to the hibernate session factory.
+	 */
+	@PersistenceUnit
+	private EntityManagerFactory entityManagerFactory;
+	
+	/**
+	 * the application's data source.
+	 */
+	@Autowired
+	private DataSource dataSource;
+	
+	/* (non-Javadoc)
+	 * @see org.springframework.boot.actuate.endpoint.PublicMetrics#metrics()
+	 */
+	@Override
+	public Collection<Metric<?>> metrics() {
+		List<Metric<?>> metrics = new ArrayList<Metric<?>>();
+		addHibernateMetrics(metrics);
+		addPoolMetrics(metrics);
+		return metrics;
+	}
+	
+	/**
+	 * adds the query, entity, second-level cache and session counters.
+	 * @param metrics
+	 */
+	private void addHibernateMetrics(List<Metric<?>> metrics) {
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		if (!statistics.isStatisticsEnabled()) {
+			return;
+		}
+		metrics.add(new Metric<Long>("hibernate.queries.executed", statistics.getQueryExecutionCount()));
+		metrics.add(new Metric<Long>("hibernate.queries.max-time", statistics.getQueryExecutionMaxTime()));
+		metrics.add(new Metric<Long>("hibernate.statements.prepared", statistics.getPrepareStatementCount()));
+		metrics.add(new Metric<Long>("hibernate.entities.loaded", statistics.getEntityLoadCount()));
+		metrics.add(new Metric<Long>("hibernate.entities.fetched", statistics.getEntityFetchCount()));
+		metrics.add(new Metric<Long>("hibernate.entities.inserted", statistics.getEntityInsertCount()));
+		metrics.add(new Metric<Long>("hibernate.entities.updated", statistics.getEntityUpdateCount()));
+		metrics.add(new Metric<Long>("hibernate.entities.deleted", statistics.getEntityDeleteCount()));
+		metrics.add(new Metric<Long>("hibernate.collections.loaded", statistics.getCollectionLoadCount()));
+		metrics.add(new Metric<Long>("hibernate.collections.fetched", statistics.getCollectionFetchCount()));
+		metrics.add(new Metric<Long>("hibernate.second-level-cache.hits", statistics.getSecondLevelCacheHitCount()));
+		metrics.add(new Metric<Long>("hibernate.second-level-cache.misses", statistics.getSecondLevelCacheMissCount()));
+		metrics.add(new Metric<Long>("hibernate.second-level-cache.puts", statistics.getSecondLevelCachePutCount()));
+		metrics.add(new Metric<Long>("hibernate.sessions.opened", statistics.getSessionOpenCount()));
+		metrics.add(new Metric<Long>("hibernate.transactions", statistics.getTransactionCount()));
+		metrics.add(new Metric<Long>("hibernate.optimistic-failures", statistics.getOptimisticFailureCount()));
+	}
+	
+	/**
+	 * adds the active, idle and waiting connection counts of the tomcat JDBC pool, or of each pool 
+	 * as <code>datasource.pool.&lt;name&gt;.*</code> when the reads are routed to replicas.
+	 * @param metrics
+	 */
+	private void addPoolMetrics(List<Metric<?>> metrics) {
+		DataSource target = dataSource;
+		if (target instanceof LazyConnectionDataSourceProxy) {
+			target = ((LazyConnectionDataSourceProxy) target).getTargetDataSource();
+		}
+		if (target instanceof ReplicaRoutingDataSource) {
+			ReplicaRoutingDataSource routing = (ReplicaRoutingDataSource) target;
+			for (Map.Entry<String, DataSource> entry : routing.getDataSources().entrySet()) {
+				addPoolMetrics(metrics, "datasource.pool." + entry.getKey() + ".", entry.getValue());
+			}
+			metrics.add(new Metric<Integer>("datasource.replicas.available", routing.getAvailableReplicas().size()));
+		} else {
+			addPoolMetrics(metrics, "datasource.pool.", target);
+		}
+	}
+	
+	/**
+	 * adds the metrics of a single pool.
+	 * @param metrics
+	 * @param prefix
+	 * @param dataSource ignored if it is not a tomcat JDBC pool.
+	 */
+	private void addPoolMetrics(List<Metric<?>> metrics, String prefix, DataSource dataSource) {
+		if (!(dataSource instanceof org.apache.tomcat.jdbc.pool.DataSource)) {
+			return;
+		}
+		org.apache.tomcat.jdbc.pool.DataSource pool = (org.apache.tomcat.jdbc.pool.DataSource) dataSource;
+		metrics.add(new Metric<Integer>(prefix + "active", pool.getActive()));
+		metrics.add(new Metric<Integer>(prefix + "idle", pool.getIdle()));
+		metrics.add(new Metric<Integer>(prefix + "size", pool.getSize()));
+		metrics.add(new Metric<Integer>(prefix + "max", pool.getMaxActive()));
+		metrics.add(new Metric<Integer>(prefix + "waiting", pool.getWaitCount()));
+	}
+}
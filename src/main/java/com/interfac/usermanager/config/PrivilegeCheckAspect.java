@@ -0,0 +1,39 @@
+package com.interfac.usermanager.config;
+
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Before;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import com.interfac.usermanager.user.services.RequiresPrivilege;
+
+/**
+ * This class checks the {@link RequiresPrivilege} annotations before the annotated methods run.
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@Aspect
+@Component
+public class PrivilegeCheckAspect {
+
+	/**
+	 * checks the privileges of the current user.
+	 */
+	@Autowired
+	private PrivilegeEvaluator privilegeEvaluator;
+
+	/**
+	 * @param requiresPrivilege the annotation of the called method
+	 * @throws AccessDeniedException if the current user does not have the privilege.
+	 */
+	@Before("@annotation(requiresPrivilege)")
+	public void checkPrivilege(RequiresPrivilege requiresPrivilege) {
+		if (!privilegeEvaluator.hasPrivilege(SecurityContextHolder.getContext().getAuthentication(), 
+				requiresPrivilege.value())) {
+			throw new AccessDeniedException("Requires " + requiresPrivilege.value());
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.interfac.usermanager.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import com.interfac.usermanager.user.model.Privilege;
+import com.interfac.usermanager.user.services.PrivilegeSet;
+import com.interfac.usermanager.user.services.RoleRegistry;
+import com.interfac.usermanager.user.services.UserPrincipal;
+
+/**
+ * This class decides whether an authenticated user has a privilege, for the <code>hasPrivilege</code> expression 
+ * and the {@link com.interfac.usermanager.user.services.RequiresPrivilege} annotation.
+ * 
+ * <p>The privilege name is resolved to its ID by the {@link RoleRegistry}, and the ID is looked up in the 
+ * {@link PrivilegeSet} of the {@link UserPrincipal}: two hash lookups and a bit test, no query.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@Component
+public class PrivilegeEvaluator {
+
+	/**
+	 * knows the IDs of the privileges.
+	 */
+	@Autowired
+	private RoleRegistry roleRegistry;
+
+	/**
+	 * @param authentication may be null
+	 * @param privilegeName
+	 * @return true if the user's roles grant the privilege.
+	 */
+	public boolean hasPrivilege(Authentication authentication, String privilegeName) {
+		if (authentication == null || !authentication.isAuthenticated()) {
+			return false;
+		}
+		if (authentication.getPrincipal() instanceof UserPrincipal) {
+			Privilege privilege = roleRegistry.findPrivilege(privilegeName);
+			return privilege != null 
+					&& ((UserPrincipal) authentication.getPrincipal()).getPrivileges().contains(privilege.getId());
+		}
+		// any other principal, the privileges are among the authorities
+		for (GrantedAuthority authority : authentication.getAuthorities()) {
+			if (privilegeName.equals(authority.getAuthority())) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,71 @@
+package com.interfac.usermanager.config;
+
+import org.springframework.security.access.expression.SecurityExpressionOperations;
+import org.springframework.security.authentication.AuthenticationTrustResolverImpl;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.FilterInvocation;
+import org.springframework.security.web.access.expression.DefaultWebSecurityExpressionHandler;
+import org.springframework.security.web.access.expression.WebSecurityExpressionRoot;
+
+/**
+ * This class extends the {@link DefaultWebSecurityExpressionHandler} with a <code>hasPrivilege('NAME')</code> 
+ * expression, for the URL rules of the {@link SecurityConfig} and for <code>sec:authorize</code> in the templates.
+ * 
+ * @author Ali Abdalla
+ *
+ */
+public class PrivilegeExpressionHandler extends DefaultWebSecurityExpressionHandler {
+
+	/**
+	 * checks the privileges.
+	 */
+	private final PrivilegeEvaluator privilegeEvaluator;
+
+	/**
+	 * Parameterized constructor
+	 * @param privilegeEvaluator
+	 */
+	public PrivilegeExpressionHandler(PrivilegeEvaluator privilegeEvaluator) {
+		this.privilegeEvaluator = privilegeEvaluator;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.security.web.access.expression.DefaultWebSecurityExpressionHandler#createSecurityExpressionRoot(org.springframework.security.core.Authentication, org.springframework.security.web.FilterInvocation)
+	 */
+	@Override
+	protected SecurityExpressionOperations createSecurityExpressionRoot(Authentication authentication, FilterInvocation fi) {
+		PrivilegeExpressionRoot root = new PrivilegeExpressionRoot(authentication, fi, privilegeEvaluator);
+		root.setPermissionEvaluator(getPermissionEvaluator());
+		root.setTrustResolver(new AuthenticationTrustResolverImpl());
+		root.setRoleHierarchy(getRoleHierarchy());
+		return root;
+	}
+
+	/**
+	 * The web expression root with <code>hasPrivilege</code>.
+	 */
+	public static class PrivilegeExpressionRoot extends WebSecurityExpressionRoot {
+
+		private final PrivilegeEvaluator privilegeEvaluator;
+
+		/**
+		 * Parameterized constructor
+		 * @param authentication
+		 * @param fi
+		 * @param privilegeEvaluator
+		 */
+		public PrivilegeExpressionRoot(Authentication authentication, FilterInvocation fi, 
+				PrivilegeEvaluator privilegeEvaluator) {
+			super(authentication, fi);
+			this.privilegeEvaluator = privilegeEvaluator;
+		}
+
+		/**
+		 * @param privilegeName
+		 * @return true if the user's roles grant the privilege.
+		 */
+		public boolean hasPrivilege(String privilegeName) {
+			return privilegeEvaluator.hasPrivilege(getAuthentication(), privilegeName);
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package com.interfac.usermanager.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import com.interfac.usermanager.user.services.HashingPasswordEncoder;
+import com.interfac.usermanager.user.services.HashingPasswordEncoder.HashingUnavailableException;
+import com.interfac.usermanager.user.services.UserDetailsServiceImp;
+import com.interfac.usermanager.user.services.UserService;
+
+/**
+ * This class extends {@link DaoAuthenticationProvider} to upgrade stored passwords on login.
+ * 
+ * <p>After a successful password check, a password stored in plain text or hashed with another cost than the 
+ * configured one is hashed again from the presented password, which is only known at that moment. 
+ * A saturated hashing pool fails the login with an {@link AuthenticationServiceException} 
+ * instead of an error page.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@Component
+public class RehashingAuthenticationProvider extends DaoAuthenticationProvider {
+
+	/**
+	 * the password encoder, also tells which stored passwords need an upgrade.
+	 */
+	private final HashingPasswordEncoder passwordEncoder;
+	
+	/**
+	 * stores the upgraded passwords.
+	 */
+	private final UserService userService;
+	
+	/**
+	 * Constructor, the encoder has to be set before the provider is initialized.
+	 * @param userDetailsService
+	 * @param passwordEncoder
+	 * @param userService
+	 */
+	@Autowired
+	public RehashingAuthenticationProvider(UserDetailsServiceImp userDetailsService, 
+			HashingPasswordEncoder passwordEncoder, UserService userService) {
+		this.passwordEncoder = passwordEncoder;
+		this.userService = userService;
+		setUserDetailsService(userDetailsService);
+		setPasswordEncoder(passwordEncoder);
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.springframework.security.authentication.dao.DaoAuthenticationProvider#retrieveUser(java.lang.String, org.springframework.security.authentication.UsernamePasswordAuthenticationToken)
+	 */
+	@Override
+	protected UserDetails retrieveUser(String username, UsernamePasswordAuthenticationToken authentication)
+			throws AuthenticationException {
+		try {
+			return super.retrieveUser(username, authentication);
+		} catch (HashingUnavailableException e) {
+			throw new AuthenticationServiceException(e.getMessage(), e);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.springframework.security.authentication.dao.DaoAuthenticationProvider#additionalAuthenticationChecks(org.springframework.security.core.userdetails.UserDetails, org.springframework.security.authentication.UsernamePasswordAuthenticationToken)
+	 */
+	@Override
+	protected void additionalAuthenticationChecks(UserDetails userDetails,
+			UsernamePasswordAuthenticationToken authentication) throws AuthenticationException {
+		try {
+			super.additionalAuthenticationChecks(userDetails, authentication);
+		} catch (HashingUnavailableException e) {
+			throw new AuthenticationServiceException(e.getMessage(), e);
+		}
+		
+		if (passwordEncoder.upgradeEncoding(userDetails.getPassword())) {
+			try {
+				userService.upgradePassword(userDetails.getUsername(), userDetails.getPassword(),
+						authentication.getCredentials().toString());
+			} catch (RuntimeException e) {
+				// the login is valid either way, the upgrade is tried again on the next one
+				logger.warn("Could not upgrade the password of " + userDetails.getUsername(), e);
+			}
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package com.interfac.usermanager.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.interfac.usermanager.config.ReplicaProperties.Replica;
+import com.interfac.usermanager.user.repositories.ReplicaStickiness;
+
+/**
+ * This class configures the read replicas, when at least one is set with 
+ * <code>usermanager.datasource.replicas[0].url</code>. Without replicas spring boot's single data source is used.
+ *
+ * <p>The primary pool is configured by the usual <code>spring.datasource.*</code> properties, the replica pools
+ * copy its pool settings. The application's data source is a {@link ReplicaRoutingDataSource} over all of them.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+@Configuration
+@ConditionalOnProperty(name = "usermanager.datasource.replicas[0].url")
+@EnableConfigurationProperties(ReplicaProperties.class)
+public class ReplicaDataSourceConfig {
+
+	/**
+	 * @param properties spring boot's data source properties
+	 * @return the primary connection pool
+	 */
+	@Bean
+	@ConfigurationProperties(prefix = "spring.datasource")
+	public org.apache.tomcat.jdbc.pool.DataSource primaryDataSource(DataSourceProperties properties) {
+		return (org.apache.tomcat.jdbc.pool.DataSource) properties.initializeDataSourceBuilder()
+				.type(org.apache.tomcat.jdbc.pool.DataSource.class).build();
+	}
+
+	/**
+	 * @param primaryDataSource
+	 * @param properties
+	 * @param stickiness
+	 * @return the routing data source, its health checks are scheduled.
+	 */
+	@Bean(destroyMethod = "close")
+	public ReplicaRoutingDataSource routingDataSource(org.apache.tomcat.jdbc.pool.DataSource primaryDataSource,
+			ReplicaProperties properties, ReplicaStickiness stickiness) {
+		Map<String, DataSource> replicas = new LinkedHashMap<String, DataSource>();
+		int number = 1;
+		for (Replica replica : properties.getReplicas()) {
+			replicas.put("replica" + number++, replicaDataSource(replica, primaryDataSource));
+		}
+		return new ReplicaRoutingDataSource(primaryDataSource, replicas, stickiness, properties.getLagQuery(),
+				properties.getMaxLagSeconds());
+	}
+
+	/**
+	 * @param routingDataSource
+	 * @return the application's data source, connects to the routed database when the first statement runs.
+	 */
+	@Bean
+	@Primary
+	public DataSource dataSource(ReplicaRoutingDataSource routingDataSource) {
+		return new LazyConnectionDataSourceProxy(routingDataSource);
+	}
+
+	/**
+	 * @param replica
+	 * @param primary
+	 * @return a pool on the replica with the pool settings of the primary.
+	 */
+	private static DataSource replicaDataSource(Replica replica, org.apache.tomcat.jdbc.pool.DataSource primary) {
+		org.apache.tomcat.jdbc.pool.DataSource pool = new org.apache.tomcat.jdbc.pool.DataSource();
+		pool.setUrl(replica.getUrl());
+		pool.setUsername(replica.getUsername() != null ? replica.getUsername() : primary.getUsername());
+		pool.setPassword(replica.getPassword() != null ? replica.getPassword() : primary.getPoolProperties().getPassword());
+		pool.setDriverClassName(replica.getDriverClassName() != null ? replica.getDriverClassName()
+				: primary.getDriverClassName());
+		pool.setMaxActive(primary.getMaxActive());
+		pool.setMaxIdle(primary.getMaxIdle());
+		pool.setMinIdle(primary.getMinIdle());
+		pool.setInitialSize(primary.getInitialSize());
+		pool.setMaxWait(primary.getMaxWait());
+		pool.setTestOnBorrow(primary.isTestOnBorrow());
+		pool.setValidationQuery(primary.getValidationQuery());
+		pool.setDefaultReadOnly(true);
+		return pool;
+	}
+}
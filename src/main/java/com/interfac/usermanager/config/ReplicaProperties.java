@@ -0,0 +1,159 @@
+package com.interfac.usermanager.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * This class holds the <code>usermanager.datasource.*</code> properties of the read replicas.
+ *
+ * @author Ali Abdalla
+ *
+ */
+@ConfigurationProperties(prefix = "usermanager.datasource")
+public class ReplicaProperties {
+
+	/**
+	 * the read replicas, read-only transactions are spread over them.
+	 */
+	private List<Replica> replicas = new ArrayList<Replica>();
+
+	/**
+	 * a replica lagging more than this is not used until it catches up.
+	 */
+	private long maxLagSeconds = 10;
+
+	/**
+	 * a query returning the replication lag in seconds, either in its first column or in a
+	 * <i>Seconds_Behind_Master</i> column like MySQL's <code>SHOW SLAVE STATUS</code>. 
+	 * If not set, replicas are only checked to be reachable.
+	 */
+	private String lagQuery;
+
+	/**
+	 * getter method
+	 * @return replicas
+	 */
+	public List<Replica> getReplicas() {
+		return replicas;
+	}
+
+	/**
+	 * setter method
+	 * @param replicas
+	 */
+	public void setReplicas(List<Replica> replicas) {
+		this.replicas = replicas;
+	}
+
+	/**
+	 * getter method
+	 * @return maxLagSeconds
+	 */
+	public long getMaxLagSeconds() {
+		return maxLagSeconds;
+	}
+
+	/**
+	 * setter method
+	 * @param maxLagSeconds
+	 */
+	public void setMaxLagSeconds(long maxLagSeconds) {
+		this.maxLagSeconds = maxLagSeconds;
+	}
+
+	/**
+	 * getter method
+	 * @return lagQuery
+	 */
+	public String getLagQuery() {
+		return lagQuery;
+	}
+
+	/**
+	 * setter method
+	 * @param lagQuery
+	 */
+	public void setLagQuery(String lagQuery) {
+		this.lagQuery = lagQuery;
+	}
+
+	/**
+	 * The connection settings of one replica. The username, password and driver default to the primary's.
+	 */
+	public static class Replica {
+
+		private String url;
+
+		private String username;
+
+		private String password;
+
+		private String driverClassName;
+
+		/**
+		 * getter method
+		 * @return url
+		 */
+		public String getUrl() {
+			return url;
+		}
+
+		/**
+		 * setter method
+		 * @param url
+		 */
+		public void setUrl(String url) {
+			this.url = url;
+		}
+
+		/**
+		 * getter method
+		 * @return username
+		 */
+		public String getUsername() {
+			return username;
+		}
+
+		/**
+		 * setter method
+		 * @param username
+		 */
+		public void setUsername(String username) {
+			this.username = username;
+		}
+
+		/**
+		 * getter method
+		 * @return password
+		 */
+		public String getPassword() {
+			return password;
+		}
+
+		/**
+		 * setter method
+		 * @param password
+		 */
+		public void setPassword(String password) {
+			this.password = password;
+		}
+
+		/**
+		 * getter method
+		 * @return driverClassName
+		 */
+		public String getDriverClassName() {
+			return driverClassName;
+		}
+
+		/**
+		 * setter method
+		 * @param driverClassName
+		 */
+		public void setDriverClassName(String driverClassName) {
+			this.driverClassName = driverClassName;
+		}
+	}
+}
@@ -0,0 +1,236 @@
+package com.interfac.usermanager.config;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.interfac.usermanager.user.repositories.ReplicaStickiness;
+
+/**
+ * This class extends {@link AbstractRoutingDataSource} to send read-only transactions to the read replicas
+ * and everything else to the primary.
+ *
+ * <p>Read-only transactions are spread over the available replicas in turn. They go to the primary instead when
+ * the current user wrote recently (see {@link ReplicaStickiness}) or when no replica is available. Replicas are
+ * checked every <code>usermanager.datasource.health-check-interval-ms</code>: a replica that can not be reached
+ * or lags more than <code>usermanager.datasource.max-lag-seconds</code> is left out until a later check passes.</p>
+ *
+ * <p>The transaction's read-only flag is only known after the connection of a JPA transaction is requested, 
+ * so this data source has to be wrapped in a 
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+	/**
+	 * the lookup key of the primary.
+	 */
+	public static final String PRIMARY = "primary";
+
+	/**
+	 * the primary data source.
+	 */
+	private final DataSource primary;
+
+	/**
+	 * the replicas and their last known state.
+	 */
+	private final List<Replica> replicas = new ArrayList<Replica>();
+
+	/**
+	 * keeps the reads of users who just wrote on the primary.
+	 */
+	private final ReplicaStickiness stickiness;
+
+	/**
+	 * the lag query, may be null.
+	 */
+	private final String lagQuery;
+
+	/**
+	 * the largest tolerated lag.
+	 */
+	private final long maxLagSeconds;
+
+	/**
+	 * the round robin position.
+	 */
+	private final AtomicInteger next = new AtomicInteger();
+
+	/**
+	 * Constructor.
+	 * @param primary the primary data source
+	 * @param replicaDataSources the replica data sources by name
+	 * @param stickiness
+	 * @param lagQuery may be null
+	 * @param maxLagSeconds
+	 */
+	public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicaDataSources,
+			ReplicaStickiness stickiness, String lagQuery, long maxLagSeconds) {
+		this.primary = primary;
+		this.stickiness = stickiness;
+		this.lagQuery = lagQuery;
+		this.maxLagSeconds = maxLagSeconds;
+		Map<Object, Object> targets = new HashMap<Object, Object>();
+		targets.put(PRIMARY, primary);
+		for (Map.Entry<String, DataSource> entry : replicaDataSources.entrySet()) {
+			replicas.add(new Replica(entry.getKey(), entry.getValue()));
+			targets.put(entry.getKey(), entry.getValue());
+		}
+		setTargetDataSources(targets);
+		setDefaultTargetDataSource(primary);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource#afterPropertiesSet()
+	 */
+	@Override
+	public void afterPropertiesSet() {
+		super.afterPropertiesSet();
+		checkReplicas();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource#determineCurrentLookupKey()
+	 */
+	@Override
+	protected Object determineCurrentLookupKey() {
+		if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || stickiness.isCurrentUserSticky()) {
+			return PRIMARY;
+		}
+		int count = replicas.size();
+		int start = next.getAndIncrement() & Integer.MAX_VALUE;
+		for (int i = 0; i < count; i++) {
+			Replica replica = replicas.get((start + i) % count);
+			if (replica.available) {
+				return replica.name;
+			}
+		}
+		return PRIMARY;
+	}
+
+	/**
+	 * checks that each replica can be reached and does not lag too much.
+	 */
+	@Scheduled(initialDelayString = "${usermanager.datasource.health-check-interval-ms:5000}",
+			fixedDelayString = "${usermanager.datasource.health-check-interval-ms:5000}")
+	public void checkReplicas() {
+		for (Replica replica : replicas) {
+			boolean available;
+			try {
+				replica.lagSeconds = lagQuery == null ? 0 : replica.jdbcTemplate.query(lagQuery, this::readLag);
+				available = replica.lagSeconds <= maxLagSeconds;
+				if (lagQuery == null) {
+					replica.jdbcTemplate.queryForObject("select 1", Integer.class);
+				}
+			} catch (DataAccessException e) {
+				LOG.debug("replica " + replica.name + " check failed", e);
+				available = false;
+			}
+			if (available != replica.available) {
+				LOG.warn("replica {} is now {} (lag {} s)", replica.name, available ? "available" : "unavailable",
+						replica.lagSeconds == Long.MAX_VALUE ? "unknown" : replica.lagSeconds);
+			}
+			replica.available = available;
+		}
+	}
+
+	/**
+	 * @return the primary and the replica data sources by name, in that order.
+	 */
+	public Map<String, DataSource> getDataSources() {
+		Map<String, DataSource> dataSources = new LinkedHashMap<String, DataSource>();
+		dataSources.put(PRIMARY, primary);
+		for (Replica replica : replicas) {
+			dataSources.put(replica.name, replica.dataSource);
+		}
+		return Collections.unmodifiableMap(dataSources);
+	}
+
+	/**
+	 * @return the names of the replicas that currently receive reads.
+	 */
+	public List<String> getAvailableReplicas() {
+		List<String> names = new ArrayList<String>();
+		for (Replica replica : replicas) {
+			if (replica.available) {
+				names.add(replica.name);
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * closes the replica pools, the primary pool is a bean of its own. Called by spring at shutdown.
+	 */
+	public void close() {
+		for (Replica replica : replicas) {
+			if (replica.dataSource instanceof org.apache.tomcat.jdbc.pool.DataSource) {
+				((org.apache.tomcat.jdbc.pool.DataSource) replica.dataSource).close();
+			}
+		}
+	}
+
+	/**
+	 * reads the lag from the result of the lag query.
+	 * @return the lag in seconds, {@link Long#MAX_VALUE} if the replica is not replicating.
+	 */
+	private long readLag(ResultSet rs) throws SQLException {
+		if (!rs.next()) {
+			return Long.MAX_VALUE;
+		}
+		int column = 1;
+		ResultSetMetaData metaData = rs.getMetaData();
+		for (int i = 1; i <= metaData.getColumnCount(); i++) {
+			if ("Seconds_Behind_Master".equalsIgnoreCase(metaData.getColumnLabel(i))) {
+				column = i;
+			}
+		}
+		long lag = rs.getLong(column);
+		return rs.wasNull() ? Long.MAX_VALUE : lag;
+	}
+
+	/**
+	 * The state of one replica, updated by the health checks.
+	 */
+	private static class Replica {
+
+		private final String name;
+
+		private final DataSource dataSource;
+
+		private final JdbcTemplate jdbcTemplate;
+
+		private volatile boolean available;
+
+		private volatile long lagSeconds = Long.MAX_VALUE;
+
+		Replica(String name, DataSource dataSource) {
+			this.name = name;
+			this.dataSource = dataSource;
+			this.jdbcTemplate = new JdbcTemplate(dataSource);
+			this.jdbcTemplate.setQueryTimeout(2);
+		}
+	}
+}
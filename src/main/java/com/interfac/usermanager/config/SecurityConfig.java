@@ -1,22 +1,36 @@
 package com.interfac.usermanager.config;
 
 
-import javax.sql.DataSource;
-
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.DefaultAuthenticationEventPublisher;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.builders.WebSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.authentication.www.BasicAuthenticationEntryPoint;
+import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
+import org.springframework.security.web.csrf.CsrfFilter;
+import org.springframework.security.web.util.matcher.AndRequestMatcher;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.NegatedRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestHeaderRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+
+import com.interfac.usermanager.user.services.HashingPasswordEncoder;
+import com.interfac.usermanager.user.services.TokenService;
 
 
 /**
- * This class extends {@link WebSecurityConfigurerAdapter} and overrides two configure methods with signatures 
- * <code>configure(AuthenticationManagerBuilder auth)</code> and <code>configure(HttpSecurity http)</code> 
- * to customize the security configuration for the <i>'UserManager'</i> application.
+ * This class extends {@link WebSecurityConfigurerAdapter} and overrides three configure methods with signatures 
+ * <code>configure(AuthenticationManagerBuilder auth)</code>, <code>configure(WebSecurity web)</code> and 
+ * <code>configure(HttpSecurity http)</code> to customize the security configuration for the <i>'UserManager'</i> application.
  * @author Ali Abdalla
  *
  */
@@ -24,31 +38,72 @@ import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 public class SecurityConfig extends WebSecurityConfigurerAdapter {
 	
 	/**
-	 * An instance of the dataSource bean specifies database properties.
+	 * An instance of the {@link RehashingAuthenticationProvider}, loads users credentials and authorities through 
+	 * a cache and checks passwords with the {@link HashingPasswordEncoder}.
+	 */
+	@Autowired
+	RehashingAuthenticationProvider authenticationProvider;
+	
+	/**
+	 * delays the logins of usernames and IPs with many recent failures.
+	 */
+	@Autowired
+	LoginThrottle loginThrottle;
+	
+	/**
+	 * publishes the authentication failures the {@link LoginThrottle} counts.
 	 */
 	@Autowired
-	DataSource dataSource;
+	ApplicationEventPublisher applicationEventPublisher;
+	
+	/**
+	 * checks the privileges of the <code>hasPrivilege</code> expression.
+	 */
+	@Autowired
+	PrivilegeEvaluator privilegeEvaluator;
+	
+	/**
+	 * the expression handler of the URL rules and of the templates, with <code>hasPrivilege</code>.
+	 */
+	private PrivilegeExpressionHandler expressionHandler;
+	
+	/**
+	 * issues and checks the signed tokens of the stateless mode.
+	 */
+	@Autowired
+	TokenService tokenService;
+	
+	/**
+	 * the name of the cookie carrying the token in the stateless mode.
+	 */
+	@Value("${usermanager.token.cookie-name:UM_TOKEN}")
+	String tokenCookieName;
 	
 	/** 
-	 * Configures the {@link AuthenticationManagerBuilder} to use jdbcAuthentication 
-	 * to obtain credentials from the database.
-	 * 
-	 * <p>uses custom queries for the database to retrieve users credentials and authorities.</p>
+	 * Configures the {@link AuthenticationManagerBuilder} to authenticate with the {@link RehashingAuthenticationProvider},
+	 * and to publish the authentication events.
 	 * 
 	 * @see org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter#configure(org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder)
 	 */
 	@Override
 	protected void configure(AuthenticationManagerBuilder auth) throws Exception {
 		auth
-			.jdbcAuthentication()
-				.dataSource(dataSource).usersByUsernameQuery("select username, password, true "
-						+ "from user where username=?")
-				.authoritiesByUsernameQuery("select user.username, role.name from user, role "
-						+ "join users_roles on (users_roles.role_id = role.id) "
-						+ "where user.username=? and users_roles.user_id=user.userid");
+			.authenticationEventPublisher(new DefaultAuthenticationEventPublisher(applicationEventPublisher))
+			.authenticationProvider(authenticationProvider);
 				
 	}
 	
+	/**
+	 * Configures the {@link WebSecurity} to evaluate the <code>sec:authorize</code> expressions of the templates 
+	 * with the {@link PrivilegeExpressionHandler}, so they can use <code>hasPrivilege('NAME')</code>.
+	 * 
+	 * @see org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter#configure(org.springframework.security.config.annotation.web.builders.WebSecurity)
+	 */
+	@Override
+	public void configure(WebSecurity web) throws Exception {
+		web.expressionHandler(expressionHandler());
+	}
+	
 	/**
 	 * Configures the {@link HttpSecurity} to:
 	 * <ul> 
@@ -62,29 +117,83 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
 	 * 		<li>provide logout support</li>
 	 * 		<li>override CSRF's POST enforcing by making the logout request a GET request</li>
 	 * 		<li>configure a custom access denied page</li>
+	 * 		<li>authorize requests matching to "/api/users/**" to users with ROLE_ADMIN authority only, and accept
+	 * 			HTTP Basic authentication for them. API requests without credentials get a <i>401</i> instead of the
+	 * 			login page, and requests carrying an <i>Authorization</i> header are not checked for a CSRF token,
+	 * 			a browser can not be tricked into sending one.</li>
+	 * 		<li>evaluate the access rules with the {@link PrivilegeExpressionHandler}, so they can use 
+	 * 			<code>hasPrivilege('NAME')</code></li>
+	 * 		<li>reject form and HTTP Basic logins throttled by the {@link LoginThrottle} before they are authenticated</li>
 	 * 		
 	 * </ul>
 	 * 
+	 * In the stateless mode (<code>usermanager.token.enabled=true</code>) no HTTP session is used, so the nodes need no
+	 * sticky sessions: the form login sets a signed token cookie instead, checked on every request by the
+	 * {@link TokenAuthenticationFilter}, logout removes it, and the CSRF token is kept in a cookie too.
+	 * 
 	 * @see org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter#configure(org.springframework.security.config.annotation.web.builders.HttpSecurity)
 	 */
 	@Override
 	protected void configure(HttpSecurity http) throws Exception {
+		RequestMatcher api = new AntPathRequestMatcher("/api/**");
+		BasicAuthenticationEntryPoint basicEntryPoint = new BasicAuthenticationEntryPoint();
+		basicEntryPoint.setRealmName("UserManager");
+		basicEntryPoint.afterPropertiesSet();
+		
 		http
+			.addFilterBefore(new LoginThrottleFilter(loginThrottle), UsernamePasswordAuthenticationFilter.class)
 			.authorizeRequests()
+				.expressionHandler(expressionHandler())
 				.antMatchers("/login*").anonymous()
-				.antMatchers("/users/**").hasAuthority("ROLE_ADMIN")
+				.antMatchers("/users/**", "/api/users/**").hasAuthority("ROLE_ADMIN")
 				.anyRequest().authenticated()
 			  .and()
 			.formLogin()
 				.loginPage("/login")
 		        .defaultSuccessUrl("/",true)
 			  .and()
+			.httpBasic()
+				.authenticationEntryPoint(basicEntryPoint)
+			  .and()
+			.csrf()
+				.requireCsrfProtectionMatcher(new AndRequestMatcher(CsrfFilter.DEFAULT_CSRF_MATCHER,
+						new NegatedRequestMatcher(new AndRequestMatcher(api, new RequestHeaderRequestMatcher("Authorization")))))
+			  .and()
 			.logout()
 				.logoutRequestMatcher(new AntPathRequestMatcher("/logout"))
 			  .and()
-			.exceptionHandling().accessDeniedPage("/access_denied");
-	
+			.exceptionHandling()
+				.defaultAuthenticationEntryPointFor(basicEntryPoint, api)
+				.accessDeniedPage("/access_denied");
+		
+		if (tokenService.isEnabled()) {
+			TokenAuthenticationFilter tokenFilter = new TokenAuthenticationFilter(tokenService, tokenCookieName);
+			http
+				.sessionManagement()
+					.sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+				  .and()
+				.addFilterBefore(tokenFilter, UsernamePasswordAuthenticationFilter.class)
+				.formLogin()
+					.successHandler((request, response, authentication) -> {
+						tokenFilter.writeCookie(request, response, tokenService.issue(authentication));
+						response.sendRedirect(request.getContextPath() + "/");
+					})
+				  .and()
+				.csrf()
+					.csrfTokenRepository(CookieCsrfTokenRepository.withHttpOnlyFalse())
+				  .and()
+				.logout()
+					.deleteCookies(tokenCookieName);
+		}
 	}
 	
+	/**
+	 * @return the expression handler shared by the URL rules and the templates, created on first use.
+	 */
+	private PrivilegeExpressionHandler expressionHandler() {
+		if (expressionHandler == null) {
+			expressionHandler = new PrivilegeExpressionHandler(privilegeEvaluator);
+		}
+		return expressionHandler;
+	}
 }
-
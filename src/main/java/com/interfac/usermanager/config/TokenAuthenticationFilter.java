@@ -0,0 +1,112 @@
+package com.interfac.usermanager.config;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import com.interfac.usermanager.user.services.TokenService;
+import com.interfac.usermanager.user.services.TokenService.Claims;
+
+/**
+ * This class authenticates the requests of the stateless mode from the signed token they carry, see {@link TokenService}.
+ * 
+ * <p>Browsers send the token in an HttpOnly cookie set after the form login, API clients in an 
+ * <code>Authorization: Bearer</code> header. A valid token sets the authentication of the request, there is no 
+ * session to look up. A cookie past half of its lifetime is replaced by a renewed token, and an invalid one is 
+ * removed.</p>
+ * 
+ * <p>Not a bean on purpose, Spring Boot would also register it for every request outside the security chain.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+	private static final String BEARER = "Bearer ";
+
+	/**
+	 * checks and issues the tokens.
+	 */
+	private final TokenService tokenService;
+
+	/**
+	 * the name of the token cookie.
+	 */
+	private final String cookieName;
+
+	/**
+	 * Parameterized constructor
+	 * @param tokenService
+	 * @param cookieName
+	 */
+	public TokenAuthenticationFilter(TokenService tokenService, String cookieName) {
+		this.tokenService = tokenService;
+		this.cookieName = cookieName;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.web.filter.OncePerRequestFilter#doFilterInternal(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse, javax.servlet.FilterChain)
+	 */
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		// the async dispatch of a request only needs the authentication again, the cookie was handled before
+		boolean asyncDispatch = isAsyncDispatch(request);
+		String header = request.getHeader("Authorization");
+		if (header != null && header.startsWith(BEARER)) {
+			Claims claims = tokenService.verify(header.substring(BEARER.length()).trim());
+			if (claims != null) {
+				SecurityContextHolder.getContext().setAuthentication(claims.toAuthentication());
+			}
+		} else {
+			Cookie cookie = WebUtils.getCookie(request, cookieName);
+			if (cookie != null) {
+				Claims claims = tokenService.verify(cookie.getValue());
+				if (claims == null) {
+					if (!asyncDispatch) {
+						writeCookie(request, response, null);
+					}
+				} else {
+					SecurityContextHolder.getContext().setAuthentication(claims.toAuthentication());
+					if (claims.isPastHalfLife() && !asyncDispatch) {
+						writeCookie(request, response, tokenService.renew(claims));
+					}
+				}
+			}
+		}
+		filterChain.doFilter(request, response);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.web.filter.OncePerRequestFilter#shouldNotFilterAsyncDispatch()
+	 */
+	@Override
+	protected boolean shouldNotFilterAsyncDispatch() {
+		// nothing stores the security context in the stateless mode, the views rendered after an async
+		// handler would see an anonymous user otherwise
+		return false;
+	}
+
+	/**
+	 * sets or removes the token cookie.
+	 * @param request
+	 * @param response
+	 * @param token the token, or null to remove the cookie.
+	 */
+	public void writeCookie(HttpServletRequest request, HttpServletResponse response, String token) {
+		Cookie cookie = new Cookie(cookieName, token == null ? "" : token);
+		cookie.setHttpOnly(true);
+		cookie.setSecure(request.isSecure());
+		cookie.setPath(request.getContextPath().isEmpty() ? "/" : request.getContextPath());
+		cookie.setMaxAge(token == null ? 0 : (int) tokenService.getTtlSeconds());
+		response.addCookie(cookie);
+	}
+}
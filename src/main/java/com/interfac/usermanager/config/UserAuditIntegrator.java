@@ -0,0 +1,128 @@
+package com.interfac.usermanager.config;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.envers.boot.internal.EnversService;
+import org.hibernate.envers.event.spi.EnversListenerDuplicationStrategy;
+import org.hibernate.envers.event.spi.EnversPostCollectionRecreateEventListenerImpl;
+import org.hibernate.envers.event.spi.EnversPostDeleteEventListenerImpl;
+import org.hibernate.envers.event.spi.EnversPostInsertEventListenerImpl;
+import org.hibernate.envers.event.spi.EnversPostUpdateEventListenerImpl;
+import org.hibernate.envers.event.spi.EnversPreCollectionRemoveEventListenerImpl;
+import org.hibernate.envers.event.spi.EnversPreCollectionUpdateEventListenerImpl;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PreCollectionRemoveEvent;
+import org.hibernate.event.spi.PreCollectionUpdateEvent;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+import com.interfac.usermanager.user.model.User;
+import com.interfac.usermanager.user.services.AuditUserEventSink;
+
+/**
+ * This class registers the Envers event listeners in place of the Envers integrator, whose registration is turned
+ * off by <code>hibernate.listeners.envers.autoRegister=false</code>.
+ *
+ * <p>The listeners leave out the {@link User} and its roles: their revisions are captured with the outbox event of
+ * the change and written later by the {@link AuditUserEventSink}, so the request does not wait for them. The other
+ * audited entities, the roles and their privileges, are still written by Envers in the transaction of the change.</p>
+ *
+ * <p>It is created by hibernate, listed in <i>META-INF/services/org.hibernate.integrator.spi.Integrator</i>, not by
+ * spring.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+public class UserAuditIntegrator implements Integrator {
+
+	/**
+	 * the setting turning the Envers integrator on, true by default.
+	 */
+	private static final String AUTO_REGISTER = "hibernate.listeners.envers.autoRegister";
+
+	/* (non-Javadoc)
+	 * @see org.hibernate.integrator.spi.Integrator#integrate(org.hibernate.boot.Metadata, org.hibernate.engine.spi.SessionFactoryImplementor, org.hibernate.service.spi.SessionFactoryServiceRegistry)
+	 */
+	@Override
+	public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+			SessionFactoryServiceRegistry serviceRegistry) {
+		EnversService enversService = serviceRegistry.getService(EnversService.class);
+		if (!enversService.isEnabled() || !enversService.getEntitiesConfigurations().hasAuditedEntities()) {
+			return;
+		}
+		// with both registered, every user change would be audited twice
+		if (serviceRegistry.getService(ConfigurationService.class).getSetting(AUTO_REGISTER, StandardConverters.BOOLEAN,
+				true)) {
+			throw new IllegalStateException(AUTO_REGISTER + " has to be false, the Envers listeners are registered by "
+					+ getClass().getName());
+		}
+
+		EventListenerRegistry listenerRegistry = serviceRegistry.getService(EventListenerRegistry.class);
+		listenerRegistry.addDuplicationStrategy(EnversListenerDuplicationStrategy.INSTANCE);
+		listenerRegistry.appendListeners(EventType.POST_INSERT, new EnversPostInsertEventListenerImpl(enversService) {
+			@Override
+			public void onPostInsert(PostInsertEvent event) {
+				if (!(event.getEntity() instanceof User)) {
+					super.onPostInsert(event);
+				}
+			}
+		});
+		listenerRegistry.appendListeners(EventType.POST_UPDATE, new EnversPostUpdateEventListenerImpl(enversService) {
+			@Override
+			public void onPostUpdate(PostUpdateEvent event) {
+				if (!(event.getEntity() instanceof User)) {
+					super.onPostUpdate(event);
+				}
+			}
+		});
+		listenerRegistry.appendListeners(EventType.POST_DELETE, new EnversPostDeleteEventListenerImpl(enversService) {
+			@Override
+			public void onPostDelete(PostDeleteEvent event) {
+				if (!(event.getEntity() instanceof User)) {
+					super.onPostDelete(event);
+				}
+			}
+		});
+		listenerRegistry.appendListeners(EventType.POST_COLLECTION_RECREATE,
+				new EnversPostCollectionRecreateEventListenerImpl(enversService) {
+					@Override
+					public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+						if (!(event.getAffectedOwnerOrNull() instanceof User)) {
+							super.onPostRecreateCollection(event);
+						}
+					}
+				});
+		listenerRegistry.appendListeners(EventType.PRE_COLLECTION_REMOVE,
+				new EnversPreCollectionRemoveEventListenerImpl(enversService) {
+					@Override
+					public void onPreRemoveCollection(PreCollectionRemoveEvent event) {
+						if (!(event.getAffectedOwnerOrNull() instanceof User)) {
+							super.onPreRemoveCollection(event);
+						}
+					}
+				});
+		listenerRegistry.appendListeners(EventType.PRE_COLLECTION_UPDATE,
+				new EnversPreCollectionUpdateEventListenerImpl(enversService) {
+					@Override
+					public void onPreUpdateCollection(PreCollectionUpdateEvent event) {
+						if (!(event.getAffectedOwnerOrNull() instanceof User)) {
+							super.onPreUpdateCollection(event);
+						}
+					}
+				});
+	}
+
+	/* (non-Javadoc)
+	 * @see org.hibernate.integrator.spi.Integrator#disintegrate(org.hibernate.engine.spi.SessionFactoryImplementor, org.hibernate.service.spi.SessionFactoryServiceRegistry)
+	 */
+	@Override
+	public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+	}
+}
@@ -4,6 +4,8 @@
 /**
  * This Package contain the AuditorAwareImp class used by spring data auditor, 
  * and SecurityConfig class used by spring security.
+ * It also contains the latency timers and the persistence metrics published at <i>/metrics</i>,
+ * and the bulkhead pools of the async controller handlers.
  * 
  * @author Ali Abdalla
  */
@@ -0,0 +1,63 @@
+package com.interfac.usermanager.user.controllers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.interfac.usermanager.user.services.TokenService;
+import com.interfac.usermanager.user.services.TokenService.Claims;
+
+/**
+ * This class issues the tokens of the stateless mode to API clients.
+ * 
+ * <p>A client posts to <i>/api/token</i> once with HTTP Basic credentials, and sends the returned token as 
+ * <code>Authorization: Bearer</code> afterwards, so the password is not hashed again on every request. 
+ * Posting with a valid token renews it for the same login.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@RestController
+public class TokenController {
+
+	/**
+	 * issues the tokens.
+	 */
+	@Autowired
+	private TokenService tokenService;
+	
+	/**
+	 * handles <code>POST</code> requests to <i>"/api/token"</i>.
+	 * 
+	 * @param authentication the authenticated caller
+	 * @return a JSON object with the <code>token</code>, its <code>tokenType</code> and <code>expiresIn</code> 
+	 * 		   seconds, <i>404</i> if the stateless mode is off, or <i>401</i> if the login is too old to be renewed.
+	 */
+	@RequestMapping(value = "/api/token", method = RequestMethod.POST)
+	public ResponseEntity<Map<String, Object>> issueToken(Authentication authentication) {
+		Map<String, Object> body = new LinkedHashMap<String, Object>();
+		if (!tokenService.isEnabled()) {
+			body.put("status", HttpStatus.NOT_FOUND.value());
+			body.put("error", "token authentication is not enabled");
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).body(body);
+		}
+		String token = authentication.getDetails() instanceof Claims 
+				? tokenService.renew((Claims) authentication.getDetails()) : tokenService.issue(authentication);
+		if (token == null) {
+			body.put("status", HttpStatus.UNAUTHORIZED.value());
+			body.put("error", "the login is too old, authenticate again");
+			return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(body);
+		}
+		body.put("token", token);
+		body.put("tokenType", "Bearer");
+		body.put("expiresIn", tokenService.getTtlSeconds());
+		return ResponseEntity.ok(body);
+	}
+}
@@ -0,0 +1,392 @@
+package com.interfac.usermanager.user.controllers;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.validation.Valid;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.validation.FieldError;
+import org.springframework.validation.ObjectError;
+import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.web.bind.WebDataBinder;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.InitBinder;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import com.interfac.usermanager.user.model.User;
+import com.interfac.usermanager.user.model.UserSummary;
+import com.interfac.usermanager.user.services.BulkOperation;
+import com.interfac.usermanager.user.services.BulkResult;
+import com.interfac.usermanager.user.services.RequiresPrivilege;
+import com.interfac.usermanager.user.services.SearchResult;
+import com.interfac.usermanager.user.services.UserPage;
+import com.interfac.usermanager.user.services.UserPatch;
+import com.interfac.usermanager.user.services.UserService;
+import com.interfac.usermanager.user.validation.UsernameExistsException;
+
+/**
+ * This class is the JSON REST API of the users, under <i>/api/users</i>, for provisioning scripts and other 
+ * clients that do not need the HTML views.
+ * 
+ * <p>Lists are paged with the same cursors as the users view, and every read takes a <code>fields</code> 
+ * parameter (e.g. <code>?fields=userName,email</code>) to return only some fields. Passwords are never
+ * returned. Partial updates (<code>PATCH</code>) carry the expected version in <code>If-Match</code> and return
+ * the new one in <code>ETag</code>, a stale version is answered with <i>409 Conflict</i>. Bulk operations on many
+ * users are posted to <i>/api/users/bulk</i>. Only available for users with ADMIN authority.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@RestController
+public class UserApiController {
+
+	/**
+	 * This instance is Autowired to the {@link UserService} interface. handles user services.
+	 */
+	@Autowired
+	private UserService userService;
+	
+	/**
+	 * defaults the <code>matchingPassword</code> of a created user to its password. The binder of a request body
+	 * is created after the body is read and before it is validated, so the default is validated as well.
+	 *
+	 * @param binder
+	 */
+	@InitBinder("user")
+	public void initUserBinder(WebDataBinder binder) {
+		if (binder.getTarget() instanceof User) {
+			User user = (User) binder.getTarget();
+			if (user.getMatchingPassword() == null) {
+				user.setMatchingPassword(user.getPassword());
+			}
+		}
+	}
+	
+	/**
+	 * handles <code>GET</code> requests to <i>"/api/users"</i>, a keyset page of users.
+	 * 
+	 * @param after the page starts right after this user ID.
+	 * @param before the page ends right before this user ID.
+	 * @param size page size, falls back to the configured default.
+	 * @param sort <i>asc</i> or <i>desc</i>, defaults to <i>asc</i>.
+	 * @param fields comma separated fields to return, all if empty.
+	 * @return <code>content</code>, <code>size</code> and the <code>next</code> and <code>previous</code> cursors.
+	 */
+	@RequestMapping(value = "/api/users", method = RequestMethod.GET)
+	public Map<String, Object> listUsers(@RequestParam(value = "after", required = false) Long after,
+			@RequestParam(value = "before", required = false) Long before,
+			@RequestParam(value = "size", defaultValue = "0") int size,
+			@RequestParam(value = "sort", defaultValue = "asc") String sort,
+			@RequestParam(value = "fields", required = false) String fields) {
+		Set<String> selected = UserFields.select(fields, UserFields.SUMMARY);
+		Direction direction = Direction.fromStringOrNull(sort);
+		UserPage<UserSummary> page = userService.listUsers(after, before, size, 
+				direction == null ? Direction.ASC : direction);
+		
+		Map<String, Object> body = new LinkedHashMap<String, Object>();
+		body.put("content", summaries(page.getContent(), selected));
+		body.put("size", page.getSize());
+		body.put("next", page.getNextCursor());
+		body.put("previous", page.getPreviousCursor());
+		return body;
+	}
+	
+	/**
+	 * handles <code>GET</code> requests to <i>"/api/users/search"</i>, see {@link UserService#searchUsers(String, int, int)}.
+	 * 
+	 * @param query one or more words
+	 * @param page page number, starting at 0.
+	 * @param size page size, falls back to the configured default.
+	 * @param fields comma separated fields to return, all if empty.
+	 * @return <code>content</code>, best match first, with the <code>page</code>, <code>size</code> and <code>total</code>.
+	 */
+	@RequestMapping(value = "/api/users/search", method = RequestMethod.GET)
+	public Map<String, Object> searchUsers(@RequestParam(value = "q", defaultValue = "") String query,
+			@RequestParam(value = "page", defaultValue = "0") int page,
+			@RequestParam(value = "size", defaultValue = "0") int size,
+			@RequestParam(value = "fields", required = false) String fields) {
+		Set<String> selected = UserFields.select(fields, UserFields.SUMMARY);
+		SearchResult<UserSummary> search = userService.searchUsers(query, page, size);
+		
+		Map<String, Object> body = new LinkedHashMap<String, Object>();
+		body.put("content", summaries(search.getContent(), selected));
+		body.put("page", search.getPage());
+		body.put("size", search.getSize());
+		body.put("total", search.getTotal());
+		return body;
+	}
+	
+	/**
+	 * handles <code>GET</code> requests to <i>"/api/users/{userId}"</i>.
+	 * 
+	 * @param userId
+	 * @param fields comma separated fields to return, all if empty.
+	 * @return the user, with its version in the <code>ETag</code> header.
+	 */
+	@RequestMapping(value = "/api/users/{userId}", method = RequestMethod.GET)
+	public ResponseEntity<Map<String, Object>> getUser(@PathVariable("userId") long userId,
+			@RequestParam(value = "fields", required = false) String fields) {
+		Set<String> selected = UserFields.select(fields, UserFields.USER);
+		User user = userService.getUserById(userId);
+		if (user == null) {
+			return error(HttpStatus.NOT_FOUND, "no such user");
+		}
+		return ResponseEntity.ok().eTag("\"" + user.getVersion() + "\"").body(UserFields.of(user, selected));
+	}
+	
+	/**
+	 * handles <code>POST</code> requests to <i>"/api/users"</i>, registers a new user. 
+	 * <code>matchingPassword</code> defaults to the password.
+	 * 
+	 * @param user the new user, its ID and version are ignored.
+	 * @return <i>201 Created</i> with the user and its URL in the <code>Location</code> header.
+	 * @throws UsernameExistsException if the username is taken, answered with 409.
+	 */
+	@RequiresPrivilege("WRITE_PRIVILEGE")
+	@RequestMapping(value = "/api/users", method = RequestMethod.POST)
+	public ResponseEntity<Map<String, Object>> createUser(@Valid @RequestBody User user) throws UsernameExistsException {
+		user.setUserId(0);
+		user.setVersion(0);
+		userService.registerUser(user);
+		return ResponseEntity
+				.created(ServletUriComponentsBuilder.fromCurrentRequest().path("/{userId}").buildAndExpand(user.getUserId()).toUri())
+				.eTag("\"" + user.getVersion() + "\"")
+				.body(UserFields.of(user, UserFields.select(null, UserFields.USER)));
+	}
+	
+	/**
+	 * handles <code>PATCH</code> requests to <i>"/api/users/{userId}"</i> (and <i>"/users/{userId}"</i>), 
+	 * see {@link UserService#patchUser(long, long, UserPatch)}.
+	 * 
+	 * @param userId
+	 * @param ifMatch the expected version, e.g. <code>"3"</code>
+	 * @param patch the fields to change, missing fields are left as they are.
+	 * @return the user ID and its new version
+	 * @throws UsernameExistsException if the new username is taken, answered with 409.
+	 */
+	@RequiresPrivilege("WRITE_PRIVILEGE")
+	@RequestMapping(value = {"/api/users/{userId}", "/users/{userId}"}, method = RequestMethod.PATCH)
+	public ResponseEntity<Map<String, Object>> patchUser(@PathVariable("userId") long userId,
+			@RequestHeader(HttpHeaders.IF_MATCH) String ifMatch, @RequestBody UserPatch patch) throws UsernameExistsException {
+		long version;
+		try {
+			version = Long.parseLong(ifMatch.replace("W/", "").replace("\"", "").trim());
+		} catch (NumberFormatException e) {
+			return error(HttpStatus.BAD_REQUEST, "If-Match must hold the version of the user");
+		}
+		long newVersion = userService.patchUser(userId, version, patch);
+		Map<String, Object> body = new LinkedHashMap<String, Object>();
+		body.put("userId", userId);
+		body.put("version", newVersion);
+		return ResponseEntity.ok().eTag("\"" + newVersion + "\"").body(body);
+	}
+	
+	/**
+	 * handles <code>DELETE</code> requests to <i>"/api/users/{userId}"</i>.
+	 * 
+	 * @param userId
+	 * @return <i>204 No Content</i>
+	 */
+	@RequiresPrivilege("WRITE_PRIVILEGE")
+	@RequestMapping(value = "/api/users/{userId}", method = RequestMethod.DELETE)
+	public ResponseEntity<Void> deleteUser(@PathVariable("userId") long userId) {
+		userService.deleteUser(userId);
+		return ResponseEntity.noContent().build();
+	}
+	
+	/**
+	 * handles <code>POST</code> requests to <i>"/api/users/bulk"</i>. Applies one operation to many users,
+	 * given either by <code>userIds</code> or by <code>modifiedBefore</code>, e.g.
+	 * <code>{"operation": "DISABLE", "modifiedBefore": "2016-01-01T00:00:00Z"}</code>.
+	 * 
+	 * @param request
+	 * @return the summary of the operation
+	 */
+	@RequiresPrivilege("WRITE_PRIVILEGE")
+	@RequestMapping(value = "/api/users/bulk", method = RequestMethod.POST)
+	public BulkResult bulkUpdate(@RequestBody BulkRequest request) {
+		if (request.getOperation() == null) {
+			throw new BadRequestException("operation is required");
+		}
+		if ((request.getUserIds() == null) == (request.getModifiedBefore() == null)) {
+			throw new BadRequestException("exactly one of userIds and modifiedBefore is required");
+		}
+		if (request.getUserIds() != null) {
+			return userService.bulkUpdate(request.getOperation(), request.getUserIds());
+		}
+		return userService.bulkUpdate(request.getOperation(), request.getModifiedBefore());
+	}
+	
+	/**
+	 * @return 409 when the user was changed since the client read it.
+	 */
+	@ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+	public ResponseEntity<Map<String, Object>> versionConflict() {
+		return error(HttpStatus.CONFLICT, "the user was changed in the meantime, read it again");
+	}
+	
+	/**
+	 * @param e
+	 * @return 409 when the username is taken.
+	 */
+	@ExceptionHandler(UsernameExistsException.class)
+	public ResponseEntity<Map<String, Object>> usernameExists(UsernameExistsException e) {
+		return error(HttpStatus.CONFLICT, e.getMessage());
+	}
+	
+	/**
+	 * @return 404 when there is no such user.
+	 */
+	@ExceptionHandler(EmptyResultDataAccessException.class)
+	public ResponseEntity<Map<String, Object>> notFound() {
+		return error(HttpStatus.NOT_FOUND, "no such user");
+	}
+	
+	/**
+	 * @param e
+	 * @return 400 with the validation messages when a user is not valid.
+	 */
+	@ExceptionHandler(MethodArgumentNotValidException.class)
+	public ResponseEntity<Map<String, Object>> invalid(MethodArgumentNotValidException e) {
+		StringBuilder messages = new StringBuilder();
+		for (ObjectError error : e.getBindingResult().getAllErrors()) {
+			if (messages.length() > 0) {
+				messages.append("; ");
+			}
+			if (error instanceof FieldError) {
+				messages.append(((FieldError) error).getField()).append(": ");
+			}
+			messages.append(error.getDefaultMessage());
+		}
+		return error(HttpStatus.BAD_REQUEST, messages.toString());
+	}
+	
+	/**
+	 * @param e
+	 * @return 400 for an unknown field in <code>fields</code> or an incomplete bulk request.
+	 */
+	@ExceptionHandler(BadRequestException.class)
+	public ResponseEntity<Map<String, Object>> badRequest(BadRequestException e) {
+		return error(HttpStatus.BAD_REQUEST, e.getMessage());
+	}
+	
+	/**
+	 * @param users
+	 * @param fields
+	 * @return the JSON objects of the users
+	 */
+	private static List<Map<String, Object>> summaries(List<UserSummary> users, Set<String> fields) {
+		List<Map<String, Object>> content = new ArrayList<Map<String, Object>>(users.size());
+		for (UserSummary user : users) {
+			content.add(UserFields.of(user, fields));
+		}
+		return content;
+	}
+	
+	/**
+	 * @param status
+	 * @param message
+	 * @return a JSON error response
+	 */
+	private static ResponseEntity<Map<String, Object>> error(HttpStatus status, String message) {
+		Map<String, Object> body = new LinkedHashMap<String, Object>();
+		body.put("status", status.value());
+		body.put("error", message);
+		return ResponseEntity.status(status).body(body);
+	}
+
+	/**
+	 * Thrown when the parameters or the body of an API request are not valid.
+	 */
+	@SuppressWarnings("serial")
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	public static class BadRequestException extends RuntimeException {
+
+		/**
+		 * Constructor with <code>message</code> parameter.
+		 * @param message
+		 */
+		public BadRequestException(String message) {
+			super(message);
+		}
+	}
+
+	/**
+	 * The body of a bulk request.
+	 */
+	public static class BulkRequest {
+		
+		private BulkOperation operation;
+		
+		private List<Long> userIds;
+		
+		private Date modifiedBefore;
+
+		/**
+		 * Getter method
+		 * @return operation
+		 */
+		public BulkOperation getOperation() {
+			return operation;
+		}
+
+		/**
+		 * Setter method
+		 * @param operation
+		 */
+		public void setOperation(BulkOperation operation) {
+			this.operation = operation;
+		}
+
+		/**
+		 * Getter method
+		 * @return the IDs of the users
+		 */
+		public List<Long> getUserIds() {
+			return userIds;
+		}
+
+		/**
+		 * Setter method
+		 * @param userIds
+		 */
+		public void setUserIds(List<Long> userIds) {
+			this.userIds = userIds;
+		}
+
+		/**
+		 * Getter method
+		 * @return selects the users not modified since that date
+		 */
+		public Date getModifiedBefore() {
+			return modifiedBefore;
+		}
+
+		/**
+		 * Setter method
+		 * @param modifiedBefore
+		 */
+		public void setModifiedBefore(Date modifiedBefore) {
+			this.modifiedBefore = modifiedBefore;
+		}
+	}
+}
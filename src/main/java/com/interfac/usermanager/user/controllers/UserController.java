@@ -1,26 +1,50 @@
 package com.interfac.usermanager.user.controllers;
 
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletResponse;
 
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.annotation.Secured;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.util.StringUtils;
 import org.springframework.validation.Errors;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import com.interfac.usermanager.config.ControllerBulkheads;
+import com.interfac.usermanager.config.ControllerBulkheads.Bulkhead;
 import com.interfac.usermanager.user.model.User;
+import com.interfac.usermanager.user.model.UserSummary;
+import com.interfac.usermanager.user.services.BulkOperation;
+import com.interfac.usermanager.user.services.ContentVersion;
+import com.interfac.usermanager.user.services.ImportReport;
+import com.interfac.usermanager.user.services.RequiresPrivilege;
+import com.interfac.usermanager.user.services.SearchResult;
+import com.interfac.usermanager.user.services.UserChange;
+import com.interfac.usermanager.user.services.UserExportService;
+import com.interfac.usermanager.user.services.UserHistoryService;
+import com.interfac.usermanager.user.services.UserImportService;
+import com.interfac.usermanager.user.services.UserPage;
+import com.interfac.usermanager.user.services.UserRecordReader.Format;
 import com.interfac.usermanager.user.services.UserService;
 import com.interfac.usermanager.user.validation.UsernameExistsException;
 
@@ -36,12 +60,43 @@ import com.interfac.usermanager.user.validation.UsernameExistsException;
  */
 @Controller
 public class UserController {
+	
 	/**
 	 * This instance is Autowired to the {@link UserService} interface. handles user services.
 	 */
 	@Autowired
 	private UserService userService;
 	
+	/**
+	 * This instance is Autowired to the {@link UserImportService}. handles bulk user imports.
+	 */
+	@Autowired
+	private UserImportService userImportService;
+	
+	/**
+	 * This instance is Autowired to the {@link UserExportService}. exports all users as a stream.
+	 */
+	@Autowired
+	private UserExportService userExportService;
+	
+	/**
+	 * This instance is Autowired to the {@link UserRowCache}. renders the rows of the users view, from the view.
+	 */
+	@Autowired
+	private UserRowCache userRowCache;
+	
+	/**
+	 * This instance is Autowired to the {@link UserHistoryService}. reads the audit trail of users.
+	 */
+	@Autowired
+	private UserHistoryService userHistoryService;
+	
+	/**
+	 * This instance is Autowired to the {@link ControllerBulkheads}. runs the database bound handlers off the request threads.
+	 */
+	@Autowired
+	private ControllerBulkheads bulkheads;
+	
 	/**
 	 * Handle <a><i>"/"</i></a> request page. Returns a <code>welcomeMessage</code> variable 
 	 * populated with the currently logged in username extracted from the {@link Authentication} object.
@@ -62,16 +117,42 @@ public class UserController {
 	 * Handle <a><i>"/users"</i></a> request. Returns a model attributes 
 	 * back to the view.
 	 * <ul>
-	 * 		<li><i>usersList : </i>list of <i>User</i> objects, 
+	 * 		<li><i>usersList : </i>list of <i>User</i> objects of the current page, 
 	 * 			   sent to the view to populate the table.</li>
+	 * 		<li><i>page : </i>the {@link UserPage} holding the cursors for the next/previous links.</li>
+	 * 		<li><i>rowCache : </i>the {@link UserRowCache}, the view takes the rows from it.</li>
+	 * 		<li><i>sort : </i>the sort direction on the user ID, <i>asc</i> or <i>desc</i>.</li>
 	 * </ul>
+	 * @param after show the page right after this user ID.
+	 * @param before show the page right before this user ID.
+	 * @param size page size, falls back to the configured default.
+	 * @param sort <i>asc</i> or <i>desc</i>, defaults to <i>asc</i>.
+	 * @param request answered with <i>304 Not Modified</i> when no user changed since the browser got the page.
 	 * @param model will carry the <code>usersList</code> var to the view.
-	 * @return string resolved to the view path.
+	 * @return the task resolving to the view path, or null if the page was not modified.
 	 */
 	@RequestMapping(value = "/users")
-	public String listUsers(Model model){
-		model.addAttribute("usersList", userService.listUsers());
-		return "users";
+	public WebAsyncTask<String> listUsers(@RequestParam(value = "after", required = false) Long after,
+			@RequestParam(value = "before", required = false) Long before,
+			@RequestParam(value = "size", defaultValue = "0") int size,
+			@RequestParam(value = "sort", defaultValue = "asc") String sort, ServletWebRequest request, Model model){
+		// the summary of a bulk operation is only in this response, it must not be answered from the browser cache.
+		// the version is an index lookup, read here because only the request thread may touch the response
+		if (!model.containsAttribute("bulkResult") && notModified(request, "users", userService.getUsersVersion())) {
+			return null;
+		}
+		return bulkheads.submit(Bulkhead.LISTING, () -> {
+			Direction direction = Direction.fromStringOrNull(sort);
+			if (direction == null) {
+				direction = Direction.ASC;
+			}
+			UserPage<UserSummary> page = userService.listUsers(after, before, size, direction);
+			model.addAttribute("usersList", page.getContent());
+			model.addAttribute("rowCache", userRowCache);
+			model.addAttribute("page", page);
+			model.addAttribute("sort", direction.name().toLowerCase());
+			return "users";
+		});
 	}
 	
 	
@@ -114,32 +195,41 @@ public class UserController {
 	 * @param user
 	 * @param errors 
 	 * @param model
-	 * @return  string resolved to the view path.
-	 * @throws UsernameExistsException custom exception, handled by sending a validation error message to the <i>registration_form</i> view
+	 * @return the task resolving to the view path.
 	 */
 	@RequestMapping(value = "/user/add", method=RequestMethod.POST)
-	public String registerUser(@Valid @ModelAttribute("user") User user, Errors errors,	Model model) throws UsernameExistsException{
-		Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-		if (errors.hasErrors())
-			return "registration_form";
-			
-		if(user.getUserId() != 0){
-			userService.editUser(user);
-			System.err.println(auth.getName() + "  " + user.getUserName());
-			if (auth.getName().equals(user.getUserName())){
-				return "redirect:/home";
-			} else {
-				return "redirect:/users";
+	public WebAsyncTask<String> registerUser(@Valid @ModelAttribute("user") User user, Errors errors, Model model){
+		return bulkheads.submit(Bulkhead.REGISTRATION, () -> {
+			Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+			if (hasErrors(user, errors))
+				return "registration_form";
+				
+			if(user.getUserId() != 0){
+				try {
+					userService.editUser(user);
+				} catch (UsernameExistsException e) {
+					errors.reject("exists", "username already exists!");
+					return "registration_form";
+				} catch (ObjectOptimisticLockingFailureException e) {
+					errors.reject("conflict", "this user was changed by someone else in the meantime, reload it and try again!");
+					return "registration_form";
+				}
+				System.err.println(auth.getName() + "  " + user.getUserName());
+				if (auth.getName().equals(user.getUserName())){
+					return "redirect:/home";
+				} else {
+					return "redirect:/users";
+				}
+				
 			}
-			
-		}
-		try {
-			userService.registerUser(user);
-		} catch (UsernameExistsException e) {
-			errors.reject("exists", "username already exists!");
-			return "registration_form";
-		}
-		return "redirect:/users";
+			try {
+				userService.registerUser(user);
+			} catch (UsernameExistsException e) {
+				errors.reject("exists", "username already exists!");
+				return "registration_form";
+			}
+			return "redirect:/users";
+		});
 	}
 	
 	
@@ -150,6 +240,7 @@ public class UserController {
 	 * @return
 	 */
 	@Secured("ROLE_ADMIN")
+	@RequiresPrivilege("WRITE_PRIVILEGE")
 	@RequestMapping(value = "/users/delete/{userId}")
 	public String deleteUser(@PathVariable("userId") int userId){
 		userService.deleteUser(userId);
@@ -157,6 +248,87 @@ public class UserController {
 	}
 	
 	
+	/**
+	 * handles the bulk operations form of the <i>users</i> view. Applies the operation to the checked users and
+	 * redirects to the <i>users</i> view with the summary in the <code>bulkResult</code> flash attribute.
+	 * only available for users with ADMIN authority
+	 * @param operation
+	 * @param userIds the checked users, none if nothing was checked.
+	 * @param redirectAttributes
+	 * @return string resolved to the view path.
+	 */
+	@Secured("ROLE_ADMIN")
+	@RequiresPrivilege("WRITE_PRIVILEGE")
+	@RequestMapping(value = "/users/bulk", method=RequestMethod.POST)
+	public String bulkUpdate(@RequestParam("operation") BulkOperation operation,
+			@RequestParam(value = "userIds", required = false) List<Long> userIds, RedirectAttributes redirectAttributes){
+		if (userIds != null && !userIds.isEmpty()) {
+			redirectAttributes.addFlashAttribute("bulkResult", userService.bulkUpdate(operation, userIds));
+		}
+		return "redirect:/users";
+	}
+	
+	
+	/**
+	 * handles requests to the bulk import page.
+	 * only available for users with ADMIN authority
+	 * @return user_import view
+	 */
+	@Secured("ROLE_ADMIN")
+	@RequestMapping(value = "/users/import", method=RequestMethod.GET)
+	public String goToImportPage(){
+		return "user_import";
+	}
+	
+	
+	/**
+	 * handles bulk user import from an uploaded CSV or JSON file, and displays the import report.
+	 * only available for users with ADMIN authority
+	 * 
+	 * @param file the uploaded file, its extension selects the format.
+	 * @param model will carry the <code>report</code> var to the view.
+	 * @return user_import view
+	 * @throws IOException if the uploaded file can not be read
+	 */
+	@Secured("ROLE_ADMIN")
+	@RequiresPrivilege("WRITE_PRIVILEGE")
+	@RequestMapping(value = "/users/import", method=RequestMethod.POST)
+	public String importUsers(@RequestParam("file") MultipartFile file, Model model) throws IOException{
+		ImportReport report = userImportService.importUsers(file.getInputStream(), 
+				Format.fromFileName(file.getOriginalFilename()));
+		model.addAttribute("report", report);
+		return "user_import";
+	}
+	
+	
+	/**
+	 * handles full user exports, written straight to the response as the users are read.
+	 * only available for users with ADMIN authority.
+	 * If the export fails once the response is committed, the connection is closed without the end of the file.
+	 * 
+	 * @param format <i>csv</i> or <i>json</i>, defaults to <i>csv</i>.
+	 * @param gzip compress the file with gzip.
+	 * @param response
+	 * @throws IOException if the response can not be written
+	 */
+	@Secured("ROLE_ADMIN")
+	@RequestMapping(value = "/users/export", method=RequestMethod.GET)
+	public void exportUsers(@RequestParam(value = "format", defaultValue = "csv") String format,
+			@RequestParam(value = "gzip", defaultValue = "false") boolean gzip, HttpServletResponse response) throws IOException{
+		Format fileFormat = "json".equalsIgnoreCase(format) ? Format.JSON : Format.CSV;
+		String fileName = "users." + fileFormat.name().toLowerCase() + (gzip ? ".gz" : "");
+		response.setContentType(gzip ? "application/gzip" : fileFormat == Format.JSON ? "application/json" : "text/csv");
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+		OutputStream out = response.getOutputStream();
+		if (gzip) {
+			// sync flush, so the rows flushed by the export leave the deflater too
+			out = new GZIPOutputStream(out, 8192, true);
+		}
+		userExportService.exportUsers(out, fileFormat);
+	}
+	
+	
 	/**
 	 * handles request for user editing.
 	 * only available for users with ADMIN authority
@@ -167,7 +339,7 @@ public class UserController {
 	@Secured("ROLE_ADMIN")
 	@RequestMapping(value = "/users/edit/{userId}")
 	public String editUser(@PathVariable("userId") int userId, Model model){
-		model.addAttribute("user", userService.getUserById(userId));
+		model.addAttribute("user", forEditing(userService.getUserById(userId)));
 		return "registration_form";
 	}
 	
@@ -182,7 +354,7 @@ public class UserController {
 	@RequestMapping(value = "/user/personal/edit")
 	public String editPersonal(Model model){
 		String username = SecurityContextHolder.getContext().getAuthentication().getName();
-		model.addAttribute("user", userService.getUserByUserName(username));
+		model.addAttribute("user", forEditing(userService.getUserByUserName(username)));
 		return "registration_form";
 	}
 	
@@ -192,19 +364,71 @@ public class UserController {
 	 * only available for users with ADMIN authority
 	 * 
 	 * @param userId
+	 * @param request answered with <i>304 Not Modified</i> when the user did not change since the browser got the page.
 	 * @param model
-	 * @return user_profile view
+	 * @return the task resolving to the user_profile view, or null if the page was not modified.
 	 */
 	@Secured("ROLE_ADMIN")
 	@RequestMapping(value = "user/{userId}")
-	public String displayUserProfile(@PathVariable("userId") int userId, Model model){
-		model.addAttribute("user", userService.getUserById(userId));
-		
-		return "user_profile";
+	public WebAsyncTask<String> displayUserProfile(@PathVariable("userId") int userId, ServletWebRequest request, Model model){
+		if (notModified(request, "profile", userService.getProfileVersion(userId))) {
+			return null;
+		}
+		return bulkheads.submit(Bulkhead.PROFILE, () -> {
+			model.addAttribute("user", userService.getUserProfile(userId));
+			
+			return "user_profile";
+		});
 	}
 	
 	
 	
+	/**
+	 * handles requests for the change history of a user, newest first.
+	 * only available for users with ADMIN authority
+	 * 
+	 * @param userId
+	 * @param before show the changes older than this revision.
+	 * @param size page size, falls back to the configured default.
+	 * @param model will carry the <code>changes</code> and <code>page</code> vars to the view.
+	 * @return user_history view
+	 */
+	@Secured("ROLE_ADMIN")
+	@RequestMapping(value = "/users/history/{userId}")
+	public String displayUserHistory(@PathVariable("userId") long userId,
+			@RequestParam(value = "before", required = false) Long before,
+			@RequestParam(value = "size", defaultValue = "0") int size, Model model){
+		UserPage<UserChange> page = userHistoryService.getUserHistory(userId, before, size);
+		model.addAttribute("changes", page.getContent());
+		model.addAttribute("page", page);
+		model.addAttribute("userId", userId);
+		return "user_history";
+	}
+	
+	
+	/**
+	 * handles requests for the user changes made by a given user, newest first.
+	 * only available for users with ADMIN authority
+	 * 
+	 * @param by the username of the admin
+	 * @param before show the changes older than this revision.
+	 * @param size page size, falls back to the configured default.
+	 * @param model will carry the <code>changes</code> and <code>page</code> vars to the view.
+	 * @return user_history view
+	 */
+	@Secured("ROLE_ADMIN")
+	@RequestMapping(value = "/users/changes")
+	public String displayChangesBy(@RequestParam("by") String by,
+			@RequestParam(value = "before", required = false) Long before,
+			@RequestParam(value = "size", defaultValue = "0") int size, Model model){
+		UserPage<UserChange> page = userHistoryService.getChangesBy(by, before, size);
+		model.addAttribute("changes", page.getContent());
+		model.addAttribute("page", page);
+		model.addAttribute("by", by);
+		return "user_history";
+	}
+	
+	
 	/**
 	 * handles requests for the custom login page.
 	 * 
@@ -220,30 +444,110 @@ public class UserController {
 	/**
 	 * handles request for the currently logged in user's profile page
 	 * 
+	 * @param request answered with <i>304 Not Modified</i> when the user did not change since the browser got the page.
 	 * @param model
+	 * @return user_profile view, or null if the page was not modified.
 	 */
 	@RequestMapping(value = "/home")
-	public String displayHomePage(Model model){
+	public String displayHomePage(ServletWebRequest request, Model model){
 		Authentication auth = SecurityContextHolder.getContext().getAuthentication();
 	    String name = auth.getName(); //get logged in username
 		
-	    model.addAttribute("user", userService.getUserByUserName(name));
+	    if (notModified(request, "profile", userService.getProfileVersionByUserName(name))) {
+	    	return null;
+	    }
+	    model.addAttribute("user", userService.getUserProfileByUserName(name));
 	    
 		return "user_profile";
 	}
 	
 	/**
-	 * handles requests to <i>"/users/search"</i> to find an employee by username.
+	 * handles requests to <i>"/users/search"</i> to find employees by username, first name, last name or email.
+	 * Returns a model attributes back to the view.
+	 * <ul>
+	 * 		<li><i>usersList : </i>the users of the requested page, best match first.</li>
+	 * 		<li><i>search : </i>the {@link SearchResult} holding the query and page numbers.</li>
+	 * 		<li><i>rowCache : </i>the {@link UserRowCache}, the view takes the rows from it.</li>
+	 * </ul>
 	 * 
-	 * @param username
+	 * @param query one or more words, matched by prefix, substring and similarity.
+	 * @param page page number, starting at 0.
+	 * @param size page size, falls back to the configured default.
 	 * @param model
-	 * @return
+	 * @return the task resolving to the view path.
 	 */
 	@RequestMapping(value = "/users/search")
-	public String searchEmployees(@RequestParam("username") String username, Model model){
-		List<User> users = new ArrayList<User>(Arrays.asList(userService.getUserByUserName(username)));
-		model.addAttribute("usersList", users);
-		return "users";
+	public WebAsyncTask<String> searchEmployees(@RequestParam(value = "q", defaultValue = "") String query,
+			@RequestParam(value = "page", defaultValue = "0") int page,
+			@RequestParam(value = "size", defaultValue = "0") int size, Model model){
+		return bulkheads.submit(Bulkhead.LISTING, () -> {
+			SearchResult<UserSummary> search = userService.searchUsers(query, page, size);
+			model.addAttribute("usersList", search.getContent());
+			model.addAttribute("rowCache", userRowCache);
+			model.addAttribute("search", search);
+			return "users";
+		});
+	}
+	
+	/**
+	 * answers a conditional GET from the version of the data behind the page, so an unchanged page is neither
+	 * loaded nor rendered again. The pages also depend on who is looking at them (navigation, roles), 
+	 * so the <i>ETag</i> includes the logged in user and their authorities.
+	 * The browser may keep the page but has to check it on every use (<i>Cache-Control: private, no-cache</i>).
+	 * 
+	 * @param request
+	 * @param page the kind of page, part of the ETag
+	 * @param version the version of the data, null if it does not exist.
+	 * @return true if the browser's copy is current, the response is then a <i>304 Not Modified</i>.
+	 * 		Call it on the request thread, before an async handler starts.
+	 */
+	private static boolean notModified(ServletWebRequest request, String page, ContentVersion version) {
+		if (version == null) {
+			return false;
+		}
+		// replaces the no-store default of spring security, which keeps browsers from revalidating
+		request.getResponse().setHeader("Cache-Control", "private, no-cache");
+		Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+		String viewer = auth == null ? "" : auth.getName() + auth.getAuthorities();
+		String etag = page + "-" + version.getTag() + "-" + Integer.toHexString(viewer.hashCode());
+		return request.checkNotModified(etag, version.getLastModified());
+	}
+	
+	/**
+	 * the edit form gets a copy of the editable fields without the password, the stored hash does not leave the
+	 * server and the stored user is not changed. Both password fields are left empty to keep the password.
+	 * 
+	 * @param user the user to edit
+	 * @return the form-bound copy, or null if there is no such user.
+	 */
+	private static User forEditing(User user) {
+		if (user == null) {
+			return null;
+		}
+		User form = new User();
+		form.setUserId(user.getUserId());
+		form.setVersion(user.getVersion());
+		form.setUserName(user.getUserName());
+		form.setFirstName(user.getFirstName());
+		form.setLastName(user.getLastName());
+		form.setEmail(user.getEmail());
+		form.setPhone(user.getPhone());
+		form.setIsAdmin(user.getIsAdmin());
+		return form;
+	}
+	
+	/**
+	 * @param user the submitted form
+	 * @param errors
+	 * @return true if the form has errors. The empty password of an edit keeps the stored one, so its errors do not
+	 * count.
+	 */
+	private static boolean hasErrors(User user, Errors errors) {
+		if (user.getUserId() != 0 && !StringUtils.hasText(user.getPassword())
+				&& !StringUtils.hasText(user.getMatchingPassword())) {
+			return errors.getErrorCount() > errors.getFieldErrorCount("password");
+		}
+		return errors.hasErrors();
 	}
 	
 }
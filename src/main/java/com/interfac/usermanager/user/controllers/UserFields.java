@@ -0,0 +1,104 @@
+package com.interfac.usermanager.user.controllers;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.interfac.usermanager.user.model.User;
+import com.interfac.usermanager.user.model.UserSummary;
+
+/**
+ * This class turns users into the JSON objects of the REST API, with only the selected fields.
+ * 
+ * <p>The fields are copied explicitly, so nothing but these fields can be serialized: never the password, 
+ * and never the lazy roles. Null values are left out.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+final class UserFields {
+
+	/**
+	 * the fields of the list and search results.
+	 */
+	static final List<String> SUMMARY = Arrays.asList("userId", "userName", "email", "dateCreated", "dateModified",
+			"latestModifier", "isAdmin");
+
+	/**
+	 * the fields of a single user.
+	 */
+	static final List<String> USER = Arrays.asList("userId", "userName", "firstName", "lastName", "email", "phone",
+			"isAdmin", "enabled", "dateCreated", "dateModified", "latestModifier", "version");
+
+	private UserFields() {
+	}
+
+	/**
+	 * @param fields comma separated field names, empty for all.
+	 * @param available
+	 * @return the selected fields
+	 * @throws UserApiController.BadRequestException if a field is not available.
+	 */
+	static Set<String> select(String fields, List<String> available) {
+		if (fields == null || fields.trim().isEmpty()) {
+			return new LinkedHashSet<String>(available);
+		}
+		Set<String> selected = new LinkedHashSet<String>();
+		for (String field : fields.split(",")) {
+			field = field.trim();
+			if (!available.contains(field)) {
+				throw new UserApiController.BadRequestException("unknown field '" + field + "', available fields are " + available);
+			}
+			selected.add(field);
+		}
+		return selected;
+	}
+
+	/**
+	 * @param user
+	 * @param fields selected with {@link #SUMMARY}
+	 * @return the JSON object
+	 */
+	static Map<String, Object> of(UserSummary user, Set<String> fields) {
+		Map<String, Object> json = new LinkedHashMap<String, Object>();
+		put(json, fields, "userId", user.getUserId());
+		put(json, fields, "userName", user.getUserName());
+		put(json, fields, "email", user.getEmail());
+		put(json, fields, "dateCreated", user.getDateCreated());
+		put(json, fields, "dateModified", user.getDateModified());
+		put(json, fields, "latestModifier", user.getLatestModifier());
+		put(json, fields, "isAdmin", user.getIsAdmin());
+		return json;
+	}
+
+	/**
+	 * @param user
+	 * @param fields selected with {@link #USER}
+	 * @return the JSON object
+	 */
+	static Map<String, Object> of(User user, Set<String> fields) {
+		Map<String, Object> json = new LinkedHashMap<String, Object>();
+		put(json, fields, "userId", user.getUserId());
+		put(json, fields, "userName", user.getUserName());
+		put(json, fields, "firstName", user.getFirstName());
+		put(json, fields, "lastName", user.getLastName());
+		put(json, fields, "email", user.getEmail());
+		put(json, fields, "phone", user.getPhone());
+		put(json, fields, "isAdmin", user.getIsAdmin());
+		put(json, fields, "enabled", user.isEnabled());
+		put(json, fields, "dateCreated", user.getDateCreated());
+		put(json, fields, "dateModified", user.getDateModified());
+		put(json, fields, "latestModifier", user.getLatestModifier());
+		put(json, fields, "version", user.getVersion());
+		return json;
+	}
+
+	private static void put(Map<String, Object> json, Set<String> fields, String field, Object value) {
+		if (value != null && fields.contains(field)) {
+			json.put(field, value);
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package com.interfac.usermanager.user.controllers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.IWebContext;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.fragment.DOMSelectorFragmentSpec;
+import org.thymeleaf.fragment.IFragmentSpec;
+
+import com.interfac.usermanager.user.model.UserSummary;
+
+/**
+ * This class caches the rendered rows of the <i>users</i> view, keyed by <code>userId</code> and 
+ * <code>version</code>, so the rows of unchanged users are spliced into the page as text instead of being
+ * evaluated again.
+ * 
+ * <p>It is enabled when a cache named {@value #CACHE_NAME} is configured (<code>spring.cache.cache-names</code>),
+ * and bounded like the other caches by <code>spring.cache.caffeine.spec</code>. It is on in the <i>prod</i> profile
+ * and off otherwise, so the rows follow changes of the template during development.
+ * Missing rows are rendered together from the <code>tr class="user-row"</code> element of <i>users.html</i>, which
+ * stays the only definition of a row. Every change of a user increments its version, the edits through the entity
+ * as well as the bulk statements, so a stale row is never looked up again and ages out of the cache. The
+ * modification date would not do: two edits within the same second of a <code>datetime</code> column keep it.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@Component
+public class UserRowCache {
+
+	/**
+	 * the name of the cache of rendered rows.
+	 */
+	public static final String CACHE_NAME = "userRows";
+
+	/**
+	 * selects the row element of the users template.
+	 */
+	private static final IFragmentSpec ROW = new DOMSelectorFragmentSpec("//tr[@class='user-row']");
+
+	/**
+	 * renders the missing rows.
+	 */
+	private final TemplateEngine templateEngine;
+
+	/**
+	 * the rendered rows, null when the cache is not configured.
+	 */
+	private final Cache rows;
+
+	/**
+	 * Constructor
+	 * @param templateEngine the application's template engine
+	 * @param cacheManager provides the {@value #CACHE_NAME} cache, if configured.
+	 */
+	@Autowired
+	public UserRowCache(TemplateEngine templateEngine, CacheManager cacheManager) {
+		this.templateEngine = templateEngine;
+		this.rows = cacheManager.getCache(CACHE_NAME);
+	}
+
+	/**
+	 * @return true if the {@value #CACHE_NAME} cache is configured.
+	 */
+	public boolean isEnabled() {
+		return rows != null;
+	}
+
+	/**
+	 * provides the rows of the given users, from the cache where possible. Called by the <i>users</i> view
+	 * (model attribute <code>rowCache</code>) while it is rendered, on the thread that owns the request,
+	 * also when the handler ran asynchronously.
+	 * @param users the users of the page, in display order
+	 * @param page the context of the page being rendered (<code>#ctx</code>)
+	 * @return the HTML of the rows, or null if the cache is not enabled.
+	 */
+	public String render(List<UserSummary> users, IWebContext page) {
+		if (rows == null || users == null) {
+			return null;
+		}
+		String[] html = new String[users.size()];
+		List<UserSummary> misses = new ArrayList<UserSummary>();
+		List<Integer> missIndexes = new ArrayList<Integer>();
+		for (int i = 0; i < users.size(); i++) {
+			html[i] = rows.get(key(users.get(i)), String.class);
+			if (html[i] == null) {
+				misses.add(users.get(i));
+				missIndexes.add(i);
+			}
+		}
+		
+		if (!misses.isEmpty()) {
+			HttpServletRequest servletRequest = page.getHttpServletRequest();
+			WebContext context = new WebContext(servletRequest, page.getHttpServletResponse(), page.getServletContext(),
+					page.getLocale(), Collections.<String, Object>singletonMap("usersList", misses));
+			String[] rendered = templateEngine.process("users", context, ROW).split("</tr>");
+			if (rendered.length < misses.size()) {
+				throw new IllegalStateException("expected " + misses.size() + " rendered rows but got " + rendered.length);
+			}
+			// links carry the session ID when the session is not tracked by cookie, such rows are not shared
+			boolean shareable = servletRequest.getSession(false) == null || servletRequest.isRequestedSessionIdFromCookie();
+			for (int j = 0; j < misses.size(); j++) {
+				String row = rendered[j].trim() + "</tr>";
+				if (shareable) {
+					rows.put(key(misses.get(j)), row);
+				}
+				html[missIndexes.get(j)] = row;
+			}
+		}
+		return String.join("\n", html);
+	}
+
+	/**
+	 * @param user
+	 * @return the cache key of the user's row
+	 */
+	private static String key(UserSummary user) {
+		return user.getUserId() + ":" + user.getVersion();
+	}
+}
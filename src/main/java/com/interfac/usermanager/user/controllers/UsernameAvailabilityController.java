@@ -0,0 +1,47 @@
+package com.interfac.usermanager.user.controllers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.interfac.usermanager.user.services.UserService;
+import com.interfac.usermanager.user.services.UsernameFilter;
+
+/**
+ * This class answers the live username availability checks of the registration form.
+ * 
+ * <p>Most checks of free usernames are answered from memory by the {@link UsernameFilter}, only possible 
+ * matches are confirmed with a count query. The answer is a hint, the registration itself is decided by the 
+ * unique index on <i>username</i>.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@RestController
+public class UsernameAvailabilityController {
+
+	/**
+	 * This instance is Autowired to the {@link UserService} interface. handles user services.
+	 */
+	@Autowired
+	private UserService userService;
+	
+	/**
+	 * handles requests to <i>"/api/username-available"</i>.
+	 * 
+	 * @param username the username to check
+	 * @return a JSON object with the <code>username</code> and a boolean <code>available</code> property.
+	 */
+	@RequestMapping(value = "/api/username-available", method = RequestMethod.GET)
+	public Map<String, Object> usernameAvailable(@RequestParam("username") String username){
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		result.put("username", username);
+		result.put("available", !username.trim().isEmpty() && !userService.userNameExists(username.trim()));
+		return result;
+	}
+}
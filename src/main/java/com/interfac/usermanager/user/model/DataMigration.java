@@ -0,0 +1,66 @@
+package com.interfac.usermanager.user.model;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * This class records a one-time change of the existing data, so it is made only once.
+ * 
+ * <p>Is mapped to the <i>data_migration</i> table, one row per migration that was applied.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@Entity
+@Table(name = "data_migration")
+public class DataMigration {
+
+	/**
+	 * the name of the migration.
+	 */
+	@Id
+	@Column(name = "name", length = 64)
+	private String name;
+
+	/**
+	 * when the migration was applied.
+	 */
+	@Column(name = "applied_at", nullable = false)
+	private Date appliedAt;
+
+	/**
+	 * No arg constructor
+	 */
+	public DataMigration() {
+	}
+
+	/**
+	 * Parameterized constructor
+	 * @param name
+	 * @param appliedAt
+	 */
+	public DataMigration(String name, Date appliedAt) {
+		this.name = name;
+		this.appliedAt = appliedAt;
+	}
+
+	/**
+	 * Getter method
+	 * @return name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Getter method
+	 * @return appliedAt
+	 */
+	public Date getAppliedAt() {
+		return appliedAt;
+	}
+}
@@ -0,0 +1,96 @@
+package com.interfac.usermanager.user.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+
+/**
+ * This class represents how far a sink has read the {@link UserEvent} stream.
+ * 
+ * <p>Is mapped to the <i>outbox_offset</i> table, one row per sink. It is only moved after the sink accepted the
+ * events, so a sink that failed or a node that stopped in between gets the same events again. The IDs it passed
+ * while they were missing are kept with it, until their events show up or they are too old.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@Entity
+@Table(name = "outbox_offset")
+public class OutboxOffset {
+
+	/**
+	 * the name of the sink.
+	 */
+	@Id
+	@Column(name = "sink", length = 64)
+	private String sink;
+
+	/**
+	 * the ID of the last event the sink accepted.
+	 */
+	@Column(name = "last_event_id", nullable = false)
+	private long lastEventId;
+
+	/**
+	 * the IDs below the offset that were missing when it passed them, as <code>from-to:seenAt</code> ranges.
+	 */
+	@Lob
+	@Column(name = "gaps")
+	private String gaps;
+
+	/**
+	 * No arg constructor
+	 */
+	public OutboxOffset() {
+	}
+
+	/**
+	 * Parameterized constructor
+	 * @param sink
+	 */
+	public OutboxOffset(String sink) {
+		this.sink = sink;
+	}
+
+	/**
+	 * Getter method
+	 * @return sink
+	 */
+	public String getSink() {
+		return sink;
+	}
+
+	/**
+	 * Getter method
+	 * @return lastEventId
+	 */
+	public long getLastEventId() {
+		return lastEventId;
+	}
+
+	/**
+	 * Setter method
+	 * @param lastEventId
+	 */
+	public void setLastEventId(long lastEventId) {
+		this.lastEventId = lastEventId;
+	}
+
+	/**
+	 * Getter method
+	 * @return gaps
+	 */
+	public String getGaps() {
+		return gaps;
+	}
+
+	/**
+	 * Setter method
+	 * @param gaps
+	 */
+	public void setGaps(String gaps) {
+		this.gaps = gaps;
+	}
+}
@@ -2,21 +2,28 @@ package com.interfac.usermanager.user.model;
 
 import java.util.Collection;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToMany;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 /**
  * this class represents the <i>Role</i> entity. It contains the roles/authorities 
  * available for users.
  * 
  * Is mapped ManyToMany with both {@link User} and {@link Privilege} entities.
+ * Privileges are kept in the hibernate second-level cache, they are static reference data.
  * @author Ali Abdalla
  *
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Privilege {
 	/**
      * represents the privilege ID and is the primary key of the entity.
@@ -1,6 +1,9 @@
 package com.interfac.usermanager.user.model;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
@@ -9,15 +12,27 @@ import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
 
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.envers.Audited;
+import org.hibernate.envers.NotAudited;
+import org.hibernate.envers.RelationTargetAuditMode;
+
 /**
  * this class represents the <i>Role</i> entity. It contains the roles/authorities 
  * available for users.
  * 
  * Is mapped ManyToMany with both {@link User} and {@link Privilege} entities.
+ * Roles and their privileges are kept in the hibernate second-level cache, they are static reference data.
+ * Changes of a role are audited, the privileges it points to are not.
  * @author Ali Abdalla
  *
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Audited
 public class Role {
     /**
      * represents the role ID and is the primary key of the entity.
@@ -37,17 +52,22 @@ public class Role {
      * represent a collection of {@link User}s who have a specific role name.
      */
     @ManyToMany(mappedBy = "roles")
+    @NotAudited
     private Collection<User> users;
  
     /**
-     * represents a collection of {@link Privilege}s. Mapped ManyToMany with {@link Role}
+     * represents a collection of {@link Privilege}s. Mapped ManyToMany with {@link Role}.
+     * A set rather than a bag, so it can be fetched together with {@link User#getRoles()}.
      */
     @ManyToMany
+    @Audited(targetAuditMode = RelationTargetAuditMode.NOT_AUDITED)
+    @BatchSize(size = 50)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @JoinTable(
         name = "roles_privileges", 
         joinColumns = @JoinColumn(name = "role_id", referencedColumnName = "id"), 
         inverseJoinColumns = @JoinColumn(name = "privilege_id", referencedColumnName = "id"))
-    private Collection<Privilege> privileges;
+    private Set<Privilege> privileges;
 
     
 
@@ -127,7 +147,7 @@ public class Role {
 	 * @param privileges
 	 */
 	public void setPrivileges(Collection<Privilege> privileges) {
-		this.privileges = privileges;
+		this.privileges = privileges == null ? null : new HashSet<Privilege>(privileges);
 	}   
 	
 	
@@ -137,7 +157,7 @@ public class Role {
      */
     @Override
 	public String toString() {
-		return "Role [id=" + id + ", name=" + name + ", users=" + users + ", privileges=" + privileges + "]";
+		return "Role [id=" + id + ", name=" + name + "]";
 	}
 
 	/* (non-Javadoc)
@@ -145,12 +165,11 @@ public class Role {
 	 */
 	@Override
 	public int hashCode() {
+		// the lazy collections are left out, hashing a role must not load its users and privileges
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((id == null) ? 0 : id.hashCode());
 		result = prime * result + ((name == null) ? 0 : name.hashCode());
-		result = prime * result + ((privileges == null) ? 0 : privileges.hashCode());
-		result = prime * result + ((users == null) ? 0 : users.hashCode());
 		return result;
 	}
 
@@ -176,16 +195,6 @@ public class Role {
 				return false;
 		} else if (!name.equals(other.name))
 			return false;
-		if (privileges == null) {
-			if (other.privileges != null)
-				return false;
-		} else if (!privileges.equals(other.privileges))
-			return false;
-		if (users == null) {
-			if (other.users != null)
-				return false;
-		} else if (!users.equals(other.users))
-			return false;
 		return true;
 	}
     
@@ -0,0 +1,83 @@
+package com.interfac.usermanager.user.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * This class represents the revocation of the authentication tokens of a user, issued before <code>revokedAt</code>.
+ * 
+ * <p>Is mapped to the <i>token_revocation</i> table. Every node reads the new rows by increasing ID, so a user
+ * deleted or changed on one node loses access on all of them. Rows are only needed while the tokens they revoke
+ * could still be valid, and are purged after the token lifetime, the index on <i>revoked_at</i> serves that.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@Entity
+@Table(name = "token_revocation", indexes = @Index(name = "idx_token_revocation_revoked_at", columnList = "revoked_at"))
+public class TokenRevocation {
+
+	/**
+	 * increasing ID, the position of the nodes in the list.
+	 */
+	@Id
+	@GeneratedValue(strategy = GenerationType.AUTO)
+	private long id;
+	
+	/**
+	 * the user whose tokens are revoked.
+	 */
+	@Column(name = "username", nullable = false)
+	private String username;
+	
+	/**
+	 * tokens issued up to this time, in milliseconds, are revoked.
+	 */
+	@Column(name = "revoked_at", nullable = false)
+	private long revokedAt;
+
+	/**
+	 * No arg constructor
+	 */
+	public TokenRevocation() {
+	}
+
+	/**
+	 * Parameterized constructor
+	 * @param username
+	 * @param revokedAt
+	 */
+	public TokenRevocation(String username, long revokedAt) {
+		this.username = username;
+		this.revokedAt = revokedAt;
+	}
+
+	/**
+	 * Getter method
+	 * @return id
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * Getter method
+	 * @return username
+	 */
+	public String getUsername() {
+		return username;
+	}
+
+	/**
+	 * Getter method
+	 * @return revokedAt
+	 */
+	public long getRevokedAt() {
+		return revokedAt;
+	}
+}
@@ -12,16 +12,27 @@ import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedEntityGraphs;
+import javax.persistence.NamedSubgraph;
 import javax.persistence.OneToMany;
+import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
+import javax.persistence.Transient;
+import javax.persistence.UniqueConstraint;
+import javax.persistence.Version;
 import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Size;
 
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.envers.Audited;
 import org.hibernate.envers.NotAudited;
 import org.hibernate.validator.constraints.Email;
@@ -30,9 +41,12 @@ import org.springframework.data.annotation.CreatedBy;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedBy;
 import org.springframework.data.annotation.LastModifiedDate;
-import org.springframework.data.annotation.Version;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonProperty.Access;
+import com.interfac.usermanager.user.services.HashingPasswordEncoder;
+import com.interfac.usermanager.user.services.UserSearchIndexListener;
 import com.interfac.usermanager.user.validation.PasswordsMatch;
 import com.interfac.usermanager.user.validation.PasswordsMatchValidator;
 
@@ -41,8 +55,16 @@ import com.interfac.usermanager.user.validation.PasswordsMatchValidator;
  *  
  * This class is:
  * <ul>
- * 		<li>Mapped to the <i>user</i> table in the database.</li>
+ * 		<li>Mapped to the <i>user</i> table in the database, with a unique index on <i>username</i> and an index
+ * 			on <i>date_modified</i>, which serves the bulk operations on users modified before a date.</li>
  * 		<li>Audited by JPA auditing on the fields <code>createdDate</code>, <code>modifiedDate</code> and <code>latestModifier</code>, as annotated @EntityListeners</li>
+ * 		<li>Kept in the in-memory search index by the {@link UserSearchIndexListener}</li>
+ * 		<li>Versioned for optimistic locking, and updated with only the changed columns (@DynamicUpdate)</li>
+ * 		<li>Audited by Envers, every change is kept in the <i>user_aud</i> table with its {@link UserRevision}.
+ * 			The password hash is left out of the audit trail. The revisions are captured with the outbox
+ * 			{@link UserEvent} of the change and written to the audit tables shortly after it.</li>
+ * 		<li>Loaded with its roles, or its roles and their privileges, through the {@value #WITH_ROLES} and 
+ * 			{@value #WITH_ROLES_AND_PRIVILEGES} entity graphs. Roles left lazy are fetched in batches.</li>
  * 		
  * 		<li>annotated with the custom @PasswordsMatch for validating that the password field matches the matchingPassword field
  * 			@see {@link PasswordsMatch} and {@link PasswordsMatchValidator}</li>
@@ -53,10 +75,35 @@ import com.interfac.usermanager.user.validation.PasswordsMatchValidator;
  *
  */
 @Entity
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({AuditingEntityListener.class, UserSearchIndexListener.class})
+@Table(uniqueConstraints = @UniqueConstraint(name = User.USERNAME_CONSTRAINT, columnNames = "username"),
+	indexes = @Index(name = "idx_user_date_modified", columnList = "date_modified"))
+@NamedEntityGraphs({
+	@NamedEntityGraph(name = User.WITH_ROLES, attributeNodes = @NamedAttributeNode("roles")),
+	@NamedEntityGraph(name = User.WITH_ROLES_AND_PRIVILEGES,
+		attributeNodes = @NamedAttributeNode(value = "roles", subgraph = "privileges"),
+		subgraphs = @NamedSubgraph(name = "privileges", attributeNodes = @NamedAttributeNode("privileges")))
+})
+@DynamicUpdate
+@Audited
 @PasswordsMatch
 public class User {
 	
+	/**
+	 * the name of the unique index on the <i>username</i> column.
+	 */
+	public static final String USERNAME_CONSTRAINT = "uk_user_username";
+	
+	/**
+	 * the entity graph fetching the roles with the user.
+	 */
+	public static final String WITH_ROLES = "User.withRoles";
+	
+	/**
+	 * the entity graph fetching the roles and their privileges with the user.
+	 */
+	public static final String WITH_ROLES_AND_PRIVILEGES = "User.withRolesAndPrivileges";
+	
 	/**
 	 *Represents the user's ID property and the primary key 
 	 */
@@ -113,7 +160,8 @@ public class User {
 	/**
 	 * Represents the password property.
 	 * Is mapped to the <i>password</i> column in the database.
-	 * can be at least 6 charachters long.
+	 * can be at least 6 charachters long. It is stored hashed, see {@link HashingPasswordEncoder}.
+	 * It is read from JSON but never written to it, and left out of <code>toString()</code>.
 	 */
 	@NotEmpty(message="password field should not be empty")
     @Size(min=6, message="{password.size}")
@@ -121,7 +169,7 @@ public class User {
 
 	/**
 	 * Represents the <i>matchingPassword</i> property.
-	 * Is mapped to the <i>matching_Password</i> column in the database.
+	 * Is not persisted, it only carries the confirmation field of the registration form.
 	 * used in the @PasswordsMatch validation annotation to validate matching passwords
 	 * 
 	 */
@@ -148,9 +196,10 @@ public class User {
 	/**
 	 * Represents the state of the user's account, if enabled or disabled.
 	 * Is mapped to the <i>is_enabled</i> column in the database.
+	 * New users are enabled, the registration form does not have the field.
 	 * 
 	 */
-	private boolean isEnabled;
+	private boolean isEnabled = true;
 	
 	/**
 	 * Represents the <code>username</code> of the last user that modified this specific instance of <code>User</code>.
@@ -170,6 +219,13 @@ public class User {
 	@LastModifiedDate
 	private Date dateModified;
 	
+	/**
+	 * Represents the version of the row, incremented by every update.
+	 * Is mapped to the <i>version</i> column in the database.
+	 * An update of a stale copy of the user fails instead of overwriting a newer change.
+	 */
+	private long version;
+	
 	
 	/**
 	 * A collection of authorities the user has.
@@ -292,6 +348,8 @@ public class User {
 	 * @return password
 	 */
 	@Column
+	@NotAudited
+	@JsonProperty(access = Access.WRITE_ONLY)
 	public String getPassword() {
 		return password;
 	}
@@ -309,6 +367,8 @@ public class User {
 	 * Getter for the matchingPassword field
 	 * @return matchingPassword
 	 */
+	@Transient
+	@JsonProperty(access = Access.WRITE_ONLY)
 	public String getMatchingPassword() {
 		return matchingPassword;
 	}
@@ -392,7 +452,7 @@ public class User {
 	 * getter for the dateModified field
 	 * @return dateModified
 	 */
-	@Column
+	@Column(name="date_modified")
 	public Date getDateModified() {
 		return dateModified;
 	}
@@ -405,6 +465,24 @@ public class User {
 	}
 	
 	
+	/**
+	 * getter for the version field
+	 * @return version
+	 */
+	@Version
+	@Column
+	public long getVersion() {
+		return version;
+	}
+	/**
+	 * setter for the version field
+	 * @param version
+	 */
+	public void setVersion(long version) {
+		this.version = version;
+	}
+	
+	
 	/**
 	 * getter for the isEnabled field
 	 * @return isEnabled
@@ -423,10 +501,12 @@ public class User {
 	
 	/**
 	 * getter for the roles field.
-	 * mapped ManyToMany to the <i>roles</i> table.
+	 * mapped ManyToMany to the <i>roles</i> table. When left lazy, the roles of up to 50 users are 
+	 * initialized by a single query.
 	 * @return roles
 	 */
 	@ManyToMany
+	@BatchSize(size = 50)
 	@JoinTable( 
 		name = "users_roles", 
 		joinColumns = @JoinColumn(name = "user_id", referencedColumnName = "userId"),
@@ -478,8 +558,7 @@ public class User {
 	@Override
 	public String toString() {
 		return "User [userId=" + userId + ", userName=" + userName + ", firstName=" + firstName + ", lastName="
-				+ lastName + ", email=" + email + ", phone=" + phone + ", password=" + password + ", matchingPassword="
-				+ matchingPassword + ", isAdmin=" + isAdmin + ", dateCreated="
+				+ lastName + ", email=" + email + ", phone=" + phone + ", isAdmin=" + isAdmin + ", dateCreated="
 				+ dateCreated + ", isEnabled=" + isEnabled + ", latestModifier=" + latestModifier + ", dateModified="
 				+ dateModified + ", roles=" + roles + "]";
 	}
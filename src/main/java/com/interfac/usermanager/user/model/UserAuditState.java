@@ -0,0 +1,84 @@
+package com.interfac.usermanager.user.model;
+
+import java.io.Serializable;
+
+/**
+ * This class holds the revision of a {@link User} change, captured in the transaction of the change and carried by
+ * its {@link UserEvent} until the audit sink writes it to the Envers tables.
+ *
+ * <p>The values are those of the audited columns, in the order the audit sink writes them, taken from the user
+ * after the change, before it for deletions. The roles are only set when they changed.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+public class UserAuditState implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * the username of the user that made the change.
+	 */
+	private final String modifier;
+
+	/**
+	 * the values of the audited columns.
+	 */
+	private final Object[] values;
+
+	/**
+	 * the IDs of the roles the change assigned, null if the roles did not change.
+	 */
+	private final long[] addedRoleIds;
+
+	/**
+	 * the IDs of the roles the change removed, null if the roles did not change.
+	 */
+	private final long[] removedRoleIds;
+
+	/**
+	 * Parameterized constructor
+	 * @param modifier
+	 * @param values
+	 * @param addedRoleIds
+	 * @param removedRoleIds
+	 */
+	public UserAuditState(String modifier, Object[] values, long[] addedRoleIds, long[] removedRoleIds) {
+		this.modifier = modifier;
+		this.values = values;
+		this.addedRoleIds = addedRoleIds;
+		this.removedRoleIds = removedRoleIds;
+	}
+
+	/**
+	 * Getter method
+	 * @return modifier
+	 */
+	public String getModifier() {
+		return modifier;
+	}
+
+	/**
+	 * Getter method
+	 * @return values
+	 */
+	public Object[] getValues() {
+		return values;
+	}
+
+	/**
+	 * Getter method
+	 * @return addedRoleIds
+	 */
+	public long[] getAddedRoleIds() {
+		return addedRoleIds;
+	}
+
+	/**
+	 * Getter method
+	 * @return removedRoleIds
+	 */
+	public long[] getRemovedRoleIds() {
+		return removedRoleIds;
+	}
+}
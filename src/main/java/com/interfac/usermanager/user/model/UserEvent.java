@@ -0,0 +1,195 @@
+package com.interfac.usermanager.user.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+
+import org.springframework.util.SerializationUtils;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * This class represents a change of a {@link User}, written to the <i>user_event</i> outbox table in the same 
+ * transaction as the change itself.
+ * 
+ * <p>Events are compact: what happened to which user, at which version, and for updates the names of the changed
+ * properties. Other systems read the details through the API if they need them. The increasing ID is the 
+ * position of the event in the stream, the offset the sinks resume from.</p>
+ *
+ * <p>Events of changes made through the entity also carry their {@link UserAuditState}, the revision the audit sink
+ * writes to the audit trail. It is not part of what the other sinks see.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@Entity
+@Table(name = "user_event", indexes = @Index(name = "idx_user_event_occurred_at", columnList = "occurred_at"))
+public class UserEvent {
+
+	/**
+	 * The kinds of change.
+	 */
+	public enum Type {
+		CREATED, UPDATED, DELETED
+	}
+
+	/**
+	 * the position of the event in the stream.
+	 */
+	@Id
+	@GeneratedValue(strategy = GenerationType.AUTO)
+	private long id;
+
+	/**
+	 * what happened to the user.
+	 */
+	@Enumerated(EnumType.STRING)
+	@Column(name = "type", nullable = false, length = 16)
+	private Type type;
+
+	/**
+	 * the ID of the user.
+	 */
+	@Column(name = "user_id", nullable = false)
+	private long userId;
+
+	/**
+	 * the username after the change, before it for deletions.
+	 */
+	@Column(name = "username", nullable = false)
+	private String userName;
+
+	/**
+	 * the version of the user after the change.
+	 */
+	@Column(name = "version", nullable = false)
+	private long version;
+
+	/**
+	 * the time of the change, in milliseconds.
+	 */
+	@Column(name = "occurred_at", nullable = false)
+	private long occurredAt;
+
+	/**
+	 * the names of the changed properties of an update, comma separated.
+	 */
+	@Column(name = "changed")
+	private String changed;
+
+	/**
+	 * the serialized revision of the change, null for the changes audited when they are made.
+	 */
+	@Lob
+	@Column(name = "audit_state")
+	private byte[] auditState;
+
+	/**
+	 * No arg constructor
+	 */
+	public UserEvent() {
+	}
+
+	/**
+	 * Parameterized constructor
+	 * @param type
+	 * @param user the user after the change
+	 * @param changed the names of the changed properties, comma separated, or null
+	 */
+	public UserEvent(Type type, User user, String changed) {
+		this.type = type;
+		this.userId = user.getUserId();
+		this.userName = user.getUserName();
+		this.version = user.getVersion();
+		this.occurredAt = System.currentTimeMillis();
+		this.changed = changed;
+	}
+
+	/**
+	 * Getter method
+	 * @return id
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * Getter method
+	 * @return type
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Getter method
+	 * @return userId
+	 */
+	public long getUserId() {
+		return userId;
+	}
+
+	/**
+	 * Getter method
+	 * @return userName
+	 */
+	public String getUserName() {
+		return userName;
+	}
+
+	/**
+	 * Getter method
+	 * @return version
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Getter method
+	 * @return occurredAt
+	 */
+	public long getOccurredAt() {
+		return occurredAt;
+	}
+
+	/**
+	 * Getter method
+	 * @return changed
+	 */
+	public String getChanged() {
+		return changed;
+	}
+
+	/**
+	 * @return the revision of the change, null if it does not carry one.
+	 */
+	@JsonIgnore
+	public UserAuditState getAuditState() {
+		return (UserAuditState) SerializationUtils.deserialize(auditState);
+	}
+
+	/**
+	 * @param auditState the revision of the change
+	 */
+	@JsonIgnore
+	public void setAuditState(UserAuditState auditState) {
+		this.auditState = SerializationUtils.serialize(auditState);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "UserEvent [id=" + id + ", type=" + type + ", userId=" + userId + ", userName=" + userName
+				+ ", version=" + version + ", occurredAt=" + occurredAt + ", changed=" + changed + "]";
+	}
+}
@@ -0,0 +1,126 @@
+package com.interfac.usermanager.user.model;
+
+import java.util.Date;
+
+/**
+ * This class is a read-only projection of a {@link User} with the fields of the profile view.
+ * 
+ * <p>Like {@link UserSummary} it is created by a JPQL constructor expression, it carries no password and is not 
+ * managed by the persistence context.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+public class UserProfile {
+
+	private final long userId;
+	
+	private final String userName;
+	
+	private final String firstName;
+	
+	private final String lastName;
+	
+	private final String email;
+	
+	private final Date dateCreated;
+	
+	private final Date dateModified;
+	
+	private final String latestModifier;
+
+	/**
+	 * Constructor used by the repository queries, in column order.
+	 * @param userId
+	 * @param userName
+	 * @param firstName
+	 * @param lastName
+	 * @param email
+	 * @param dateCreated
+	 * @param dateModified
+	 * @param latestModifier
+	 */
+	public UserProfile(long userId, String userName, String firstName, String lastName, String email,
+			Date dateCreated, Date dateModified, String latestModifier) {
+		this.userId = userId;
+		this.userName = userName;
+		this.firstName = firstName;
+		this.lastName = lastName;
+		this.email = email;
+		this.dateCreated = dateCreated;
+		this.dateModified = dateModified;
+		this.latestModifier = latestModifier;
+	}
+
+	/**
+	 * getter method
+	 * @return userId
+	 */
+	public long getUserId() {
+		return userId;
+	}
+
+	/**
+	 * getter method
+	 * @return userName
+	 */
+	public String getUserName() {
+		return userName;
+	}
+
+	/**
+	 * getter method
+	 * @return firstName
+	 */
+	public String getFirstName() {
+		return firstName;
+	}
+
+	/**
+	 * getter method
+	 * @return lastName
+	 */
+	public String getLastName() {
+		return lastName;
+	}
+
+	/**
+	 * getter method
+	 * @return email
+	 */
+	public String getEmail() {
+		return email;
+	}
+
+	/**
+	 * getter method
+	 * @return dateCreated
+	 */
+	public Date getDateCreated() {
+		return dateCreated;
+	}
+
+	/**
+	 * getter method
+	 * @return dateModified
+	 */
+	public Date getDateModified() {
+		return dateModified;
+	}
+
+	/**
+	 * getter method
+	 * @return latestModifier
+	 */
+	public String getLatestModifier() {
+		return latestModifier;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "UserProfile [userId=" + userId + ", userName=" + userName + ", email=" + email + "]";
+	}
+}
@@ -0,0 +1,147 @@
+package com.interfac.usermanager.user.model;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+
+import org.hibernate.envers.RevisionEntity;
+import org.hibernate.envers.RevisionNumber;
+import org.hibernate.envers.RevisionTimestamp;
+
+/**
+ * This class represents a revision of the audit trail, one per transaction that changed audited entities
+ * ({@link User} and {@link Role}).
+ * 
+ * <p>Is mapped to the <i>revinfo</i> table, next to the default Envers columns it records the username of the 
+ * user that made the change, filled by {@link UserRevisionListener}. The index on <i>username</i> serves the 
+ * "changes by admin" history.</p>
+ *
+ * <p>The revisions of user changes are written later by the audit sink, from the {@link UserEvent} of the change,
+ * and record its ID. The unique index on it keeps an event delivered twice from being audited twice.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@Entity
+@Table(name = "revinfo", indexes = {
+	@Index(name = "idx_revinfo_username", columnList = "username,id"),
+	@Index(name = "idx_revinfo_event_id", columnList = "event_id", unique = true)
+})
+@RevisionEntity(UserRevisionListener.class)
+public class UserRevision {
+
+	/**
+	 * the revision number, increasing with every audited transaction.
+	 */
+	@Id
+	@GeneratedValue(strategy = GenerationType.AUTO)
+	@RevisionNumber
+	private long id;
+	
+	/**
+	 * the time of the revision, in milliseconds.
+	 */
+	@RevisionTimestamp
+	private long timestamp;
+	
+	/**
+	 * the username of the user that made the change, <i>system</i> for changes made without a logged in user.
+	 */
+	@Column(name = "username")
+	private String username;
+
+	/**
+	 * the ID of the {@link UserEvent} the revision was written from, null for the revisions written by Envers and
+	 * by the bulk operations.
+	 */
+	@Column(name = "event_id")
+	private Long eventId;
+
+	/**
+	 * Getter method
+	 * @return id
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * Setter method
+	 * @param id
+	 */
+	public void setId(long id) {
+		this.id = id;
+	}
+
+	/**
+	 * Getter method
+	 * @return timestamp
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Setter method
+	 * @param timestamp
+	 */
+	public void setTimestamp(long timestamp) {
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * @return the time of the revision as a date
+	 */
+	@Transient
+	public Date getRevisionDate() {
+		return new Date(timestamp);
+	}
+
+	/**
+	 * Getter method
+	 * @return username
+	 */
+	public String getUsername() {
+		return username;
+	}
+
+	/**
+	 * Setter method
+	 * @param username
+	 */
+	public void setUsername(String username) {
+		this.username = username;
+	}
+
+	/**
+	 * Getter method
+	 * @return eventId
+	 */
+	public Long getEventId() {
+		return eventId;
+	}
+
+	/**
+	 * Setter method
+	 * @param eventId
+	 */
+	public void setEventId(Long eventId) {
+		this.eventId = eventId;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "UserRevision [id=" + id + ", timestamp=" + timestamp + ", username=" + username + ", eventId="
+				+ eventId + "]";
+	}
+}
@@ -0,0 +1,38 @@
+package com.interfac.usermanager.user.model;
+
+import org.hibernate.envers.RevisionListener;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * This class fills the username of every new {@link UserRevision} from the security context.
+ * 
+ * <p>It is created by Envers, not by Spring, so it reads the {@link SecurityContextHolder} directly
+ * instead of going through the auditor bean used by JPA auditing.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+public class UserRevisionListener implements RevisionListener {
+
+	/**
+	 * recorded for changes made without a logged in user, e.g. the data initializer.
+	 */
+	public static final String SYSTEM = "system";
+
+	/* (non-Javadoc)
+	 * @see org.hibernate.envers.RevisionListener#newRevision(java.lang.Object)
+	 */
+	@Override
+	public void newRevision(Object revisionEntity) {
+		((UserRevision) revisionEntity).setUsername(currentUsername());
+	}
+
+	/**
+	 * @return the username recorded for a change made now, on this thread.
+	 */
+	public static String currentUsername() {
+		Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+		return auth == null || !auth.isAuthenticated() ? SYSTEM : auth.getName();
+	}
+}
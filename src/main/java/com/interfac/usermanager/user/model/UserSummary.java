@@ -0,0 +1,129 @@
+package com.interfac.usermanager.user.model;
+
+import java.util.Date;
+
+/**
+ * This class is a read-only projection of a {@link User} with the columns of the users table view.
+ * 
+ * <p>It is created by a JPQL constructor expression (see 
+ * {@link com.interfac.usermanager.user.repositories.UserRepository}), so only these columns are read and 
+ * the rows are not managed by the persistence context. Its getters are named like the {@link User} ones, 
+ * so the views can show either.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+public class UserSummary {
+
+	private final long userId;
+	
+	private final String userName;
+	
+	private final String email;
+	
+	private final Date dateCreated;
+	
+	private final Date dateModified;
+	
+	private final String latestModifier;
+	
+	private final boolean isAdmin;
+	
+	private final long version;
+
+	/**
+	 * Constructor used by the repository queries, in column order.
+	 * @param userId
+	 * @param userName
+	 * @param email
+	 * @param dateCreated
+	 * @param dateModified
+	 * @param latestModifier
+	 * @param isAdmin
+	 * @param version
+	 */
+	public UserSummary(long userId, String userName, String email, Date dateCreated, Date dateModified,
+			String latestModifier, boolean isAdmin, long version) {
+		this.userId = userId;
+		this.userName = userName;
+		this.email = email;
+		this.dateCreated = dateCreated;
+		this.dateModified = dateModified;
+		this.latestModifier = latestModifier;
+		this.isAdmin = isAdmin;
+		this.version = version;
+	}
+
+	/**
+	 * getter method
+	 * @return userId
+	 */
+	public long getUserId() {
+		return userId;
+	}
+
+	/**
+	 * getter method
+	 * @return userName
+	 */
+	public String getUserName() {
+		return userName;
+	}
+
+	/**
+	 * getter method
+	 * @return email
+	 */
+	public String getEmail() {
+		return email;
+	}
+
+	/**
+	 * getter method
+	 * @return dateCreated
+	 */
+	public Date getDateCreated() {
+		return dateCreated;
+	}
+
+	/**
+	 * getter method
+	 * @return dateModified
+	 */
+	public Date getDateModified() {
+		return dateModified;
+	}
+
+	/**
+	 * getter method
+	 * @return latestModifier
+	 */
+	public String getLatestModifier() {
+		return latestModifier;
+	}
+
+	/**
+	 * getter method
+	 * @return isAdmin
+	 */
+	public boolean getIsAdmin() {
+		return isAdmin;
+	}
+
+	/**
+	 * getter method
+	 * @return version
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "UserSummary [userId=" + userId + ", userName=" + userName + ", email=" + email + ", isAdmin=" + isAdmin
+				+ ", version=" + version + "]";
+	}
+}
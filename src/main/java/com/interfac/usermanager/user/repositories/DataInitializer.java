@@ -1,5 +1,7 @@
 package com.interfac.usermanager.user.repositories;
 
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
 import java.sql.Time;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -9,15 +11,25 @@ import java.util.List;
 
 import javax.transaction.Transactional;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
+import com.interfac.usermanager.user.model.DataMigration;
 import com.interfac.usermanager.user.model.Privilege;
 import com.interfac.usermanager.user.model.Role;
 import com.interfac.usermanager.user.model.User;
+import com.interfac.usermanager.user.services.RoleRegistry;
+import com.interfac.usermanager.user.services.SyntheticUserGenerator;
+import com.interfac.usermanager.user.services.UserSearchIndex;
+import com.interfac.usermanager.user.services.UsernameFilter;
 import com.interfac.usermanager.user.services.UserService;
 import com.interfac.usermanager.user.validation.UsernameExistsException;
 
@@ -31,6 +43,12 @@ import com.interfac.usermanager.user.validation.UsernameExistsException;
  * 
  * 	<li> populate the {@link Role} table with values <i>ROLE_ADMIN</i> and <i>ROLE_USER</i></li>
  * 	<li> populate the {@link Privilege} table with values <i>READ_PRIVILEGE</i> and <i>WRITE_PRIVILEGE</i></li>
+ * 	<li> load the {@link RoleRegistry} with the roles and privileges</li>
+ * 	<li> build the {@link UserSearchIndex} and the {@link UsernameFilter} from the users in the database</li>
+ * 	<li> generate <code>usermanager.perf.generate-users</code> synthetic users with the {@link SyntheticUserGenerator}, 
+ * 		if set (see the <i>perf</i> profile)</li>
+ * 	<li> erase the plain text copies of passwords left in the former <i>matching_password</i> column</li>
+ * 	<li> enable the users registered while the login did not check the <i>enabled</i> flag, once</li>
  * </ol>
  * 
  * @author Ali
@@ -39,6 +57,13 @@ import com.interfac.usermanager.user.validation.UsernameExistsException;
 @Component
 public class DataInitializer implements ApplicationListener<ContextRefreshedEvent> {
 	
+	private static final Logger LOG = LoggerFactory.getLogger(DataInitializer.class);
+	
+	/**
+	 * the name of the migration enabling the users registered before the login checked the flag.
+	 */
+	static final String ENABLE_LEGACY_USERS = "enable-legacy-users";
+	
 
     /**
      * used to abort the <i>onApplicationEvent</i> listener if the data base is setup properly.
@@ -56,6 +81,60 @@ public class DataInitializer implements ApplicationListener<ContextRefreshedEven
     @Autowired
     private PrivilegeRepository privilegeRepository;
     
+    /**
+	 * the in-memory registry of roles and privileges, checked before creating them.
+	 */
+    @Autowired
+    private RoleRegistry roleRegistry;
+    
+    /**
+	 * the in-memory user search index, built once the root user exists.
+	 */
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+    
+    /**
+	 * the in-memory username filter, filled before the root user is checked.
+	 */
+    @Autowired
+    private UsernameFilter usernameFilter;
+    
+    /**
+	 * instance of the {@link UserRepository} interface, used by the data migrations.
+	 */
+    @Autowired
+    private UserRepository userRepository;
+    
+    /**
+	 * records the data migrations that were applied.
+	 */
+    @Autowired
+    private DataMigrationRepository dataMigrationRepository;
+    
+    /**
+	 * used to clean up columns that are no longer mapped.
+	 */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    /**
+	 * generates synthetic users for load tests.
+	 */
+    @Autowired
+    private SyntheticUserGenerator syntheticUserGenerator;
+    
+    /**
+     * the number of users to fill the database with, 0 to generate none. 
+     * Can be given on the command line as <code>--usermanager.perf.generate-users=N</code>.
+     */
+    @Value("${usermanager.perf.generate-users:0}")
+    private long generateUsers;
+    
+    /**
+     * set when a role or privilege was created, so the registry is reloaded once afterwards.
+     */
+    private boolean referenceDataChanged = false;
+    
     /**
 	 * instance of the {@link UserService} interface, calls service methods for the User class.
 	 */
@@ -78,12 +157,28 @@ public class DataInitializer implements ApplicationListener<ContextRefreshedEven
     public void onApplicationEvent(ContextRefreshedEvent event) {
         if (alreadySetup)
             return;
+        eraseMatchingPasswords();
+        enableLegacyUsers();
+        roleRegistry.refresh();
         Privilege readPrivilege = createPrivilegeIfNotFound("READ_PRIVILEGE");
         Privilege writePrivilege = createPrivilegeIfNotFound("WRITE_PRIVILEGE");
         List<Privilege> adminPrivileges = Arrays.asList(readPrivilege, writePrivilege);        
         createRoleIfNotFound("ROLE_ADMIN", adminPrivileges);
         createRoleIfNotFound("ROLE_USER", Arrays.asList(readPrivilege));
+        if (referenceDataChanged) {
+        	roleRegistry.refresh();
+        }
+        if (generateUsers > 0) {
+        	syntheticUserGenerator.generate(generateUsers);
+        }
  
+        usernameFilter.rebuild();
+        if (userService.userNameExists("root")) {
+        	userSearchIndex.rebuild();
+        	alreadySetup = true;
+        	return;
+        }
+        
         User user = new User();
         user.setUserName("root");
         user.setFirstName("root");
@@ -100,27 +195,69 @@ public class DataInitializer implements ApplicationListener<ContextRefreshedEven
 		} catch (UsernameExistsException e) {
 			System.err.println("user already exists in database");
 		}
+        userSearchIndex.rebuild();
         alreadySetup = true;
     }
  
     /**
-     * Creates the privilege with the given <code>name</code> if it does not exist in the database.
+     * matchingPassword used to be persisted in plain text. hibernate does not drop the column of an unmapped property,
+     * so the values are erased. The column does not exist in databases created after the change, a failure to erase
+     * them from an existing column fails the startup.
+     */
+    private void eraseMatchingPasswords() {
+    	Boolean hasColumn = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+    		DatabaseMetaData metaData = connection.getMetaData();
+    		boolean upperCase = metaData.storesUpperCaseIdentifiers();
+    		try (ResultSet columns = metaData.getColumns(connection.getCatalog(), null, upperCase ? "USER" : "user",
+    				upperCase ? "MATCHING_PASSWORD" : "matching_password")) {
+    			return columns.next();
+    		}
+    	});
+    	if (Boolean.TRUE.equals(hasColumn)) {
+    		jdbcTemplate.update("update user set matching_password = null where matching_password is not null");
+    	}
+    }
+    
+    /**
+     * the login used to ignore the <i>enabled</i> flag and registered users were stored disabled, so every user
+     * that registered then is disabled without anyone having disabled it. Users could not be disabled on purpose
+     * before the login checked the flag, so all the disabled users are enabled, once: the migration is recorded
+     * and the users disabled afterwards stay disabled.
+     */
+    private void enableLegacyUsers() {
+    	if (dataMigrationRepository.exists(ENABLE_LEGACY_USERS)) {
+    		return;
+    	}
+    	int enabled = userRepository.enableAll();
+    	dataMigrationRepository.save(new DataMigration(ENABLE_LEGACY_USERS, new Date()));
+    	if (enabled > 0) {
+    		LOG.info("enabled " + enabled + " users registered before the login checked the enabled flag");
+    	}
+    }
+    
+    /**
+     * Creates the privilege with the given <code>name</code> if it does not exist in the registry or the database.
+     * privileges not granted to any role are not in the registry, so the database is checked for those.
      * @param name not null
      * @return privilege object
      */
     @Transactional
     private Privilege createPrivilegeIfNotFound(String name) {
-        Privilege privilege = privilegeRepository.findByName(name);
+        Privilege privilege = roleRegistry.findPrivilege(name);
+        if (privilege == null) {
+            privilege = privilegeRepository.findByName(name);
+        }
         if (privilege == null) {
             privilege = new Privilege(name);
             privilegeRepository.save(privilege);
+            referenceDataChanged = true;
         }
         return privilege;
     }
     
     
     /**
-     * Creates the role with the given <code>name</code> if it does not exist in the database.
+     * Creates the role with the given <code>name</code> if it does not exist in the registry.
      * and sets the privileges of the role.
      * 
      * @param name not null
@@ -128,11 +265,12 @@ public class DataInitializer implements ApplicationListener<ContextRefreshedEven
      */
     @Transactional
     private Role createRoleIfNotFound(String name, Collection<Privilege> privileges) {
-        Role role = roleRepository.findByName(name);
+        Role role = roleRegistry.findRole(name);
         if (role == null) {
             role = new Role(name);
             role.setPrivileges(privileges);
             roleRepository.save(role);
+            referenceDataChanged = true;
         }
         return role;
     }
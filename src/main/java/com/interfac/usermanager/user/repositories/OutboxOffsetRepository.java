@@ -0,0 +1,18 @@
+package com.interfac.usermanager.user.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.interfac.usermanager.user.model.OutboxOffset;
+
+/**
+ * This interface extends the {@link JpaRepository} interface. 
+ * It handles the data access to the {@link OutboxOffset}s by its default methods.
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@Repository
+public interface OutboxOffsetRepository extends JpaRepository<OutboxOffset, String> {
+
+}
@@ -0,0 +1,92 @@
+package com.interfac.usermanager.user.repositories;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+/**
+ * This class remembers which users wrote to the primary database recently, so their reads can be kept off
+ * the read replicas until the replicas have caught up (read-your-own-writes).
+ *
+ * <p>Both the user who made a change and the user who was changed are marked, for
+ * <code>usermanager.datasource.stickiness-ms</code> milliseconds. That should be longer than the replication lag
+ * tolerated by the health checks.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+@Component
+public class ReplicaStickiness {
+
+	/**
+	 * how long the reads of a user stay on the primary after a write.
+	 */
+	@Value("${usermanager.datasource.stickiness-ms:5000}")
+	private long stickinessMillis;
+
+	/**
+	 * the time until which each lower case username is sticky.
+	 */
+	private final ConcurrentMap<String, Long> stickyUntil = new ConcurrentHashMap<String, Long>();
+
+	/**
+	 * marks the given user as having written just now.
+	 * @param username may be null
+	 */
+	public void markWritten(String username) {
+		if (username == null) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		stickyUntil.put(username.toLowerCase(), now + stickinessMillis);
+		if (stickyUntil.size() > 10000) {
+			stickyUntil.values().removeIf(until -> until < now);
+		}
+	}
+
+	/**
+	 * marks the authenticated user of the current thread as having written just now.
+	 */
+	public void markCurrentUserWritten() {
+		markWritten(currentUsername());
+	}
+
+	/**
+	 * @param username
+	 * @return true if the user wrote less than <code>usermanager.datasource.stickiness-ms</code> ago.
+	 */
+	public boolean isSticky(String username) {
+		if (username == null || stickyUntil.isEmpty()) {
+			return false;
+		}
+		String key = username.toLowerCase();
+		Long until = stickyUntil.get(key);
+		if (until == null) {
+			return false;
+		}
+		if (until < System.currentTimeMillis()) {
+			stickyUntil.remove(key, until);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if the authenticated user of the current thread wrote recently.
+	 */
+	public boolean isCurrentUserSticky() {
+		return !stickyUntil.isEmpty() && isSticky(currentUsername());
+	}
+
+	/**
+	 * @return the name of the authenticated user, or null.
+	 */
+	private static String currentUsername() {
+		Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+		return auth == null ? null : auth.getName();
+	}
+}
@@ -12,7 +12,7 @@ import com.interfac.usermanager.user.model.User;
 /**
  * This interface extends the {@link JpaRepository} interface. 
  * It handles the data access to the {@link Role} by its default methods.
- * has one extra custom methods: <code>findByName()</code>
+ * has two extra custom methods: <code>findByName()</code> and <code>findAllWithPrivileges()</code>
  * 
  * 
  * @author Ali
@@ -28,5 +28,12 @@ public interface RoleRepository extends JpaRepository<Role, Long> {
 	 * @return Single Role object
 	 */
 	public Role findByName(String name);
+	
+	/**
+	 * queries the database for all roles, with their privileges fetched in the same query.
+	 * @return List of Role objects with initialized privileges
+	 */
+	@Query("select distinct r from Role r left join fetch r.privileges")
+	public List<Role> findAllWithPrivileges();
 
 }
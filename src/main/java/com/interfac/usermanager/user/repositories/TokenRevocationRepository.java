@@ -0,0 +1,42 @@
+package com.interfac.usermanager.user.repositories;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.interfac.usermanager.user.model.TokenRevocation;
+
+/**
+ * This interface extends the {@link JpaRepository} interface. 
+ * It handles the data access to the {@link TokenRevocation}s.
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@Repository
+public interface TokenRevocationRepository extends JpaRepository<TokenRevocation, Long> {
+
+	/**
+	 * keyset query over the revocations, used by every node to follow the list.
+	 * @param id the exclusive lower bound
+	 * @param pageable page size, the page number should be 0.
+	 * @return List of revocations ordered by ID
+	 */
+	@Query("select r from TokenRevocation r where r.id > ?1 order by r.id")
+	public List<TokenRevocation> findAfter(long id, Pageable pageable);
+
+	/**
+	 * deletes the revocations of tokens that have expired anyway.
+	 * @param revokedAt the exclusive upper bound
+	 * @return the number of rows deleted
+	 */
+	@Modifying
+	@Transactional
+	@Query("delete from TokenRevocation r where r.revokedAt < ?1")
+	public int deleteRevokedBefore(long revokedAt);
+}
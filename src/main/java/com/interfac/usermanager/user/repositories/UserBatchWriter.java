@@ -0,0 +1,548 @@
+package com.interfac.usermanager.user.repositories;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.envers.RevisionType;
+import org.hibernate.persister.collection.AbstractCollectionPersister;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.type.Type;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
+
+import com.interfac.usermanager.user.model.Role;
+import com.interfac.usermanager.user.model.User;
+import com.interfac.usermanager.user.model.UserAuditState;
+import com.interfac.usermanager.user.model.UserEvent;
+import com.interfac.usermanager.user.model.UserRevision;
+import com.interfac.usermanager.user.model.UserRevisionListener;
+
+/**
+ * This class inserts many {@link User}s at once with JDBC batch statements, and updates or deletes many at once
+ * with set based statements, bypassing the persistence context.
+ *
+ * <p>The <i>userid</i> is generated by the database (IDENTITY) so hibernate can not batch user inserts.
+ * The INSERT statements here are built once from the hibernate mapping of {@link User} and its <i>users_roles</i>
+ * join table, so they always match the schema hibernate maintains.</p>
+ *
+ * <p>Callers are responsible for the transaction and for setting the audit columns, JPA entity listeners
+ * do not run for these inserts. For MySQL, <code>rewriteBatchedStatements=true</code> on the JDBC URL
+ * turns each batch into a single multi-row INSERT.</p>
+ *
+ * <p>Envers does not see these statements either. The bulk updates and deletes are audited by copying the
+ * affected rows into the audit tables with <code>INSERT ... SELECT</code> under a revision created by
+ * {@link #insertRevision(String, Date)}, the same rows Envers would have written. Their outbox events are
+ * written the same way by {@link #insertEvents(Collection, UserEvent.Type, String, Date)}.</p>
+ *
+ * <p>The changes made through the entity are not written to the audit tables by Envers either. Their revision is
+ * captured with their outbox event by {@link #captureRevision(UserEvent.Type, User, Collection)} and written later,
+ * off the request thread, by {@link #insertRevisions(List)}.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+@Repository
+public class UserBatchWriter {
+
+	/**
+	 * spring's jdbc template on the application's data source.
+	 */
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	/**
+	 * used to read the hibernate mapping of the User entity.
+	 */
+	@PersistenceUnit
+	private EntityManagerFactory entityManagerFactory;
+
+	/**
+	 * the hibernate persister of the User entity.
+	 */
+	private AbstractEntityPersister userPersister;
+
+	/**
+	 * indexes of the user properties written by the user INSERT, in column order.
+	 */
+	private int[] insertedProperties;
+
+	/**
+	 * INSERT into the user table, every mapped column but the generated ID.
+	 */
+	private String insertUserSql;
+
+	/**
+	 * INSERT into the users_roles join table.
+	 */
+	private String insertUserRoleSql;
+
+	/**
+	 * the suffix of the Envers audit tables.
+	 */
+	@Value("${spring.jpa.properties.org.hibernate.envers.audit_table_suffix:_AUD}")
+	private String auditTableSuffix;
+
+	/**
+	 * named parameters, for IN lists.
+	 */
+	private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+	/**
+	 * the user table and its columns used by the bulk statements.
+	 */
+	private String userTable, userIdColumn, enabledColumn, dateModifiedColumn, modifiedByColumn, versionColumn;
+
+	/**
+	 * the columns holding the admin flag, it is mapped by two properties (<code>isAdmin</code> and <code>admin</code>).
+	 */
+	private List<String> adminColumns;
+
+	/**
+	 * the users_roles join table and its columns.
+	 */
+	private String userRolesTable, userRolesUserColumn, userRolesRoleColumn;
+
+	/**
+	 * the columns of the user table copied to its audit table.
+	 */
+	private String auditedUserColumns;
+
+	/**
+	 * indexes of the user properties written to the audit table, in the order of {@link #auditedUserColumns}.
+	 */
+	private int[] auditedProperties;
+
+	/**
+	 * INSERT of the revision of an outbox event, SELECT of the revisions of a set of events.
+	 */
+	private String insertEventRevisionSql, selectEventRevisionsSql;
+
+	/**
+	 * INSERT of a row of the user audit table, and of the users_roles audit table.
+	 */
+	private String insertUserAuditSql, insertUserRoleAuditSql;
+
+	/**
+	 * INSERT of a new revision, and the columns it sets.
+	 */
+	private String insertRevisionSql;
+
+	/**
+	 * INSERT ... SELECT of the outbox events of a set of users.
+	 */
+	private String insertEventsSql;
+
+	/**
+	 * builds the INSERT statements from the hibernate mapping.
+	 */
+	@PostConstruct
+	public void init() {
+		SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+		userPersister = (AbstractEntityPersister) sessionFactory.getEntityPersister(User.class.getName());
+
+		Type[] types = userPersister.getPropertyTypes();
+		boolean[] insertable = userPersister.getPropertyInsertability();
+		List<String> columns = new ArrayList<String>();
+		List<Integer> properties = new ArrayList<Integer>();
+		for (int i = 0; i < types.length; i++) {
+			if (types[i].isCollectionType() || !insertable[i]) {
+				continue;
+			}
+			columns.add(userPersister.getPropertyColumnNames(i)[0]);
+			properties.add(i);
+		}
+		insertedProperties = new int[properties.size()];
+		for (int i = 0; i < insertedProperties.length; i++) {
+			insertedProperties[i] = properties.get(i);
+		}
+		insertUserSql = "insert into " + userPersister.getTableName() + " ("
+				+ StringUtils.collectionToCommaDelimitedString(columns) + ") values (" + placeholders(columns.size()) + ")";
+
+		AbstractCollectionPersister rolesPersister = (AbstractCollectionPersister) sessionFactory
+				.getCollectionPersister(User.class.getName() + ".roles");
+		insertUserRoleSql = "insert into " + rolesPersister.getTableName() + " ("
+				+ rolesPersister.getKeyColumnNames()[0] + ", " + rolesPersister.getElementColumnNames()[0]
+				+ ") values (?, ?)";
+
+		namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+		userTable = userPersister.getTableName();
+		userIdColumn = userPersister.getIdentifierColumnNames()[0];
+		enabledColumn = userPersister.getPropertyColumnNames("enabled")[0];
+		dateModifiedColumn = userPersister.getPropertyColumnNames("dateModified")[0];
+		modifiedByColumn = userPersister.getPropertyColumnNames("latestModifier")[0];
+		versionColumn = userPersister.getPropertyColumnNames(userPersister.getVersionProperty())[0];
+		adminColumns = new ArrayList<String>();
+		List<String> audited = new ArrayList<String>();
+		properties.clear();
+		String[] names = userPersister.getPropertyNames();
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].equals("isAdmin") || names[i].equals("admin")) {
+				adminColumns.add(userPersister.getPropertyColumnNames(i)[0]);
+			}
+			// as envers: the password is @NotAudited and the optimistic locking version is not audited
+			if (!types[i].isCollectionType() && insertable[i] && !names[i].equals("password")
+					&& i != userPersister.getVersionProperty()) {
+				audited.add(userPersister.getPropertyColumnNames(i)[0]);
+				properties.add(i);
+			}
+		}
+		auditedUserColumns = StringUtils.collectionToCommaDelimitedString(audited);
+		auditedProperties = new int[properties.size()];
+		for (int i = 0; i < auditedProperties.length; i++) {
+			auditedProperties[i] = properties.get(i);
+		}
+		userRolesTable = rolesPersister.getTableName();
+		userRolesUserColumn = rolesPersister.getKeyColumnNames()[0];
+		userRolesRoleColumn = rolesPersister.getElementColumnNames()[0];
+
+		AbstractEntityPersister revisionPersister = (AbstractEntityPersister) sessionFactory
+				.getEntityPersister(UserRevision.class.getName());
+		insertRevisionSql = "insert into " + revisionPersister.getTableName() + " ("
+				+ revisionPersister.getPropertyColumnNames("timestamp")[0] + ", "
+				+ revisionPersister.getPropertyColumnNames("username")[0] + ") values (?, ?)";
+		String eventIdColumn = revisionPersister.getPropertyColumnNames("eventId")[0];
+		insertEventRevisionSql = "insert into " + revisionPersister.getTableName() + " ("
+				+ revisionPersister.getPropertyColumnNames("timestamp")[0] + ", "
+				+ revisionPersister.getPropertyColumnNames("username")[0] + ", " + eventIdColumn + ") values (?, ?, ?)";
+		selectEventRevisionsSql = "select " + revisionPersister.getIdentifierColumnNames()[0] + ", " + eventIdColumn
+				+ " from " + revisionPersister.getTableName() + " where " + eventIdColumn + " in (:ids)";
+		insertUserAuditSql = "insert into " + userTable + auditTableSuffix + " (" + userIdColumn + ", rev, revtype, "
+				+ auditedUserColumns + ") values (?, ?, ?, " + placeholders(audited.size()) + ")";
+		insertUserRoleAuditSql = "insert into " + userRolesTable + auditTableSuffix + " (rev, revtype, "
+				+ userRolesUserColumn + ", " + userRolesRoleColumn + ") values (?, ?, ?, ?)";
+
+		AbstractEntityPersister eventPersister = (AbstractEntityPersister) sessionFactory
+				.getEntityPersister(UserEvent.class.getName());
+		insertEventsSql = "insert into " + eventPersister.getTableName() + " ("
+				+ eventPersister.getPropertyColumnNames("type")[0] + ", "
+				+ eventPersister.getPropertyColumnNames("userId")[0] + ", "
+				+ eventPersister.getPropertyColumnNames("userName")[0] + ", "
+				+ eventPersister.getPropertyColumnNames("version")[0] + ", "
+				+ eventPersister.getPropertyColumnNames("occurredAt")[0] + ", "
+				+ eventPersister.getPropertyColumnNames("changed")[0] + ") select :type, " + userIdColumn + ", "
+				+ userPersister.getPropertyColumnNames("userName")[0] + ", " + versionColumn + ", :now, :changed from "
+				+ userTable + " where " + userIdColumn + " in (:ids)";
+	}
+
+	/**
+	 * inserts the given users in a single JDBC batch. The generated IDs are not read back,
+	 * use {@link UserRepository#findIdsByUserNameIn(java.util.Collection)} for those.
+	 * @param users new users, their roles are ignored.
+	 */
+	public void insertUsers(List<User> users) {
+		List<Object[]> rows = new ArrayList<Object[]>(users.size());
+		for (User user : users) {
+			Object[] values = userPersister.getPropertyValues(user);
+			Object[] row = new Object[insertedProperties.length];
+			for (int i = 0; i < row.length; i++) {
+				row[i] = values[insertedProperties[i]];
+			}
+			rows.add(row);
+		}
+		jdbcTemplate.batchUpdate(insertUserSql, rows);
+	}
+
+	/**
+	 * inserts the given user to role assignments in a single JDBC batch.
+	 * @param roleIdsByUserId role ID of each user ID
+	 */
+	public void insertUserRoles(Map<Long, Long> roleIdsByUserId) {
+		List<Object[]> rows = new ArrayList<Object[]>(roleIdsByUserId.size());
+		for (Map.Entry<Long, Long> entry : roleIdsByUserId.entrySet()) {
+			rows.add(new Object[] { entry.getKey(), entry.getValue() });
+		}
+		jdbcTemplate.batchUpdate(insertUserRoleSql, rows);
+	}
+
+	/**
+	 * deletes the given users and their role assignments.
+	 * @param userIds
+	 * @return the number of users deleted
+	 */
+	public int deleteUsers(Collection<Long> userIds) {
+		Map<String, Object> params = Collections.<String, Object>singletonMap("ids", userIds);
+		namedJdbcTemplate.update("delete from " + userRolesTable + " where " + userRolesUserColumn + " in (:ids)", params);
+		return namedJdbcTemplate.update("delete from " + userTable + " where " + userIdColumn + " in (:ids)", params);
+	}
+
+	/**
+	 * enables or disables the given users, and sets their audit columns and version like an edit would.
+	 * @param userIds
+	 * @param enabled
+	 * @param modifier
+	 * @param now
+	 * @return the number of users updated
+	 */
+	public int updateEnabled(Collection<Long> userIds, boolean enabled, String modifier, Date now) {
+		Map<String, Object> params = modification(userIds, modifier, now);
+		params.put("enabled", enabled);
+		return namedJdbcTemplate.update("update " + userTable + " set " + enabledColumn + " = :enabled, "
+				+ modificationColumns() + " where " + userIdColumn + " in (:ids)", params);
+	}
+
+	/**
+	 * changes the admin flag of the given users and replaces their role assignments with the given role.
+	 * @param userIds
+	 * @param admin
+	 * @param roleId the role matching the flag
+	 * @param modifier
+	 * @param now
+	 * @return the number of users updated
+	 */
+	public int updateAdmin(Collection<Long> userIds, boolean admin, long roleId, String modifier, Date now) {
+		Map<String, Object> params = modification(userIds, modifier, now);
+		params.put("admin", admin);
+		params.put("roleId", roleId);
+		StringBuilder set = new StringBuilder();
+		for (String column : adminColumns) {
+			set.append(column).append(" = :admin, ");
+		}
+		int updated = namedJdbcTemplate.update("update " + userTable + " set " + set + modificationColumns()
+				+ " where " + userIdColumn + " in (:ids)", params);
+		namedJdbcTemplate.update("delete from " + userRolesTable + " where " + userRolesUserColumn + " in (:ids)", params);
+		namedJdbcTemplate.update("insert into " + userRolesTable + " (" + userRolesUserColumn + ", " + userRolesRoleColumn
+				+ ") select " + userIdColumn + ", :roleId from " + userTable + " where " + userIdColumn + " in (:ids)", params);
+		return updated;
+	}
+
+	/**
+	 * inserts a new audit revision.
+	 * @param username the user making the change
+	 * @param now
+	 * @return the revision number
+	 */
+	public long insertRevision(String username, Date now) {
+		KeyHolder key = new GeneratedKeyHolder();
+		jdbcTemplate.update(connection -> {
+			PreparedStatement statement = connection.prepareStatement(insertRevisionSql, Statement.RETURN_GENERATED_KEYS);
+			statement.setLong(1, now.getTime());
+			statement.setString(2, username);
+			return statement;
+		}, key);
+		return key.getKey().longValue();
+	}
+
+	/**
+	 * copies the current rows of the given users to the user audit table.
+	 * For a deletion, call it before {@link #deleteUsers(Collection)}, the deleted state is kept like envers does.
+	 * @param userIds
+	 * @param revision
+	 * @param type
+	 */
+	public void auditUsers(Collection<Long> userIds, long revision, RevisionType type) {
+		namedJdbcTemplate.update("insert into " + userTable + auditTableSuffix + " (" + userIdColumn + ", rev, revtype, "
+				+ auditedUserColumns + ") select " + userIdColumn + ", :rev, :revtype, " + auditedUserColumns
+				+ " from " + userTable + " where " + userIdColumn + " in (:ids)", audit(userIds, revision, type));
+	}
+
+	/**
+	 * copies the current role assignments of the given users to the users_roles audit table.
+	 * A role change is audited as the removal of the old assignments and the addition of the new ones.
+	 * @param userIds
+	 * @param revision
+	 * @param type {@link RevisionType#DEL} before the assignments are removed, {@link RevisionType#ADD} after
+	 * 		  they are inserted.
+	 */
+	public void auditUserRoles(Collection<Long> userIds, long revision, RevisionType type) {
+		namedJdbcTemplate.update("insert into " + userRolesTable + auditTableSuffix + " (rev, revtype, "
+				+ userRolesUserColumn + ", " + userRolesRoleColumn + ") select :rev, :revtype, " + userRolesUserColumn
+				+ ", " + userRolesRoleColumn + " from " + userRolesTable + " where " + userRolesUserColumn + " in (:ids)",
+				audit(userIds, revision, type));
+	}
+
+	/**
+	 * captures the revision of a change made through the entity, to be written later by
+	 * {@link #insertRevisions(List)}. Call it in the transaction of the change, once the change is flushed.
+	 * @param type the kind of change
+	 * @param user the user after the change, before it for a deletion
+	 * @param previousRoles the roles before an update that changed them, null if the roles did not change.
+	 * @return the revision of the change
+	 */
+	public UserAuditState captureRevision(UserEvent.Type type, User user, Collection<Role> previousRoles) {
+		Object[] values = userPersister.getPropertyValues(user);
+		Object[] audited = new Object[auditedProperties.length];
+		for (int i = 0; i < audited.length; i++) {
+			audited[i] = values[auditedProperties[i]];
+		}
+		long[] added = null;
+		long[] removed = null;
+		if (type == UserEvent.Type.CREATED) {
+			added = roleIds(user.getRoles(), Collections.<Role>emptyList());
+			removed = new long[0];
+		} else if (type == UserEvent.Type.DELETED) {
+			added = new long[0];
+			removed = roleIds(user.getRoles(), Collections.<Role>emptyList());
+		} else if (previousRoles != null) {
+			added = roleIds(user.getRoles(), previousRoles);
+			removed = roleIds(previousRoles, user.getRoles());
+		}
+		return new UserAuditState(UserRevisionListener.currentUsername(), audited, added, removed);
+	}
+
+	/**
+	 * writes the revisions carried by the given outbox events to the audit tables, one revision per event, in JDBC
+	 * batches. Events without a revision, and events whose revision was already written, are skipped.
+	 * @param events
+	 * @return the number of revisions written
+	 */
+	public int insertRevisions(List<UserEvent> events) {
+		Map<Long, UserEvent> pending = new LinkedHashMap<Long, UserEvent>();
+		Map<Long, UserAuditState> states = new HashMap<Long, UserAuditState>();
+		for (UserEvent event : events) {
+			UserAuditState state = event.getAuditState();
+			if (state != null) {
+				pending.put(event.getId(), event);
+				states.put(event.getId(), state);
+			}
+		}
+		if (pending.isEmpty()) {
+			return 0;
+		}
+		// an event delivered again after a failure keeps the revision it got the first time
+		Map<String, Object> params = Collections.<String, Object>singletonMap("ids",
+				new ArrayList<Long>(pending.keySet()));
+		namedJdbcTemplate.query(selectEventRevisionsSql, params, row -> {
+			pending.remove(row.getLong(2));
+		});
+		if (pending.isEmpty()) {
+			return 0;
+		}
+
+		List<Object[]> revisions = new ArrayList<Object[]>(pending.size());
+		for (UserEvent event : pending.values()) {
+			revisions.add(new Object[] { event.getOccurredAt(), states.get(event.getId()).getModifier(), event.getId() });
+		}
+		jdbcTemplate.batchUpdate(insertEventRevisionSql, revisions);
+		Map<Long, Long> revisionByEvent = new HashMap<Long, Long>();
+		params = Collections.<String, Object>singletonMap("ids", new ArrayList<Long>(pending.keySet()));
+		namedJdbcTemplate.query(selectEventRevisionsSql, params, row -> {
+			revisionByEvent.put(row.getLong(2), row.getLong(1));
+		});
+
+		List<Object[]> userRows = new ArrayList<Object[]>(pending.size());
+		List<Object[]> roleRows = new ArrayList<Object[]>();
+		for (UserEvent event : pending.values()) {
+			UserAuditState state = states.get(event.getId());
+			long revision = revisionByEvent.get(event.getId());
+			RevisionType type = event.getType() == UserEvent.Type.CREATED ? RevisionType.ADD
+					: event.getType() == UserEvent.Type.DELETED ? RevisionType.DEL : RevisionType.MOD;
+			Object[] row = new Object[3 + state.getValues().length];
+			row[0] = event.getUserId();
+			row[1] = revision;
+			row[2] = type.getRepresentation();
+			System.arraycopy(state.getValues(), 0, row, 3, state.getValues().length);
+			userRows.add(row);
+			// as envers: a role change is the removal of the old assignments and the addition of the new ones
+			if (state.getRemovedRoleIds() != null) {
+				for (long roleId : state.getRemovedRoleIds()) {
+					roleRows.add(new Object[] { revision, RevisionType.DEL.getRepresentation(), event.getUserId(),
+							roleId });
+				}
+			}
+			if (state.getAddedRoleIds() != null) {
+				for (long roleId : state.getAddedRoleIds()) {
+					roleRows.add(new Object[] { revision, RevisionType.ADD.getRepresentation(), event.getUserId(),
+							roleId });
+				}
+			}
+		}
+		jdbcTemplate.batchUpdate(insertUserAuditSql, userRows);
+		if (!roleRows.isEmpty()) {
+			jdbcTemplate.batchUpdate(insertUserRoleAuditSql, roleRows);
+		}
+		return userRows.size();
+	}
+
+	/**
+	 * @return the IDs of the roles that are not in <code>except</code>.
+	 */
+	private static long[] roleIds(Collection<Role> roles, Collection<Role> except) {
+		List<Long> exceptIds = new ArrayList<Long>(except.size());
+		for (Role role : except) {
+			exceptIds.add(role.getId());
+		}
+		List<Long> ids = new ArrayList<Long>(roles.size());
+		for (Role role : roles) {
+			if (!exceptIds.contains(role.getId())) {
+				ids.add(role.getId());
+			}
+		}
+		long[] result = new long[ids.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = ids.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * writes an outbox event for each of the given users, from their current rows.
+	 * For a deletion, call it before {@link #deleteUsers(Collection)}.
+	 * @param userIds
+	 * @param type
+	 * @param changed the names of the changed properties, comma separated, or null
+	 * @param now
+	 */
+	public void insertEvents(Collection<Long> userIds, UserEvent.Type type, String changed, Date now) {
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put("ids", userIds);
+		params.put("type", type.name());
+		params.put("changed", changed);
+		params.put("now", now.getTime());
+		namedJdbcTemplate.update(insertEventsSql, params);
+	}
+
+	/**
+	 * @return the SET clause of the columns every modification updates
+	 */
+	private String modificationColumns() {
+		return dateModifiedColumn + " = :now, " + modifiedByColumn + " = :modifier, "
+				+ versionColumn + " = " + versionColumn + " + 1";
+	}
+
+	private static Map<String, Object> modification(Collection<Long> userIds, String modifier, Date now) {
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put("ids", userIds);
+		params.put("modifier", modifier);
+		params.put("now", now);
+		return params;
+	}
+
+	private static Map<String, Object> audit(Collection<Long> userIds, long revision, RevisionType type) {
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put("ids", userIds);
+		params.put("rev", revision);
+		params.put("revtype", type.getRepresentation());
+		return params;
+	}
+
+	/**
+	 * @param count
+	 * @return <code>count</code> comma separated question marks
+	 */
+	private static String placeholders(int count) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			builder.append(i == 0 ? "?" : ", ?");
+		}
+		return builder.toString();
+	}
+}
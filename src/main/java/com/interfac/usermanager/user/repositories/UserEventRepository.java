@@ -0,0 +1,63 @@
+package com.interfac.usermanager.user.repositories;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.interfac.usermanager.user.model.UserEvent;
+
+/**
+ * This interface extends the {@link JpaRepository} interface. 
+ * It handles the data access to the {@link UserEvent} outbox.
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@Repository
+public interface UserEventRepository extends JpaRepository<UserEvent, Long> {
+
+	/**
+	 * keyset query over the events, used by the poller to stream them. Not read-only, so it runs on the primary.
+	 * @param id the exclusive lower bound
+	 * @param pageable batch size, the page number should be 0.
+	 * @return List of events ordered by ID
+	 */
+	@Transactional
+	@Query("select e from UserEvent e where e.id > ?1 order by e.id")
+	public List<UserEvent> findAfter(long id, Pageable pageable);
+
+	/**
+	 * looks up the events of IDs that were missing, on the primary.
+	 * @param ids
+	 * @return the events committed since, ordered by ID
+	 */
+	@Transactional
+	@Query("select e from UserEvent e where e.id in ?1 order by e.id")
+	public List<UserEvent> findByIdIn(Collection<Long> ids);
+
+	/**
+	 * the latest event, it versions the whole user table since every write adds one.
+	 * The maximum is read from the primary key index.
+	 * @return a single <code>{id, occurredAt}</code> row, or none if the outbox is empty.
+	 */
+	@Query("select e.id, e.occurredAt from UserEvent e where e.id = (select max(l.id) from UserEvent l)")
+	public List<Object[]> findLatest();
+
+	/**
+	 * deletes the events every sink has read, once they are old enough. The event with the given ID is kept,
+	 * so the latest event is never deleted and {@link #findLatest()} keeps growing.
+	 * @param id the exclusive upper bound of the IDs
+	 * @param occurredAt the exclusive upper bound of the times
+	 * @return the number of events deleted
+	 */
+	@Modifying
+	@Transactional
+	@Query("delete from UserEvent e where e.id < ?1 and e.occurredAt < ?2")
+	public int deleteDelivered(long id, long occurredAt);
+}
@@ -1,23 +1,46 @@
 package com.interfac.usermanager.user.repositories;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.interfac.usermanager.user.model.User;
+import com.interfac.usermanager.user.model.UserProfile;
+import com.interfac.usermanager.user.model.UserSummary;
 
 /**
  * This interface extends the {@link JpaRepository} interface. 
  * It handles the data access to the {@link User} by its default methods.
- * has two extra custom methods: <i><code>findByUserName</code></i> and <i><code>findUserByUserName</code></i>
+ * has two extra custom methods: <i><code>findByUserName</code></i> and <i><code>findUserByUserName</code></i>,
+ * and two keyset pagination methods that seek on the <i>userid</i> primary key.
+ * The list, search and profile views read {@link UserSummary} and {@link UserProfile} projections,
+ * which select only the columns they show.
  * 
  * @author Ali
  *
  */
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
+
+	/**
+	 * the constructor expression of {@link UserSummary}.
+	 */
+	String SUMMARY = "com.interfac.usermanager.user.model.UserSummary(u.userId, u.userName, u.email, "
+			+ "u.dateCreated, u.dateModified, u.latestModifier, u.isAdmin, u.version)";
+
+	/**
+	 * the constructor expression of {@link UserProfile}.
+	 */
+	String PROFILE = "com.interfac.usermanager.user.model.UserProfile(u.userId, u.userName, u.firstName, "
+			+ "u.lastName, u.email, u.dateCreated, u.dateModified, u.latestModifier)";
 	
 	/**
 	 * queries the database to find a single user object by userName
@@ -31,4 +54,199 @@ public interface UserRepository extends JpaRepository<User, Long> {
 	 * @return List of User objects
 	 */
 	public List<User> findUserByUserName(String username);
+
+	/**
+	 * queries the database to find a single user object by userName, 
+	 * with its roles fetched in the same query.
+	 * @param username must not be null
+	 * @return Single User object with initialized roles
+	 */
+	@EntityGraph(User.WITH_ROLES)
+	@Query("select distinct u from User u where u.userName = ?1")
+	public User findWithRolesByUserName(String username);
+
+	/**
+	 * queries the database to find a single user object by userName, 
+	 * with its roles and their privileges fetched in the same query.
+	 * @param username must not be null
+	 * @return Single User object with initialized roles and privileges
+	 */
+	@EntityGraph(User.WITH_ROLES_AND_PRIVILEGES)
+	@Query("select distinct u from User u where u.userName = ?1")
+	public User findWithRolesAndPrivilegesByUserName(String username);
+
+	/**
+	 * like <code>findOne</code>, with the roles fetched in the same query.
+	 * @param userId
+	 * @return Single User object with initialized roles, or null
+	 */
+	@EntityGraph(User.WITH_ROLES)
+	@Query("select distinct u from User u where u.userId = ?1")
+	public User findWithRolesByUserId(long userId);
+
+	/**
+	 * like <code>findOne</code>, with the roles and their privileges fetched in the same query.
+	 * @param userId
+	 * @return Single User object with initialized roles and privileges, or null
+	 */
+	@EntityGraph(User.WITH_ROLES_AND_PRIVILEGES)
+	@Query("select distinct u from User u where u.userId = ?1")
+	public User findWithRolesAndPrivilegesByUserId(long userId);
+
+	/**
+	 * loads the users with the given IDs and their roles in a single query, whatever the number of users.
+	 * Pages of users with roles are read in two steps: a keyset page of IDs (or summaries), then this query. 
+	 * Fetching the roles in the paged query itself would make hibernate page in memory.
+	 * @param userIds
+	 * @return List of User objects with initialized roles, ordered by ID.
+	 */
+	@EntityGraph(User.WITH_ROLES)
+	@Query("select distinct u from User u where u.userId in ?1 order by u.userId")
+	public List<User> findWithRolesByUserIdIn(Collection<Long> userIds);
+
+	/**
+	 * queries the database for the username of a user, without loading the user.
+	 * @param userId
+	 * @return the username, or null if there is no user with that ID.
+	 */
+	@Query("select u.userName from User u where u.userId = ?1")
+	public String findUserNameByUserId(long userId);
+
+	/**
+	 * queries the database for the stored (encoded) password of a user, without loading the user.
+	 * @param userId
+	 * @return the password, or null if there is no user with that ID.
+	 */
+	@Query("select u.password from User u where u.userId = ?1")
+	public String findPasswordByUserId(long userId);
+
+	/**
+	 * @return the highest user ID, 0 if there are no users.
+	 */
+	@Query("select coalesce(max(u.userId), 0) from User u")
+	public long findMaxUserId();
+
+	/**
+	 * enables every disabled user, bypassing the version and the caches. Only meant for a migration at startup.
+	 * @return the number of users enabled
+	 */
+	@Modifying
+	@Transactional
+	@Query("update User u set u.enabled = true where u.enabled = false")
+	public int enableAll();
+
+	/**
+	 * counts the users with the given userName, 0 or 1.
+	 * @param username must not be null
+	 * @return the number of users found
+	 */
+	public long countByUserName(String username);
+
+	/**
+	 * keyset query over the usernames only, used to fill the username filter.
+	 * @param userId the exclusive lower bound
+	 * @param pageable page size, the page number should be 0.
+	 * @return List of <code>{userId, userName}</code> rows ordered by userId
+	 */
+	@Query("select u.userId, u.userName from User u where u.userId > ?1 order by u.userId")
+	public List<Object[]> findUserNamesAfter(long userId, Pageable pageable);
+
+	/**
+	 * set based existence check. queries the database for which of the given usernames are taken.
+	 * @param usernames must not be empty
+	 * @return the usernames found, in the case they are stored with.
+	 */
+	@Query("select u.userName from User u where u.userName in ?1")
+	public List<String> findUserNamesIn(Collection<String> usernames);
+
+	/**
+	 * queries the database for the IDs of the given usernames, without loading the users.
+	 * @param usernames must not be empty
+	 * @return List of <code>{userId, userName}</code> pairs
+	 */
+	@Query("select u.userId, u.userName from User u where u.userName in ?1")
+	public List<Object[]> findIdsByUserNameIn(Collection<String> usernames);
+
+	/**
+	 * reads the columns a bulk operation checks, without loading the users.
+	 * @param userIds must not be empty
+	 * @return List of <code>{userId, userName, isAdmin, enabled}</code> rows, one per existing user
+	 */
+	@Query("select u.userId, u.userName, u.isAdmin, u.enabled from User u where u.userId in ?1")
+	public List<Object[]> findBulkStateByUserIdIn(Collection<Long> userIds);
+
+	/**
+	 * keyset query over the IDs of the users not modified since a date, used to select the users of a bulk operation.
+	 * @param modifiedBefore the exclusive upper bound of the modification date
+	 * @param userId the exclusive lower bound of the ID
+	 * @param pageable page size, the page number should be 0.
+	 * @return List of user IDs in ascending order
+	 */
+	@Query("select u.userId from User u where u.dateModified < ?1 and u.userId > ?2 order by u.userId")
+	public List<Long> findIdsModifiedBefore(Date modifiedBefore, long userId, Pageable pageable);
+
+	/**
+	 * keyset query over the searchable columns only, used to build the search index.
+	 * @param userId the exclusive lower bound
+	 * @param pageable page size, the page number should be 0.
+	 * @return List of <code>{userId, userName, email, lastName, firstName}</code> rows ordered by userId
+	 */
+	@Query("select u.userId, u.userName, u.email, u.lastName, u.firstName from User u where u.userId > ?1 order by u.userId")
+	public List<Object[]> findSearchFieldsAfter(long userId, Pageable pageable);
+
+	/**
+	 * keyset pagination query. Returns the summaries of the users with an ID greater than <code>userId</code>,
+	 * limited and ordered by the given <code>pageable</code>. The page number of the <code>pageable</code>
+	 * should always be 0, the cursor replaces the offset.
+	 * @param userId the exclusive lower bound
+	 * @param pageable page size and sort, no count query is issued.
+	 * @return List of UserSummary objects, not managed.
+	 */
+	@Query("select new " + SUMMARY + " from User u where u.userId > ?1")
+	public List<UserSummary> findSummariesAfter(long userId, Pageable pageable);
+
+	/**
+	 * keyset pagination query. Returns the summaries of the users with an ID less than <code>userId</code>,
+	 * limited and ordered by the given <code>pageable</code>.
+	 * @param userId the exclusive upper bound
+	 * @param pageable page size and sort, no count query is issued.
+	 * @return List of UserSummary objects, not managed.
+	 */
+	@Query("select new " + SUMMARY + " from User u where u.userId < ?1")
+	public List<UserSummary> findSummariesBefore(long userId, Pageable pageable);
+
+	/**
+	 * @param userIds
+	 * @return the summaries of the users with the given IDs, in no particular order.
+	 */
+	@Query("select new " + SUMMARY + " from User u where u.userId in ?1")
+	public List<UserSummary> findSummariesByUserIdIn(Collection<Long> userIds);
+
+	/**
+	 * @param userId
+	 * @return the profile of the user, or null if there is no user with that ID.
+	 */
+	@Query("select new " + PROFILE + " from User u where u.userId = ?1")
+	public UserProfile findProfileByUserId(long userId);
+
+	/**
+	 * @param userName
+	 * @return the profile of the user, or null if there is no user with that username.
+	 */
+	@Query("select new " + PROFILE + " from User u where u.userName = ?1")
+	public UserProfile findProfileByUserName(String userName);
+
+	/**
+	 * @param userId
+	 * @return a single <code>{version, dateModified}</code> row, or none if there is no user with that ID.
+	 */
+	@Query("select u.version, u.dateModified from User u where u.userId = ?1")
+	public List<Object[]> findVersionByUserId(long userId);
+
+	/**
+	 * @param userName
+	 * @return a single <code>{userId, version, dateModified}</code> row, or none if there is no user with that username.
+	 */
+	@Query("select u.userId, u.version, u.dateModified from User u where u.userName = ?1")
+	public List<Object[]> findVersionByUserName(String userName);
 }
@@ -0,0 +1,75 @@
+package com.interfac.usermanager.user.services;
+
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.interfac.usermanager.user.model.UserAuditState;
+import com.interfac.usermanager.user.model.UserEvent;
+import com.interfac.usermanager.user.repositories.UserBatchWriter;
+
+/**
+ * This class writes the audit trail of the changes made to single users, from the {@link UserAuditState} their
+ * {@link UserEvent}s carry.
+ *
+ * <p>The revision of a change is captured in its transaction, as part of the outbox event that is written anyway,
+ * so the request only pays for a few more bytes in that insert. This sink writes the revisions off the request
+ * thread, in JDBC batches of a whole delivered batch, in one transaction. The outbox delivers every committed event
+ * at least once and keeps it until every sink read it, and the revision records its event ID, so every committed
+ * change gets exactly one revision, a little after the change. A transaction that commits more than
+ * <code>usermanager.outbox.gap-timeout-ms</code> after a later one gets its revision after the later one.</p>
+ *
+ * <p>The sink has to stay in <code>usermanager.outbox.sinks</code>, the changes are not audited otherwise.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+@Component
+public class AuditUserEventSink implements UserEventSink {
+
+	/**
+	 * writes the revisions.
+	 */
+	@Autowired
+	private UserBatchWriter userBatchWriter;
+
+	/**
+	 * the application's transaction manager.
+	 */
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	/**
+	 * writes a batch in one transaction.
+	 */
+	private TransactionTemplate transactionTemplate;
+
+	/**
+	 * creates the transaction template.
+	 */
+	@PostConstruct
+	public void init() {
+		transactionTemplate = new TransactionTemplate(transactionManager);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.interfac.usermanager.user.services.UserEventSink#getName()
+	 */
+	@Override
+	public String getName() {
+		return "audit";
+	}
+
+	/* (non-Javadoc)
+	 * @see com.interfac.usermanager.user.services.UserEventSink#deliver(java.util.List)
+	 */
+	@Override
+	public void deliver(List<UserEvent> events) {
+		transactionTemplate.execute(status -> userBatchWriter.insertRevisions(events));
+	}
+}
@@ -0,0 +1,42 @@
+package com.interfac.usermanager.user.services;
+
+/**
+ * The operations that can be applied to many users at once, see {@link UserService#bulkUpdate(BulkOperation, java.util.Collection)}.
+ * 
+ * @author Ali Abdalla
+ *
+ */
+public enum BulkOperation {
+
+	/**
+	 * deletes the users and their role assignments.
+	 */
+	DELETE,
+
+	/**
+	 * enables the accounts.
+	 */
+	ENABLE,
+
+	/**
+	 * disables the accounts, their owners can not log in any more.
+	 */
+	DISABLE,
+
+	/**
+	 * gives the users the ADMIN role instead of the USER role.
+	 */
+	GRANT_ADMIN,
+
+	/**
+	 * gives the users the USER role instead of the ADMIN role.
+	 */
+	REVOKE_ADMIN;
+
+	/**
+	 * @return true if the operation could lock the current user out, it is never applied to them.
+	 */
+	public boolean isSelfDenying() {
+		return this == DELETE || this == DISABLE || this == REVOKE_ADMIN;
+	}
+}
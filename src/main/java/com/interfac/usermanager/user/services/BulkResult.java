@@ -0,0 +1,133 @@
+package com.interfac.usermanager.user.services;
+
+/**
+ * This class represents the summary of a bulk operation on users.
+ * 
+ * <p>Every requested user is counted once: either <i>changed</i>, <i>unchanged</i> (it was already in the
+ * requested state), <i>skipped</i> (the operation would lock out the current user) or <i>missing</i>.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+public class BulkResult {
+
+	private final BulkOperation operation;
+
+	private int requested;
+
+	private int changed;
+
+	private int unchanged;
+
+	private int skipped;
+
+	private long elapsedMillis;
+
+	/**
+	 * Parameterized constructor
+	 * @param operation
+	 */
+	public BulkResult(BulkOperation operation) {
+		this.operation = operation;
+	}
+
+	/**
+	 * @param users number of user IDs of a chunk
+	 */
+	void addRequested(int users) {
+		requested += users;
+	}
+
+	/**
+	 * @param users number of users changed in a chunk
+	 */
+	void addChanged(int users) {
+		changed += users;
+	}
+
+	/**
+	 * @param users number of users of a chunk already in the requested state
+	 */
+	void addUnchanged(int users) {
+		unchanged += users;
+	}
+
+	/**
+	 * @param users number of users of a chunk left out
+	 */
+	void addSkipped(int users) {
+		skipped += users;
+	}
+
+	/**
+	 * @param elapsedMillis
+	 */
+	void setElapsedMillis(long elapsedMillis) {
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	/**
+	 * Getter method
+	 * @return operation
+	 */
+	public BulkOperation getOperation() {
+		return operation;
+	}
+
+	/**
+	 * Getter method
+	 * @return requested users
+	 */
+	public int getRequested() {
+		return requested;
+	}
+
+	/**
+	 * Getter method
+	 * @return changed users
+	 */
+	public int getChanged() {
+		return changed;
+	}
+
+	/**
+	 * Getter method
+	 * @return users already in the requested state
+	 */
+	public int getUnchanged() {
+		return unchanged;
+	}
+
+	/**
+	 * Getter method
+	 * @return users left out, the current user
+	 */
+	public int getSkipped() {
+		return skipped;
+	}
+
+	/**
+	 * @return requested users that do not exist
+	 */
+	public int getMissing() {
+		return requested - changed - unchanged - skipped;
+	}
+
+	/**
+	 * Getter method
+	 * @return elapsedMillis
+	 */
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "BulkResult [operation=" + operation + ", requested=" + requested + ", changed=" + changed
+				+ ", unchanged=" + unchanged + ", skipped=" + skipped + ", missing=" + getMissing() 
+				+ ", elapsedMillis=" + elapsedMillis + "]";
+	}
+}
@@ -0,0 +1,57 @@
+package com.interfac.usermanager.user.services;
+
+import java.util.Date;
+
+/**
+ * This class represents the version of the data behind a page, used to answer conditional GET requests
+ * without loading the data itself.
+ *
+ * @author Ali Abdalla
+ *
+ */
+public class ContentVersion {
+
+	/**
+	 * changes whenever the data changes, sent as (part of) the <i>ETag</i>.
+	 */
+	private final String tag;
+
+	/**
+	 * the time of the latest change, sent as <i>Last-Modified</i>. -1 if unknown.
+	 */
+	private final long lastModified;
+
+	/**
+	 * Parameterized constructor
+	 * @param tag
+	 * @param lastModified the time of the latest change, may be null.
+	 */
+	public ContentVersion(String tag, Date lastModified) {
+		this.tag = tag;
+		this.lastModified = lastModified == null ? -1 : lastModified.getTime();
+	}
+
+	/**
+	 * Getter method
+	 * @return tag
+	 */
+	public String getTag() {
+		return tag;
+	}
+
+	/**
+	 * Getter method
+	 * @return lastModified
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ContentVersion [tag=" + tag + ", lastModified=" + lastModified + "]";
+	}
+}
@@ -0,0 +1,104 @@
+package com.interfac.usermanager.user.services;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.interfac.usermanager.user.model.UserEvent;
+
+/**
+ * This class appends the {@link UserEvent}s to a local file, one JSON object per line.
+ * 
+ * <p>The file is <code>user-events.jsonl</code> in <code>usermanager.outbox.file.directory</code>. Once it is
+ * larger than <code>usermanager.outbox.file.max-bytes</code> it is renamed with a timestamp and a new one is
+ * started, the rotated files are left to the consumers. A batch is forced to disk before it is accepted, a crash
+ * in between can only repeat events at the end of the file.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@Component
+public class FileUserEventSink implements UserEventSink {
+
+	/**
+	 * writes the events, thread safe.
+	 */
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	/**
+	 * the directory of the event files.
+	 */
+	@Value("${usermanager.outbox.file.directory:events}")
+	private String directory;
+
+	/**
+	 * the size after which the file is rotated.
+	 */
+	@Value("${usermanager.outbox.file.max-bytes:104857600}")
+	private long maxBytes;
+
+	/**
+	 * the current file, opened on the first delivery.
+	 */
+	private FileOutputStream out;
+
+	/* (non-Javadoc)
+	 * @see com.interfac.usermanager.user.services.UserEventSink#getName()
+	 */
+	@Override
+	public String getName() {
+		return "file";
+	}
+
+	/* (non-Javadoc)
+	 * @see com.interfac.usermanager.user.services.UserEventSink#deliver(java.util.List)
+	 */
+	@Override
+	public synchronized void deliver(List<UserEvent> events) throws IOException {
+		File file = new File(directory, "user-events.jsonl");
+		if (out == null) {
+			file.getParentFile().mkdirs();
+			out = new FileOutputStream(file, true);
+		}
+		// the generator is not closed, that would close the file too. one object per line, not space separated
+		JsonGenerator generator = MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8);
+		generator.setRootValueSeparator(null);
+		for (UserEvent event : events) {
+			MAPPER.writeValue(generator, event);
+			generator.writeRaw('\n');
+		}
+		generator.flush();
+		out.getFD().sync();
+
+		if (out.getChannel().size() > maxBytes) {
+			out.close();
+			out = null;
+			String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+			// the batch is already written, if the rename fails the file just grows until the next try
+			file.renameTo(new File(directory, "user-events-" + stamp + ".jsonl"));
+		}
+	}
+
+	/**
+	 * closes the current file.
+	 * @throws IOException
+	 */
+	@PreDestroy
+	public synchronized void close() throws IOException {
+		if (out != null) {
+			out.close();
+			out = null;
+		}
+	}
+}
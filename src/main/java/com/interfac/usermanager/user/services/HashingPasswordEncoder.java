@@ -0,0 +1,195 @@
+package com.interfac.usermanager.user.services;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * This class implements the {@link PasswordEncoder} interface with BCrypt.
+ *
+ * <p>Encoded passwords carry their algorithm and cost, e.g. <code>{bcrypt}$2a$10$...</code>. Values without the
+ * <code>{bcrypt}</code> prefix are passwords stored in plain text before hashing was introduced, they still match
+ * so their owners can log in once and have them upgraded, see {@link #upgradeEncoding(String)}.</p>
+ *
+ * <p>Hashing is deliberately slow (about 100 ms at the default cost), so it runs on a dedicated pool of
+ * <code>usermanager.password.hashing-threads</code> threads with a queue of
+ * <code>usermanager.password.hashing-queue</code> tasks. Request threads wait for their hash, but no more hashes
+ * than there are pool threads burn CPU at once, and when the queue is full new requests are rejected at once
+ * with a {@link HashingUnavailableException} instead of piling up.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+@Component
+public class HashingPasswordEncoder implements PasswordEncoder {
+
+	/**
+	 * the prefix of BCrypt encoded passwords.
+	 */
+	public static final String BCRYPT_PREFIX = "{bcrypt}";
+
+	/**
+	 * the BCrypt cost (log2 of the rounds) of new hashes.
+	 */
+	@Value("${usermanager.password.bcrypt-strength:10}")
+	private int strength;
+
+	/**
+	 * hashing threads, 0 means one per available processor.
+	 */
+	@Value("${usermanager.password.hashing-threads:0}")
+	private int threads;
+
+	/**
+	 * the number of hashing tasks allowed to wait for a thread.
+	 */
+	@Value("${usermanager.password.hashing-queue:64}")
+	private int queueCapacity;
+
+	/**
+	 * the longest a caller waits for its hash, queueing included.
+	 */
+	@Value("${usermanager.password.hashing-timeout-ms:5000}")
+	private long timeoutMillis;
+
+	/**
+	 * encodes with the configured strength.
+	 */
+	private BCryptPasswordEncoder bcrypt;
+
+	/**
+	 * the bounded hashing pool.
+	 */
+	private ThreadPoolExecutor executor;
+
+	/**
+	 * creates the hashing pool.
+	 */
+	@PostConstruct
+	public void init() {
+		bcrypt = new BCryptPasswordEncoder(strength);
+		int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueCapacity), new CustomizableThreadFactory("password-hashing-"),
+				new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	/**
+	 * stops the hashing pool.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.security.crypto.password.PasswordEncoder#encode(java.lang.CharSequence)
+	 */
+	@Override
+	public String encode(CharSequence rawPassword) {
+		return BCRYPT_PREFIX + run(() -> bcrypt.encode(rawPassword));
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.security.crypto.password.PasswordEncoder#matches(java.lang.CharSequence, java.lang.String)
+	 */
+	@Override
+	public boolean matches(CharSequence rawPassword, String encodedPassword) {
+		if (rawPassword == null || encodedPassword == null) {
+			return false;
+		}
+		if (encodedPassword.startsWith(BCRYPT_PREFIX)) {
+			String hash = encodedPassword.substring(BCRYPT_PREFIX.length());
+			return run(() -> bcrypt.matches(rawPassword, hash));
+		}
+		// legacy plain text password, compared in constant time
+		return MessageDigest.isEqual(rawPassword.toString().getBytes(StandardCharsets.UTF_8),
+				encodedPassword.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @param encodedPassword a stored password
+	 * @return true if it is not a BCrypt hash or was hashed with another cost than the configured one.
+	 */
+	public boolean upgradeEncoding(String encodedPassword) {
+		if (encodedPassword == null || !encodedPassword.startsWith(BCRYPT_PREFIX)) {
+			return true;
+		}
+		// $2a$10$... the cost is the two digits after the version
+		String hash = encodedPassword.substring(BCRYPT_PREFIX.length());
+		try {
+			return Integer.parseInt(hash.substring(4, 6)) != strength;
+		} catch (RuntimeException e) {
+			return true;
+		}
+	}
+
+	/**
+	 * @return true if the stored value is already an encoded password.
+	 * @param password
+	 */
+	public boolean isEncoded(String password) {
+		return password != null && password.startsWith(BCRYPT_PREFIX);
+	}
+
+	/**
+	 * runs the task on the hashing pool and waits for it.
+	 * @param task
+	 * @return the result of the task
+	 * @throws HashingUnavailableException if the pool is saturated or the task timed out.
+	 */
+	private <T> T run(Callable<T> task) {
+		Future<T> future;
+		try {
+			future = executor.submit(task);
+		} catch (RejectedExecutionException e) {
+			throw new HashingUnavailableException("Too many password hashing requests, try again later", e);
+		}
+		try {
+			return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			throw new HashingUnavailableException("Password hashing timed out", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new HashingUnavailableException("Interrupted while hashing a password", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Password hashing failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Thrown when a password can not be hashed in time because the hashing pool is saturated.
+	 */
+	@SuppressWarnings("serial")
+	@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+	public static class HashingUnavailableException extends RuntimeException {
+
+		/**
+		 * Constructor with <code>message</code> and <code>cause</code> parameters.
+		 * @param message
+		 * @param cause
+		 */
+		public HashingUnavailableException(String message, Throwable cause) {
+			super(message, cause);
+		}
+	}
+}
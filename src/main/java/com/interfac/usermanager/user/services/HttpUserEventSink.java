@@ -0,0 +1,81 @@
+package com.interfac.usermanager.user.services;
+
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import com.interfac.usermanager.user.model.UserEvent;
+
+/**
+ * This class posts the {@link UserEvent}s as a JSON array to <code>usermanager.outbox.http.url</code>.
+ * 
+ * <p>The batch is accepted when the endpoint answers with a 2xx status. Other statuses, connection errors and
+ * timeouts make the poller deliver it again on the next poll.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@Component
+public class HttpUserEventSink implements UserEventSink {
+
+	/**
+	 * the endpoint receiving the events.
+	 */
+	@Value("${usermanager.outbox.http.url:http://localhost:8081/user-events}")
+	private String url;
+
+	/**
+	 * the connect timeout.
+	 */
+	@Value("${usermanager.outbox.http.connect-timeout-ms:2000}")
+	private int connectTimeoutMillis;
+
+	/**
+	 * the read timeout.
+	 */
+	@Value("${usermanager.outbox.http.read-timeout-ms:10000}")
+	private int readTimeoutMillis;
+
+	/**
+	 * sends the batches, throws on non 2xx answers.
+	 */
+	private RestTemplate restTemplate;
+
+	/**
+	 * creates the rest template with the timeouts.
+	 */
+	@PostConstruct
+	public void init() {
+		SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+		requestFactory.setConnectTimeout(connectTimeoutMillis);
+		requestFactory.setReadTimeout(readTimeoutMillis);
+		restTemplate = new RestTemplate(requestFactory);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.interfac.usermanager.user.services.UserEventSink#getName()
+	 */
+	@Override
+	public String getName() {
+		return "http";
+	}
+
+	/* (non-Javadoc)
+	 * @see com.interfac.usermanager.user.services.UserEventSink#deliver(java.util.List)
+	 */
+	@Override
+	public void deliver(List<UserEvent> events) {
+		// the default error handler throws on 4xx and 5xx, redirects are not followed for a POST
+		ResponseEntity<Void> response = restTemplate.postForEntity(url, events, Void.class);
+		if (!response.getStatusCode().is2xxSuccessful()) {
+			throw new RestClientException("the events were not accepted: " + response.getStatusCode());
+		}
+	}
+}
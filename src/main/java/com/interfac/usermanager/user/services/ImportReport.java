@@ -0,0 +1,165 @@
+package com.interfac.usermanager.user.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class is the result of a bulk user import. It counts the imported and rejected rows
+ * and holds one {@link RowError} per rejected row.
+ *
+ * @author Ali Abdalla
+ *
+ */
+public class ImportReport {
+
+	/**
+	 * A rejected row of the import file.
+	 */
+	public static class RowError {
+
+		private final int line;
+
+		private final String userName;
+
+		private final String message;
+
+		/**
+		 * Parameterized constructor
+		 * @param line
+		 * @param userName
+		 * @param message
+		 */
+		public RowError(int line, String userName, String message) {
+			this.line = line;
+			this.userName = userName;
+			this.message = message;
+		}
+
+		/**
+		 * Getter method
+		 * @return line
+		 */
+		public int getLine() {
+			return line;
+		}
+
+		/**
+		 * Getter method
+		 * @return userName
+		 */
+		public String getUserName() {
+			return userName;
+		}
+
+		/**
+		 * Getter method
+		 * @return message
+		 */
+		public String getMessage() {
+			return message;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "line " + line + " (" + userName + "): " + message;
+		}
+	}
+
+	private int total;
+
+	private int imported;
+
+	private long elapsedMillis;
+
+	private final List<RowError> errors = new ArrayList<RowError>();
+
+	/**
+	 * adds a rejected row.
+	 * @param line
+	 * @param userName
+	 * @param message
+	 */
+	void reject(int line, String userName, String message) {
+		errors.add(new RowError(line, userName, message));
+	}
+
+	/**
+	 * @param rows number of rows read from the file
+	 */
+	void addTotal(int rows) {
+		total += rows;
+	}
+
+	/**
+	 * @param rows number of rows inserted
+	 */
+	void addImported(int rows) {
+		imported += rows;
+	}
+
+	/**
+	 * @param elapsedMillis
+	 */
+	void setElapsedMillis(long elapsedMillis) {
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	/**
+	 * Getter method
+	 * @return total rows read
+	 */
+	public int getTotal() {
+		return total;
+	}
+
+	/**
+	 * Getter method
+	 * @return imported rows
+	 */
+	public int getImported() {
+		return imported;
+	}
+
+	/**
+	 * @return rejected rows
+	 */
+	public int getRejected() {
+		return errors.size();
+	}
+
+	/**
+	 * Getter method
+	 * @return errors
+	 */
+	public List<RowError> getErrors() {
+		return Collections.unmodifiableList(errors);
+	}
+
+	/**
+	 * Getter method
+	 * @return elapsedMillis
+	 */
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	/**
+	 * @return rows read per second
+	 */
+	public long getRowsPerSecond() {
+		return elapsedMillis == 0 ? total : total * 1000L / elapsedMillis;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ImportReport [total=" + total + ", imported=" + imported + ", rejected=" + getRejected()
+				+ ", elapsedMillis=" + elapsedMillis + ", rowsPerSecond=" + getRowsPerSecond() + "]";
+	}
+}
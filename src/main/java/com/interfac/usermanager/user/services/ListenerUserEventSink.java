@@ -0,0 +1,47 @@
+package com.interfac.usermanager.user.services;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import com.interfac.usermanager.user.model.UserEvent;
+
+/**
+ * This class delivers the {@link UserEvent}s to the in-process <code>@EventListener</code> methods taking a
+ * {@link UserEvent}.
+ * 
+ * <p>The listeners run on the poller thread, one event after the other. If one throws, the rest of the batch is
+ * delivered again on the next poll.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@Component
+public class ListenerUserEventSink implements UserEventSink {
+
+	/**
+	 * publishes the events to the listeners.
+	 */
+	@Autowired
+	private ApplicationEventPublisher applicationEventPublisher;
+
+	/* (non-Javadoc)
+	 * @see com.interfac.usermanager.user.services.UserEventSink#getName()
+	 */
+	@Override
+	public String getName() {
+		return "listeners";
+	}
+
+	/* (non-Javadoc)
+	 * @see com.interfac.usermanager.user.services.UserEventSink#deliver(java.util.List)
+	 */
+	@Override
+	public void deliver(List<UserEvent> events) {
+		for (UserEvent event : events) {
+			applicationEventPublisher.publishEvent(event);
+		}
+	}
+}
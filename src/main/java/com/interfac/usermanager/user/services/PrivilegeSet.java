@@ -0,0 +1,135 @@
+package com.interfac.usermanager.user.services;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+
+import com.interfac.usermanager.user.model.Privilege;
+
+/**
+ * This class is an immutable set of {@link Privilege}s, stored as a bitset indexed by the privilege ID.
+ * 
+ * <p>The IDs are small and never change, so a set is a few words and a check is a shift and a mask. The sets of the
+ * roles are computed once by the {@link RoleRegistry}, and the set of a user is the union of its roles' sets,
+ * kept in its {@link UserPrincipal}.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+public final class PrivilegeSet implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * the set without privileges.
+	 */
+	public static final PrivilegeSet EMPTY = new PrivilegeSet(new long[0]);
+
+	private final long[] words;
+
+	private PrivilegeSet(long[] words) {
+		this.words = words;
+	}
+
+	/**
+	 * @param privileges
+	 * @return the set of the given privileges
+	 */
+	public static PrivilegeSet of(Collection<Privilege> privileges) {
+		if (privileges == null || privileges.isEmpty()) {
+			return EMPTY;
+		}
+		long max = 0;
+		for (Privilege privilege : privileges) {
+			max = Math.max(max, privilege.getId());
+		}
+		long[] words = new long[(int) (max >>> 6) + 1];
+		for (Privilege privilege : privileges) {
+			words[(int) (privilege.getId() >>> 6)] |= 1L << privilege.getId();
+		}
+		return new PrivilegeSet(words);
+	}
+
+	/**
+	 * @param other
+	 * @return the set of the privileges in this set or the other one.
+	 */
+	public PrivilegeSet union(PrivilegeSet other) {
+		if (other.words.length > words.length) {
+			return other.union(this);
+		}
+		long[] union = words.clone();
+		for (int i = 0; i < other.words.length; i++) {
+			union[i] |= other.words[i];
+		}
+		return new PrivilegeSet(union);
+	}
+
+	/**
+	 * @param privilegeId
+	 * @return true if the privilege with that ID is in the set.
+	 */
+	public boolean contains(long privilegeId) {
+		int word = (int) (privilegeId >>> 6);
+		return privilegeId >= 0 && word < words.length && (words[word] & (1L << privilegeId)) != 0;
+	}
+
+	/**
+	 * @return true if the set has no privileges.
+	 */
+	public boolean isEmpty() {
+		for (long word : words) {
+			if (word != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof PrivilegeSet)) {
+			return false;
+		}
+		long[] other = ((PrivilegeSet) obj).words;
+		int length = Math.max(words.length, other.length);
+		for (int i = 0; i < length; i++) {
+			if ((i < words.length ? words[i] : 0) != (i < other.length ? other[i] : 0)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		int length = words.length;
+		while (length > 0 && words[length - 1] == 0) {
+			length--;
+		}
+		return Arrays.hashCode(Arrays.copyOf(words, length));
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		StringBuilder ids = new StringBuilder("PrivilegeSet [");
+		for (int i = 0; i < words.length * 64; i++) {
+			if (contains(i)) {
+				ids.append(ids.charAt(ids.length() - 1) == '[' ? "" : ", ").append(i);
+			}
+		}
+		return ids.append("]").toString();
+	}
+}
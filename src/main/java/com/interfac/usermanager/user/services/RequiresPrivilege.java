@@ -0,0 +1,26 @@
+package com.interfac.usermanager.user.services;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method that can only be called by users whose roles grant a privilege, e.g. 
+ * <code>@RequiresPrivilege("WRITE_PRIVILEGE")</code>. Checked against the {@link PrivilegeSet} of the 
+ * {@link UserPrincipal}, a call without it throws an {@link org.springframework.security.access.AccessDeniedException}.
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RequiresPrivilege {
+
+	/**
+	 * @return the name of the required privilege
+	 */
+	String value();
+}
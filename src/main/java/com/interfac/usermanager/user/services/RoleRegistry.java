@@ -0,0 +1,146 @@
+package com.interfac.usermanager.user.services;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.interfac.usermanager.user.model.Privilege;
+import com.interfac.usermanager.user.model.Role;
+import com.interfac.usermanager.user.repositories.DataInitializer;
+import com.interfac.usermanager.user.repositories.RoleRepository;
+
+/**
+ * This class holds an immutable, in-memory snapshot of the {@link Role} and {@link Privilege} reference data.
+ *
+ * <p>Roles and privileges are created once by the {@link DataInitializer} and never change afterwards, so services
+ * look them up here instead of querying the database on every write. The snapshot is loaded in a single query
+ * and is swapped atomically by {@link #refresh()}, readers never see a partially loaded registry.</p>
+ *
+ * <p>The privileges of each role are also precomputed into an immutable {@link PrivilegeSet}, so the privileges
+ * of a user are the union of a few bitsets, with no join at login.</p>
+ *
+ * <p>The returned entities are detached, they can be assigned to a user's roles but must not be modified.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+@Component
+public class RoleRegistry {
+
+	/**
+	 * instance of the {@link RoleRepository} interface, handles data access to Role entity.
+	 */
+	@Autowired
+	private RoleRepository roleRepository;
+
+	/**
+	 * the current snapshot, replaced as a whole on refresh.
+	 */
+	private final AtomicReference<Snapshot> snapshot = new AtomicReference<Snapshot>(Snapshot.EMPTY);
+
+	/**
+	 * reloads all roles with their privileges and publishes them as the new snapshot.
+	 */
+	public void refresh() {
+		List<Role> roles = roleRepository.findAllWithPrivileges();
+		Map<String, Role> rolesByName = new HashMap<String, Role>();
+		Map<String, Privilege> privilegesByName = new HashMap<String, Privilege>();
+		Map<String, PrivilegeSet> privilegeSets = new HashMap<String, PrivilegeSet>();
+		for (Role role : roles) {
+			rolesByName.put(role.getName(), role);
+			privilegeSets.put(role.getName(), PrivilegeSet.of(role.getPrivileges()));
+			if (role.getPrivileges() != null) {
+				for (Privilege privilege : role.getPrivileges()) {
+					privilegesByName.put(privilege.getName(), privilege);
+				}
+			}
+		}
+		snapshot.set(new Snapshot(rolesByName, privilegesByName, privilegeSets));
+	}
+
+	/**
+	 * Provides the role with the given name. The registry is reloaded once if the role is not known yet.
+	 * @param name must not be null
+	 * @return Role object
+	 * @throws IllegalStateException if there is no role with that name in the database.
+	 */
+	public Role getRole(String name) {
+		Role role = findRole(name);
+		if (role == null) {
+			refresh();
+			role = findRole(name);
+		}
+		if (role == null) {
+			throw new IllegalStateException("Unknown role: " + name);
+		}
+		return role;
+	}
+
+	/**
+	 * looks the role up in the current snapshot only.
+	 * @param name must not be null
+	 * @return Role object, or null if it is not in the snapshot.
+	 */
+	public Role findRole(String name) {
+		return snapshot.get().roles.get(name);
+	}
+
+	/**
+	 * looks the privilege up in the current snapshot only. Only privileges granted to at least one role are known.
+	 * @param name must not be null
+	 * @return Privilege object, or null if it is not in the snapshot.
+	 */
+	public Privilege findPrivilege(String name) {
+		return snapshot.get().privileges.get(name);
+	}
+
+	/**
+	 * @param roleNames
+	 * @return the union of the privileges of the given roles, unknown roles have none.
+	 */
+	public PrivilegeSet getPrivileges(Collection<String> roleNames) {
+		Map<String, PrivilegeSet> privilegeSets = snapshot.get().privilegeSets;
+		PrivilegeSet privileges = PrivilegeSet.EMPTY;
+		for (String roleName : roleNames) {
+			PrivilegeSet rolePrivileges = privilegeSets.get(roleName);
+			if (rolePrivileges != null) {
+				privileges = privileges.union(rolePrivileges);
+			}
+		}
+		return privileges;
+	}
+
+	/**
+	 * @return all the roles of the current snapshot.
+	 */
+	public Collection<Role> getRoles() {
+		return snapshot.get().roles.values();
+	}
+
+	/**
+	 * Immutable name indexes, and the privileges of each role.
+	 */
+	private static final class Snapshot {
+
+		private static final Snapshot EMPTY = new Snapshot(new HashMap<String, Role>(), new HashMap<String, Privilege>(),
+				new HashMap<String, PrivilegeSet>());
+
+		private final Map<String, Role> roles;
+
+		private final Map<String, Privilege> privileges;
+
+		private final Map<String, PrivilegeSet> privilegeSets;
+
+		private Snapshot(Map<String, Role> roles, Map<String, Privilege> privileges, Map<String, PrivilegeSet> privilegeSets) {
+			this.roles = Collections.unmodifiableMap(roles);
+			this.privileges = Collections.unmodifiableMap(privileges);
+			this.privilegeSets = Collections.unmodifiableMap(privilegeSets);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package com.interfac.usermanager.user.services;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class represents a single page of ranked search results.
+ *
+ * @author Ali Abdalla
+ *
+ * @param <T> the type of the results.
+ */
+public class SearchResult<T> {
+
+	/**
+	 * the results of this page, best match first.
+	 */
+	private final List<T> content;
+
+	/**
+	 * the query as it was given.
+	 */
+	private final String query;
+
+	/**
+	 * the page number, starting at 0.
+	 */
+	private final int page;
+
+	/**
+	 * the page size.
+	 */
+	private final int size;
+
+	/**
+	 * the number of results of the query, over all pages.
+	 */
+	private final int total;
+
+	/**
+	 * Parameterized constructor
+	 * @param content
+	 * @param query
+	 * @param page
+	 * @param size
+	 * @param total
+	 */
+	public SearchResult(List<T> content, String query, int page, int size, int total) {
+		this.content = Collections.unmodifiableList(content);
+		this.query = query;
+		this.page = page;
+		this.size = size;
+		this.total = total;
+	}
+
+	/**
+	 * Getter method
+	 * @return content
+	 */
+	public List<T> getContent() {
+		return content;
+	}
+
+	/**
+	 * Getter method
+	 * @return query
+	 */
+	public String getQuery() {
+		return query;
+	}
+
+	/**
+	 * Getter method
+	 * @return page
+	 */
+	public int getPage() {
+		return page;
+	}
+
+	/**
+	 * Getter method
+	 * @return size
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Getter method
+	 * @return total
+	 */
+	public int getTotal() {
+		return total;
+	}
+
+	/**
+	 * @return true if there is a page before this one.
+	 */
+	public boolean hasPrevious() {
+		return page > 0;
+	}
+
+	/**
+	 * @return true if there is a page after this one.
+	 */
+	public boolean hasNext() {
+		return (long) (page + 1) * size < total;
+	}
+}
@@ -0,0 +1,241 @@
+package com.interfac.usermanager.user.services;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import org.hibernate.envers.RevisionType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.interfac.usermanager.user.model.User;
+import com.interfac.usermanager.user.repositories.UserBatchWriter;
+import com.interfac.usermanager.user.repositories.UserRepository;
+
+/**
+ * This class fills the database with realistic synthetic users, for load tests and profiling.
+ *
+ * <p>Users are generated in chunks of <code>usermanager.perf.chunk-size</code> by
+ * <code>usermanager.perf.generator-threads</code> threads, each chunk inserted with {@link UserBatchWriter}
+ * in its own transaction together with its role assignments and an ADD audit revision, 1% of the users are admins.
+ * Every user gets the password <i>password</i>, hashed once with the configured strength, so load tests can log in
+ * as anyone.</p>
+ *
+ * <p>The data is deterministic: user number <i>n</i> is always generated the same way, so datasets generated into
+ * the same database are identical and a run continues a smaller dataset instead of starting over. A run numbers its
+ * users after the highest user ID, every user ever generated got an ID above its number, so the new usernames do
+ * not collide with them when users were deleted or registered in between. Only deleting the users with the highest
+ * IDs lowers it.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+@Service
+public class SyntheticUserGenerator {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SyntheticUserGenerator.class);
+
+	/**
+	 * the password of every generated user.
+	 */
+	public static final String PASSWORD = "password";
+
+	/**
+	 * the latest modifier of every generated user, and the user of their audit revisions.
+	 */
+	private static final String MODIFIER = "generator";
+
+	private static final String[] FIRST_NAMES = { "James", "Mary", "John", "Patricia", "Robert", "Jennifer",
+			"Michael", "Linda", "William", "Elizabeth", "David", "Barbara", "Richard", "Susan", "Joseph", "Jessica",
+			"Thomas", "Sarah", "Charles", "Karen", "Ahmed", "Fatima", "Mohamed", "Aisha", "Omar", "Amina", "Ali",
+			"Leila", "Wei", "Mei", "Hiroshi", "Yuki", "Carlos", "Sofia", "Luis", "Camila", "Ivan", "Olga", "Pierre",
+			"Chloe" };
+
+	private static final String[] LAST_NAMES = { "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia",
+			"Miller", "Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson",
+			"Thomas", "Taylor", "Moore", "Jackson", "Martin", "Abdalla", "Hassan", "Ibrahim", "Osman", "Yousif",
+			"Mahmoud", "Wang", "Li", "Zhang", "Tanaka", "Suzuki", "Silva", "Santos", "Ivanov", "Petrov", "Dubois",
+			"Moreau", "Muller", "Schmidt", "Rossi" };
+
+	private static final String[] DOMAINS = { "example.com", "example.org", "example.net", "mail.example.com" };
+
+	/**
+	 * This instance is Autowired to the {@link UserRepository} interface. handles user data access.
+	 */
+	@Autowired
+	private UserRepository userRepository;
+
+	/**
+	 * inserts the users of a chunk with JDBC batches.
+	 */
+	@Autowired
+	private UserBatchWriter userBatchWriter;
+
+	/**
+	 * provides the role IDs.
+	 */
+	@Autowired
+	private RoleRegistry roleRegistry;
+
+	/**
+	 * hashes the shared password once.
+	 */
+	@Autowired
+	private HashingPasswordEncoder passwordEncoder;
+
+	/**
+	 * the application's transaction manager.
+	 */
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	/**
+	 * the number of users inserted per transaction.
+	 */
+	@Value("${usermanager.perf.chunk-size:5000}")
+	private int chunkSize;
+
+	/**
+	 * generator threads, 0 means one per available processor.
+	 */
+	@Value("${usermanager.perf.generator-threads:0}")
+	private int threads;
+
+	/**
+	 * runs each chunk in its own transaction.
+	 */
+	private TransactionTemplate transactionTemplate;
+
+	/**
+	 * creates the transaction template.
+	 */
+	@PostConstruct
+	public void init() {
+		transactionTemplate = new TransactionTemplate(transactionManager);
+	}
+
+	/**
+	 * generates users until the database holds <code>targetUsers</code> users.
+	 * @param targetUsers the size of the dataset, existing users included.
+	 * @return the number of users generated.
+	 */
+	public long generate(long targetUsers) {
+		long existing = userRepository.count();
+		if (existing >= targetUsers) {
+			return 0;
+		}
+		// the count is lowered by deleted users, numbering from it would reuse the numbers of generated users
+		long firstNumber = userRepository.findMaxUserId();
+		long lastNumber = firstNumber + targetUsers - existing;
+		long start = System.currentTimeMillis();
+		String password = passwordEncoder.encode(PASSWORD);
+		Date now = new Date();
+		long userRoleId = roleRegistry.getRole("ROLE_USER").getId();
+		long adminRoleId = roleRegistry.getRole("ROLE_ADMIN").getId();
+
+		int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(poolSize, new CustomizableThreadFactory("user-generator-"));
+		AtomicLong generated = new AtomicLong();
+		List<Future<?>> chunks = new ArrayList<Future<?>>();
+		try {
+			for (long first = firstNumber; first < lastNumber; first += chunkSize) {
+				long from = first;
+				long to = Math.min(first + chunkSize, lastNumber);
+				chunks.add(executor.submit(() -> {
+					insertChunk(from, to, password, now, userRoleId, adminRoleId);
+					long done = generated.addAndGet(to - from);
+					if (done / 100000 != (done - (to - from)) / 100000) {
+						LOG.info("generated {} of {} users", done, targetUsers - existing);
+					}
+				}));
+			}
+			for (Future<?> chunk : chunks) {
+				chunk.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("user generation interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("user generation failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		LOG.info("generated {} users in {} ms", generated.get(), System.currentTimeMillis() - start);
+		return generated.get();
+	}
+
+	/**
+	 * generates and inserts the users numbered <code>from</code> to <code>to - 1</code>, with their roles and one ADD
+	 * revision auditing them.
+	 */
+	private void insertChunk(long from, long to, String password, Date now, long userRoleId, long adminRoleId) {
+		List<User> users = new ArrayList<User>((int) (to - from));
+		Map<String, User> usersByName = new HashMap<String, User>();
+		for (long n = from; n < to; n++) {
+			User user = createUser(n, password, now);
+			users.add(user);
+			usersByName.put(user.getUserName(), user);
+		}
+		transactionTemplate.execute(status -> {
+			userBatchWriter.insertUsers(users);
+			Map<Long, Long> roleIdsByUserId = new HashMap<Long, Long>();
+			for (Object[] row : userRepository.findIdsByUserNameIn(usersByName.keySet())) {
+				User user = usersByName.get(row[1]);
+				roleIdsByUserId.put((Long) row[0], user.getIsAdmin() ? adminRoleId : userRoleId);
+			}
+			userBatchWriter.insertUserRoles(roleIdsByUserId);
+			long revision = userBatchWriter.insertRevision(MODIFIER, now);
+			userBatchWriter.auditUsers(roleIdsByUserId.keySet(), revision, RevisionType.ADD);
+			userBatchWriter.auditUserRoles(roleIdsByUserId.keySet(), revision, RevisionType.ADD);
+			return null;
+		});
+	}
+
+	/**
+	 * @param n the user number, the same number always gives the same user.
+	 * @param password the encoded password
+	 * @param now the creation date
+	 * @return a user that passes the {@link User} validation constraints.
+	 */
+	private static User createUser(long n, String password, Date now) {
+		Random random = new Random(n);
+		String firstName = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+		String lastName = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+		// at most 1 + 6 + 8 characters, within the 15 allowed up to 100 million users
+		String shortLastName = lastName.length() > 6 ? lastName.substring(0, 6) : lastName;
+		String userName = (firstName.charAt(0) + shortLastName).toLowerCase() + n;
+
+		User user = new User();
+		user.setUserName(userName);
+		user.setFirstName(firstName);
+		user.setLastName(lastName);
+		user.setEmail(firstName.toLowerCase() + "." + lastName.toLowerCase() + n + "@"
+				+ DOMAINS[random.nextInt(DOMAINS.length)]);
+		user.setPhone(String.format("%03d-%03d-%04d", 200 + random.nextInt(800), random.nextInt(1000),
+				random.nextInt(10000)));
+		user.setPassword(password);
+		user.setMatchingPassword(password);
+		user.setIsAdmin(random.nextInt(100) == 0);
+		user.setEnabled(true);
+		user.setDateCreated(now);
+		user.setDateModified(now);
+		user.setLatestModifier(MODIFIER);
+		return user;
+	}
+}
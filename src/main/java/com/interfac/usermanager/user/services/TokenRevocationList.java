@@ -0,0 +1,145 @@
+package com.interfac.usermanager.user.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.interfac.usermanager.user.model.TokenRevocation;
+import com.interfac.usermanager.user.repositories.TokenRevocationRepository;
+
+/**
+ * This class is the list of users whose authentication tokens were revoked, because they were deleted, disabled,
+ * renamed or got other roles or another password. 
+ * 
+ * <p>A token carries the authorities of its user, so it stays valid after such a change until it expires. 
+ * Revoking writes a {@link TokenRevocation} row and every node follows the table every 
+ * <code>usermanager.token.revocation-poll-ms</code>, so checking a token is a map lookup. The node making the 
+ * change rejects the old tokens at once, the other ones within a poll interval. Tokens of a user that logged in
+ * up to the revocation time are rejected, entries older than the longest token lifetime are dropped.</p>
+ * 
+ * <p>Does nothing unless the stateless mode (<code>usermanager.token.enabled</code>) is on.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@Component
+public class TokenRevocationList {
+
+	/**
+	 * stores the revocations shared by the nodes.
+	 */
+	@Autowired
+	private TokenRevocationRepository tokenRevocationRepository;
+
+	/**
+	 * true when the application authenticates with tokens.
+	 */
+	@Value("${usermanager.token.enabled:false}")
+	private boolean enabled;
+
+	/**
+	 * the longest a token can be renewed after its user logged in.
+	 */
+	@Value("${usermanager.token.max-age-seconds:43200}")
+	private long maxAgeSeconds;
+
+	/**
+	 * the time of the latest revocation of each user, by lower case username.
+	 */
+	private final ConcurrentHashMap<String, Long> revocations = new ConcurrentHashMap<String, Long>();
+
+	/**
+	 * the ID of the last revocation read from the table.
+	 */
+	private volatile long lastId;
+
+	/**
+	 * the time the expired revocations were last purged from the table.
+	 */
+	private volatile long lastPurge;
+
+	/**
+	 * reads the revocations that are still in effect.
+	 */
+	@PostConstruct
+	public void init() {
+		refresh();
+	}
+
+	/**
+	 * revokes the tokens of a user issued until now.
+	 * @param username
+	 */
+	public void revoke(String username) {
+		revoke(Collections.singleton(username));
+	}
+
+	/**
+	 * revokes the tokens of the users issued until now.
+	 * @param usernames
+	 */
+	public void revoke(Collection<String> usernames) {
+		if (!enabled || usernames.isEmpty()) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		List<TokenRevocation> rows = new ArrayList<TokenRevocation>(usernames.size());
+		for (String username : usernames) {
+			rows.add(new TokenRevocation(username, now));
+			record(username, now);
+		}
+		tokenRevocationRepository.save(rows);
+	}
+
+	/**
+	 * @param username
+	 * @param loginTime when the user logged in to get the token, in milliseconds.
+	 * @return true if the tokens of that login were revoked.
+	 */
+	public boolean isRevoked(String username, long loginTime) {
+		Long revokedAt = revocations.get(username.toLowerCase());
+		return revokedAt != null && loginTime <= revokedAt;
+	}
+
+	/**
+	 * reads the revocations made by the other nodes since the last call, and forgets the expired ones.
+	 */
+	@Scheduled(initialDelayString = "${usermanager.token.revocation-poll-ms:5000}",
+			fixedDelayString = "${usermanager.token.revocation-poll-ms:5000}")
+	public void refresh() {
+		if (!enabled) {
+			return;
+		}
+		List<TokenRevocation> rows;
+		do {
+			rows = tokenRevocationRepository.findAfter(lastId, new PageRequest(0, 1000));
+			for (TokenRevocation row : rows) {
+				lastId = row.getId();
+				record(row.getUsername(), row.getRevokedAt());
+			}
+		} while (rows.size() == 1000);
+
+		long now = System.currentTimeMillis();
+		long expired = now - maxAgeSeconds * 1000;
+		revocations.values().removeIf(revokedAt -> revokedAt < expired);
+		// one node purging per lifetime is enough, the others just find nothing to delete
+		if (now - lastPurge > maxAgeSeconds * 1000) {
+			lastPurge = now;
+			tokenRevocationRepository.deleteRevokedBefore(expired);
+		}
+	}
+
+	private void record(String username, long revokedAt) {
+		revocations.merge(username.toLowerCase(), revokedAt, Math::max);
+	}
+}
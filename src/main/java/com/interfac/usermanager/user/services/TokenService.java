@@ -0,0 +1,360 @@
+package com.interfac.usermanager.user.services;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * This class issues and checks the signed authentication tokens of the stateless mode.
+ * 
+ * <p>A token is <code>keyId.payload.signature</code>, all base64url encoded. The payload holds the username, 
+ * the authorities the user had at login, the login time and the expiry time. The signature is an HMAC-SHA256 of 
+ * the key ID and the payload, so any node with the key can check a token without a session or a query.</p>
+ * 
+ * <p>Keys are configured as <code>usermanager.token.keys=keyId:base64Secret,...</code> and new tokens are signed 
+ * with <code>usermanager.token.signing-key</code>. To rotate, add the new key to every node, then sign with it, 
+ * and remove the old one once its tokens expired. Without keys, a random one is generated, the tokens are then 
+ * only valid on this node until it restarts.</p>
+ * 
+ * <p>Tokens live <code>usermanager.token.ttl-seconds</code> and are renewed with the same login time until
+ * <code>usermanager.token.max-age-seconds</code> after the login. Changes to a user revoke the tokens of its 
+ * earlier logins through the {@link TokenRevocationList}.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@Component
+public class TokenService {
+
+	private static final Log LOG = LogFactory.getLog(TokenService.class);
+
+	private static final String ALGORITHM = "HmacSHA256";
+
+	/**
+	 * true when the application authenticates with tokens.
+	 */
+	@Value("${usermanager.token.enabled:false}")
+	private boolean enabled;
+
+	/**
+	 * the verification keys, <code>keyId:base64Secret</code> comma separated.
+	 */
+	@Value("${usermanager.token.keys:}")
+	private String keys;
+
+	/**
+	 * the ID of the key new tokens are signed with, the first key by default.
+	 */
+	@Value("${usermanager.token.signing-key:}")
+	private String signingKeyId;
+
+	/**
+	 * the lifetime of a token.
+	 */
+	@Value("${usermanager.token.ttl-seconds:900}")
+	private long ttlSeconds;
+
+	/**
+	 * the longest a token can be renewed after its user logged in.
+	 */
+	@Value("${usermanager.token.max-age-seconds:43200}")
+	private long maxAgeSeconds;
+
+	/**
+	 * rejects the tokens of changed users.
+	 */
+	@Autowired
+	private TokenRevocationList tokenRevocationList;
+
+	/**
+	 * provides the privileges of the roles of a token.
+	 */
+	@Autowired
+	private RoleRegistry roleRegistry;
+
+	/**
+	 * the keys by ID.
+	 */
+	private Map<String, SecretKeySpec> keysById;
+
+	/**
+	 * reads and writes the payloads.
+	 */
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	/**
+	 * Mac instances are not thread safe, and cheap to initialize with a key.
+	 */
+	private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(() -> {
+		try {
+			return Mac.getInstance(ALGORITHM);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	});
+
+	/**
+	 * reads the keys.
+	 */
+	@PostConstruct
+	public void init() {
+		keysById = new HashMap<String, SecretKeySpec>();
+		for (String key : StringUtils.commaDelimitedListToSet(keys)) {
+			String[] parts = key.trim().split(":", 2);
+			if (parts.length != 2) {
+				throw new IllegalArgumentException("usermanager.token.keys entries must be keyId:base64Secret");
+			}
+			byte[] secret = Base64.getDecoder().decode(parts[1]);
+			if (secret.length < 32) {
+				throw new IllegalArgumentException("token key " + parts[0] + " is shorter than 256 bits");
+			}
+			keysById.put(parts[0], new SecretKeySpec(secret, ALGORITHM));
+			if (signingKeyId.isEmpty()) {
+				signingKeyId = parts[0];
+			}
+		}
+		if (keysById.isEmpty()) {
+			byte[] secret = new byte[32];
+			new SecureRandom().nextBytes(secret);
+			signingKeyId = "local";
+			keysById.put(signingKeyId, new SecretKeySpec(secret, ALGORITHM));
+			if (enabled) {
+				LOG.warn("usermanager.token.keys is not set, tokens are only valid on this node until it restarts");
+			}
+		}
+		if (!keysById.containsKey(signingKeyId)) {
+			throw new IllegalArgumentException("usermanager.token.signing-key " + signingKeyId + " is not one of the keys");
+		}
+	}
+
+	/**
+	 * @return true when the application authenticates with tokens.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Getter method
+	 * @return the lifetime of a token in seconds
+	 */
+	public long getTtlSeconds() {
+		return ttlSeconds;
+	}
+
+	/**
+	 * issues a token for a user that just logged in.
+	 * @param authentication a successful authentication
+	 * @return the signed token
+	 */
+	public String issue(Authentication authentication) {
+		return issue(authentication.getName(), authentication.getAuthorities(), System.currentTimeMillis());
+	}
+
+	/**
+	 * issues a new token for the same login, with the same authorities.
+	 * @param claims a valid token
+	 * @return the signed token, or null if the login is older than <code>usermanager.token.max-age-seconds</code>.
+	 */
+	public String renew(Claims claims) {
+		if (System.currentTimeMillis() - claims.getLoginTime() > maxAgeSeconds * 1000) {
+			return null;
+		}
+		return issue(claims.getUsername(), claims.getAuthorities(), claims.getLoginTime());
+	}
+
+	/**
+	 * checks a token.
+	 * @param token
+	 * @return the claims of the token, or null if it is malformed, not signed by a known key, expired or revoked.
+	 */
+	public Claims verify(String token) {
+		String[] parts = token.split("\\.");
+		if (parts.length != 3) {
+			return null;
+		}
+		SecretKeySpec key = keysById.get(parts[0]);
+		if (key == null) {
+			return null;
+		}
+		try {
+			byte[] signature = Base64.getUrlDecoder().decode(parts[2]);
+			if (!MessageDigest.isEqual(signature, sign(key, parts[0] + "." + parts[1]))) {
+				return null;
+			}
+			JsonNode payload = objectMapper.readTree(Base64.getUrlDecoder().decode(parts[1]));
+			List<String> authorities = new ArrayList<String>();
+			for (JsonNode authority : payload.path("auth")) {
+				authorities.add(authority.asText());
+			}
+			Claims claims = new Claims(payload.path("sub").asText(), 
+					AuthorityUtils.createAuthorityList(authorities.toArray(new String[authorities.size()])),
+					roleRegistry.getPrivileges(authorities), payload.path("login").asLong(),
+					payload.path("iat").asLong(), payload.path("exp").asLong());
+			if (claims.getExpiresAt() <= System.currentTimeMillis()
+					|| tokenRevocationList.isRevoked(claims.getUsername(), claims.getLoginTime())) {
+				return null;
+			}
+			return claims;
+		} catch (IllegalArgumentException | IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param username
+	 * @param authorities
+	 * @param loginTime
+	 * @return a token signed with the signing key
+	 */
+	private String issue(String username, Collection<? extends GrantedAuthority> authorities, long loginTime) {
+		long now = System.currentTimeMillis();
+		Map<String, Object> payload = new LinkedHashMap<String, Object>();
+		payload.put("sub", username);
+		payload.put("auth", AuthorityUtils.authorityListToSet(authorities));
+		payload.put("login", loginTime);
+		payload.put("iat", now);
+		payload.put("exp", now + ttlSeconds * 1000);
+		try {
+			String content = signingKeyId + "." + Base64.getUrlEncoder().withoutPadding()
+					.encodeToString(objectMapper.writeValueAsBytes(payload));
+			return content + "." + Base64.getUrlEncoder().withoutPadding()
+					.encodeToString(sign(keysById.get(signingKeyId), content));
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private byte[] sign(SecretKeySpec key, String content) {
+		Mac mac = macs.get();
+		try {
+			mac.init(key);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+		return mac.doFinal(content.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * The verified content of a token.
+	 */
+	public static class Claims {
+
+		private final String username;
+
+		private final List<GrantedAuthority> authorities;
+
+		private final PrivilegeSet privileges;
+
+		private final long loginTime;
+
+		private final long issuedAt;
+
+		private final long expiresAt;
+
+		/**
+		 * Parameterized constructor
+		 * @param username
+		 * @param authorities
+		 * @param privileges the privileges of the roles among the authorities
+		 * @param loginTime
+		 * @param issuedAt
+		 * @param expiresAt
+		 */
+		public Claims(String username, List<GrantedAuthority> authorities, PrivilegeSet privileges, long loginTime,
+				long issuedAt, long expiresAt) {
+			this.username = username;
+			this.authorities = Collections.unmodifiableList(authorities);
+			this.privileges = privileges;
+			this.loginTime = loginTime;
+			this.issuedAt = issuedAt;
+			this.expiresAt = expiresAt;
+		}
+
+		/**
+		 * Getter method
+		 * @return username
+		 */
+		public String getUsername() {
+			return username;
+		}
+
+		/**
+		 * Getter method
+		 * @return the authorities the user had at login
+		 */
+		public List<GrantedAuthority> getAuthorities() {
+			return authorities;
+		}
+
+		/**
+		 * Getter method
+		 * @return the time of the login the token was first issued for, in milliseconds
+		 */
+		public long getLoginTime() {
+			return loginTime;
+		}
+
+		/**
+		 * Getter method
+		 * @return issuedAt, in milliseconds
+		 */
+		public long getIssuedAt() {
+			return issuedAt;
+		}
+
+		/**
+		 * Getter method
+		 * @return expiresAt, in milliseconds
+		 */
+		public long getExpiresAt() {
+			return expiresAt;
+		}
+
+		/**
+		 * @return true if more than half of the lifetime of the token has passed, it should be renewed.
+		 */
+		public boolean isPastHalfLife() {
+			return System.currentTimeMillis() > issuedAt + (expiresAt - issuedAt) / 2;
+		}
+
+		/**
+		 * @return an authentication of the user, with the claims as details. The principal is a
+		 * 		{@link UserPrincipal} without password.
+		 */
+		public Authentication toAuthentication() {
+			UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+					new UserPrincipal(username, "", true, authorities, privileges), null, authorities);
+			authentication.setDetails(this);
+			return authentication;
+		}
+	}
+}
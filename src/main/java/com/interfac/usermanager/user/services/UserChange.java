@@ -0,0 +1,122 @@
+package com.interfac.usermanager.user.services;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+
+import org.hibernate.envers.RevisionType;
+
+import com.interfac.usermanager.user.model.User;
+import com.interfac.usermanager.user.model.UserRevision;
+
+/**
+ * This class represents one entry of a user's audit trail: the state of the user after a revision,
+ * who made it and when.
+ *
+ * @author Ali Abdalla
+ *
+ */
+public class UserChange {
+
+	/**
+	 * the revision number.
+	 */
+	private final long revision;
+
+	/**
+	 * the time of the change.
+	 */
+	private final Date date;
+
+	/**
+	 * the username of the user that made the change.
+	 */
+	private final String modifiedBy;
+
+	/**
+	 * <i>ADD</i>, <i>MOD</i> or <i>DEL</i>.
+	 */
+	private final RevisionType type;
+
+	/**
+	 * the user as it was after the change, its last state for a deletion.
+	 */
+	private final User user;
+
+	/**
+	 * the names of the properties changed by this revision, <code>null</code> when they are not known.
+	 */
+	private final Set<String> changed;
+
+	/**
+	 * Parameterized constructor
+	 * @param revision
+	 * @param type
+	 * @param user
+	 * @param changed
+	 */
+	public UserChange(UserRevision revision, RevisionType type, User user, Set<String> changed) {
+		this.revision = revision.getId();
+		this.date = revision.getRevisionDate();
+		this.modifiedBy = revision.getUsername();
+		this.type = type;
+		this.user = user;
+		this.changed = changed == null ? null : Collections.unmodifiableSet(changed);
+	}
+
+	/**
+	 * Getter method
+	 * @return revision
+	 */
+	public long getRevision() {
+		return revision;
+	}
+
+	/**
+	 * Getter method
+	 * @return date
+	 */
+	public Date getDate() {
+		return date;
+	}
+
+	/**
+	 * Getter method
+	 * @return modifiedBy
+	 */
+	public String getModifiedBy() {
+		return modifiedBy;
+	}
+
+	/**
+	 * Getter method
+	 * @return type
+	 */
+	public RevisionType getType() {
+		return type;
+	}
+
+	/**
+	 * Getter method
+	 * @return user
+	 */
+	public User getUser() {
+		return user;
+	}
+
+	/**
+	 * Getter method
+	 * @return changed
+	 */
+	public Set<String> getChanged() {
+		return changed;
+	}
+
+	/**
+	 * @param property
+	 * @return true if the property was changed by this revision, or if that is not known.
+	 */
+	public boolean isChanged(String property) {
+		return changed == null || changed.contains(property);
+	}
+}
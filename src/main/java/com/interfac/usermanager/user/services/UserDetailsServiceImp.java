@@ -0,0 +1,186 @@
+package com.interfac.usermanager.user.services;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.interfac.usermanager.user.model.Privilege;
+import com.interfac.usermanager.user.model.Role;
+import com.interfac.usermanager.user.model.User;
+import com.interfac.usermanager.user.repositories.ReplicaStickiness;
+import com.interfac.usermanager.user.repositories.UserRepository;
+
+/**
+ * This class implements the {@link UserDetailsService} interface used by spring security at login.
+ *
+ * <p>Users are loaded as {@link UserPrincipal}s, carrying their roles and privileges as authorities and the 
+ * precomputed {@link PrivilegeSet} of their roles.</p>
+ *
+ * <p>Loaded credentials and authorities are kept in the <i>"userDetails"</i> cache, which is bounded in size
+ * and expires entries after a TTL (see <code>spring.cache.caffeine.spec</code>), so repeated logins
+ * of the same user do not reach the database. {@link UserServiceImp} evicts the entry of a user whenever
+ * it registers, edits or deletes that user. Hit and miss ratios of the cache are published by the actuator
+ * under <i>/metrics</i> as <code>cache.userDetails.*</code>.</p>
+ *
+ * <p>Cache misses are read in a read-only transaction, from a read replica when there are any, unless the user
+ * was changed moments ago and the replicas may not have the change yet.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+@Service
+public class UserDetailsServiceImp implements UserDetailsService {
+
+	/**
+	 * the name of the cache holding the loaded {@link UserDetails}, keyed by lower case username.
+	 */
+	public static final String CACHE_NAME = "userDetails";
+
+	/**
+	 * This instance is Autowired to the {@link UserRepository} interface. handles user data access.
+	 */
+	@Autowired
+	private UserRepository userRepository;
+
+	/**
+	 * the application's cache manager, configured by spring boot.
+	 */
+	@Autowired
+	private CacheManager cacheManager;
+
+	/**
+	 * provides the privileges of the roles without querying the database.
+	 */
+	@Autowired
+	private RoleRegistry roleRegistry;
+
+	/**
+	 * tells which users were changed moments ago.
+	 */
+	@Autowired
+	private ReplicaStickiness replicaStickiness;
+
+	/**
+	 * the application's transaction manager.
+	 */
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	/**
+	 * the <i>"userDetails"</i> cache.
+	 */
+	private Cache cache;
+
+	/**
+	 * runs the cache misses in a read-only transaction.
+	 */
+	private TransactionTemplate readOnlyTransaction;
+
+	/**
+	 * resolves the cache once the bean is wired.
+	 */
+	@PostConstruct
+	public void init() {
+		cache = cacheManager.getCache(CACHE_NAME);
+		readOnlyTransaction = new TransactionTemplate(transactionManager);
+		readOnlyTransaction.setReadOnly(true);
+	}
+
+	/**
+	 * Loads the user and its role names in a single query on a cache miss.
+	 *
+	 * <p>A copy of the cached entry is returned every time, because the authentication manager
+	 * erases the credentials of the object it is given after a successful login.</p>
+	 *
+	 * @see org.springframework.security.core.userdetails.UserDetailsService#loadUserByUsername(java.lang.String)
+	 */
+	@Override
+	public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+		UserDetails details = cache.get(key(username), UserDetails.class);
+		if (details == null) {
+			User user = replicaStickiness.isSticky(username) ? userRepository.findWithRolesByUserName(username)
+					: readOnlyTransaction.execute(status -> userRepository.findWithRolesByUserName(username));
+			if (user == null) {
+				throw new UsernameNotFoundException("No user found with username: " + username);
+			}
+			details = toUserDetails(user);
+			cache.put(key(username), details);
+		}
+		return copyOf(details);
+	}
+
+	/**
+	 * removes the cached entry of the given username, if any.
+	 * @param username
+	 */
+	public void evict(String username) {
+		if (username != null) {
+			cache.evict(key(username));
+		}
+	}
+
+	/**
+	 * usernames are unique regardless of case, and a login may type any case, so all of them share an entry that a
+	 * single eviction removes.
+	 * @param username
+	 * @return the cache key of the username
+	 */
+	private static String key(String username) {
+		return username.toLowerCase();
+	}
+
+	/**
+	 * maps a {@link User} to a {@link UserPrincipal}. The authorities are the role names followed by the names of 
+	 * their privileges, both the privilege names and the {@link PrivilegeSet} come from the {@link RoleRegistry}.
+	 * A disabled user gets a disabled principal, which the authentication provider refuses.
+	 * @param user with initialized roles
+	 * @return UserDetails object
+	 */
+	private UserDetails toUserDetails(User user) {
+		List<String> roleNames = new ArrayList<String>();
+		if (user.getRoles() != null) {
+			for (Role role : user.getRoles()) {
+				roleNames.add(role.getName());
+			}
+		}
+		Set<String> names = new LinkedHashSet<String>(roleNames);
+		for (String roleName : roleNames) {
+			Role role = roleRegistry.findRole(roleName);
+			if (role != null && role.getPrivileges() != null) {
+				for (Privilege privilege : role.getPrivileges()) {
+					names.add(privilege.getName());
+				}
+			}
+		}
+		List<GrantedAuthority> authorities = new ArrayList<GrantedAuthority>(names.size());
+		for (String name : names) {
+			authorities.add(new SimpleGrantedAuthority(name));
+		}
+		return new UserPrincipal(user.getUserName(), user.getPassword(), user.isEnabled(), authorities,
+				roleRegistry.getPrivileges(roleNames));
+	}
+
+	/**
+	 * @param details
+	 * @return a new UserDetails object holding the same values
+	 */
+	private UserDetails copyOf(UserDetails details) {
+		return new UserPrincipal(details.getUsername(), details.getPassword(), details.isEnabled(),
+				details.getAuthorities(), ((UserPrincipal) details).getPrivileges());
+	}
+}
@@ -0,0 +1,316 @@
+package com.interfac.usermanager.user.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.interfac.usermanager.user.model.OutboxOffset;
+import com.interfac.usermanager.user.model.UserEvent;
+import com.interfac.usermanager.user.repositories.OutboxOffsetRepository;
+import com.interfac.usermanager.user.repositories.UserEventRepository;
+
+/**
+ * This class streams the {@link UserEvent} outbox to the {@link UserEventSink}s.
+ * 
+ * <p>The events are written in the transaction of the change they describe, so an event exists exactly when its
+ * change was committed. Every <code>usermanager.outbox.poll-ms</code> each sink named in
+ * <code>usermanager.outbox.sinks</code> gets the events after its {@link OutboxOffset}, in ID order and in batches
+ * of <code>usermanager.outbox.batch-size</code>. The offset is only moved once the sink accepted a batch, so the
+ * delivery is at least once and resumes where it stopped after a failure or a restart.</p>
+ * 
+ * <p>IDs are taken when an event is inserted but become visible when its transaction commits, so a transaction
+ * can commit a lower ID after a higher one was read. A sink therefore stops before a missing ID until the event
+ * after it is <code>usermanager.outbox.gap-timeout-ms</code> old, which keeps the usual order. After that the
+ * offset moves on, but the missing IDs are kept with the offset and looked up again on every poll; an event that
+ * shows up late is delivered then, out of order. IDs still missing after <code>usermanager.outbox.gap-retention-ms</code>
+ * were rolled back or never used (MySQL reserves auto increment ranges for <code>INSERT ... SELECT</code>) and are
+ * forgotten, at most <code>usermanager.outbox.max-gap-ids</code> are tracked per sink. The outbox is always read
+ * on the primary, a replica would add its lag to these windows.</p>
+ *
+ * <p>A poll sends at most <code>usermanager.outbox.max-batches-per-poll</code> batches to each sink, so a large
+ * backlog or a slow sink does not hold the scheduler for long. Events every sink has read are deleted once they are
+ * <code>usermanager.outbox.retention-ms</code> old, except the latest one, whose ID versions the users list.</p>
+ * 
+ * <p>The offsets are not locked, so with several nodes the poller (<code>usermanager.outbox.enabled</code>) should
+ * run on one of them only. Running it on more only delivers events more than once.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+@Component
+public class UserEventPoller {
+
+	private static final Logger LOG = LoggerFactory.getLogger(UserEventPoller.class);
+
+	/**
+	 * the outbox.
+	 */
+	@Autowired
+	private UserEventRepository userEventRepository;
+
+	/**
+	 * the read positions of the sinks.
+	 */
+	@Autowired
+	private OutboxOffsetRepository outboxOffsetRepository;
+
+	/**
+	 * all the available sinks, configured or not.
+	 */
+	@Autowired
+	private List<UserEventSink> availableSinks;
+
+	/**
+	 * true when this node delivers the events.
+	 */
+	@Value("${usermanager.outbox.enabled:true}")
+	private boolean enabled;
+
+	/**
+	 * the names of the sinks to deliver to, comma separated.
+	 */
+	@Value("${usermanager.outbox.sinks:audit,listeners}")
+	private String[] sinkNames;
+
+	/**
+	 * the most events delivered to a sink at once.
+	 */
+	@Value("${usermanager.outbox.batch-size:500}")
+	private int batchSize;
+
+	/**
+	 * how long a missing ID is waited for.
+	 */
+	@Value("${usermanager.outbox.gap-timeout-ms:10000}")
+	private long gapTimeoutMillis;
+
+	/**
+	 * how long a missing ID is looked up again.
+	 */
+	@Value("${usermanager.outbox.gap-retention-ms:3600000}")
+	private long gapRetentionMillis;
+
+	/**
+	 * the most missing IDs tracked per sink.
+	 */
+	@Value("${usermanager.outbox.max-gap-ids:10000}")
+	private int maxGapIds;
+
+	/**
+	 * the most batches sent to a sink per poll.
+	 */
+	@Value("${usermanager.outbox.max-batches-per-poll:20}")
+	private int maxBatchesPerPoll;
+
+	/**
+	 * how long delivered events are kept.
+	 */
+	@Value("${usermanager.outbox.retention-ms:86400000}")
+	private long retentionMillis;
+
+	/**
+	 * the configured sinks.
+	 */
+	private List<UserEventSink> sinks;
+
+	/**
+	 * the time the delivered events were last purged.
+	 */
+	private long lastPurge;
+
+	/**
+	 * resolves the configured sink names.
+	 * @throws IllegalStateException if a name is not the name of an available sink.
+	 */
+	@PostConstruct
+	public void init() {
+		sinks = new ArrayList<UserEventSink>(sinkNames.length);
+		for (String name : sinkNames) {
+			UserEventSink sink = availableSinks.stream().filter(s -> s.getName().equals(name.trim())).findFirst()
+					.orElseThrow(() -> new IllegalStateException("unknown user event sink: " + name));
+			sinks.add(sink);
+		}
+	}
+
+	/**
+	 * delivers the new events to every sink, then purges the old delivered ones.
+	 */
+	@Scheduled(initialDelayString = "${usermanager.outbox.poll-ms:1000}",
+			fixedDelayString = "${usermanager.outbox.poll-ms:1000}")
+	public void poll() {
+		if (!enabled || sinks.isEmpty()) {
+			return;
+		}
+		long delivered = Long.MAX_VALUE;
+		for (UserEventSink sink : sinks) {
+			delivered = Math.min(delivered, deliver(sink));
+		}
+
+		long now = System.currentTimeMillis();
+		// the delete scans the occurred_at index, once a minute is plenty
+		if (now - lastPurge > 60000) {
+			lastPurge = now;
+			userEventRepository.deleteDelivered(delivered, now - retentionMillis);
+		}
+	}
+
+	/**
+	 * delivers the late events of the gaps of the sink, then the events after its offset until they run out, the
+	 * sink fails, a young gap is reached or <code>usermanager.outbox.max-batches-per-poll</code> batches were sent.
+	 * @param sink
+	 * @return the offset of the sink afterwards.
+	 */
+	private long deliver(UserEventSink sink) {
+		OutboxOffset offset = outboxOffsetRepository.findOne(sink.getName());
+		if (offset == null) {
+			offset = new OutboxOffset(sink.getName());
+		}
+		long last = offset.getLastEventId();
+		NavigableMap<Long, Long> gaps = decodeGaps(offset.getGaps());
+		long now = System.currentTimeMillis();
+		int expired = gaps.size();
+		gaps.values().removeIf(seenAt -> seenAt < now - gapRetentionMillis);
+		expired -= gaps.size();
+		if (expired > 0) {
+			LOG.info("gave up waiting for " + expired + " missing user event IDs of sink " + sink.getName());
+		}
+
+		if (!gaps.isEmpty()) {
+			List<UserEvent> late = new ArrayList<UserEvent>();
+			List<Long> ids = new ArrayList<Long>(gaps.keySet());
+			for (int i = 0; i < ids.size(); i += batchSize) {
+				late.addAll(userEventRepository.findByIdIn(ids.subList(i, Math.min(i + batchSize, ids.size()))));
+			}
+			if (!late.isEmpty()) {
+				try {
+					sink.deliver(late);
+				} catch (Exception e) {
+					LOG.warn("user event sink " + sink.getName() + " failed, retrying the late events", e);
+					return last;
+				}
+				for (UserEvent event : late) {
+					gaps.remove(event.getId());
+				}
+			}
+		}
+
+		List<UserEvent> events;
+		int end = 0;
+		for (int batches = 0; batches < maxBatchesPerPoll; batches++) {
+			events = userEventRepository.findAfter(last, new PageRequest(0, batchSize));
+			end = contiguous(events, last, System.currentTimeMillis() - gapTimeoutMillis);
+			if (end == 0) {
+				break;
+			}
+			try {
+				sink.deliver(events.subList(0, end));
+			} catch (Exception e) {
+				LOG.warn("user event sink " + sink.getName() + " failed, retrying after event " + last, e);
+				break;
+			}
+			long seenAt = System.currentTimeMillis();
+			for (UserEvent event : events.subList(0, end)) {
+				// the IDs skipped here may still be committed by a transaction that is running.
+				// a new sink starts at 0, the IDs before the first event it reads are history, not gaps
+				for (long id = last + 1; last > 0 && id < event.getId() && gaps.size() < maxGapIds; id++) {
+					gaps.put(id, seenAt);
+				}
+				last = event.getId();
+			}
+			if (end < batchSize) {
+				break;
+			}
+		}
+		if (gaps.size() >= maxGapIds) {
+			LOG.warn("sink " + sink.getName() + " tracks " + gaps.size() + " missing user event IDs, no more are tracked");
+		}
+		offset.setLastEventId(last);
+		offset.setGaps(encodeGaps(gaps));
+		outboxOffsetRepository.save(offset);
+		return last;
+	}
+
+	/**
+	 * @param events ordered by ID
+	 * @param last the ID before the first event
+	 * @param settledBefore events that occurred before this time no longer wait for the IDs before them.
+	 * @return the number of leading events that can be delivered.
+	 */
+	static int contiguous(List<UserEvent> events, long last, long settledBefore) {
+		long previous = last;
+		for (int i = 0; i < events.size(); i++) {
+			UserEvent event = events.get(i);
+			if (event.getId() != previous + 1 && event.getOccurredAt() >= settledBefore) {
+				return i;
+			}
+			previous = event.getId();
+		}
+		return events.size();
+	}
+
+	/**
+	 * @param gaps the missing IDs and the time they were first skipped
+	 * @return the gaps as <code>from-to:seenAt</code> ranges separated by commas, null if there are none.
+	 */
+	static String encodeGaps(NavigableMap<Long, Long> gaps) {
+		if (gaps.isEmpty()) {
+			return null;
+		}
+		StringBuilder encoded = new StringBuilder();
+		Map.Entry<Long, Long> first = null;
+		Map.Entry<Long, Long> previous = null;
+		for (Map.Entry<Long, Long> gap : gaps.entrySet()) {
+			if (previous != null && (gap.getKey() != previous.getKey() + 1 || !gap.getValue().equals(previous.getValue()))) {
+				appendRange(encoded, first, previous);
+				first = null;
+			}
+			if (first == null) {
+				first = gap;
+			}
+			previous = gap;
+		}
+		appendRange(encoded, first, previous);
+		return encoded.toString();
+	}
+
+	private static void appendRange(StringBuilder encoded, Map.Entry<Long, Long> first, Map.Entry<Long, Long> last) {
+		if (encoded.length() > 0) {
+			encoded.append(',');
+		}
+		encoded.append(first.getKey()).append('-').append(last.getKey()).append(':').append(first.getValue());
+	}
+
+	/**
+	 * @param encoded the result of {@link #encodeGaps(NavigableMap)}, may be null.
+	 * @return the missing IDs and the time they were first skipped.
+	 */
+	static NavigableMap<Long, Long> decodeGaps(String encoded) {
+		NavigableMap<Long, Long> gaps = new TreeMap<Long, Long>();
+		if (encoded == null || encoded.isEmpty()) {
+			return gaps;
+		}
+		for (String range : encoded.split(",")) {
+			int dash = range.indexOf('-');
+			int colon = range.indexOf(':');
+			long from = Long.parseLong(range.substring(0, dash));
+			long to = Long.parseLong(range.substring(dash + 1, colon));
+			Long seenAt = Long.valueOf(range.substring(colon + 1));
+			for (long id = from; id <= to; id++) {
+				gaps.put(id, seenAt);
+			}
+		}
+		return gaps;
+	}
+}
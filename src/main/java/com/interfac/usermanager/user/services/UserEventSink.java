@@ -0,0 +1,30 @@
+package com.interfac.usermanager.user.services;
+
+import java.util.List;
+
+import com.interfac.usermanager.user.model.UserEvent;
+
+/**
+ * This interface is a destination of the {@link UserEvent}s delivered by the {@link UserEventPoller}.
+ * 
+ * <p>Events are delivered in the order of their IDs, in batches. A batch that was not accepted, because
+ * {@link #deliver(List)} threw or the node stopped, is delivered again, so sinks have to tolerate duplicates
+ * (the event ID identifies them).</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+public interface UserEventSink {
+
+	/**
+	 * @return the name of the sink, as used in <code>usermanager.outbox.sinks</code> and as the key of its offset.
+	 */
+	String getName();
+
+	/**
+	 * delivers a batch of events, returning means they were accepted.
+	 * @param events ordered by ID, never empty.
+	 * @throws Exception if the events were not accepted and have to be delivered again.
+	 */
+	void deliver(List<UserEvent> events) throws Exception;
+}
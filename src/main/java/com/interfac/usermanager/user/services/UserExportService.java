@@ -0,0 +1,91 @@
+package com.interfac.usermanager.user.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.interfac.usermanager.user.model.User;
+import com.interfac.usermanager.user.services.UserRecordReader.Format;
+
+/**
+ * This class exports all the users to a CSV or JSON stream in constant memory.
+ *
+ * <p>The users are read with a forward only scroll over a single query, in <i>userid</i> order, and each one is
+ * written out as soon as it is read. With <code>usermanager.export.fetch-size</code> at its default
+ * <code>Integer.MIN_VALUE</code> the MySQL driver streams the result set row by row instead of loading it whole;
+ * other databases take a positive fetch size. The users are loaded read-only, so hibernate keeps no snapshots of
+ * them, and the persistence context is cleared every <code>usermanager.export.clear-interval</code> rows.
+ * The output is flushed at the same interval, so the first bytes leave before the query is done.</p>
+ *
+ * <p>The export runs in one read-only transaction, so on a replicated setup it is served by a read replica.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+@Service
+public class UserExportService {
+
+	/**
+	 * the shared entity manager, bound to the current transaction.
+	 */
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	/**
+	 * the JDBC fetch size of the export query, <code>Integer.MIN_VALUE</code> makes MySQL stream the rows.
+	 */
+	@Value("${usermanager.export.fetch-size:-2147483648}")
+	private int fetchSize;
+
+	/**
+	 * the number of rows between two clears of the persistence context and two flushes of the output.
+	 */
+	@Value("${usermanager.export.clear-interval:1000}")
+	private int clearInterval;
+
+	/**
+	 * writes every user to the stream.
+	 * 
+	 * @param out the stream, closed with the end of the file once every user was written. After a failure it is
+	 * 		  left as it is, without the end of the file, so the export is not mistaken for a complete one: a servlet
+	 * 		  container aborts a committed response when the exception reaches it.
+	 * @param format
+	 * @return the number of exported users.
+	 * @throws IOException if the stream can not be written, e.g. the client went away.
+	 */
+	@Transactional(readOnly = true)
+	public long exportUsers(OutputStream out, Format format) throws IOException {
+		Session session = entityManager.unwrap(Session.class);
+		long count = 0;
+		// not closed on failure, closing writes the end of the JSON array and of the gzip stream
+		UserRecordWriter writer = UserRecordWriter.open(out, format);
+		ScrollableResults results = session.createQuery("select u from User u order by u.userId")
+				.setFetchSize(fetchSize)
+				.setReadOnly(true)
+				.setCacheMode(CacheMode.IGNORE)
+				.scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			while (results.next()) {
+				writer.write((User) results.get(0));
+				if (++count % clearInterval == 0) {
+					session.clear();
+					writer.flush();
+				}
+			}
+		} finally {
+			results.close();
+		}
+		writer.close();
+		return count;
+	}
+}
@@ -0,0 +1,184 @@
+package com.interfac.usermanager.user.services;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.hibernate.envers.AuditReaderFactory;
+import org.hibernate.envers.RevisionType;
+import org.hibernate.envers.query.AuditEntity;
+import org.hibernate.envers.query.AuditQuery;
+import org.hibernate.envers.query.criteria.AuditCriterion;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.interfac.usermanager.user.model.User;
+import com.interfac.usermanager.user.model.UserRevision;
+
+/**
+ * This class reads the audit trail of users recorded by Envers.
+ *
+ * <p>The revisions of a user change are captured in the transaction that made it, with its outbox event, and
+ * written to the audit tables by the {@link AuditUserEventSink} off the request thread, usually within a second of
+ * the commit. A committed change always gets its history and a rolled back one never does, but a change that was
+ * just made may not be in its history yet.</p>
+ *
+ * <p>Both histories are paged newest first with the revision number as cursor, like the users list is paged on the
+ * user ID: the next page is read with <code>revision &lt; cursor</code>, so old pages cost as much as recent ones.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+@Service
+public class UserHistoryService {
+
+	/**
+	 * the shared entity manager, bound to the current transaction.
+	 */
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	/**
+	 * the page size used when the caller does not ask for one.
+	 */
+	@Value("${usermanager.users.page-size:50}")
+	private int defaultPageSize;
+
+	/**
+	 * the largest page size a caller can ask for.
+	 */
+	@Value("${usermanager.users.max-page-size:500}")
+	private int maxPageSize;
+
+	/**
+	 * provides a page of the changes of a user, newest first, including the changes of other admins.
+	 * 
+	 * @param userId
+	 * @param before cursor of the previous page, the page starts right before this revision. null for the latest changes.
+	 * @param size requested page size, the configured default is used if it is less than 1,
+	 * 		  and it is capped to the configured maximum.
+	 * @return a {@link UserPage} of {@link UserChange}s with the properties each change modified.
+	 */
+	@Transactional(readOnly = true)
+	public UserPage<UserChange> getUserHistory(long userId, Long before, int size) {
+		int pageSize = pageSize(size);
+		// one more revision than shown, the state before the oldest change of the page
+		List<Object[]> rows = query(AuditEntity.id().eq(userId), before, pageSize + 1);
+		
+		List<UserChange> changes = new ArrayList<UserChange>(Math.min(rows.size(), pageSize));
+		for (int i = 0; i < rows.size() && i < pageSize; i++) {
+			Object[] row = rows.get(i);
+			User previous = i + 1 < rows.size() ? (User) rows.get(i + 1)[0] : null;
+			changes.add(new UserChange((UserRevision) row[1], (RevisionType) row[2], (User) row[0], 
+					changed((User) row[0], previous, (RevisionType) row[2])));
+		}
+		return page(changes, rows.size() > pageSize, pageSize);
+	}
+
+	/**
+	 * provides a page of the user changes made by a given user, newest first.
+	 * 
+	 * @param username the username of the admin, or of a user editing their own profile.
+	 * @param before cursor of the previous page, the page starts right before this revision. null for the latest changes.
+	 * @param size requested page size, handled as in {@link #getUserHistory(long, Long, int)}
+	 * @return a {@link UserPage} of {@link UserChange}s, the state of each user after the change.
+	 */
+	@Transactional(readOnly = true)
+	public UserPage<UserChange> getChangesBy(String username, Long before, int size) {
+		int pageSize = pageSize(size);
+		List<Object[]> rows = query(AuditEntity.revisionProperty("username").eq(username), before, pageSize + 1);
+		
+		List<UserChange> changes = new ArrayList<UserChange>(Math.min(rows.size(), pageSize));
+		for (int i = 0; i < rows.size() && i < pageSize; i++) {
+			Object[] row = rows.get(i);
+			// the previous states belong to other revisions of other users, reading them would cost a query per row
+			changes.add(new UserChange((UserRevision) row[1], (RevisionType) row[2], (User) row[0], null));
+		}
+		return page(changes, rows.size() > pageSize, pageSize);
+	}
+
+	/**
+	 * reads revisions of users, newest first.
+	 * @param criterion
+	 * @param before
+	 * @param limit
+	 * @return rows of user, {@link UserRevision} and {@link RevisionType}
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Object[]> query(AuditCriterion criterion, Long before, int limit) {
+		AuditQuery query = AuditReaderFactory.get(entityManager).createQuery()
+				.forRevisionsOfEntity(User.class, false, true)
+				.add(criterion)
+				.addOrder(AuditEntity.revisionNumber().desc())
+				.setMaxResults(limit);
+		if (before != null) {
+			query.add(AuditEntity.revisionNumber().lt(before));
+		}
+		return query.getResultList();
+	}
+
+	/**
+	 * @param changes the changes of the page, newest first
+	 * @param hasMore
+	 * @param pageSize
+	 * @return the page, with a cursor to the older changes if there are more.
+	 */
+	private static UserPage<UserChange> page(List<UserChange> changes, boolean hasMore, int pageSize) {
+		Long nextCursor = hasMore ? changes.get(changes.size() - 1).getRevision() : null;
+		return new UserPage<UserChange>(changes, null, nextCursor, pageSize, Direction.DESC);
+	}
+
+	/**
+	 * @param user the state after the revision
+	 * @param previous the state before it, null if unknown
+	 * @param type
+	 * @return the properties shown in the history that differ, null if they can not be told.
+	 */
+	private static Set<String> changed(User user, User previous, RevisionType type) {
+		Set<String> changed = new LinkedHashSet<String>();
+		if (type == RevisionType.DEL) {
+			return changed;
+		}
+		if (previous == null) {
+			// a creation sets everything, the first revision of a user that existed before auditing is unknown
+			return null;
+		}
+		if (!Objects.equals(user.getUserName(), previous.getUserName())) {
+			changed.add("userName");
+		}
+		if (!Objects.equals(user.getFirstName(), previous.getFirstName())) {
+			changed.add("firstName");
+		}
+		if (!Objects.equals(user.getLastName(), previous.getLastName())) {
+			changed.add("lastName");
+		}
+		if (!Objects.equals(user.getEmail(), previous.getEmail())) {
+			changed.add("email");
+		}
+		if (!Objects.equals(user.getPhone(), previous.getPhone())) {
+			changed.add("phone");
+		}
+		if (user.getIsAdmin() != previous.getIsAdmin()) {
+			changed.add("isAdmin");
+		}
+		if (user.isEnabled() != previous.isEnabled()) {
+			changed.add("enabled");
+		}
+		return changed;
+	}
+
+	/**
+	 * @param size the requested page size
+	 * @return the page size to use
+	 */
+	private int pageSize(int size) {
+		return size < 1 ? defaultPageSize : Math.min(size, maxPageSize);
+	}
+}
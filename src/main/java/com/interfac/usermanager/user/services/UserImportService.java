@@ -0,0 +1,335 @@
+package com.interfac.usermanager.user.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+
+import org.hibernate.envers.RevisionType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.interfac.usermanager.user.model.User;
+import com.interfac.usermanager.user.model.UserEvent;
+import com.interfac.usermanager.user.repositories.UserBatchWriter;
+import com.interfac.usermanager.user.repositories.UserRepository;
+import com.interfac.usermanager.user.services.UserRecordReader.Format;
+import com.interfac.usermanager.user.services.UserRecordReader.Record;
+
+/**
+ * This class imports users in bulk from a CSV or JSON stream.
+ *
+ * <p>The file is read as a stream and processed in chunks of <code>usermanager.import.chunk-size</code> rows. For each chunk:
+ * <ol>
+ * 		<li>the {@link User} bean validation constraints (including @PasswordsMatch) are checked in parallel.</li>
+ * 		<li>usernames repeated in the file are rejected, and the usernames already taken are found with a single
+ * 			<code>IN</code> query.</li>
+ * 		<li>the passwords of the rows left are hashed in parallel. Passwords that are already <code>{bcrypt}</code>
+ * 			hashes are kept as they are, hashing plain text passwords is by far the slowest part of an import, so
+ * 			rejected rows are not hashed.</li>
+ * 		<li>the remaining users, their role assignments and their {@link UserEvent}s are inserted by
+ * 			{@link UserBatchWriter} with JDBC batches, in one transaction per chunk. The chunk is audited as one
+ * 			ADD revision copied from the inserted rows.</li>
+ * </ol>
+ * Every rejected row is recorded in the returned {@link ImportReport} with its line and the reason.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+@Service
+public class UserImportService {
+
+	/**
+	 * This instance is Autowired to the {@link UserRepository} interface. handles user data access.
+	 */
+	@Autowired
+	private UserRepository userRepository;
+
+	/**
+	 * inserts the users of a chunk with JDBC batches.
+	 */
+	@Autowired
+	private UserBatchWriter userBatchWriter;
+
+	/**
+	 * provides the roles without querying the database.
+	 */
+	@Autowired
+	private RoleRegistry roleRegistry;
+
+	/**
+	 * provides the username of the admin running the import, for the audit columns.
+	 */
+	@Autowired
+	private AuditorAware<String> auditorAware;
+
+	/**
+	 * the search index, the entity listener that maintains it does not see JDBC inserts.
+	 */
+	@Autowired
+	private UserSearchIndex userSearchIndex;
+
+	/**
+	 * the username filter, updated with the imported usernames.
+	 */
+	@Autowired
+	private UsernameFilter usernameFilter;
+
+	/**
+	 * hashes the imported passwords on its bounded pool.
+	 */
+	@Autowired
+	private HashingPasswordEncoder passwordEncoder;
+
+	/**
+	 * the application's transaction manager.
+	 */
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	/**
+	 * the number of rows validated and inserted together.
+	 */
+	@Value("${usermanager.import.chunk-size:1000}")
+	private int chunkSize;
+
+	/**
+	 * bean validator, thread safe.
+	 */
+	private Validator validator;
+
+	/**
+	 * runs each chunk in its own transaction.
+	 */
+	private TransactionTemplate transactionTemplate;
+
+	/**
+	 * creates the validator and the transaction template.
+	 */
+	@PostConstruct
+	public void init() {
+		validator = Validation.buildDefaultValidatorFactory().getValidator();
+		transactionTemplate = new TransactionTemplate(transactionManager);
+	}
+
+	/**
+	 * imports all the users of the given stream.
+	 * @param in the file content, closed when done.
+	 * @param format
+	 * @return the import report
+	 * @throws IOException if the stream can not be read or is not in the given format.
+	 */
+	public ImportReport importUsers(InputStream in, Format format) throws IOException {
+		long start = System.currentTimeMillis();
+		ImportReport report = new ImportReport();
+		Set<String> seenUserNames = new HashSet<String>();
+		String modifier = auditorAware.getCurrentAuditor();
+		if (modifier == null) {
+			modifier = "import";
+		}
+
+		try (UserRecordReader reader = UserRecordReader.open(in, format)) {
+			List<Record> chunk = new ArrayList<Record>(chunkSize);
+			Record record;
+			while ((record = reader.next()) != null) {
+				chunk.add(record);
+				if (chunk.size() == chunkSize) {
+					importChunk(chunk, seenUserNames, modifier, report);
+					chunk.clear();
+				}
+			}
+			if (!chunk.isEmpty()) {
+				importChunk(chunk, seenUserNames, modifier, report);
+			}
+		}
+		report.setElapsedMillis(System.currentTimeMillis() - start);
+		return report;
+	}
+
+	/**
+	 * validates, checks and inserts a single chunk.
+	 * @param chunk
+	 * @param seenUserNames lower case usernames of the previous rows of the file
+	 * @param modifier
+	 * @param report
+	 */
+	private void importChunk(List<Record> chunk, Set<String> seenUserNames, String modifier, ImportReport report) {
+		report.addTotal(chunk.size());
+
+		// bean validation is CPU bound and the validator is thread safe
+		List<String> problems = chunk.parallelStream().map(this::validate).collect(Collectors.toList());
+
+		List<Record> candidates = new ArrayList<Record>(chunk.size());
+		for (int i = 0; i < chunk.size(); i++) {
+			Record record = chunk.get(i);
+			String username = record.getUser().getUserName();
+			if (problems.get(i) != null) {
+				report.reject(record.getLine(), username, problems.get(i));
+			} else if (!seenUserNames.add(username.toLowerCase())) {
+				report.reject(record.getLine(), username, "the username is repeated in the file");
+			} else {
+				candidates.add(record);
+			}
+		}
+		if (candidates.isEmpty()) {
+			return;
+		}
+
+		List<String> usernames = new ArrayList<String>(candidates.size());
+		for (Record record : candidates) {
+			usernames.add(record.getUser().getUserName());
+		}
+		Set<String> taken = new HashSet<String>();
+		for (String username : userRepository.findUserNamesIn(usernames)) {
+			taken.add(username.toLowerCase());
+		}
+
+		List<Record> free = new ArrayList<Record>(candidates.size());
+		for (Record record : candidates) {
+			if (taken.contains(record.getUser().getUserName().toLowerCase())) {
+				report.reject(record.getLine(), record.getUser().getUserName(),
+						"A user already exists with that username");
+			} else {
+				free.add(record);
+			}
+		}
+
+		// only the rows that will be inserted pay for a password hash, a repeated import hashes nothing
+		List<String> hashProblems = free.parallelStream().map(this::hashPassword).collect(Collectors.toList());
+		Date now = new Date();
+		List<Record> accepted = new ArrayList<Record>(free.size());
+		for (int i = 0; i < free.size(); i++) {
+			Record record = free.get(i);
+			User user = record.getUser();
+			if (hashProblems.get(i) != null) {
+				report.reject(record.getLine(), user.getUserName(), hashProblems.get(i));
+				continue;
+			}
+			user.setDateCreated(now);
+			user.setDateModified(now);
+			user.setLatestModifier(modifier);
+			accepted.add(record);
+		}
+		if (accepted.isEmpty()) {
+			return;
+		}
+
+		try {
+			insert(accepted, modifier);
+			report.addImported(accepted.size());
+		} catch (DataIntegrityViolationException e) {
+			// a username was taken after the check, find the offending rows one by one
+			for (Record record : accepted) {
+				List<Record> single = new ArrayList<Record>(1);
+				single.add(record);
+				try {
+					insert(single, modifier);
+					report.addImported(1);
+				} catch (DataAccessException ex) {
+					report.reject(record.getLine(), record.getUser().getUserName(),
+							"could not be inserted: " + ex.getMostSpecificCause().getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * inserts the users, their role assignments, their audit revision and their creation events in one transaction.
+	 * @param records validated records with free usernames
+	 * @param modifier the user running the import, recorded on the revision
+	 */
+	private void insert(List<Record> records, String modifier) {
+		transactionTemplate.execute(status -> {
+			List<User> users = new ArrayList<User>(records.size());
+			Map<String, User> usersByName = new HashMap<String, User>();
+			for (Record record : records) {
+				users.add(record.getUser());
+				usersByName.put(record.getUser().getUserName().toLowerCase(), record.getUser());
+			}
+			userBatchWriter.insertUsers(users);
+
+			Map<Long, Long> roleIdsByUserId = new HashMap<Long, Long>();
+			for (Object[] row : userRepository.findIdsByUserNameIn(usersByName.keySet())) {
+				User user = usersByName.get(((String) row[1]).toLowerCase());
+				user.setUserId((Long) row[0]);
+				String role = user.getIsAdmin() ? "ROLE_ADMIN" : "ROLE_USER";
+				roleIdsByUserId.put(user.getUserId(), roleRegistry.getRole(role).getId());
+			}
+			userBatchWriter.insertUserRoles(roleIdsByUserId);
+
+			// the events carry no audit state, the whole chunk is audited here as one ADD revision
+			Date now = new Date();
+			long revision = userBatchWriter.insertRevision(modifier, now);
+			userBatchWriter.auditUsers(roleIdsByUserId.keySet(), revision, RevisionType.ADD);
+			userBatchWriter.auditUserRoles(roleIdsByUserId.keySet(), revision, RevisionType.ADD);
+			userBatchWriter.insertEvents(roleIdsByUserId.keySet(), UserEvent.Type.CREATED, null, now);
+			return null;
+		});
+		for (Record record : records) {
+			userSearchIndex.add(record.getUser());
+			usernameFilter.add(record.getUser().getUserName());
+		}
+	}
+
+	/**
+	 * @param record
+	 * @return the validation messages of the record joined together, or null if it is valid.
+	 */
+	private String validate(Record record) {
+		if (record.getError() != null) {
+			return record.getError();
+		}
+		try {
+			User user = record.getUser();
+			Set<ConstraintViolation<User>> violations = validator.validate(user);
+			if (violations.isEmpty()) {
+				return null;
+			}
+			StringBuilder messages = new StringBuilder();
+			for (ConstraintViolation<User> violation : violations) {
+				if (messages.length() > 0) {
+					messages.append("; ");
+				}
+				messages.append(violation.getMessage());
+			}
+			return messages.toString();
+		} catch (RuntimeException e) {
+			return "invalid row: " + e.getMessage();
+		}
+	}
+
+	/**
+	 * hashes the password of a valid record, unless it is given already hashed.
+	 * @param record
+	 * @return null, or the reason the password could not be hashed.
+	 */
+	private String hashPassword(Record record) {
+		try {
+			User user = record.getUser();
+			if (!passwordEncoder.isEncoded(user.getPassword())) {
+				user.setPassword(passwordEncoder.encode(user.getPassword()));
+			}
+			user.setMatchingPassword(user.getPassword());
+			return null;
+		} catch (RuntimeException e) {
+			return "invalid row: " + e.getMessage();
+		}
+	}
+}
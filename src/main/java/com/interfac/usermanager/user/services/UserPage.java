@@ -0,0 +1,116 @@
+package com.interfac.usermanager.user.services;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.data.domain.Sort.Direction;
+
+/**
+ * This class represents a single keyset (cursor) page of users.
+ *
+ * <p>Instead of an offset, a page carries the <code>userId</code> of its first and last rows.
+ * The next page is read with <code>userid &gt; nextCursor</code> (or <code>&lt;</code> when sorting descending),
+ * so the database seeks on the primary key and the cost of a page does not grow with its position in the table.
+ * Pages of the audit trail ({@link UserHistoryService}) are keyed the same way on the revision number.</p>
+ *
+ * @author Ali Abdalla
+ *
+ * @param <T> the type of the rows in the page.
+ */
+public class UserPage<T> {
+
+	/**
+	 * the rows of this page, in the requested sort order.
+	 */
+	private final List<T> content;
+
+	/**
+	 * the <code>userId</code> to pass as <i>before</i> to get the previous page, <code>null</code> if this is the first page.
+	 */
+	private final Long previousCursor;
+
+	/**
+	 * the <code>userId</code> to pass as <i>after</i> to get the next page, <code>null</code> if this is the last page.
+	 */
+	private final Long nextCursor;
+
+	/**
+	 * the page size used to read this page.
+	 */
+	private final int size;
+
+	/**
+	 * the sort direction on <code>userId</code>.
+	 */
+	private final Direction direction;
+
+	/**
+	 * Parameterized constructor
+	 * @param content
+	 * @param previousCursor
+	 * @param nextCursor
+	 * @param size
+	 * @param direction
+	 */
+	public UserPage(List<T> content, Long previousCursor, Long nextCursor, int size, Direction direction) {
+		this.content = Collections.unmodifiableList(content);
+		this.previousCursor = previousCursor;
+		this.nextCursor = nextCursor;
+		this.size = size;
+		this.direction = direction;
+	}
+
+	/**
+	 * Getter method
+	 * @return content
+	 */
+	public List<T> getContent() {
+		return content;
+	}
+
+	/**
+	 * Getter method
+	 * @return previousCursor
+	 */
+	public Long getPreviousCursor() {
+		return previousCursor;
+	}
+
+	/**
+	 * Getter method
+	 * @return nextCursor
+	 */
+	public Long getNextCursor() {
+		return nextCursor;
+	}
+
+	/**
+	 * Getter method
+	 * @return size
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Getter method
+	 * @return direction
+	 */
+	public Direction getDirection() {
+		return direction;
+	}
+
+	/**
+	 * @return true if there is a page before this one.
+	 */
+	public boolean hasPrevious() {
+		return previousCursor != null;
+	}
+
+	/**
+	 * @return true if there is a page after this one.
+	 */
+	public boolean hasNext() {
+		return nextCursor != null;
+	}
+}
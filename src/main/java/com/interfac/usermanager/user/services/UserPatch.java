@@ -0,0 +1,191 @@
+package com.interfac.usermanager.user.services;
+
+import org.springframework.util.StringUtils;
+
+import com.interfac.usermanager.user.model.User;
+
+/**
+ * This class holds a partial update of a {@link User}, see {@link UserService#patchUser(long, long, UserPatch)}.
+ * 
+ * <p>Every field is optional, a null field leaves the user's value as it is. Fields equal to the stored value 
+ * are not changed either, so the UPDATE statement only contains the columns that really changed.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+public class UserPatch {
+
+	private String userName;
+	
+	private String firstName;
+	
+	private String lastName;
+	
+	private String email;
+	
+	private String phone;
+	
+	/**
+	 * a new raw password, null or blank for no change.
+	 */
+	private String password;
+	
+	private Boolean isAdmin;
+	
+	private Boolean enabled;
+	
+	/**
+	 * creates the patch of an edit form, which carries every editable field.
+	 * @param user the form-bound user
+	 * @return the patch, its enabled flag is null because the form does not have it. The password is null if it was
+	 * left empty, the form does not get the stored one.
+	 */
+	public static UserPatch of(User user) {
+		UserPatch patch = new UserPatch();
+		patch.setUserName(user.getUserName());
+		patch.setFirstName(user.getFirstName());
+		patch.setLastName(user.getLastName());
+		patch.setEmail(user.getEmail());
+		patch.setPhone(user.getPhone());
+		patch.setPassword(StringUtils.hasText(user.getPassword()) ? user.getPassword() : null);
+		patch.setIsAdmin(user.getIsAdmin());
+		return patch;
+	}
+
+	/**
+	 * getter method
+	 * @return userName
+	 */
+	public String getUserName() {
+		return userName;
+	}
+
+	/**
+	 * setter method
+	 * @param userName
+	 */
+	public void setUserName(String userName) {
+		this.userName = userName;
+	}
+
+	/**
+	 * getter method
+	 * @return firstName
+	 */
+	public String getFirstName() {
+		return firstName;
+	}
+
+	/**
+	 * setter method
+	 * @param firstName
+	 */
+	public void setFirstName(String firstName) {
+		this.firstName = firstName;
+	}
+
+	/**
+	 * getter method
+	 * @return lastName
+	 */
+	public String getLastName() {
+		return lastName;
+	}
+
+	/**
+	 * setter method
+	 * @param lastName
+	 */
+	public void setLastName(String lastName) {
+		this.lastName = lastName;
+	}
+
+	/**
+	 * getter method
+	 * @return email
+	 */
+	public String getEmail() {
+		return email;
+	}
+
+	/**
+	 * setter method
+	 * @param email
+	 */
+	public void setEmail(String email) {
+		this.email = email;
+	}
+
+	/**
+	 * getter method
+	 * @return phone
+	 */
+	public String getPhone() {
+		return phone;
+	}
+
+	/**
+	 * setter method
+	 * @param phone
+	 */
+	public void setPhone(String phone) {
+		this.phone = phone;
+	}
+
+	/**
+	 * getter method
+	 * @return password
+	 */
+	public String getPassword() {
+		return password;
+	}
+
+	/**
+	 * setter method
+	 * @param password
+	 */
+	public void setPassword(String password) {
+		this.password = password;
+	}
+
+	/**
+	 * getter method
+	 * @return isAdmin
+	 */
+	public Boolean getIsAdmin() {
+		return isAdmin;
+	}
+
+	/**
+	 * setter method
+	 * @param isAdmin
+	 */
+	public void setIsAdmin(Boolean isAdmin) {
+		this.isAdmin = isAdmin;
+	}
+
+	/**
+	 * getter method
+	 * @return enabled
+	 */
+	public Boolean getEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * setter method
+	 * @param enabled
+	 */
+	public void setEnabled(Boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "UserPatch [userName=" + userName + ", firstName=" + firstName + ", lastName=" + lastName + ", email="
+				+ email + ", phone=" + phone + ", isAdmin=" + isAdmin + ", enabled=" + enabled + "]";
+	}
+}
@@ -0,0 +1,47 @@
+package com.interfac.usermanager.user.services;
+
+import java.util.Collection;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+/**
+ * This class extends spring security's {@link User} with the {@link PrivilegeSet} of the user's roles.
+ * 
+ * <p>It is the principal of logged in users, built once when the user is loaded and kept in the 
+ * <i>"userDetails"</i> cache, so privilege checks read a bitset instead of scanning the authorities.</p>
+ * 
+ * @author Ali Abdalla
+ *
+ */
+public class UserPrincipal extends User {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * the privileges of the user's roles.
+	 */
+	private final PrivilegeSet privileges;
+
+	/**
+	 * Parameterized constructor
+	 * @param username
+	 * @param password
+	 * @param enabled
+	 * @param authorities the roles and the names of their privileges
+	 * @param privileges the privileges of the roles
+	 */
+	public UserPrincipal(String username, String password, boolean enabled,
+			Collection<? extends GrantedAuthority> authorities, PrivilegeSet privileges) {
+		super(username, password, enabled, true, true, true, authorities);
+		this.privileges = privileges;
+	}
+
+	/**
+	 * Getter method
+	 * @return the privileges of the user's roles
+	 */
+	public PrivilegeSet getPrivileges() {
+		return privileges;
+	}
+}
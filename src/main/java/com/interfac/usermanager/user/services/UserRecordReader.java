@@ -0,0 +1,288 @@
+package com.interfac.usermanager.user.services;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.interfac.usermanager.user.model.User;
+
+/**
+ * This class reads {@link User} records one at a time from a CSV or JSON stream,
+ * so files of any size can be imported without loading them in memory.
+ *
+ * <p>CSV files start with a header line naming the columns, JSON files hold a single array of objects.
+ * The recognized column/property names are <i>userName, firstName, lastName, email, phone, password,
+ * matchingPassword</i> and <i>isAdmin</i> (case insensitive). <i>matchingPassword</i> defaults to the password.
+ * Quoted CSV fields may contain commas and doubled quotes but not line breaks.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+public abstract class UserRecordReader implements Closeable {
+
+	/**
+	 * The supported import file formats.
+	 */
+	public enum Format {
+		CSV, JSON;
+
+		/**
+		 * @param fileName
+		 * @return JSON for <i>.json</i> files, CSV otherwise.
+		 */
+		public static Format fromFileName(String fileName) {
+			return fileName != null && fileName.toLowerCase().endsWith(".json") ? JSON : CSV;
+		}
+	}
+
+	/**
+	 * A single record read from the file.
+	 */
+	public static class Record {
+
+		private final int line;
+
+		private final User user;
+
+		private final String error;
+
+		Record(int line, User user, String error) {
+			this.line = line;
+			this.user = user;
+			this.error = error;
+		}
+
+		/**
+		 * @return the line (CSV) or the position in the array (JSON) of the record, starting at 1.
+		 */
+		public int getLine() {
+			return line;
+		}
+
+		/**
+		 * @return the parsed user, never null.
+		 */
+		public User getUser() {
+			return user;
+		}
+
+		/**
+		 * @return a parse error message, or null if the record could be read.
+		 */
+		public String getError() {
+			return error;
+		}
+	}
+
+	/**
+	 * opens a reader on the given stream.
+	 * @param in UTF-8 encoded stream, closed with the reader.
+	 * @param format
+	 * @return a reader for the format
+	 * @throws IOException if the file header can not be read
+	 */
+	public static UserRecordReader open(InputStream in, Format format) throws IOException {
+		if (format == Format.JSON) {
+			return new JsonReader(in);
+		}
+		return new CsvReader(in);
+	}
+
+	/**
+	 * reads the next record.
+	 * @return the next record, or null at the end of the stream.
+	 * @throws IOException
+	 */
+	public abstract Record next() throws IOException;
+
+	/**
+	 * sets a single field of the user by its column name, unknown columns are ignored.
+	 * @param user
+	 * @param field
+	 * @param value
+	 */
+	static void setField(User user, String field, String value) {
+		if (value != null) {
+			value = value.trim();
+		}
+		switch (field.trim().toLowerCase()) {
+		case "username":
+			user.setUserName(value);
+			break;
+		case "firstname":
+			user.setFirstName(value);
+			break;
+		case "lastname":
+			user.setLastName(value);
+			break;
+		case "email":
+			user.setEmail(value);
+			break;
+		case "phone":
+			user.setPhone(value);
+			break;
+		case "password":
+			user.setPassword(value);
+			break;
+		case "matchingpassword":
+			user.setMatchingPassword(value);
+			break;
+		case "isadmin":
+		case "admin":
+			user.setIsAdmin(Boolean.parseBoolean(value));
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * fills the defaults of a fully read user.
+	 * @param user
+	 * @return the same user
+	 */
+	static User complete(User user) {
+		if (user.getMatchingPassword() == null) {
+			user.setMatchingPassword(user.getPassword());
+		}
+		user.setEnabled(true);
+		return user;
+	}
+
+	/**
+	 * Reads a CSV file with a header line.
+	 */
+	private static class CsvReader extends UserRecordReader {
+
+		private final BufferedReader reader;
+
+		private final List<String> header;
+
+		private int line = 1;
+
+		CsvReader(InputStream in) throws IOException {
+			reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+			String first = reader.readLine();
+			if (first == null) {
+				throw new IOException("The file is empty, a header line is expected");
+			}
+			// drop the byte order mark some spreadsheet tools write
+			if (first.startsWith("\uFEFF")) {
+				first = first.substring(1);
+			}
+			header = split(first);
+		}
+
+		@Override
+		public Record next() throws IOException {
+			String text;
+			do {
+				text = reader.readLine();
+				line++;
+			} while (text != null && text.trim().isEmpty());
+			if (text == null) {
+				return null;
+			}
+			User user = new User();
+			List<String> values = split(text);
+			if (values.size() != header.size()) {
+				return new Record(line, user, "expected " + header.size() + " columns but found " + values.size());
+			}
+			for (int i = 0; i < values.size(); i++) {
+				setField(user, header.get(i), values.get(i));
+			}
+			return new Record(line, complete(user), null);
+		}
+
+		@Override
+		public void close() throws IOException {
+			reader.close();
+		}
+
+		/**
+		 * splits a CSV line, honoring double quoted fields.
+		 * @param text
+		 * @return the unquoted fields
+		 */
+		private static List<String> split(String text) {
+			List<String> fields = new ArrayList<String>();
+			StringBuilder field = new StringBuilder();
+			boolean quoted = false;
+			for (int i = 0; i < text.length(); i++) {
+				char c = text.charAt(i);
+				if (quoted) {
+					if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+						field.append('"');
+						i++;
+					} else if (c == '"') {
+						quoted = false;
+					} else {
+						field.append(c);
+					}
+				} else if (c == '"') {
+					quoted = true;
+				} else if (c == ',') {
+					fields.add(field.toString());
+					field.setLength(0);
+				} else {
+					field.append(c);
+				}
+			}
+			fields.add(field.toString());
+			return fields;
+		}
+	}
+
+	/**
+	 * Reads a JSON array of user objects with a streaming parser.
+	 */
+	private static class JsonReader extends UserRecordReader {
+
+		private static final ObjectMapper MAPPER = new ObjectMapper();
+
+		private final JsonParser parser;
+
+		private int position = 0;
+
+		JsonReader(InputStream in) throws IOException {
+			parser = MAPPER.getFactory().createParser(in);
+			if (parser.nextToken() != JsonToken.START_ARRAY) {
+				throw new IOException("A JSON array of users is expected");
+			}
+		}
+
+		@Override
+		public Record next() throws IOException {
+			JsonToken token = parser.nextToken();
+			if (token == null || token == JsonToken.END_ARRAY) {
+				return null;
+			}
+			position++;
+			User user = new User();
+			if (token != JsonToken.START_OBJECT) {
+				parser.skipChildren();
+				return new Record(position, user, "expected a JSON object");
+			}
+			@SuppressWarnings("unchecked")
+			Map<String, Object> values = parser.readValueAs(Map.class);
+			for (Map.Entry<String, Object> value : values.entrySet()) {
+				setField(user, value.getKey(), value.getValue() == null ? null : value.getValue().toString());
+			}
+			return new Record(position, complete(user), null);
+		}
+
+		@Override
+		public void close() throws IOException {
+			parser.close();
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package com.interfac.usermanager.user.services;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.interfac.usermanager.user.model.User;
+import com.interfac.usermanager.user.services.UserRecordReader.Format;
+
+/**
+ * This class writes {@link User} records one at a time to a CSV or JSON stream, the counterpart of
+ * {@link UserRecordReader}. Nothing but the current record is held in memory.
+ *
+ * <p>The columns/properties are <i>userId, userName, firstName, lastName, email, phone, isAdmin, enabled,
+ * dateCreated, dateModified</i> and <i>latestModifier</i>, dates in ISO-8601 UTC. Passwords are not exported.
+ * CSV files start with a header line, JSON files hold a single array of objects.</p>
+ *
+ * <p>{@link #close()} ends the file, e.g. closes the JSON array, and closes the stream. It is only called once
+ * every record was written, a file that was not completed is left without its end.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+public abstract class UserRecordWriter implements Closeable, Flushable {
+
+	/**
+	 * the exported columns, in order.
+	 */
+	static final String[] COLUMNS = { "userId", "userName", "firstName", "lastName", "email", "phone", "isAdmin",
+			"enabled", "dateCreated", "dateModified", "latestModifier" };
+
+	/**
+	 * opens a writer on the given stream and writes the file header.
+	 * @param out the stream, closed with the writer.
+	 * @param format
+	 * @return a writer for the format
+	 * @throws IOException
+	 */
+	public static UserRecordWriter open(OutputStream out, Format format) throws IOException {
+		if (format == Format.JSON) {
+			return new JsonWriter(out);
+		}
+		return new CsvWriter(out);
+	}
+
+	/**
+	 * writes a single user.
+	 * @param user
+	 * @throws IOException
+	 */
+	public abstract void write(User user) throws IOException;
+
+	/**
+	 * @param date
+	 * @return the date in ISO-8601 UTC, or null
+	 */
+	static String format(Date date) {
+		return date == null ? null : DateTimeFormatter.ISO_INSTANT.format(date.toInstant());
+	}
+
+	/**
+	 * Writes a CSV file with a header line, UTF-8 encoded.
+	 */
+	private static class CsvWriter extends UserRecordWriter {
+
+		private final Writer writer;
+
+		CsvWriter(OutputStream out) throws IOException {
+			writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+			writer.write(String.join(",", COLUMNS));
+			writer.write("\r\n");
+		}
+
+		@Override
+		public void write(User user) throws IOException {
+			writer.write(Long.toString(user.getUserId()));
+			field(user.getUserName());
+			field(user.getFirstName());
+			field(user.getLastName());
+			field(user.getEmail());
+			field(user.getPhone());
+			field(Boolean.toString(user.getIsAdmin()));
+			field(Boolean.toString(user.isEnabled()));
+			field(format(user.getDateCreated()));
+			field(format(user.getDateModified()));
+			field(user.getLatestModifier());
+			writer.write("\r\n");
+		}
+
+		/**
+		 * writes a separator and the value, quoted if it holds a comma, a quote or a line break.
+		 */
+		private void field(String value) throws IOException {
+			writer.write(',');
+			if (value == null) {
+				return;
+			}
+			if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+				writer.write(value);
+				return;
+			}
+			writer.write('"');
+			writer.write(value.replace("\"", "\"\""));
+			writer.write('"');
+		}
+
+		@Override
+		public void flush() throws IOException {
+			writer.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Writes a JSON array of user objects with a streaming generator.
+	 */
+	private static class JsonWriter extends UserRecordWriter {
+
+		private static final ObjectMapper MAPPER = new ObjectMapper();
+
+		private final JsonGenerator generator;
+
+		JsonWriter(OutputStream out) throws IOException {
+			generator = MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8);
+			generator.writeStartArray();
+		}
+
+		@Override
+		public void write(User user) throws IOException {
+			generator.writeStartObject();
+			generator.writeNumberField(COLUMNS[0], user.getUserId());
+			generator.writeStringField(COLUMNS[1], user.getUserName());
+			generator.writeStringField(COLUMNS[2], user.getFirstName());
+			generator.writeStringField(COLUMNS[3], user.getLastName());
+			generator.writeStringField(COLUMNS[4], user.getEmail());
+			generator.writeStringField(COLUMNS[5], user.getPhone());
+			generator.writeBooleanField(COLUMNS[6], user.getIsAdmin());
+			generator.writeBooleanField(COLUMNS[7], user.isEnabled());
+			generator.writeStringField(COLUMNS[8], format(user.getDateCreated()));
+			generator.writeStringField(COLUMNS[9], format(user.getDateModified()));
+			generator.writeStringField(COLUMNS[10], user.getLatestModifier());
+			generator.writeEndObject();
+		}
+
+		@Override
+		public void flush() throws IOException {
+			generator.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			generator.writeEndArray();
+			generator.close();
+		}
+	}
+}
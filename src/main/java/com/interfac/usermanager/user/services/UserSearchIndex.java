@@ -0,0 +1,559 @@
+package com.interfac.usermanager.user.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import com.interfac.usermanager.user.model.User;
+import com.interfac.usermanager.user.repositories.UserRepository;
+
+/**
+ * This class is an in-memory search index over the <i>userName, firstName, lastName</i> and <i>email</i> of all users.
+ *
+ * <p>Every field value is split in lower case terms (the whole value and its words, e.g. both <i>"j.smith@mail.com"</i>
+ * and <i>"j", "smith", "mail", "com"</i>). Terms are kept in a sorted dictionary for prefix lookups and are also
+ * indexed by their trigrams, which finds substrings and near misses without scanning the table. Each query word is
+ * matched as exact term, prefix, substring or fuzzy (trigram similarity), weighted by the field it was found in.
+ * Users must match every word of the query and are returned best match first.</p>
+ *
+ * <p>The index is filled by {@link #rebuild()} at startup and kept in sync by the {@link UserSearchIndexListener}
+ * JPA listener. A rebuild loads a new index next to the current one and replaces it once complete, so queries never
+ * see a partly loaded index. The rebuild appends the IDs of each term to a growable buffer and sorts it once at the
+ * end, only the single user changes copy the ID arrays of their terms. The listener runs when the change is flushed, a rolled back change stays in the index until that
+ * user is saved again or the index is rebuilt.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+@Component
+public class UserSearchIndex {
+
+	/**
+	 * field weights, a match on the username ranks above the same match on the email, then the names.
+	 */
+	private static final char[] FIELDS = { 'u', 'e', 'l', 'f' };
+	private static final int[] FIELD_WEIGHTS = { 4, 3, 2, 2 };
+
+	/**
+	 * the minimum trigram similarity of a fuzzy match.
+	 */
+	private static final double MIN_SIMILARITY = 0.4;
+
+	/**
+	 * the instance used by the {@link UserSearchIndexListener}, which is created by hibernate and not by spring.
+	 */
+	private static volatile UserSearchIndex instance;
+
+	/**
+	 * This instance is Autowired to the {@link UserRepository} interface. handles user data access.
+	 */
+	@Autowired
+	private UserRepository userRepository;
+
+	/**
+	 * the largest number of ranked results kept for a query, results past it are not reachable by paging.
+	 */
+	@Value("${usermanager.search.max-results:1000}")
+	private int maxResults;
+
+	/**
+	 * guards the changes of the current snapshot and of the one being rebuilt, queries share the read lock.
+	 */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * the index queries read, replaced as a whole by {@link #rebuild()}.
+	 */
+	private volatile Snapshot current = new Snapshot();
+
+	/**
+	 * true while {@link #rebuild()} loads a new index.
+	 */
+	private boolean rebuilding;
+
+	/**
+	 * the users changed while the index is rebuilt, with their new <i>userName, email, lastName</i> and
+	 * <i>firstName</i>, or null if they were removed. Their rows read by the rebuild may already be outdated, so
+	 * the changes are made again once it loaded them.
+	 */
+	private final Map<Long, String[]> changedWhileRebuilding = new HashMap<Long, String[]>();
+
+	/**
+	 * publishes this instance to the entity listener.
+	 */
+	@PostConstruct
+	public void init() {
+		instance = this;
+	}
+
+	/**
+	 * @return the index, or null before the application context is started.
+	 */
+	static UserSearchIndex getInstance() {
+		return instance;
+	}
+
+	/**
+	 * loads all the users from the database, in keyset pages, into a new index that replaces the current one once it
+	 * is complete. Queries use the current index meanwhile, users changed meanwhile are changed in the current index
+	 * at once and in the new one before it replaces the current one.
+	 */
+	public void rebuild() {
+		lock.writeLock().lock();
+		try {
+			rebuilding = true;
+			changedWhileRebuilding.clear();
+		} finally {
+			lock.writeLock().unlock();
+		}
+		try {
+			// only this thread sees the new index until it replaces the current one
+			Snapshot fresh = new Snapshot();
+			Map<String, IdBuffer> buffers = new HashMap<String, IdBuffer>();
+			long after = Long.MIN_VALUE;
+			List<Object[]> rows;
+			do {
+				rows = userRepository.findSearchFieldsAfter(after, new PageRequest(0, 5000));
+				for (Object[] row : rows) {
+					after = (Long) row[0];
+					fresh.loadUser(buffers, after, (String) row[1], (String) row[2], (String) row[3], (String) row[4]);
+				}
+			} while (!rows.isEmpty());
+			fresh.freeze(buffers);
+
+			lock.writeLock().lock();
+			try {
+				for (Map.Entry<Long, String[]> change : changedWhileRebuilding.entrySet()) {
+					fresh.removeUser(change.getKey());
+					String[] fields = change.getValue();
+					if (fields != null) {
+						fresh.addUser(change.getKey(), fields[0], fields[1], fields[2], fields[3]);
+					}
+				}
+				current = fresh;
+			} finally {
+				lock.writeLock().unlock();
+			}
+		} finally {
+			lock.writeLock().lock();
+			try {
+				rebuilding = false;
+				changedWhileRebuilding.clear();
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * adds or replaces the given user in the index.
+	 * @param user a saved user
+	 */
+	public void add(User user) {
+		lock.writeLock().lock();
+		try {
+			current.removeUser(user.getUserId());
+			current.addUser(user.getUserId(), user.getUserName(), user.getEmail(), user.getLastName(),
+					user.getFirstName());
+			if (rebuilding) {
+				changedWhileRebuilding.put(user.getUserId(),
+						new String[] { user.getUserName(), user.getEmail(), user.getLastName(), user.getFirstName() });
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * removes the user from the index.
+	 * @param userId
+	 */
+	public void remove(long userId) {
+		lock.writeLock().lock();
+		try {
+			current.removeUser(userId);
+			if (rebuilding) {
+				changedWhileRebuilding.put(userId, null);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of indexed users.
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return current.termsByUser.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * searches the index.
+	 * @param query one or more words, case insensitive
+	 * @param page page number, starting at 0
+	 * @param size page size, at least 1
+	 * @return the IDs of the requested page, best match first, and the total number of matches.
+	 * @throws IllegalArgumentException if the page is negative or the size is not positive.
+	 */
+	public SearchResult<Long> search(String query, int page, int size) {
+		if (page < 0 || size < 1) {
+			throw new IllegalArgumentException("Invalid page " + page + " of size " + size);
+		}
+		List<String> words = words(query);
+		if (words.isEmpty()) {
+			return new SearchResult<Long>(Collections.<Long>emptyList(), query, page, size, 0);
+		}
+
+		Map<Long, Double> scores = null;
+		lock.readLock().lock();
+		try {
+			Snapshot snapshot = current;
+			for (String word : words) {
+				Map<Long, Double> wordScores = snapshot.match(word);
+				if (scores == null) {
+					scores = wordScores;
+				} else {
+					// every word has to match, keep the users found by both
+					Map<Long, Double> both = new HashMap<Long, Double>();
+					for (Map.Entry<Long, Double> score : scores.entrySet()) {
+						Double other = wordScores.get(score.getKey());
+						if (other != null) {
+							both.put(score.getKey(), score.getValue() + other);
+						}
+					}
+					scores = both;
+				}
+				if (scores.isEmpty()) {
+					break;
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		List<Map.Entry<Long, Double>> ranked = new ArrayList<Map.Entry<Long, Double>>(scores.entrySet());
+		ranked.sort((a, b) -> {
+			int byScore = Double.compare(b.getValue(), a.getValue());
+			return byScore != 0 ? byScore : Long.compare(a.getKey(), b.getKey());
+		});
+		int total = Math.min(ranked.size(), maxResults);
+		// a long, page * size overflows an int for pages far past the end
+		long offset = (long) page * size;
+		List<Long> ids = new ArrayList<Long>((int) Math.max(Math.min(total - offset, size), 0));
+		for (long i = offset; i < total && ids.size() < size; i++) {
+			ids.add(ranked.get((int) i).getKey());
+		}
+		return new SearchResult<Long>(ids, query, page, size, total);
+	}
+
+	/**
+	 * keeps the best score of each user.
+	 */
+	private static void addScores(Map<Long, Double> scores, long[] ids, double score) {
+		for (long id : ids) {
+			Double current = scores.get(id);
+			if (current == null || current < score) {
+				scores.put(id, score);
+			}
+		}
+	}
+
+	/**
+	 * @return the field qualified terms of a user
+	 */
+	private static Set<String> termsOf(String userName, String email, String lastName, String firstName) {
+		Set<String> terms = new LinkedHashSet<String>();
+		addTerms(terms, 'u', userName);
+		addTerms(terms, 'e', email);
+		addTerms(terms, 'l', lastName);
+		addTerms(terms, 'f', firstName);
+		return terms;
+	}
+
+	/**
+	 * adds the whole value and each of its words as field qualified terms.
+	 */
+	private static void addTerms(Set<String> terms, char field, String value) {
+		if (value == null || value.trim().isEmpty()) {
+			return;
+		}
+		String lower = value.trim().toLowerCase();
+		terms.add(field + ":" + lower);
+		for (String word : words(lower)) {
+			terms.add(field + ":" + word);
+		}
+	}
+
+	/**
+	 * @param text
+	 * @return the lower case alphanumeric words of the text
+	 */
+	private static List<String> words(String text) {
+		List<String> words = new ArrayList<String>();
+		if (text == null) {
+			return words;
+		}
+		for (String word : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+			if (!word.isEmpty()) {
+				words.add(word);
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * @param term
+	 * @return the distinct trigrams of the term, or the term itself if it is shorter than 3 characters.
+	 */
+	private static Set<String> trigramsOf(String term) {
+		Set<String> result = new HashSet<String>();
+		if (term.length() < 3) {
+			result.add(term);
+			return result;
+		}
+		for (int i = 0; i + 3 <= term.length(); i++) {
+			result.add(term.substring(i, i + 3));
+		}
+		return result;
+	}
+
+	private static int fieldIndex(char field) {
+		for (int f = 0; f < FIELDS.length; f++) {
+			if (FIELDS[f] == field) {
+				return f;
+			}
+		}
+		throw new IllegalArgumentException("Unknown field " + field);
+	}
+
+	/**
+	 * @return a copy of the sorted array with the ID added.
+	 */
+	private static long[] insert(long[] ids, long id) {
+		int position = Arrays.binarySearch(ids, id);
+		if (position >= 0) {
+			return ids;
+		}
+		position = -position - 1;
+		long[] copy = new long[ids.length + 1];
+		System.arraycopy(ids, 0, copy, 0, position);
+		copy[position] = id;
+		System.arraycopy(ids, position, copy, position + 1, ids.length - position);
+		return copy;
+	}
+
+	/**
+	 * @return a copy of the sorted array without the ID.
+	 */
+	private static long[] remove(long[] ids, long id) {
+		int position = Arrays.binarySearch(ids, id);
+		if (position < 0) {
+			return ids;
+		}
+		long[] copy = new long[ids.length - 1];
+		System.arraycopy(ids, 0, copy, 0, position);
+		System.arraycopy(ids, position + 1, copy, position, ids.length - position - 1);
+		return copy;
+	}
+
+	/**
+	 * The structures of an index, read under the read lock and changed under the write lock.
+	 */
+	private static class Snapshot {
+
+		/**
+		 * the indexed terms of each user, needed to remove them when the user changes.
+		 */
+		private final Map<Long, String[]> termsByUser = new HashMap<Long, String[]>();
+
+		/**
+		 * field qualified term (e.g. <i>"u:jsmith"</i>) to the sorted IDs of the users having it.
+		 */
+		private final TreeMap<String, long[]> postings = new TreeMap<String, long[]>();
+
+		/**
+		 * trigram to the field qualified terms containing it.
+		 */
+		private final Map<String, Set<String>> trigrams = new HashMap<String, Set<String>>();
+
+		/**
+		 * scores every user matching a single query word, under the read lock.
+		 * @param word lower case
+		 * @return the best score of each matching user
+		 */
+		Map<Long, Double> match(String word) {
+			Map<Long, Double> scores = new HashMap<Long, Double>();
+			for (int f = 0; f < FIELDS.length; f++) {
+				String qualified = FIELDS[f] + ":" + word;
+				// exact and prefix matches, straight from the sorted dictionary
+				for (Map.Entry<String, long[]> term : postings.subMap(qualified, qualified + Character.MAX_VALUE).entrySet()) {
+					int termLength = term.getKey().length() - 2;
+					double score = termLength == word.length() ? 100 : 50.0 * word.length() / termLength;
+					addScores(scores, term.getValue(), score * FIELD_WEIGHTS[f]);
+				}
+			}
+			if (word.length() < 3) {
+				return scores;
+			}
+
+			// substring and fuzzy matches, through the terms sharing trigrams with the word
+			Set<String> wordTrigrams = trigramsOf(word);
+			Map<String, Integer> shared = new HashMap<String, Integer>();
+			for (String trigram : wordTrigrams) {
+				Set<String> terms = trigrams.get(trigram);
+				if (terms != null) {
+					for (String term : terms) {
+						shared.merge(term, 1, Integer::sum);
+					}
+				}
+			}
+			for (Map.Entry<String, Integer> candidate : shared.entrySet()) {
+				String qualified = candidate.getKey();
+				String term = qualified.substring(2);
+				if (term.startsWith(word)) {
+					continue;
+				}
+				int weight = FIELD_WEIGHTS[fieldIndex(qualified.charAt(0))];
+				double score;
+				if (term.contains(word)) {
+					score = 20;
+				} else {
+					int termTrigrams = Math.max(term.length() - 2, 1);
+					double similarity = (double) candidate.getValue()
+							/ (wordTrigrams.size() + termTrigrams - candidate.getValue());
+					if (similarity < MIN_SIMILARITY) {
+						continue;
+					}
+					score = 10 * similarity;
+				}
+				addScores(scores, postings.get(qualified), score * weight);
+			}
+			return scores;
+		}
+
+		/**
+		 * indexes the terms of a user, under the write lock. Copies the IDs of each of its terms.
+		 */
+		void addUser(long userId, String userName, String email, String lastName, String firstName) {
+			Set<String> terms = termsOf(userName, email, lastName, firstName);
+			for (String term : terms) {
+				long[] ids = postings.get(term);
+				if (ids == null) {
+					postings.put(term, new long[] { userId });
+					addTrigrams(term);
+				} else {
+					postings.put(term, insert(ids, userId));
+				}
+			}
+			termsByUser.put(userId, terms.toArray(new String[terms.size()]));
+		}
+
+		/**
+		 * indexes the terms of a user while the snapshot is loaded, before it is read by anyone. The IDs are
+		 * appended to the buffers, {@link #freeze(Map)} turns them into the postings.
+		 */
+		void loadUser(Map<String, IdBuffer> buffers, long userId, String userName, String email, String lastName,
+				String firstName) {
+			Set<String> terms = termsOf(userName, email, lastName, firstName);
+			for (String term : terms) {
+				IdBuffer ids = buffers.get(term);
+				if (ids == null) {
+					ids = new IdBuffer();
+					buffers.put(term, ids);
+					addTrigrams(term);
+				}
+				ids.add(userId);
+			}
+			termsByUser.put(userId, terms.toArray(new String[terms.size()]));
+		}
+
+		/**
+		 * sets the postings of the loaded users.
+		 */
+		void freeze(Map<String, IdBuffer> buffers) {
+			for (Map.Entry<String, IdBuffer> term : buffers.entrySet()) {
+				postings.put(term.getKey(), term.getValue().toSortedArray());
+			}
+		}
+
+		private void addTrigrams(String term) {
+			for (String trigram : trigramsOf(term.substring(2))) {
+				trigrams.computeIfAbsent(trigram, t -> new HashSet<String>()).add(term);
+			}
+		}
+
+		/**
+		 * removes the terms of a user, under the write lock.
+		 */
+		void removeUser(long userId) {
+			String[] terms = termsByUser.remove(userId);
+			if (terms == null) {
+				return;
+			}
+			for (String term : terms) {
+				long[] ids = remove(postings.get(term), userId);
+				if (ids.length > 0) {
+					postings.put(term, ids);
+					continue;
+				}
+				postings.remove(term);
+				for (String trigram : trigramsOf(term.substring(2))) {
+					Set<String> withTrigram = trigrams.get(trigram);
+					if (withTrigram != null) {
+						withTrigram.remove(term);
+						if (withTrigram.isEmpty()) {
+							trigrams.remove(trigram);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * The IDs of a term collected by a rebuild, grown by doubling.
+	 */
+	private static class IdBuffer {
+
+		private long[] ids = new long[4];
+
+		private int size;
+
+		void add(long id) {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			ids[size++] = id;
+		}
+
+		/**
+		 * @return the IDs, sorted. The rows of a rebuild come in ID order, so they usually are already.
+		 */
+		long[] toSortedArray() {
+			long[] sorted = Arrays.copyOf(ids, size);
+			Arrays.sort(sorted);
+			return sorted;
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package com.interfac.usermanager.user.services;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+import com.interfac.usermanager.user.model.User;
+
+/**
+ * This class is a JPA entity listener of {@link User}. It keeps the {@link UserSearchIndex} in sync
+ * with every user inserted, updated or deleted through the entity manager.
+ *
+ * <p>Hibernate creates entity listeners itself, so the index is reached through its static instance.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+public class UserSearchIndexListener {
+
+	/**
+	 * indexes a saved user.
+	 * @param user
+	 */
+	@PostPersist
+	@PostUpdate
+	public void onSave(User user) {
+		UserSearchIndex index = UserSearchIndex.getInstance();
+		if (index != null) {
+			index.add(user);
+		}
+	}
+
+	/**
+	 * removes a deleted user from the index.
+	 * @param user
+	 */
+	@PostRemove
+	public void onRemove(User user) {
+		UserSearchIndex index = UserSearchIndex.getInstance();
+		if (index != null) {
+			index.remove(user.getUserId());
+		}
+	}
+}
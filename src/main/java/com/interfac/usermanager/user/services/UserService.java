@@ -1,9 +1,15 @@
 package com.interfac.usermanager.user.services;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
+import org.springframework.data.domain.Sort.Direction;
+
 import com.interfac.usermanager.user.controllers.UserController;
 import com.interfac.usermanager.user.model.User;
+import com.interfac.usermanager.user.model.UserProfile;
+import com.interfac.usermanager.user.model.UserSummary;
 import com.interfac.usermanager.user.repositories.UserRepository;
 import com.interfac.usermanager.user.validation.UsernameExistsException;
 
@@ -21,9 +27,9 @@ public interface UserService {
 	
 	
 	/**
-	 * Responsible for registering a new user, first checks if the user already exists, if not
-	 * it retrieves role objects, and checks <code>isAdmin</code> attribute in the user and sets the <code>roles</code> 
-	 * accordingly, then calls the <code>save()</code> method on <code>userRepository</code> DAO
+	 * Responsible for registering a new user. It retrieves role objects, and checks <code>isAdmin</code> attribute 
+	 * in the user and sets the <code>roles</code> accordingly, then calls the <code>saveAndFlush()</code> method 
+	 * on <code>userRepository</code> DAO. A taken username is detected by the unique index on <i>username</i>.
 	 * 
 	 * @param user
 	 * @throws UsernameExistsException with a custom message
@@ -38,10 +44,36 @@ public interface UserService {
 
 	/**
 	 * responsible for providing a List of all users in the database. 
+	 * loads the whole table, prefer {@link #listUsers(Long, Long, int, Direction)} for views
+	 * and {@link UserExportService} for full dumps.
 	 * @return List of User objects
 	 */
 	List<User> listUsers();
 
+	/**
+	 * provides a single keyset page of users ordered by <code>userId</code>.
+	 * only one of <code>after</code> and <code>before</code> is expected, if both are null the first page is returned.
+	 * 
+	 * @param after cursor of the previous page, the page starts right after this <code>userId</code>.
+	 * @param before cursor of the next page, the page ends right before this <code>userId</code>.
+	 * @param size requested page size, the configured default is used if it is less than 1,
+	 * 		  and it is capped to the configured maximum.
+	 * @param direction sort direction on <code>userId</code>
+	 * @return a {@link UserPage} of {@link UserSummary} projections with the cursors of the neighbouring pages.
+	 */
+	UserPage<UserSummary> listUsers(Long after, Long before, int size, Direction direction);
+
+	/**
+	 * searches users by username, first name, last name and email. Prefixes, substrings and near misses
+	 * of each word are matched, see {@link UserSearchIndex}.
+	 * 
+	 * @param query one or more words
+	 * @param page page number, starting at 0
+	 * @param size requested page size, handled as in {@link #listUsers(Long, Long, int, Direction)}
+	 * @return a page of {@link UserSummary} projections, best match first.
+	 */
+	SearchResult<UserSummary> searchUsers(String query, int page, int size);
+
 	/**
 	 * Provides a user object given the <code>userId</code>.
 	 * @param userId
@@ -57,8 +89,23 @@ public interface UserService {
 	 */
 	User getUserByUserName(String username);
 
+	/**
+	 * Provides the profile view of a user given the <code>userId</code>, without loading the entity.
+	 * @param userId
+	 * @return UserProfile object, or null
+	 */
+	UserProfile getUserProfile(long userId);
+
+	/**
+	 * Provides the profile view of a user given the <code>username</code>, without loading the entity.
+	 * @param username must not be null
+	 * @return UserProfile object, or null
+	 */
+	UserProfile getUserProfileByUserName(String username);
+
 	/**
 	 * checks if a user with a given <code>username</code> given exists in the database or not.
+	 * most free usernames are answered from memory by the {@link UsernameFilter}.
 	 * 
 	 * @param username
 	 * @return true if users exists, false if not.
@@ -66,13 +113,83 @@ public interface UserService {
 	boolean userNameExists(String username);
 
 	/**
-	 * sets the roles according to the isAdmin property in the user object. 
-	 * Then updates the user in the database.
+	 * updates a user from the edit form. The form-bound user is applied with {@link #patchUser(long, long, UserPatch)}, 
+	 * so only the changed columns are written, and roles are only reassigned if the isAdmin property changed.
 	 * 
 	 * This method is seperate from the registerUser() method because it the userNameExists will fail for 
 	 * editing operations.
-	 * @param user
+	 * @param user carries the <code>version</code> the form was rendered with.
+	 * @throws UsernameExistsException if the new username is taken
+	 * @throws org.springframework.orm.ObjectOptimisticLockingFailureException if the user was changed since.
 	 */
-	void editUser(User user);
+	void editUser(User user) throws UsernameExistsException;
+
+	/**
+	 * applies a partial update to a user. The user is loaded by ID, the non-null fields of the patch that differ 
+	 * from the stored values are set, and the UPDATE statement covers only those columns.
+	 * 
+	 * @param userId
+	 * @param expectedVersion the version the caller's copy of the user has
+	 * @param patch the fields to change
+	 * @return the new version of the user
+	 * @throws UsernameExistsException if the new username is taken
+	 * @throws org.springframework.orm.ObjectOptimisticLockingFailureException if the user's version is not 
+	 * 		<code>expectedVersion</code> or it is changed concurrently.
+	 * @throws org.springframework.dao.EmptyResultDataAccessException if there is no user with that ID.
+	 */
+	long patchUser(long userId, long expectedVersion, UserPatch patch) throws UsernameExistsException;
 	
-}
\ No newline at end of file
+	/**
+	 * applies an operation to many users with set based statements, in chunks of 
+	 * <code>usermanager.bulk.chunk-size</code> users, each in its own transaction. Only the users that are not 
+	 * already in the requested state are written, and the current user is never deleted, disabled or demoted.
+	 * Deletions remove the role assignments in the same transaction, and each chunk is recorded as one audit revision.
+	 * 
+	 * @param operation
+	 * @param userIds the IDs of the users, repeated and unknown IDs are ignored.
+	 * @return the summary of the operation
+	 */
+	BulkResult bulkUpdate(BulkOperation operation, Collection<Long> userIds);
+
+	/**
+	 * applies an operation to all the users not modified since the given date, see {@link #bulkUpdate(BulkOperation, Collection)}.
+	 * 
+	 * @param operation
+	 * @param modifiedBefore
+	 * @return the summary of the operation
+	 */
+	BulkResult bulkUpdate(BulkOperation operation, Date modifiedBefore);
+	
+	/**
+	 * hashes the given password with the current encoding and stores it for the user, as a versioned and audited
+	 * update with its outbox event. Called after a successful login when the stored password uses an outdated encoding.
+	 * Nothing is changed if the stored password is no longer the one the login was checked against.
+	 * 
+	 * @param username
+	 * @param verifiedPassword the stored password the login was checked against
+	 * @param rawPassword the password the user just logged in with
+	 */
+	void upgradePassword(String username, String verifiedPassword, String rawPassword);
+	
+
+	/**
+	 * provides the version of a user's profile, read without loading the user.
+	 * @param userId
+	 * @return the version, or null if there is no user with that ID.
+	 */
+	ContentVersion getProfileVersion(long userId);
+
+	/**
+	 * provides the version of a user's profile by username, read without loading the user.
+	 * @param username
+	 * @return the version, or null if there is no user with that username.
+	 */
+	ContentVersion getProfileVersionByUserName(String username);
+
+	/**
+	 * provides the version of all the users, the ID of the latest {@link com.interfac.usermanager.user.model.UserEvent}.
+	 * Every insert, edit and delete adds an event, so it versions every page of the users list.
+	 * @return the version of the users list
+	 */
+	ContentVersion getUsersVersion();
+}
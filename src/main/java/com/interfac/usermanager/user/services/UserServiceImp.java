@@ -1,26 +1,52 @@
 package com.interfac.usermanager.user.services;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
-import javax.persistence.EntityManager;
-import javax.transaction.Transactional;
+import javax.annotation.PostConstruct;
 
-import org.hibernate.envers.AuditReader;
-import org.hibernate.envers.AuditReaderFactory;
+import org.hibernate.envers.RevisionType;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
 
 import com.interfac.usermanager.user.model.Role;
 import com.interfac.usermanager.user.model.User;
-import com.interfac.usermanager.user.repositories.RoleRepository;
+import com.interfac.usermanager.user.model.UserEvent;
+import com.interfac.usermanager.user.model.UserProfile;
+import com.interfac.usermanager.user.model.UserSummary;
+import com.interfac.usermanager.user.repositories.ReplicaStickiness;
+import com.interfac.usermanager.user.repositories.UserBatchWriter;
+import com.interfac.usermanager.user.repositories.UserEventRepository;
 import com.interfac.usermanager.user.repositories.UserRepository;
 import com.interfac.usermanager.user.validation.UsernameExistsException;
 
 
 /**
  * This class is an implementation for the {@link UserService} interface.
- * 
+ *
  * @author Ali
  *
  * @see UserService
@@ -35,11 +61,102 @@ public class UserServiceImp implements UserService {
 	private UserRepository userRepository;
 
 	/**
-	 * This instance is Autowired to the {@link RoleRepository} interface. handles role data access.
+	 * This instance is Autowired to the {@link RoleRegistry}. provides roles without querying the database.
+	 */
+	@Autowired
+	private RoleRegistry roleRegistry;
+
+	/**
+	 * This instance is Autowired to the {@link UserDetailsServiceImp}. Its cached login entries are evicted
+	 * whenever a user is changed.
+	 */
+	@Autowired
+	private UserDetailsServiceImp userDetailsService;
+
+	/**
+	 * This instance is Autowired to the {@link UserSearchIndex}. answers user searches from memory.
+	 */
+	@Autowired
+	private UserSearchIndex userSearchIndex;
+
+	/**
+	 * This instance is Autowired to the {@link UsernameFilter}. answers most username checks without a query.
+	 */
+	@Autowired
+	private UsernameFilter usernameFilter;
+
+	/**
+	 * This instance is Autowired to the {@link HashingPasswordEncoder}. hashes passwords on its own bounded pool.
+	 */
+	@Autowired
+	private HashingPasswordEncoder passwordEncoder;
+
+	/**
+	 * keeps the reads of users who just wrote away from lagging read replicas.
+	 */
+	@Autowired
+	private ReplicaStickiness replicaStickiness;
+
+	/**
+	 * the page size used when the caller does not ask for one.
+	 */
+	@Value("${usermanager.users.page-size:50}")
+	private int defaultPageSize;
+
+	/**
+	 * the largest page size a caller can ask for.
+	 */
+	@Value("${usermanager.users.max-page-size:500}")
+	private int maxPageSize;
+
+	/**
+	 * revokes the authentication tokens of changed users, in the stateless mode.
 	 */
 	@Autowired
-	private RoleRepository roleRepository;
+	private TokenRevocationList tokenRevocationList;
+
+	/**
+	 * writes the change events to the outbox, in the transaction of the change.
+	 */
+	@Autowired
+	private UserEventRepository userEventRepository;
+
+	/**
+	 * runs the set based statements of the bulk operations.
+	 */
+	@Autowired
+	private UserBatchWriter userBatchWriter;
+
+	/**
+	 * provides the username of the admin running a bulk operation, for the audit columns.
+	 */
+	@Autowired
+	private AuditorAware<String> auditorAware;
+
+	/**
+	 * the application's transaction manager.
+	 */
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	/**
+	 * the number of users written together by a bulk operation.
+	 */
+	@Value("${usermanager.bulk.chunk-size:1000}")
+	private int bulkChunkSize;
 
+	/**
+	 * runs each chunk of a bulk operation, or a registration, in its own transaction.
+	 */
+	private TransactionTemplate transactionTemplate;
+
+	/**
+	 * creates the transaction template.
+	 */
+	@PostConstruct
+	public void init() {
+		transactionTemplate = new TransactionTemplate(transactionManager);
+	}
 	
 
 	
@@ -48,13 +165,9 @@ public class UserServiceImp implements UserService {
 	 */
 	@Override
 	public void registerUser(User user) throws UsernameExistsException{
-		
-		if (userNameExists(user.getUserName())) {
-			throw new UsernameExistsException("A user already exists with that username: " + user.getUserName());
-		}
-		
-		Role adminRole = roleRepository.findByName("ROLE_ADMIN");
-		Role userRole = roleRepository.findByName("ROLE_USER");
+		encodePassword(user);
+		Role adminRole = roleRegistry.getRole("ROLE_ADMIN");
+		Role userRole = roleRegistry.getRole("ROLE_USER");
 		
 		if (user.isAdmin()) {
 			user.setRoles(Arrays.asList(adminRole));
@@ -62,31 +175,136 @@ public class UserServiceImp implements UserService {
 			user.setRoles(Arrays.asList(userRole));
 		}
 		
-		userRepository.save(user);
+		// the unique index on username decides, there is no check-then-insert race to lose.
+		// the password is hashed before, so the transaction does not hold a connection while it is.
+		try {
+			transactionTemplate.execute(status -> {
+				userRepository.saveAndFlush(user);
+				userEventRepository.save(event(UserEvent.Type.CREATED, user, null, null));
+				return null;
+			});
+		} catch (DataIntegrityViolationException e) {
+			if (isUsernameConstraint(e)) {
+				throw new UsernameExistsException("A user already exists with that username: " + user.getUserName());
+			}
+			throw e;
+		}
+		usernameFilter.add(user.getUserName());
+		userDetailsService.evict(user.getUserName());
+		markWritten(user.getUserName());
 	}
 	
 	/* (non-Javadoc)
 	 * @see com.interfac.usermanager.user.services.UserService#deleteUser(long)
 	 */
-	/*
-	 */
 	@Override
+	@Transactional
 	public void deleteUser(long userId){
-		userRepository.delete(userId);
+		User user = userRepository.findOne(userId);
+		if (user == null) {
+			throw new EmptyResultDataAccessException("No user found with ID: " + userId, 1);
+		}
+		String username = user.getUserName();
+		userEventRepository.save(event(UserEvent.Type.DELETED, user, null, null));
+		userRepository.delete(user);
+		afterCommit(() -> {
+			usernameFilter.remove(username);
+			userDetailsService.evict(username);
+			tokenRevocationList.revoke(username);
+			markWritten(username);
+		});
 	}
 	
 	/* (non-Javadoc)
 	 * @see com.interfac.usermanager.user.services.UserService#listUsers()
 	 */
 	@Override
+	@Transactional(readOnly = true)
 	public List<User> listUsers(){
 		return userRepository.findAll();
 	}
 	
+	/* (non-Javadoc)
+	 * @see com.interfac.usermanager.user.services.UserService#listUsers(java.lang.Long, java.lang.Long, int, org.springframework.data.domain.Sort.Direction)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public UserPage<UserSummary> listUsers(Long after, Long before, int size, Direction direction) {
+		int pageSize = pageSize(size);
+		boolean backwards = before != null;
+		Long cursor = backwards ? before : after;
+		
+		// a backwards page is read against the requested order and flipped afterwards,
+		// so both directions are a single index seek followed by a limit.
+		boolean readAscending = (direction == Direction.ASC) != backwards;
+		PageRequest limit = new PageRequest(0, pageSize + 1,
+				new Sort(readAscending ? Direction.ASC : Direction.DESC, "userId"));
+		
+		List<UserSummary> rows;
+		if (readAscending) {
+			rows = userRepository.findSummariesAfter(cursor == null ? Long.MIN_VALUE : cursor, limit);
+		} else {
+			rows = userRepository.findSummariesBefore(cursor == null ? Long.MAX_VALUE : cursor, limit);
+		}
+		
+		// the extra row only tells if there is more to read in the direction we walked.
+		boolean hasMore = rows.size() > pageSize;
+		if (hasMore) {
+			rows = new ArrayList<UserSummary>(rows.subList(0, pageSize));
+		}
+		if (backwards) {
+			rows = new ArrayList<UserSummary>(rows);
+			Collections.reverse(rows);
+		}
+		if (rows.isEmpty()) {
+			return new UserPage<UserSummary>(rows, null, null, pageSize, direction);
+		}
+		
+		Long first = rows.get(0).getUserId();
+		Long last = rows.get(rows.size() - 1).getUserId();
+		Long previousCursor = backwards ? (hasMore ? first : null) : (after != null ? first : null);
+		Long nextCursor = backwards ? last : (hasMore ? last : null);
+		return new UserPage<UserSummary>(rows, previousCursor, nextCursor, pageSize, direction);
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.interfac.usermanager.user.services.UserService#searchUsers(java.lang.String, int, int)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public SearchResult<UserSummary> searchUsers(String query, int page, int size) {
+		SearchResult<Long> ids = userSearchIndex.search(query, Math.max(page, 0), pageSize(size));
+		
+		// only the users of the requested page are loaded, then put back in ranking order
+		Map<Long, UserSummary> usersById = new HashMap<Long, UserSummary>();
+		if (!ids.getContent().isEmpty()) {
+			for (UserSummary user : userRepository.findSummariesByUserIdIn(ids.getContent())) {
+				usersById.put(user.getUserId(), user);
+			}
+		}
+		List<UserSummary> users = new ArrayList<UserSummary>(ids.getContent().size());
+		for (Long id : ids.getContent()) {
+			UserSummary user = usersById.get(id);
+			if (user != null) {
+				users.add(user);
+			}
+		}
+		return new SearchResult<UserSummary>(users, query, ids.getPage(), ids.getSize(), ids.getTotal());
+	}
+	
+	/**
+	 * @param size requested page size
+	 * @return the default page size if none was requested, the size capped to the maximum otherwise.
+	 */
+	private int pageSize(int size) {
+		return size < 1 ? defaultPageSize : Math.min(size, maxPageSize);
+	}
+	
 	/* (non-Javadoc)
 	 * @see com.interfac.usermanager.user.services.UserService#getUserById(long)
 	 */
 	@Override
+	@Transactional(readOnly = true)
 	public User getUserById(long userId) {
 		return userRepository.findOne(userId);
 	}
@@ -95,45 +313,424 @@ public class UserServiceImp implements UserService {
 	 * @see com.interfac.usermanager.user.services.UserService#getUserByUserName(java.lang.String)
 	 */
 	@Override
+	@Transactional(readOnly = true)
 	public User getUserByUserName(String username) {
 		return userRepository.findByUserName(username);
 	}
 	
 	
 	
+	/* (non-Javadoc)
+	 * @see com.interfac.usermanager.user.services.UserService#getUserProfile(long)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public UserProfile getUserProfile(long userId) {
+		return userRepository.findProfileByUserId(userId);
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.interfac.usermanager.user.services.UserService#getUserProfileByUserName(java.lang.String)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public UserProfile getUserProfileByUserName(String username) {
+		return userRepository.findProfileByUserName(username);
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.interfac.usermanager.user.services.UserService#getProfileVersion(long)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public ContentVersion getProfileVersion(long userId) {
+		List<Object[]> rows = userRepository.findVersionByUserId(userId);
+		if (rows.isEmpty()) {
+			return null;
+		}
+		return new ContentVersion(userId + "-" + rows.get(0)[0], (Date) rows.get(0)[1]);
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.interfac.usermanager.user.services.UserService#getProfileVersionByUserName(java.lang.String)
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public ContentVersion getProfileVersionByUserName(String username) {
+		List<Object[]> rows = userRepository.findVersionByUserName(username);
+		if (rows.isEmpty()) {
+			return null;
+		}
+		return new ContentVersion(rows.get(0)[0] + "-" + rows.get(0)[1], (Date) rows.get(0)[2]);
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.interfac.usermanager.user.services.UserService#getUsersVersion()
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public ContentVersion getUsersVersion() {
+		// dateModified has whole seconds and count(*) misses edits, the event IDs grow on every write
+		List<Object[]> rows = userEventRepository.findLatest();
+		if (rows.isEmpty()) {
+			return new ContentVersion("0", null);
+		}
+		return new ContentVersion(String.valueOf(rows.get(0)[0]), new Date((Long) rows.get(0)[1]));
+	}
+	
 	/* (non-Javadoc)
 	 * @see com.interfac.usermanager.user.services.UserService#userNameExists(java.lang.String)
 	 */
 	@Override
+	@Transactional(readOnly = true)
 	public boolean userNameExists(String username){
-		List<User> users = userRepository.findUserByUserName(username);
-		User user = null;
-		if (users.isEmpty()) {
-			return false;
-		} else {
-			user = users.get(0);
-		}
-		if (user != null) {
-			return true;
-		} else {
+		if (!usernameFilter.mightContain(username)) {
 			return false;
 		}
+		return userRepository.countByUserName(username) > 0;
 	}
 
 	/* (non-Javadoc)
 	 * @see com.interfac.usermanager.user.services.UserService#editUser(com.interfac.usermanager.user.model.User)
 	 */
 	@Override
-	public void editUser(User user) {
-		Role adminRole = roleRepository.findByName("ROLE_ADMIN");
-		Role userRole = roleRepository.findByName("ROLE_USER");
+	@Transactional(rollbackFor = UsernameExistsException.class)
+	public void editUser(User user) throws UsernameExistsException {
+		patchUser(user.getUserId(), user.getVersion(), UserPatch.of(user));
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.interfac.usermanager.user.services.UserService#patchUser(long, long, com.interfac.usermanager.user.services.UserPatch)
+	 */
+	@Override
+	@Transactional(rollbackFor = UsernameExistsException.class)
+	public long patchUser(long userId, long expectedVersion, UserPatch patch) throws UsernameExistsException {
+		User user = userRepository.findOne(userId);
+		if (user == null) {
+			throw new EmptyResultDataAccessException("No user found with ID: " + userId, 1);
+		}
+		// the version in the UPDATE only protects from here on, this catches edits based on an old form
+		if (user.getVersion() != expectedVersion) {
+			throw new ObjectOptimisticLockingFailureException(User.class, userId);
+		}
 		
-		if (user.getIsAdmin()) {
-			user.setRoles(Arrays.asList(adminRole));
-		} else {
-			user.setRoles(Arrays.asList(userRole));
+		// only differing values are set, so dirty checking updates just those columns
+		String previousUsername = user.getUserName();
+		// the tokens carry the username and authorities, and must not outlive a password change
+		boolean revokeTokens = false;
+		List<String> changedProperties = new ArrayList<String>();
+		if (changed(patch.getUserName(), user.getUserName())) {
+			user.setUserName(patch.getUserName());
+			changedProperties.add("userName");
+			revokeTokens = true;
+		}
+		if (changed(patch.getFirstName(), user.getFirstName())) {
+			user.setFirstName(patch.getFirstName());
+			changedProperties.add("firstName");
+		}
+		if (changed(patch.getLastName(), user.getLastName())) {
+			user.setLastName(patch.getLastName());
+			changedProperties.add("lastName");
+		}
+		if (changed(patch.getEmail(), user.getEmail())) {
+			user.setEmail(patch.getEmail());
+			changedProperties.add("email");
+		}
+		if (changed(patch.getPhone(), user.getPhone())) {
+			user.setPhone(patch.getPhone());
+			changedProperties.add("phone");
+		}
+		// always a raw password, a value looking like a hash is hashed too and can not replace the stored one
+		if (StringUtils.hasText(patch.getPassword())) {
+			user.setPassword(patch.getPassword());
+			encodePassword(user);
+			changedProperties.add("password");
+			revokeTokens = true;
+		}
+		user.setMatchingPassword(user.getPassword());
+		if (patch.getEnabled() != null && patch.getEnabled() != user.isEnabled()) {
+			user.setEnabled(patch.getEnabled());
+			changedProperties.add("enabled");
+			revokeTokens |= !user.isEnabled();
+		}
+		Collection<Role> previousRoles = null;
+		if (patch.getIsAdmin() != null && patch.getIsAdmin() != user.getIsAdmin()) {
+			previousRoles = new ArrayList<Role>(user.getRoles());
+			user.setIsAdmin(patch.getIsAdmin());
+			Role role = roleRegistry.getRole(user.getIsAdmin() ? "ROLE_ADMIN" : "ROLE_USER");
+			user.setRoles(new ArrayList<Role>(Arrays.asList(role)));
+			changedProperties.add("isAdmin");
+			revokeTokens = true;
+		}
+		
+		try {
+			userRepository.flush();
+		} catch (DataIntegrityViolationException e) {
+			if (isUsernameConstraint(e)) {
+				throw new UsernameExistsException("A user already exists with that username: " + user.getUserName());
+			}
+			throw e;
+		}
+		if (!changedProperties.isEmpty()) {
+			// written after the flush, so it carries the new version
+			userEventRepository.save(event(UserEvent.Type.UPDATED, user,
+					StringUtils.collectionToCommaDelimitedString(changedProperties), previousRoles));
+		}
+		
+		// the username can be edited too, so the entry cached under the old one has to go as well.
+		String username = user.getUserName();
+		boolean revoke = revokeTokens;
+		afterCommit(() -> {
+			if (!previousUsername.equalsIgnoreCase(username)) {
+				usernameFilter.remove(previousUsername);
+				usernameFilter.add(username);
+			}
+			userDetailsService.evict(previousUsername);
+			userDetailsService.evict(username);
+			if (revoke) {
+				tokenRevocationList.revoke(previousUsername);
+			}
+			markWritten(username);
+		});
+		return user.getVersion();
+	}
+	
+	/**
+	 * @param value the patched value, null for no change
+	 * @param current the stored value
+	 * @return true if the value is set and differs from the stored one.
+	 */
+	private static boolean changed(String value, String current) {
+		return value != null && !value.equals(current);
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.interfac.usermanager.user.services.UserService#bulkUpdate(com.interfac.usermanager.user.services.BulkOperation, java.util.Collection)
+	 */
+	@Override
+	public BulkResult bulkUpdate(BulkOperation operation, Collection<Long> userIds) {
+		long start = System.currentTimeMillis();
+		BulkResult result = new BulkResult(operation);
+		List<Long> ids = new ArrayList<Long>(new LinkedHashSet<Long>(userIds));
+		for (int from = 0; from < ids.size(); from += bulkChunkSize) {
+			bulkChunk(operation, ids.subList(from, Math.min(from + bulkChunkSize, ids.size())), result);
+		}
+		result.setElapsedMillis(System.currentTimeMillis() - start);
+		return result;
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.interfac.usermanager.user.services.UserService#bulkUpdate(com.interfac.usermanager.user.services.BulkOperation, java.util.Date)
+	 */
+	@Override
+	public BulkResult bulkUpdate(BulkOperation operation, Date modifiedBefore) {
+		long start = System.currentTimeMillis();
+		BulkResult result = new BulkResult(operation);
+		long after = Long.MIN_VALUE;
+		List<Long> ids;
+		do {
+			ids = userRepository.findIdsModifiedBefore(modifiedBefore, after, new PageRequest(0, bulkChunkSize));
+			if (!ids.isEmpty()) {
+				after = ids.get(ids.size() - 1);
+				bulkChunk(operation, ids, result);
+			}
+		} while (ids.size() == bulkChunkSize);
+		result.setElapsedMillis(System.currentTimeMillis() - start);
+		return result;
+	}
+	
+	/**
+	 * applies a bulk operation to a chunk of users in one transaction: one query reads their current state,
+	 * then the users that change are written and audited with a few set based statements.
+	 * @param operation
+	 * @param userIds at most <code>usermanager.bulk.chunk-size</code> distinct IDs
+	 * @param result the summary the chunk is added to
+	 */
+	private void bulkChunk(BulkOperation operation, List<Long> userIds, BulkResult result) {
+		result.addRequested(userIds.size());
+		String auditor = auditorAware.getCurrentAuditor();
+		String currentUser = auditor != null ? auditor : "system";
+		
+		Map<Long, String> changed = transactionTemplate.execute(status -> {
+			Map<Long, String> usernames = new LinkedHashMap<Long, String>();
+			for (Object[] row : userRepository.findBulkStateByUserIdIn(userIds)) {
+				String username = (String) row[1];
+				if (operation.isSelfDenying() && username.equalsIgnoreCase(currentUser)) {
+					result.addSkipped(1);
+				} else if (isInState(operation, (Boolean) row[2], (Boolean) row[3])) {
+					result.addUnchanged(1);
+				} else {
+					usernames.put((Long) row[0], username);
+				}
+			}
+			if (usernames.isEmpty()) {
+				return usernames;
+			}
+			
+			// envers does not see these statements, the chunk is audited as one revision
+			Collection<Long> ids = usernames.keySet();
+			Date now = new Date();
+			long revision = userBatchWriter.insertRevision(currentUser, now);
+			switch (operation) {
+			case DELETE:
+				userBatchWriter.auditUserRoles(ids, revision, RevisionType.DEL);
+				userBatchWriter.auditUsers(ids, revision, RevisionType.DEL);
+				userBatchWriter.insertEvents(ids, UserEvent.Type.DELETED, null, now);
+				userBatchWriter.deleteUsers(ids);
+				break;
+			case ENABLE:
+			case DISABLE:
+				userBatchWriter.updateEnabled(ids, operation == BulkOperation.ENABLE, currentUser, now);
+				userBatchWriter.auditUsers(ids, revision, RevisionType.MOD);
+				userBatchWriter.insertEvents(ids, UserEvent.Type.UPDATED, "enabled", now);
+				break;
+			case GRANT_ADMIN:
+			case REVOKE_ADMIN:
+				boolean admin = operation == BulkOperation.GRANT_ADMIN;
+				long roleId = roleRegistry.getRole(admin ? "ROLE_ADMIN" : "ROLE_USER").getId();
+				userBatchWriter.auditUserRoles(ids, revision, RevisionType.DEL);
+				userBatchWriter.updateAdmin(ids, admin, roleId, currentUser, now);
+				userBatchWriter.auditUserRoles(ids, revision, RevisionType.ADD);
+				userBatchWriter.auditUsers(ids, revision, RevisionType.MOD);
+				userBatchWriter.insertEvents(ids, UserEvent.Type.UPDATED, "isAdmin", now);
+				break;
+			}
+			return usernames;
+		});
+		
+		for (Map.Entry<Long, String> user : changed.entrySet()) {
+			if (operation == BulkOperation.DELETE) {
+				usernameFilter.remove(user.getValue());
+				userSearchIndex.remove(user.getKey());
+			}
+			userDetailsService.evict(user.getValue());
+			replicaStickiness.markWritten(user.getValue());
+		}
+		if (!changed.isEmpty()) {
+			replicaStickiness.markCurrentUserWritten();
+			if (operation != BulkOperation.ENABLE) {
+				tokenRevocationList.revoke(changed.values());
+			}
+		}
+		result.addChanged(changed.size());
+	}
+	
+	/**
+	 * @param operation
+	 * @param admin the stored admin flag of a user
+	 * @param enabled the stored enabled flag of a user
+	 * @return true if the operation would not change the user
+	 */
+	private static boolean isInState(BulkOperation operation, Boolean admin, Boolean enabled) {
+		switch (operation) {
+		case ENABLE:
+			return Boolean.TRUE.equals(enabled);
+		case DISABLE:
+			return Boolean.FALSE.equals(enabled);
+		case GRANT_ADMIN:
+			return Boolean.TRUE.equals(admin);
+		case REVOKE_ADMIN:
+			return Boolean.FALSE.equals(admin);
+		default:
+			return false;
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.interfac.usermanager.user.services.UserService#upgradePassword(java.lang.String, java.lang.String, java.lang.String)
+	 */
+	@Override
+	public void upgradePassword(String username, String verifiedPassword, String rawPassword) {
+		// hashed before the transaction, like on registration
+		String password = passwordEncoder.encode(rawPassword);
+		boolean upgraded = transactionTemplate.execute(status -> {
+			User user = userRepository.findByUserName(username);
+			// changed since the login was checked, the new password is not replaced by the old one
+			if (user == null || !verifiedPassword.equals(user.getPassword())) {
+				return false;
+			}
+			user.setPassword(password);
+			user.setMatchingPassword(password);
+			// flushed first, so the event carries the new version
+			userRepository.flush();
+			userEventRepository.save(event(UserEvent.Type.UPDATED, user, "password", null));
+			return true;
+		});
+		if (upgraded) {
+			userDetailsService.evict(username);
+			replicaStickiness.markWritten(username);
+		}
+	}
+	
+	/**
+	 * @param type
+	 * @param user the user after the change, before it for a deletion
+	 * @param changed the names of the changed properties, comma separated, or null
+	 * @param previousRoles the roles before an update that changed them, or null
+	 * @return the outbox event of a change made through the entity, carrying its revision for the audit trail.
+	 */
+	private UserEvent event(UserEvent.Type type, User user, String changed, Collection<Role> previousRoles) {
+		UserEvent event = new UserEvent(type, user, changed);
+		event.setAuditState(userBatchWriter.captureRevision(type, user, previousRoles));
+		return event;
+	}
+	
+	/**
+	 * runs the action once the current transaction is committed, at once if there is none. A cache evicted before the
+	 * commit can be filled again with the old values by a concurrent read, and a change that is rolled back must not
+	 * revoke tokens or change the username filter.
+	 * @param action
+	 */
+	private static void afterCommit(Runnable action) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			action.run();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				action.run();
+			}
+		});
+	}
+	
+	/**
+	 * keeps the reads of the current user and of the changed user on the primary database for a while,
+	 * so they see the change even if the read replicas lag.
+	 * @param username the changed user
+	 */
+	private void markWritten(String username) {
+		replicaStickiness.markCurrentUserWritten();
+		replicaStickiness.markWritten(username);
+	}
+	
+	/**
+	 * replaces the raw password of the user by its hash. Both password fields are set,
+	 * so the @PasswordsMatch constraint still holds when JPA validates the entity.
+	 * The password is always taken as raw, whatever it looks like.
+	 * @param user
+	 */
+	private void encodePassword(User user) {
+		user.setPassword(passwordEncoder.encode(user.getPassword()));
+		user.setMatchingPassword(user.getPassword());
+	}
+	
+	/**
+	 * @param e
+	 * @return true if the violated constraint is the unique index on <i>username</i>, false if it is another one or
+	 * can not be told, the violation is then not mistaken for a taken username.
+	 */
+	private boolean isUsernameConstraint(DataIntegrityViolationException e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof ConstraintViolationException) {
+				ConstraintViolationException violation = (ConstraintViolationException) cause;
+				// not every dialect extracts the name, the driver message usually has it
+				String constraint = violation.getConstraintName() != null ? violation.getConstraintName()
+						: violation.getSQLException() != null ? violation.getSQLException().getMessage() : null;
+				return constraint != null && constraint.toLowerCase().contains(User.USERNAME_CONSTRAINT);
+			}
 		}
-		userRepository.save(user);
+		return false;
 	}
 	
 }
@@ -0,0 +1,185 @@
+package com.interfac.usermanager.user.services;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import com.interfac.usermanager.user.repositories.UserRepository;
+
+/**
+ * This class is a counting Bloom filter of all the usernames in the database.
+ *
+ * <p>When {@link #mightContain(String)} returns false the username is certainly free, so most availability
+ * checks of new usernames are answered without a query. A true answer has to be confirmed by the database,
+ * with a false positive rate of about <code>usermanager.username-filter.false-positive-rate</code> while the
+ * number of users stays under <code>usermanager.username-filter.expected-insertions</code>.</p>
+ *
+ * <p>Each position holds an 8 bit counter instead of a single bit so deleted usernames can be removed. Four
+ * counters are packed per int and updated with compare-and-set, readers and writers never block. A counter that
+ * reaches 255 stays there, which can only cause false positives. Usernames are compared in lower case, like the
+ * MySQL collation of the unique index does.</p>
+ *
+ * @author Ali Abdalla
+ *
+ */
+@Component
+public class UsernameFilter {
+
+	/**
+	 * This instance is Autowired to the {@link UserRepository} interface. handles user data access.
+	 */
+	@Autowired
+	private UserRepository userRepository;
+
+	/**
+	 * the number of usernames the filter is sized for.
+	 */
+	@Value("${usermanager.username-filter.expected-insertions:1000000}")
+	private long expectedInsertions;
+
+	/**
+	 * the false positive rate at the expected number of usernames.
+	 */
+	@Value("${usermanager.username-filter.false-positive-rate:0.01}")
+	private double falsePositiveRate;
+
+	/**
+	 * the counters, four per int.
+	 */
+	private AtomicIntegerArray counters;
+
+	/**
+	 * the number of counters.
+	 */
+	private int size;
+
+	/**
+	 * the number of counters set per username.
+	 */
+	private int hashCount;
+
+	/**
+	 * sizes the filter from the configuration.
+	 */
+	@PostConstruct
+	public void init() {
+		double bits = -expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+		size = (int) Math.min(Math.max(Math.ceil(bits), 64), Integer.MAX_VALUE - 8);
+		hashCount = Math.max(1, (int) Math.round(bits / expectedInsertions * Math.log(2)));
+		counters = new AtomicIntegerArray((size + 3) / 4);
+	}
+
+	/**
+	 * clears the filter and adds every username of the database, in keyset pages.
+	 */
+	public void rebuild() {
+		for (int i = 0; i < counters.length(); i++) {
+			counters.set(i, 0);
+		}
+		long after = Long.MIN_VALUE;
+		List<Object[]> rows;
+		do {
+			rows = userRepository.findUserNamesAfter(after, new PageRequest(0, 10000));
+			for (Object[] row : rows) {
+				after = (Long) row[0];
+				add((String) row[1]);
+			}
+		} while (!rows.isEmpty());
+	}
+
+	/**
+	 * @param username
+	 * @return false if the username is certainly not taken, true if it might be.
+	 */
+	public boolean mightContain(String username) {
+		if (username == null) {
+			return false;
+		}
+		long hash = hash(username);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 1; i <= hashCount; i++) {
+			if (get(index(h1 + i * h2)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * adds a username, call once per user that takes it.
+	 * @param username
+	 */
+	public void add(String username) {
+		update(username, 1);
+	}
+
+	/**
+	 * removes a username that was added before.
+	 * @param username
+	 */
+	public void remove(String username) {
+		update(username, -1);
+	}
+
+	/**
+	 * increments or decrements the counters of the username.
+	 */
+	private void update(String username, int delta) {
+		if (username == null) {
+			return;
+		}
+		long hash = hash(username);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 1; i <= hashCount; i++) {
+			int index = index(h1 + i * h2);
+			int slot = index >>> 2;
+			int shift = (index & 3) * 8;
+			while (true) {
+				int packed = counters.get(slot);
+				int counter = (packed >>> shift) & 0xFF;
+				// a saturated counter may hide more usernames than it can count, it is never decremented
+				if (counter == 0xFF || (delta < 0 && counter == 0)) {
+					break;
+				}
+				int updated = (packed & ~(0xFF << shift)) | ((counter + delta) << shift);
+				if (counters.compareAndSet(slot, packed, updated)) {
+					break;
+				}
+			}
+		}
+	}
+
+	private int get(int index) {
+		return (counters.get(index >>> 2) >>> ((index & 3) * 8)) & 0xFF;
+	}
+
+	private int index(int combinedHash) {
+		return (combinedHash & Integer.MAX_VALUE) % size;
+	}
+
+	/**
+	 * 64 bit FNV-1a of the lower case username, finished with the murmur3 mixer.
+	 */
+	private static long hash(String username) {
+		String lower = username.toLowerCase();
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < lower.length(); i++) {
+			hash ^= lower.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
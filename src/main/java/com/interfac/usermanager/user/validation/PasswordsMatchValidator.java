@@ -3,6 +3,8 @@ package com.interfac.usermanager.user.validation;
 import javax.validation.ConstraintValidator;
 import javax.validation.ConstraintValidatorContext;
 
+import org.springframework.util.ObjectUtils;
+
 import com.interfac.usermanager.user.model.User;
 
 /**
@@ -27,6 +29,6 @@ public class PasswordsMatchValidator implements ConstraintValidator<PasswordsMat
 	@Override
 	public boolean isValid(Object obj, ConstraintValidatorContext context) {
 		User user = (User) obj;
-		return user.getPassword().equals(user.getMatchingPassword());
+		return ObjectUtils.nullSafeEquals(user.getPassword(), user.getMatchingPassword());
 	}
 }
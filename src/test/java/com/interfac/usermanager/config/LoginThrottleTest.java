@@ -0,0 +1,150 @@
+package com.interfac.usermanager.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.event.AuthenticationFailureBadCredentialsEvent;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Tests of the {@link LoginThrottle} counters.
+ *
+ * @author Ali Abdalla
+ *
+ */
+public class LoginThrottleTest {
+
+	private static final String ADDRESS = "10.0.0.1";
+
+	private LoginThrottle throttle;
+
+	@Before
+	public void setUp() {
+		throttle = throttle(65536);
+	}
+
+	@Test
+	public void freeAttemptsAreNotDelayed() {
+		failLogins("alice", 4);
+
+		assertEquals(0, throttle.delay("alice", ADDRESS));
+	}
+
+	@Test
+	public void failuresPastTheFreeAttemptsAreDelayed() {
+		failLogins("alice", 5);
+		long first = throttle.delay("alice", ADDRESS);
+		failLogins("alice", 2);
+		long third = throttle.delay("alice", ADDRESS);
+
+		assertTrue(first > 0 && first <= 1000);
+		assertTrue(third > 2000 && third <= 4000);
+		assertEquals(0, throttle.delay("bob", "10.0.0.2"));
+	}
+
+	@Test
+	public void usernamesAreCaseInsensitive() {
+		failLogins("Alice", 5);
+
+		assertTrue(throttle.delay("aLICE", ADDRESS) > 0);
+	}
+
+	@Test
+	public void delayIsCappedAtTheMaximum() {
+		failLogins("alice", 60);
+
+		assertTrue(throttle.delay("alice", "10.0.0.2") <= 300000);
+	}
+
+	@Test
+	public void addressIsThrottledWhateverTheUsername() {
+		for (int i = 0; i < 50; i++) {
+			failLogins("user" + i, 1);
+		}
+
+		assertTrue(throttle.delay(null, ADDRESS) > 0);
+		assertTrue(throttle.delay("someone", ADDRESS) > 0);
+		assertEquals(0, throttle.delay("someone", "10.0.0.2"));
+	}
+
+	@Test
+	public void successClearsTheUsernameButNotTheAddress() {
+		for (int i = 0; i < 50; i++) {
+			failLogins("alice", 1);
+		}
+		succeed("alice");
+
+		assertEquals(0, throttle.delay(null, "10.0.0.2") + throttle.delay("alice", "10.0.0.2"));
+		assertTrue(throttle.delay("alice", ADDRESS) > 0);
+	}
+
+	@Test
+	public void successKeepsTheFailuresOfUsernamesSharingItsSlots() {
+		// two slots per row, so some other username shares the first slot of alice and not the second one
+		throttle = throttle(2);
+		String other = null;
+		for (int i = 0; other == null; i++) {
+			if (sharesFirstSlotOnly("alice", "user" + i, 1)) {
+				other = "user" + i;
+			}
+		}
+		failLogins(other, 5);
+		failLogins("alice", 2);
+		succeed("alice");
+
+		assertTrue(throttle.delay(other, "10.0.0.2") > 0);
+	}
+
+	@Test
+	public void disabledThrottleNeverDelays() {
+		ReflectionTestUtils.setField(throttle, "enabled", false);
+		failLogins("alice", 10);
+
+		assertEquals(0, throttle.delay("alice", ADDRESS));
+	}
+
+	private static LoginThrottle throttle(int slots) {
+		LoginThrottle throttle = new LoginThrottle();
+		ReflectionTestUtils.setField(throttle, "metricRegistry", new MetricRegistry());
+		ReflectionTestUtils.setField(throttle, "enabled", true);
+		ReflectionTestUtils.setField(throttle, "slots", slots);
+		ReflectionTestUtils.setField(throttle, "windowSeconds", 900L);
+		ReflectionTestUtils.setField(throttle, "freeAttempts", 5);
+		ReflectionTestUtils.setField(throttle, "baseDelayMillis", 1000L);
+		ReflectionTestUtils.setField(throttle, "maxDelayMillis", 300000L);
+		ReflectionTestUtils.setField(throttle, "ipFreeAttempts", 50);
+		throttle.init();
+		return throttle;
+	}
+
+	private boolean sharesFirstSlotOnly(String key, String other, int mask) {
+		long hash = (Long) ReflectionTestUtils.invokeMethod(throttle, "hash", key);
+		long otherHash = (Long) ReflectionTestUtils.invokeMethod(throttle, "hash", other);
+		return (((int) hash) & mask) == (((int) otherHash) & mask)
+				&& (((int) (hash >>> 32)) & mask) != (((int) (otherHash >>> 32)) & mask);
+	}
+
+	private void failLogins(String username, int times) {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setRemoteAddr(ADDRESS);
+		UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(username, "wrong");
+		authentication.setDetails(new WebAuthenticationDetails(request));
+		for (int i = 0; i < times; i++) {
+			throttle.onFailure(new AuthenticationFailureBadCredentialsEvent(authentication,
+					new BadCredentialsException("Bad credentials")));
+		}
+	}
+
+	private void succeed(String username) {
+		throttle.onSuccess(new AuthenticationSuccessEvent(new UsernamePasswordAuthenticationToken(username, "right")));
+	}
+}
@@ -0,0 +1,87 @@
+package com.interfac.usermanager.config;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.interfac.usermanager.user.model.Privilege;
+import com.interfac.usermanager.user.services.PrivilegeSet;
+import com.interfac.usermanager.user.services.RoleRegistry;
+import com.interfac.usermanager.user.services.UserPrincipal;
+
+/**
+ * Tests of the {@link PrivilegeEvaluator} checks.
+ *
+ * @author Ali Abdalla
+ *
+ */
+public class PrivilegeEvaluatorTest {
+
+	private PrivilegeEvaluator evaluator;
+
+	private Privilege read;
+
+	private Privilege write;
+
+	@Before
+	public void setUp() {
+		read = privilege(1, "READ_PRIVILEGE");
+		write = privilege(2, "WRITE_PRIVILEGE");
+		RoleRegistry roleRegistry = mock(RoleRegistry.class);
+		when(roleRegistry.findPrivilege("READ_PRIVILEGE")).thenReturn(read);
+		when(roleRegistry.findPrivilege("WRITE_PRIVILEGE")).thenReturn(write);
+		evaluator = new PrivilegeEvaluator();
+		ReflectionTestUtils.setField(evaluator, "roleRegistry", roleRegistry);
+	}
+
+	@Test
+	public void principalHasThePrivilegesOfItsSet() {
+		Authentication authentication = authenticated(new UserPrincipal("alice", "", true,
+				new ArrayList<GrantedAuthority>(), PrivilegeSet.of(Arrays.asList(read))));
+
+		assertTrue(evaluator.hasPrivilege(authentication, "READ_PRIVILEGE"));
+		assertFalse(evaluator.hasPrivilege(authentication, "WRITE_PRIVILEGE"));
+		assertFalse(evaluator.hasPrivilege(authentication, "UNKNOWN_PRIVILEGE"));
+	}
+
+	@Test
+	public void otherPrincipalsHaveThePrivilegesOfTheirAuthorities() {
+		Authentication authentication = authenticated("alice");
+		Authentication withWrite = new UsernamePasswordAuthenticationToken("bob", "",
+				AuthorityUtils.createAuthorityList("ROLE_USER", "WRITE_PRIVILEGE"));
+
+		assertFalse(evaluator.hasPrivilege(authentication, "WRITE_PRIVILEGE"));
+		assertTrue(evaluator.hasPrivilege(withWrite, "WRITE_PRIVILEGE"));
+	}
+
+	@Test
+	public void unauthenticatedHasNoPrivileges() {
+		UserPrincipal principal = new UserPrincipal("alice", "", true, new ArrayList<GrantedAuthority>(),
+				PrivilegeSet.of(Arrays.asList(read, write)));
+
+		assertFalse(evaluator.hasPrivilege(null, "READ_PRIVILEGE"));
+		assertFalse(evaluator.hasPrivilege(new UsernamePasswordAuthenticationToken(principal, ""), "READ_PRIVILEGE"));
+	}
+
+	private static Authentication authenticated(Object principal) {
+		return new UsernamePasswordAuthenticationToken(principal, "", AuthorityUtils.createAuthorityList("ROLE_USER"));
+	}
+
+	private static Privilege privilege(long id, String name) {
+		Privilege privilege = new Privilege(name);
+		privilege.setId(id);
+		return privilege;
+	}
+}
@@ -0,0 +1,126 @@
+package com.interfac.usermanager.user.repositories;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.interfac.usermanager.user.model.Privilege;
+import com.interfac.usermanager.user.model.Role;
+import com.interfac.usermanager.user.model.User;
+
+/**
+ * Counts the statements of the fetch plans of {@link UserRepository} with the hibernate {@link Statistics}, so a
+ * change of a mapping or a query that brings back the N+1 selects fails here instead of in production.
+ *
+ * @author Ali Abdalla
+ *
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@TestPropertySource(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+public class UserRepositoryStatementsTest {
+
+	private static final int USERS = 100;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	private Statistics statistics;
+
+	private List<Long> userIds = new ArrayList<Long>();
+
+	/**
+	 * saves users with two roles of two privileges each, then starts from an empty persistence context and
+	 * second-level cache.
+	 */
+	@Before
+	public void setUp() {
+		Privilege read = entityManager.persist(new Privilege("READ_PRIVILEGE"));
+		Privilege write = entityManager.persist(new Privilege("WRITE_PRIVILEGE"));
+		Role admin = new Role("ROLE_ADMIN");
+		admin.setPrivileges(Arrays.asList(read, write));
+		Role user = new Role("ROLE_USER");
+		user.setPrivileges(Arrays.asList(read, write));
+		entityManager.persist(admin);
+		entityManager.persist(user);
+		for (int i = 0; i < USERS; i++) {
+			userIds.add(entityManager.persistAndGetId(user(i, admin, user), Long.class));
+		}
+		entityManager.flush();
+		entityManager.clear();
+		entityManagerFactory.getCache().evictAll();
+
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.setStatisticsEnabled(true);
+		statistics.clear();
+	}
+
+	@Test
+	public void userWithRolesAndPrivilegesIsOneStatement() {
+		User user = userRepository.findWithRolesAndPrivilegesByUserId(userIds.get(0));
+		for (Role role : user.getRoles()) {
+			role.getPrivileges().size();
+		}
+
+		assertEquals(2, user.getRoles().size());
+		assertEquals(1, statistics.getPrepareStatementCount());
+	}
+
+	@Test
+	public void usersWithRolesAreOneStatement() {
+		List<User> users = userRepository.findWithRolesByUserIdIn(userIds);
+		for (User user : users) {
+			user.getRoles().size();
+		}
+
+		assertEquals(USERS, users.size());
+		assertEquals(1, statistics.getPrepareStatementCount());
+	}
+
+	@Test
+	public void lazyRolesAreFetchedInBatches() {
+		List<User> users = userRepository.findAll();
+		for (User user : users) {
+			user.getRoles().size();
+		}
+
+		assertEquals(USERS, users.size());
+		// the users, then the roles of 50 users at a time
+		assertEquals(1 + USERS / 50, statistics.getPrepareStatementCount());
+	}
+
+	private static User user(int i, Role... roles) {
+		User user = new User();
+		user.setUserName("user" + i);
+		user.setFirstName("First");
+		user.setLastName("Last");
+		user.setEmail("user" + i + "@example.com");
+		user.setPhone("555-555-5555");
+		user.setPassword("password");
+		user.setMatchingPassword("password");
+		user.setEnabled(true);
+		user.setRoles(new ArrayList<Role>(Arrays.asList(roles)));
+		return user;
+	}
+}
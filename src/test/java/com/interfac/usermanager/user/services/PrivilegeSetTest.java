@@ -0,0 +1,91 @@
+package com.interfac.usermanager.user.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.util.SerializationUtils;
+
+import com.interfac.usermanager.user.model.Privilege;
+
+/**
+ * Tests of the {@link PrivilegeSet} bitsets.
+ *
+ * @author Ali Abdalla
+ *
+ */
+public class PrivilegeSetTest {
+
+	@Test
+	public void containsTheGivenPrivileges() {
+		PrivilegeSet set = PrivilegeSet.of(privileges(1, 5, 63, 64, 200));
+
+		for (long id : new long[] {1, 5, 63, 64, 200}) {
+			assertTrue(set.contains(id));
+		}
+		for (long id : new long[] {0, 2, 62, 65, 199, 201, 1000, -1}) {
+			assertFalse(set.contains(id));
+		}
+	}
+
+	@Test
+	public void emptyAndNullAreTheEmptySet() {
+		assertTrue(PrivilegeSet.of(null).isEmpty());
+		assertTrue(PrivilegeSet.of(new ArrayList<Privilege>()).isEmpty());
+		assertFalse(PrivilegeSet.EMPTY.contains(0));
+		assertFalse(PrivilegeSet.of(privileges(3)).isEmpty());
+	}
+
+	@Test
+	public void unionHasThePrivilegesOfBoth() {
+		PrivilegeSet small = PrivilegeSet.of(privileges(1, 2));
+		PrivilegeSet large = PrivilegeSet.of(privileges(2, 130));
+
+		PrivilegeSet union = small.union(large);
+
+		assertEquals(PrivilegeSet.of(privileges(1, 2, 130)), union);
+		assertEquals(union, large.union(small));
+		assertEquals(small, small.union(PrivilegeSet.EMPTY));
+		assertFalse(small.contains(130));
+	}
+
+	@Test
+	public void setsWithTheSamePrivilegesAreEqual() {
+		PrivilegeSet set = PrivilegeSet.of(privileges(4, 300));
+		PrivilegeSet same = PrivilegeSet.of(privileges(300)).union(PrivilegeSet.of(privileges(4)));
+
+		assertEquals(set, same);
+		assertEquals(set.hashCode(), same.hashCode());
+		assertNotEquals(set, PrivilegeSet.of(privileges(4)));
+		assertNotEquals(PrivilegeSet.of(privileges(4)), set);
+		assertEquals(PrivilegeSet.EMPTY, PrivilegeSet.of(privileges()));
+	}
+
+	@Test
+	public void toStringListsTheIds() {
+		assertEquals("PrivilegeSet [1, 64]", PrivilegeSet.of(privileges(64, 1)).toString());
+		assertEquals("PrivilegeSet []", PrivilegeSet.EMPTY.toString());
+	}
+
+	@Test
+	public void survivesSerialization() {
+		PrivilegeSet set = PrivilegeSet.of(privileges(7, 99));
+
+		assertEquals(set, SerializationUtils.deserialize(SerializationUtils.serialize(set)));
+	}
+
+	static List<Privilege> privileges(long... ids) {
+		List<Privilege> privileges = new ArrayList<Privilege>();
+		for (long id : ids) {
+			Privilege privilege = new Privilege("PRIVILEGE_" + id);
+			privilege.setId(id);
+			privileges.add(privilege);
+		}
+		return privileges;
+	}
+}
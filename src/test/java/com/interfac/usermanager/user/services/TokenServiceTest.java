@@ -0,0 +1,151 @@
+package com.interfac.usermanager.user.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Base64;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.interfac.usermanager.user.services.TokenService.Claims;
+
+/**
+ * Tests of the signing, verification and expiry of the {@link TokenService} tokens.
+ *
+ * @author Ali Abdalla
+ *
+ */
+public class TokenServiceTest {
+
+	private static final String K1 = "k1:" + secret(1);
+
+	private static final String K2 = "k2:" + secret(2);
+
+	private TokenRevocationList tokenRevocationList;
+
+	private RoleRegistry roleRegistry;
+
+	private Authentication login;
+
+	@Before
+	public void setUp() {
+		tokenRevocationList = mock(TokenRevocationList.class);
+		roleRegistry = mock(RoleRegistry.class);
+		when(roleRegistry.getPrivileges(anyCollectionOf(String.class))).thenReturn(PrivilegeSet.EMPTY);
+		login = new UsernamePasswordAuthenticationToken("alice", "secret",
+				AuthorityUtils.createAuthorityList("ROLE_USER", "READ_PRIVILEGE"));
+	}
+
+	@Test
+	public void issuedTokenVerifies() {
+		TokenService service = service(K1, "", 900, 43200);
+
+		Claims claims = service.verify(service.issue(login));
+
+		assertNotNull(claims);
+		assertEquals("alice", claims.getUsername());
+		assertEquals(AuthorityUtils.authorityListToSet(login.getAuthorities()),
+				AuthorityUtils.authorityListToSet(claims.getAuthorities()));
+		assertEquals(claims.getIssuedAt() + 900 * 1000, claims.getExpiresAt());
+		assertEquals("alice", claims.toAuthentication().getName());
+	}
+
+	@Test
+	public void tamperedTokenIsRejected() {
+		TokenService service = service(K1, "", 900, 43200);
+		String token = service.issue(login);
+		String[] parts = token.split("\\.");
+		String forged = Base64.getUrlEncoder().withoutPadding().encodeToString(
+				new String(Base64.getUrlDecoder().decode(parts[1])).replace("alice", "admin").getBytes());
+
+		assertNull(service.verify(parts[0] + "." + forged + "." + parts[2]));
+		assertNull(service.verify(token.substring(0, token.length() - 2)));
+		assertNull(service.verify("not a token"));
+		assertNull(service.verify("k1.!!!.!!!"));
+	}
+
+	@Test
+	public void tokenOfAnUnknownKeyIsRejected() {
+		String token = service(K1 + "," + K2, "k2", 900, 43200).issue(login);
+
+		assertNull(service(K1, "", 900, 43200).verify(token));
+		assertNull(service("k2:" + secret(3), "", 900, 43200).verify(token));
+		assertNotNull(service(K1 + "," + K2, "k1", 900, 43200).verify(token));
+	}
+
+	@Test
+	public void expiredTokenIsRejected() {
+		TokenService service = service(K1, "", 0, 43200);
+
+		assertNull(service.verify(service.issue(login)));
+	}
+
+	@Test
+	public void revokedTokenIsRejected() {
+		TokenService service = service(K1, "", 900, 43200);
+		String token = service.issue(login);
+		when(tokenRevocationList.isRevoked(eq("alice"), anyLong())).thenReturn(true);
+
+		assertNull(service.verify(token));
+		when(tokenRevocationList.isRevoked(anyString(), anyLong())).thenReturn(false);
+		assertNotNull(service.verify(token));
+	}
+
+	@Test
+	public void renewalKeepsTheLoginTimeUntilTheMaximumAge() {
+		TokenService service = service(K1, "", 900, 60);
+		Claims claims = service.verify(service.issue(login));
+
+		Claims renewed = service.verify(service.renew(claims));
+
+		assertEquals(claims.getLoginTime(), renewed.getLoginTime());
+		assertTrue(renewed.getIssuedAt() >= claims.getIssuedAt());
+		Claims old = new Claims("alice", claims.getAuthorities(), PrivilegeSet.EMPTY,
+				System.currentTimeMillis() - 61 * 1000, claims.getIssuedAt(), claims.getExpiresAt());
+		assertNull(service.renew(old));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shortKeyIsRefused() {
+		service("k1:" + Base64.getEncoder().encodeToString(new byte[16]), "", 900, 43200);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownSigningKeyIsRefused() {
+		service(K1, "k2", 900, 43200);
+	}
+
+	private TokenService service(String keys, String signingKeyId, long ttlSeconds, long maxAgeSeconds) {
+		TokenService service = new TokenService();
+		ReflectionTestUtils.setField(service, "enabled", true);
+		ReflectionTestUtils.setField(service, "keys", keys);
+		ReflectionTestUtils.setField(service, "signingKeyId", signingKeyId);
+		ReflectionTestUtils.setField(service, "ttlSeconds", ttlSeconds);
+		ReflectionTestUtils.setField(service, "maxAgeSeconds", maxAgeSeconds);
+		ReflectionTestUtils.setField(service, "tokenRevocationList", tokenRevocationList);
+		ReflectionTestUtils.setField(service, "roleRegistry", roleRegistry);
+		service.init();
+		return service;
+	}
+
+	private static String secret(int seed) {
+		byte[] secret = new byte[32];
+		for (int i = 0; i < secret.length; i++) {
+			secret[i] = (byte) (seed * 31 + i);
+		}
+		return Base64.getEncoder().encodeToString(secret);
+	}
+}
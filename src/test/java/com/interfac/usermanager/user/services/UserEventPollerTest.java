@@ -0,0 +1,88 @@
+package com.interfac.usermanager.user.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.interfac.usermanager.user.model.UserEvent;
+
+/**
+ * Tests of the ordering and the gap bookkeeping of the {@link UserEventPoller}.
+ *
+ * @author Ali Abdalla
+ *
+ */
+public class UserEventPollerTest {
+
+	private static final long NOW = 1000000;
+
+	@Test
+	public void contiguousEventsAreAllDelivered() {
+		assertEquals(3, UserEventPoller.contiguous(events(NOW, 11, 12, 13), 10, NOW - 5000));
+		assertEquals(0, UserEventPoller.contiguous(new ArrayList<UserEvent>(), 10, NOW - 5000));
+	}
+
+	@Test
+	public void youngGapStopsTheDelivery() {
+		assertEquals(2, UserEventPoller.contiguous(events(NOW, 11, 12, 14, 15), 10, NOW - 5000));
+		assertEquals(0, UserEventPoller.contiguous(events(NOW, 12, 13), 10, NOW - 5000));
+	}
+
+	@Test
+	public void settledGapIsSkipped() {
+		assertEquals(4, UserEventPoller.contiguous(events(NOW - 10000, 11, 12, 14, 15), 10, NOW - 5000));
+	}
+
+	@Test
+	public void gapsAreEncodedAsRanges() {
+		NavigableMap<Long, Long> gaps = new TreeMap<Long, Long>();
+		gaps.put(3L, 100L);
+		gaps.put(4L, 100L);
+		gaps.put(5L, 100L);
+		gaps.put(6L, 200L);
+		gaps.put(9L, 200L);
+
+		assertEquals("3-5:100,6-6:200,9-9:200", UserEventPoller.encodeGaps(gaps));
+		assertNull(UserEventPoller.encodeGaps(new TreeMap<Long, Long>()));
+	}
+
+	@Test
+	public void decodedGapsAreTheEncodedOnes() {
+		NavigableMap<Long, Long> gaps = new TreeMap<Long, Long>();
+		for (long id = 1000; id < 1100; id++) {
+			gaps.put(id, id < 1050 ? 7L : 8L);
+		}
+		gaps.put(5000L, 9L);
+
+		assertEquals(gaps, UserEventPoller.decodeGaps(UserEventPoller.encodeGaps(gaps)));
+		assertTrue(UserEventPoller.decodeGaps(null).isEmpty());
+		assertTrue(UserEventPoller.decodeGaps("").isEmpty());
+	}
+
+	@Test
+	public void largeIdsSurviveTheEncoding() {
+		NavigableMap<Long, Long> gaps = new TreeMap<Long, Long>(Collections.singletonMap(Long.MAX_VALUE - 1, NOW));
+
+		assertEquals(gaps, UserEventPoller.decodeGaps(UserEventPoller.encodeGaps(gaps)));
+	}
+
+	private static List<UserEvent> events(long occurredAt, long... ids) {
+		List<UserEvent> events = new ArrayList<UserEvent>();
+		for (long id : ids) {
+			UserEvent event = new UserEvent();
+			ReflectionTestUtils.setField(event, "id", id);
+			ReflectionTestUtils.setField(event, "occurredAt", occurredAt);
+			events.add(event);
+		}
+		return events;
+	}
+}
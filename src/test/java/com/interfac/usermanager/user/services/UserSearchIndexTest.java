@@ -0,0 +1,210 @@
+package com.interfac.usermanager.user.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.interfac.usermanager.user.model.User;
+import com.interfac.usermanager.user.repositories.UserRepository;
+
+/**
+ * Tests of the paging and the updates of the {@link UserSearchIndex}.
+ *
+ * @author Ali Abdalla
+ *
+ */
+public class UserSearchIndexTest {
+
+	private static final int USERS = 25;
+
+	private UserRepository userRepository;
+
+	private UserSearchIndex index;
+
+	@Before
+	public void setUp() {
+		userRepository = mock(UserRepository.class);
+		index = new UserSearchIndex();
+		ReflectionTestUtils.setField(index, "userRepository", userRepository);
+		ReflectionTestUtils.setField(index, "maxResults", 1000);
+		for (int i = 1; i <= USERS; i++) {
+			index.add(user(i, "smith" + i));
+		}
+	}
+
+	@Test
+	public void pagesCoverEveryMatchOnce() {
+		Set<Long> found = new HashSet<Long>();
+		for (int page = 0; page < 3; page++) {
+			SearchResult<Long> result = index.search("smith", page, 10);
+			assertEquals(USERS, result.getTotal());
+			assertEquals(page < 2 ? 10 : 5, result.getContent().size());
+			found.addAll(result.getContent());
+		}
+
+		assertEquals(USERS, found.size());
+	}
+
+	@Test
+	public void pagePastTheEndIsEmpty() {
+		assertTrue(index.search("smith", 3, 10).getContent().isEmpty());
+		assertEquals(USERS, index.search("smith", 3, 10).getTotal());
+		// page * size overflows an int
+		assertTrue(index.search("smith", Integer.MAX_VALUE, Integer.MAX_VALUE).getContent().isEmpty());
+		assertTrue(index.search("smith", 1, Integer.MAX_VALUE).getContent().isEmpty());
+	}
+
+	@Test
+	public void totalIsCappedAtTheMaximumResults() {
+		ReflectionTestUtils.setField(index, "maxResults", 20);
+
+		assertEquals(20, index.search("smith", 0, 100).getTotal());
+		assertEquals(0, index.search("smith", 2, 10).getContent().size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativePageIsRefused() {
+		index.search("smith", -1, 10);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void emptyPageIsRefused() {
+		index.search("smith", 0, 0);
+	}
+
+	@Test
+	public void blankQueryFindsNothing() {
+		assertEquals(0, index.search("  ", 0, 10).getTotal());
+	}
+
+	@Test
+	public void changedAndRemovedUsersAreUpdated() {
+		index.add(user(3, "jones"));
+		index.remove(4);
+
+		assertEquals(USERS - 2, index.search("smith", 0, 100).getTotal());
+		assertEquals(Collections.singletonList(3L), index.search("jones", 0, 10).getContent());
+	}
+
+	@Test
+	public void rebuildReplacesTheIndex() {
+		List<Object[]> rows = new ArrayList<Object[]>();
+		rows.add(new Object[] {100L, "brown", "brown@example.com", "Brown", "Bob"});
+		when(userRepository.findSearchFieldsAfter(anyLong(), any(Pageable.class)))
+				.thenReturn(rows, new ArrayList<Object[]>());
+
+		index.rebuild();
+
+		assertEquals(1, index.size());
+		assertEquals(0, index.search("smith", 0, 10).getTotal());
+		assertEquals(Collections.singletonList(100L), index.search("brown", 0, 10).getContent());
+	}
+
+	@Test
+	public void prefixOfAUsernameFindsIt() {
+		index = index(user(1, "jsmith"), user(2, "jones"));
+
+		assertEquals(Arrays.asList(1L), index.search("jsm", 0, 10).getContent());
+	}
+
+	@Test
+	public void exactMatchRanksAbovePrefixAboveSubstring() {
+		index = index(user(1, "blacksmith"), user(2, "smithson"), user(3, "smith"));
+
+		assertEquals(Arrays.asList(3L, 2L, 1L), index.search("smith", 0, 10).getContent());
+	}
+
+	@Test
+	public void nearMissIsFoundBelowTheExactMatch() {
+		index = index(user(1, "johnson"), user(2, "johnsen"), user(3, "jackson"));
+
+		assertEquals(Arrays.asList(2L, 1L), index.search("johnsen", 0, 10).getContent());
+		assertEquals(Arrays.asList(1L, 2L), index.search("johnson", 0, 10).getContent());
+	}
+
+	@Test
+	public void usernameMatchRanksAboveNameMatch() {
+		User byLastName = user(1, "other");
+		byLastName.setLastName("Brown");
+		index = index(byLastName, user(2, "brown"));
+
+		assertEquals(Arrays.asList(2L, 1L), index.search("Brown", 0, 10).getContent());
+	}
+
+	@Test
+	public void everyWordHasToMatch() {
+		User john = user(1, "jsmith");
+		john.setFirstName("John");
+		User jane = user(2, "jdoe");
+		jane.setFirstName("Jane");
+		index = index(john, jane, user(3, "smithers"));
+
+		assertEquals(Arrays.asList(1L), index.search("john smith", 0, 10).getContent());
+		assertEquals(0, index.search("jane smith", 0, 10).getTotal());
+	}
+
+	@Test
+	public void equalScoresAreOrderedById() {
+		index = index(user(3, "smith3"), user(1, "smith1"), user(2, "smith2"));
+
+		assertEquals(Arrays.asList(1L, 2L, 3L), index.search("smith", 0, 10).getContent());
+	}
+
+	@Test(timeout = 30000)
+	public void rebuildOfALargeIndexIsNotQuadratic() {
+		int users = 100000;
+		// every user shares the terms of the email domain and of the names
+		when(userRepository.findSearchFieldsAfter(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+			long after = Math.max((Long) invocation.getArguments()[0], 0);
+			int size = ((Pageable) invocation.getArguments()[1]).getPageSize();
+			List<Object[]> rows = new ArrayList<Object[]>();
+			for (long id = after + 1; id <= Math.min(after + size, users); id++) {
+				rows.add(new Object[] {id, "user" + id, "user" + id + "@example.com", "Last", "First"});
+			}
+			return rows;
+		});
+
+		index.rebuild();
+
+		assertEquals(users, index.size());
+		assertEquals(1000, index.search("example", 0, 10).getTotal());
+		assertEquals(Collections.singletonList(77777L), index.search("user77777", 0, 1).getContent());
+		index.add(user(users + 1, "late"));
+		assertEquals(Collections.singletonList(users + 1L), index.search("late", 0, 10).getContent());
+	}
+
+	private UserSearchIndex index(User... users) {
+		UserSearchIndex index = new UserSearchIndex();
+		ReflectionTestUtils.setField(index, "userRepository", userRepository);
+		ReflectionTestUtils.setField(index, "maxResults", 1000);
+		for (User user : users) {
+			index.add(user);
+		}
+		return index;
+	}
+
+	private static User user(long userId, String userName) {
+		User user = new User();
+		user.setUserId(userId);
+		user.setUserName(userName);
+		user.setEmail(userName + "@example.com");
+		user.setLastName("Last");
+		user.setFirstName("First");
+		return user;
+	}
+}